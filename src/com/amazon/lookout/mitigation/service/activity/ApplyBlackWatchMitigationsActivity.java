@@ -0,0 +1,204 @@
+package com.amazon.lookout.mitigation.service.activity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+
+import org.apache.commons.lang.builder.ReflectionToStringBuilder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazon.aws158.commons.metric.TSDMetrics;
+import com.amazon.blackwatch.mitigation.state.model.BlackWatchTargetConfig;
+import com.amazon.coral.annotation.Documentation;
+import com.amazon.coral.annotation.Operation;
+import com.amazon.coral.annotation.Service;
+import com.amazon.coral.service.Activity;
+import com.amazon.coral.service.Identity;
+import com.amazon.coral.validate.Validated;
+import com.amazon.lookout.mitigation.service.ApplyBlackWatchMitigationRequest;
+import com.amazon.lookout.mitigation.service.ApplyBlackWatchMitigationsRequest;
+import com.amazon.lookout.mitigation.service.ApplyBlackWatchMitigationsResponse;
+import com.amazon.lookout.mitigation.service.BadRequest400;
+import com.amazon.lookout.mitigation.service.BlackWatchMitigationApplyResult;
+import com.amazon.lookout.mitigation.service.InternalServerError500;
+import com.amazon.lookout.mitigation.service.MitigationLimitByOwnerExceeded400;
+import com.amazon.lookout.mitigation.service.MitigationNotOwnedByRequestor400;
+import com.amazon.lookout.mitigation.service.activity.helper.ActivityHelper;
+import com.amazon.lookout.mitigation.service.activity.helper.ApplyBlackWatchMitigationEntry;
+import com.amazon.lookout.mitigation.service.activity.helper.ApplyBlackWatchMitigationResult;
+import com.amazon.lookout.mitigation.service.activity.helper.BlackWatchMitigationInfoHandler;
+import com.amazon.lookout.mitigation.service.activity.validator.RequestValidator;
+import com.amazon.lookout.mitigation.service.constants.LookoutMitigationServiceConstants;
+import com.google.common.collect.Sets;
+
+/**
+ * Applies many BlackWatch mitigations of one owner in a single call. Every entry is validated and applied as a
+ * single ApplyBlackWatchMitigation would be, and gets its own result: the response of the apply, or the type and
+ * message of the error it failed with. Only errors of the batch itself fail the whole call.
+ */
+@AllArgsConstructor
+@ThreadSafe
+@Service("LookoutMitigationService")
+public class ApplyBlackWatchMitigationsActivity extends Activity {
+    private static final Log LOG = LogFactory.getLog(ApplyBlackWatchMitigationsActivity.class);
+
+    private enum ApplyBlackWatchMitigationsExceptions {
+        BadRequest, InternalError
+    }
+
+    // Maintain a Set<String> for all the exceptions to allow passing it to the
+    // ActivityHelper which is called from
+    // different activities. Hence not using an EnumSet in this case.
+    private static final Set<String> REQUEST_EXCEPTIONS = Collections
+            .unmodifiableSet(Sets.newHashSet(
+                    ApplyBlackWatchMitigationsExceptions.BadRequest.name(),
+                    ApplyBlackWatchMitigationsExceptions.InternalError.name()));
+
+    public static final int MAX_MITIGATIONS_PER_REQUEST = 25;
+
+    @NonNull
+    private final RequestValidator requestValidator;
+
+    @NonNull
+    private final BlackWatchMitigationInfoHandler blackwatchMitigationInfoHandler;
+
+    private final boolean regionalMitigationsEnabled;
+
+    public ApplyBlackWatchMitigationsActivity(RequestValidator requestValidator, BlackWatchMitigationInfoHandler
+        blackwatchMitigationInfoHandler) {
+        this(requestValidator, blackwatchMitigationInfoHandler, false);
+    }
+
+    @Validated
+    @Operation("ApplyBlackWatchMitigations")
+    @Documentation("ApplyBlackWatchMitigations")
+    public @NonNull ApplyBlackWatchMitigationsResponse enact(@NonNull ApplyBlackWatchMitigationsRequest request) {
+
+        TSDMetrics tsdMetrics = new TSDMetrics(getMetrics(), "ApplyBlackWatchMitigations.enact");
+
+        String requestId = getRequestId().toString();
+        boolean requestSuccessfullyProcessed = true;
+
+        try {
+            ActivityHelper.initializeRequestExceptionCounts(REQUEST_EXCEPTIONS, tsdMetrics);
+            String userARN = getIdentity().getAttribute(Identity.AWS_USER_ARN);
+            LOG.info(String.format("ApplyBlackWatchMitigationsActivity called with RequestId: %s and request: %s "
+                    + "and userARN:%s.", requestId, ReflectionToStringBuilder.toString(request), userARN));
+
+            // Step 1. Validate the batch, then each entry on its own.
+            requestValidator.validateApplyBlackWatchMitigationsRequest(request);
+
+            List<ApplyBlackWatchMitigationRequest> mitigations = request.getMitigations();
+            BlackWatchMitigationApplyResult[] results = new BlackWatchMitigationApplyResult[mitigations.size()];
+            List<Integer> validIndexes = new ArrayList<>(mitigations.size());
+            List<ApplyBlackWatchMitigationEntry> entries = new ArrayList<>(mitigations.size());
+            for (int i = 0; i < mitigations.size(); ++i) {
+                try {
+                    entries.add(toEntry(mitigations.get(i), userARN));
+                    validIndexes.add(i);
+                } catch (IllegalArgumentException ex) {
+                    LOG.warn(String.format("Invalid entry %d of RequestId: %s", i, requestId), ex);
+                    results[i] = failedResult(ex);
+                }
+            }
+
+            // Step 2. Apply the valid entries.
+            List<ApplyBlackWatchMitigationResult> applied = entries.isEmpty() ? Collections.emptyList()
+                    : blackwatchMitigationInfoHandler.applyBlackWatchMitigations(entries,
+                            request.getMitigationActionMetadata(), userARN, tsdMetrics);
+            for (int j = 0; j < applied.size(); ++j) {
+                ApplyBlackWatchMitigationResult result = applied.get(j);
+                if (result.isSucceeded()) {
+                    result.getResponse().setRequestId(requestId);
+                    BlackWatchMitigationApplyResult applyResult = new BlackWatchMitigationApplyResult();
+                    applyResult.setResponse(result.getResponse());
+                    results[validIndexes.get(j)] = applyResult;
+                } else {
+                    results[validIndexes.get(j)] = failedResult(result.getError());
+                }
+            }
+
+            long failedEntries = 0;
+            for (BlackWatchMitigationApplyResult result : results) {
+                if (result.getErrorType() != null) {
+                    ++failedEntries;
+                }
+            }
+            tsdMetrics.addCount("FailedEntries", failedEntries);
+
+            ApplyBlackWatchMitigationsResponse response = new ApplyBlackWatchMitigationsResponse();
+            response.setRequestId(requestId);
+            response.setResults(Arrays.asList(results));
+            return response;
+
+        } catch (IllegalArgumentException ex) {
+            String msg = String.format(ActivityHelper.BAD_REQUEST_EXCEPTION_MESSAGE_FORMAT,
+                    requestId, "ApplyBlackWatchMitigationsActivity", ex.getMessage());
+            LOG.warn(msg + " for request: " + ReflectionToStringBuilder.toString(request), ex);
+            tsdMetrics.addCount(ActivityHelper.EXCEPTION_COUNT_METRIC_PREFIX
+                    + ApplyBlackWatchMitigationsExceptions.BadRequest.name(), 1);
+            throw new BadRequest400(msg, ex);
+        } catch (Exception internalError) {
+            String msg = "Internal error in ApplyBlackWatchMitigationsActivity for requestId: "
+                    + requestId + ", reason: " + internalError.getMessage();
+            LOG.error(LookoutMitigationServiceConstants.CRITICAL_ACTIVITY_ERROR_LOG_PREFIX
+                    + msg + " for request " + ReflectionToStringBuilder.toString(request), internalError);
+            requestSuccessfullyProcessed = false;
+            tsdMetrics.addCount(ActivityHelper.EXCEPTION_COUNT_METRIC_PREFIX
+                    + ApplyBlackWatchMitigationsExceptions.InternalError.name(), 1);
+            throw new InternalServerError500(msg, internalError);
+        } finally {
+            tsdMetrics.addCount(
+                    LookoutMitigationServiceConstants.ENACT_SUCCESS, requestSuccessfullyProcessed ? 1 : 0);
+            tsdMetrics.addCount(
+                    LookoutMitigationServiceConstants.ENACT_FAILURE, requestSuccessfullyProcessed ? 0 : 1);
+            tsdMetrics.end();
+        }
+    }
+
+    private ApplyBlackWatchMitigationEntry toEntry(ApplyBlackWatchMitigationRequest mitigation, String userARN) {
+        BlackWatchTargetConfig targetConfig = requestValidator.validateApplyBlackWatchMitigationEntry(mitigation,
+                userARN);
+
+        // same as ApplyBlackWatchMitigation, see the note on placement_tags there
+        if (targetConfig.getGlobal_deployment() != null &&
+                targetConfig.getGlobal_deployment().getPlacement_tags() != null &&
+                !regionalMitigationsEnabled) {
+            throw new IllegalArgumentException("placement_tags are not supported yet.");
+        }
+
+        return ApplyBlackWatchMitigationEntry.builder()
+                .resourceId(mitigation.getResourceId())
+                .resourceType(mitigation.getResourceType())
+                .minutesToLive(mitigation.getMinutesToLive())
+                .targetConfig(targetConfig)
+                .allowAutoMitigationOverride(mitigation.isAllowAutoMitigationOverride())
+                .bypassConfigValidations(mitigation.isBypassConfigValidations())
+                .build();
+    }
+
+    /**
+     * The error type is the name of the exception a single ApplyBlackWatchMitigation would have thrown.
+     */
+    private static BlackWatchMitigationApplyResult failedResult(RuntimeException error) {
+        String errorType;
+        if (error instanceof MitigationNotOwnedByRequestor400 || error instanceof MitigationLimitByOwnerExceeded400) {
+            errorType = error.getClass().getSimpleName();
+        } else if (error instanceof IllegalArgumentException) {
+            errorType = BadRequest400.class.getSimpleName();
+        } else {
+            errorType = InternalServerError500.class.getSimpleName();
+        }
+        BlackWatchMitigationApplyResult result = new BlackWatchMitigationApplyResult();
+        result.setErrorType(errorType);
+        result.setErrorMessage(error.getMessage());
+        return result;
+    }
+}
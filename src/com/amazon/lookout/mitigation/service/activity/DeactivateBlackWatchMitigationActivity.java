@@ -66,7 +66,7 @@ public class DeactivateBlackWatchMitigationActivity extends Activity {
             requestValidator.validateDeactivateBlackWatchMitigationRequest(request);
 
             // Deactivate
-            blackwatchMitigationInfoHandler.deactivateMitigation(mitigationId, request.getMitigationActionMetadata());
+            blackwatchMitigationInfoHandler.deactivateMitigation(mitigationId, request.getMitigationActionMetadata(), tsdMetrics);
 
             // Create the response object to return back to the client.
             DeactivateBlackWatchMitigationResponse response = new DeactivateBlackWatchMitigationResponse();
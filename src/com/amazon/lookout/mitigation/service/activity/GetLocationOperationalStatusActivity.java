@@ -10,6 +10,7 @@ import com.amazon.coral.validate.Validated;
 import com.amazon.lookout.mitigation.service.*;
 import com.amazon.lookout.mitigation.service.activity.helper.ActivityHelper;
 import com.amazon.lookout.mitigation.service.activity.helper.HostStatusInfoHandler;
+import com.amazon.lookout.mitigation.service.activity.helper.LocationLookupContext;
 import com.amazon.lookout.mitigation.service.activity.helper.LocationStateInfoHandler;
 import com.amazon.lookout.mitigation.service.activity.validator.RequestValidator;
 import com.amazon.lookout.mitigation.service.constants.LookoutMitigationServiceConstants;
@@ -71,6 +72,8 @@ public class GetLocationOperationalStatusActivity extends Activity {
 
         // Wrap the CoralMetrics for this activity in a TSDMetrics instance.
         TSDMetrics tsdMetrics = new TSDMetrics(getMetrics(), "GetLocationHostStatus.enact");
+        // each location and its datapoints are read once for all the checks below
+        LocationLookupContext lookupContext = new LocationLookupContext();
         try {
             LOG.info(String.format("GetLocationHostStatusActivity called with RequestId: %s and Request: %s.", requestId, ReflectionToStringBuilder.toString(request)));
             ActivityHelper.initializeRequestExceptionCounts(REQUEST_EXCEPTIONS, tsdMetrics);
@@ -79,7 +82,7 @@ public class GetLocationOperationalStatusActivity extends Activity {
             requestValidator.validateGetLocationOperationalStatusRequest(request);
 
             String location = request.getLocation().toLowerCase();
-            LocationState locationState = locationStateInfoHandler.getLocationState(location, tsdMetrics);
+            LocationState locationState = locationStateInfoHandler.getLocationState(location, lookupContext, tsdMetrics);
 
             // Checking if location requested exists
             if(locationState == null) {
@@ -89,9 +92,9 @@ public class GetLocationOperationalStatusActivity extends Activity {
             // Step 2. Create the response object to return back to the client.
             GetLocationOperationalStatusResponse response = new GetLocationOperationalStatusResponse();
             response.setRequestId(requestId);
-            response.setIsOperational(locationStateInfoHandler.checkIfLocationIsOperational(location, tsdMetrics));
-            response.setPendingOperations(locationStateInfoHandler.getPendingOperationLocks(location, tsdMetrics));
-            response.setOperationChanges(locationStateInfoHandler.getOperationChanges(location, tsdMetrics));
+            response.setIsOperational(locationStateInfoHandler.checkIfLocationIsOperational(location, lookupContext, tsdMetrics));
+            response.setPendingOperations(locationStateInfoHandler.getPendingOperationLocks(location, lookupContext, tsdMetrics));
+            response.setOperationChanges(locationStateInfoHandler.getOperationChanges(location, lookupContext, tsdMetrics));
 
             requestSuccessfullyProcessed = true;
             return response;
@@ -111,6 +114,7 @@ public class GetLocationOperationalStatusActivity extends Activity {
         } finally {
             tsdMetrics.addCount(LookoutMitigationServiceConstants.ENACT_SUCCESS, requestSuccessfullyProcessed ? 1 : 0);
             tsdMetrics.addCount(LookoutMitigationServiceConstants.ENACT_FAILURE, requestSuccessfullyProcessed ? 0 : 1);
+            lookupContext.addMetrics(tsdMetrics);
             tsdMetrics.end();
         }
     }
@@ -0,0 +1,121 @@
+package com.amazon.lookout.mitigation.service.activity;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+
+import org.apache.commons.lang.builder.ReflectionToStringBuilder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazon.aws158.commons.metric.TSDMetrics;
+import com.amazon.coral.annotation.Documentation;
+import com.amazon.coral.annotation.Operation;
+import com.amazon.coral.annotation.Service;
+import com.amazon.coral.service.Activity;
+import com.amazon.coral.validate.Validated;
+import com.amazon.lookout.mitigation.service.BadRequest400;
+import com.amazon.lookout.mitigation.service.BlackWatchMitigationDefinition;
+import com.amazon.lookout.mitigation.service.GetMitigationsCoveringIPRequest;
+import com.amazon.lookout.mitigation.service.GetMitigationsCoveringIPResponse;
+import com.amazon.lookout.mitigation.service.InternalServerError500;
+import com.amazon.lookout.mitigation.service.activity.helper.ActivityHelper;
+import com.amazon.lookout.mitigation.service.activity.helper.BlackWatchMitigationInfoHandler;
+import com.amazon.lookout.mitigation.service.activity.validator.RequestValidator;
+import com.amazon.lookout.mitigation.service.constants.LookoutMitigationServiceConstants;
+import com.google.common.collect.Sets;
+
+@AllArgsConstructor
+@ThreadSafe
+@Service("LookoutMitigationService")
+public class GetMitigationsCoveringIPActivity extends Activity {
+    private static final Log LOG = LogFactory
+            .getLog(GetMitigationsCoveringIPActivity.class);
+
+    private enum GetMitigationsCoveringIPExceptions {
+        BadRequest, InternalError
+    }
+
+    // Maintain a Set<String> for all the exceptions to allow passing it to the
+    // ActivityHelper which is called from
+    // different activities. Hence not using an EnumSet in this case.
+    private static final Set<String> REQUEST_EXCEPTIONS = Collections
+            .unmodifiableSet(Sets.newHashSet(
+                    GetMitigationsCoveringIPExceptions.BadRequest.name(),
+                    GetMitigationsCoveringIPExceptions.InternalError.name()));
+
+    @NonNull
+    private final RequestValidator requestValidator;
+    @NonNull
+    private final BlackWatchMitigationInfoHandler blackwatchMitigationInfoHandler;
+
+    @Validated
+    @Operation("GetMitigationsCoveringIP")
+    @Documentation("GetMitigationsCoveringIP")
+    public @NonNull GetMitigationsCoveringIPResponse enact(
+            @NonNull GetMitigationsCoveringIPRequest request) {
+        TSDMetrics tsdMetrics = new TSDMetrics(getMetrics(),
+                "GetMitigationsCoveringIP.enact");
+
+        String requestId = getRequestId().toString();
+        boolean requestSuccessfullyProcessed = true;
+
+        try {
+            LOG.info(String
+                    .format("GetMitigationsCoveringIPActivity called with RequestId: %s and request: %s.",
+                            requestId,
+                            ReflectionToStringBuilder.toString(request)));
+            ActivityHelper.initializeRequestExceptionCounts(REQUEST_EXCEPTIONS,
+                    tsdMetrics);
+
+            // Step 1. Validate your request.
+            requestValidator.validateGetMitigationsCoveringIPRequest(request);
+
+            // Step 2. look the IP address or CIDR up in the prefix index of the in-memory snapshot
+            List<BlackWatchMitigationDefinition> mitigations = blackwatchMitigationInfoHandler
+                    .getMitigationsCoveringIP(request.getIpOrCidr(), tsdMetrics);
+            GetMitigationsCoveringIPResponse response = new GetMitigationsCoveringIPResponse();
+            response.setRequestId(requestId);
+            response.setMitigationList(mitigations);
+            return response;
+
+        } catch (IllegalArgumentException ex) {
+            String msg = String.format(
+                    ActivityHelper.BAD_REQUEST_EXCEPTION_MESSAGE_FORMAT,
+                    requestId, "GetMitigationsCoveringIPActivity",
+                    ex.getMessage());
+            LOG.warn(
+                    msg + " for request: "
+                            + ReflectionToStringBuilder.toString(request), ex);
+            tsdMetrics.addCount(ActivityHelper.EXCEPTION_COUNT_METRIC_PREFIX
+                    + GetMitigationsCoveringIPExceptions.BadRequest.name(), 1);
+            throw new BadRequest400(msg);
+        } catch (Exception internalError) {
+            String msg = "Internal error in GetMitigationsCoveringIPActivity for requestId: "
+                    + requestId + ", reason: " + internalError.getMessage();
+            LOG.error(
+                    LookoutMitigationServiceConstants.CRITICAL_ACTIVITY_ERROR_LOG_PREFIX
+                            + msg
+                            + " for request "
+                            + ReflectionToStringBuilder.toString(request),
+                    internalError);
+            requestSuccessfullyProcessed = false;
+            tsdMetrics.addCount(ActivityHelper.EXCEPTION_COUNT_METRIC_PREFIX
+                    + GetMitigationsCoveringIPExceptions.InternalError.name(),
+                    1);
+            throw new InternalServerError500(msg);
+        } finally {
+            tsdMetrics.addCount(
+                    LookoutMitigationServiceConstants.ENACT_SUCCESS,
+                    requestSuccessfullyProcessed ? 1 : 0);
+            tsdMetrics.addCount(
+                    LookoutMitigationServiceConstants.ENACT_FAILURE,
+                    requestSuccessfullyProcessed ? 0 : 1);
+            tsdMetrics.end();
+        }
+    }
+}
\ No newline at end of file
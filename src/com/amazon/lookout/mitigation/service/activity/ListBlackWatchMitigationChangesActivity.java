@@ -0,0 +1,131 @@
+package com.amazon.lookout.mitigation.service.activity;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+
+import org.apache.commons.lang.builder.ReflectionToStringBuilder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazon.aws158.commons.metric.TSDMetrics;
+import com.amazon.coral.annotation.Documentation;
+import com.amazon.coral.annotation.Operation;
+import com.amazon.coral.annotation.Service;
+import com.amazon.coral.service.Activity;
+import com.amazon.coral.validate.Validated;
+import com.amazon.lookout.mitigation.service.BadRequest400;
+import com.amazon.lookout.mitigation.service.InternalServerError500;
+import com.amazon.lookout.mitigation.service.ListBlackWatchMitigationChangesRequest;
+import com.amazon.lookout.mitigation.service.ListBlackWatchMitigationChangesResponse;
+import com.amazon.lookout.mitigation.service.activity.helper.ActivityHelper;
+import com.amazon.lookout.mitigation.service.activity.helper.BlackWatchMitigationChanges;
+import com.amazon.lookout.mitigation.service.activity.helper.BlackWatchMitigationInfoHandler;
+import com.amazon.lookout.mitigation.service.activity.validator.RequestValidator;
+import com.amazon.lookout.mitigation.service.constants.LookoutMitigationServiceConstants;
+import com.google.common.collect.Sets;
+
+@AllArgsConstructor
+@ThreadSafe
+@Service("LookoutMitigationService")
+public class ListBlackWatchMitigationChangesActivity extends Activity {
+    private static final Log LOG = LogFactory
+            .getLog(ListBlackWatchMitigationChangesActivity.class);
+
+    private enum ListBlackWatchMitigationChangesExceptions {
+        BadRequest, InternalError
+    }
+
+    // Maintain a Set<String> for all the exceptions to allow passing it to the
+    // ActivityHelper which is called from
+    // different activities. Hence not using an EnumSet in this case.
+    private static final Set<String> REQUEST_EXCEPTIONS = Collections
+            .unmodifiableSet(Sets.newHashSet(
+                    ListBlackWatchMitigationChangesExceptions.BadRequest.name(),
+                    ListBlackWatchMitigationChangesExceptions.InternalError.name()));
+
+    @NonNull
+    private final RequestValidator requestValidator;
+    @NonNull
+    private final BlackWatchMitigationInfoHandler blackwatchMitigationInfoHandler;
+    public static final int MAX_WAIT_TIME_SECONDS = 20;
+
+    @Validated
+    @Operation("ListBlackWatchMitigationChanges")
+    @Documentation("ListBlackWatchMitigationChanges")
+    public @NonNull ListBlackWatchMitigationChangesResponse enact(
+            @NonNull ListBlackWatchMitigationChangesRequest request) {
+        TSDMetrics tsdMetrics = new TSDMetrics(getMetrics(),
+                "ListBlackWatchMitigationChanges.enact");
+
+        String requestId = getRequestId().toString();
+        boolean requestSuccessfullyProcessed = true;
+
+        try {
+            LOG.info(String
+                    .format("ListBlackWatchMitigationChangesActivity called with RequestId: %s and request: %s.",
+                            requestId,
+                            ReflectionToStringBuilder.toString(request)));
+            ActivityHelper.initializeRequestExceptionCounts(REQUEST_EXCEPTIONS,
+                    tsdMetrics);
+
+            // Step 1. Validate your request.
+            requestValidator.validateListBlackWatchMitigationChangesRequest(request);
+
+            Integer waitTimeSeconds = request.getWaitTimeSeconds();
+            if (waitTimeSeconds == null) {
+                waitTimeSeconds = 0;
+            }
+
+            // Step 2. read the changes since the token from the in-memory replica, waiting for one if asked
+            BlackWatchMitigationChanges changes = blackwatchMitigationInfoHandler
+                    .getBlackWatchMitigationChanges(request.getSinceToken(),
+                            TimeUnit.SECONDS.toMillis(waitTimeSeconds), tsdMetrics);
+            ListBlackWatchMitigationChangesResponse response = new ListBlackWatchMitigationChangesResponse();
+            response.setRequestId(requestId);
+            response.setMitigationList(changes.getMitigations());
+            response.setDeletedMitigationIds(changes.getDeletedMitigationIds());
+            response.setNextToken(changes.getNextToken());
+            response.setResyncRequired(changes.isResyncRequired());
+            return response;
+
+        } catch (IllegalArgumentException ex) {
+            String msg = String.format(
+                    ActivityHelper.BAD_REQUEST_EXCEPTION_MESSAGE_FORMAT,
+                    requestId, "ListBlackWatchMitigationChangesActivity",
+                    ex.getMessage());
+            LOG.warn(
+                    msg + " for request: "
+                            + ReflectionToStringBuilder.toString(request), ex);
+            tsdMetrics.addCount(ActivityHelper.EXCEPTION_COUNT_METRIC_PREFIX
+                    + ListBlackWatchMitigationChangesExceptions.BadRequest.name(), 1);
+            throw new BadRequest400(msg);
+        } catch (Exception internalError) {
+            String msg = "Internal error in ListBlackWatchMitigationChangesActivity for requestId: "
+                    + requestId + ", reason: " + internalError.getMessage();
+            LOG.error(
+                    LookoutMitigationServiceConstants.CRITICAL_ACTIVITY_ERROR_LOG_PREFIX
+                            + msg
+                            + " for request "
+                            + ReflectionToStringBuilder.toString(request),
+                    internalError);
+            requestSuccessfullyProcessed = false;
+            tsdMetrics.addCount(ActivityHelper.EXCEPTION_COUNT_METRIC_PREFIX
+                    + ListBlackWatchMitigationChangesExceptions.InternalError.name(),
+                    1);
+            throw new InternalServerError500(msg);
+        } finally {
+            tsdMetrics.addCount(
+                    LookoutMitigationServiceConstants.ENACT_SUCCESS,
+                    requestSuccessfullyProcessed ? 1 : 0);
+            tsdMetrics.addCount(
+                    LookoutMitigationServiceConstants.ENACT_FAILURE,
+                    requestSuccessfullyProcessed ? 0 : 1);
+            tsdMetrics.end();
+        }
+    }
+}
\ No newline at end of file
@@ -1,7 +1,6 @@
 package com.amazon.lookout.mitigation.service.activity;
 
 import java.util.Collections;
-import java.util.List;
 import java.util.Set;
 
 import lombok.AllArgsConstructor;
@@ -19,12 +18,13 @@ import com.amazon.coral.annotation.Service;
 import com.amazon.coral.service.Activity;
 import com.amazon.coral.validate.Validated;
 import com.amazon.lookout.mitigation.service.BadRequest400;
-import com.amazon.lookout.mitigation.service.BlackWatchMitigationDefinition;
 import com.amazon.lookout.mitigation.service.InternalServerError500;
 import com.amazon.lookout.mitigation.service.ListBlackWatchMitigationsRequest;
 import com.amazon.lookout.mitigation.service.ListBlackWatchMitigationsResponse;
 import com.amazon.lookout.mitigation.service.activity.helper.ActivityHelper;
 import com.amazon.lookout.mitigation.service.activity.helper.BlackWatchMitigationInfoHandler;
+import com.amazon.lookout.mitigation.service.activity.helper.BlackWatchMitigationsPage;
+import com.amazon.lookout.mitigation.service.activity.helper.MitigationProjection;
 import com.amazon.lookout.mitigation.service.activity.validator.RequestValidator;
 import com.amazon.lookout.mitigation.service.constants.LookoutMitigationServiceConstants;
 import com.google.common.collect.Sets;
@@ -83,16 +83,17 @@ public class ListBlackWatchMitigationsActivity extends Activity {
             if (maxNumberOfEntriesToReturn == null) {
                 maxNumberOfEntriesToReturn = MAX_NUMBER_OF_ENTRIES_TO_FETCH;
             }
+            MitigationProjection projection = MitigationProjection.fromString(request.getProjection());
 
-            // Step 2. fetch mitigations from DDB table
-            // TODO: use the nextToken in the request for ddb table scan and return a new nextToken in the response
-            List<BlackWatchMitigationDefinition> listOfBlackWatchMitigationDefinition = blackwatchMitigationInfoHandler
-                    .getBlackWatchMitigations(mitigationId, resourceId,
+            // Step 2. fetch one page of mitigations from DDB table
+            BlackWatchMitigationsPage page = blackwatchMitigationInfoHandler
+                    .getBlackWatchMitigationsPage(mitigationId, resourceId,
                             resourceType, ownerARN, maxNumberOfEntriesToReturn,
-                            tsdMetrics);
+                            request.getNextToken(), projection, tsdMetrics);
             ListBlackWatchMitigationsResponse response = new ListBlackWatchMitigationsResponse();
             response.setRequestId(requestId);
-            response.setMitigationList(listOfBlackWatchMitigationDefinition);
+            response.setMitigationList(page.getMitigations());
+            response.setNextToken(page.getNextToken());
             return response;
 
         } catch (IllegalArgumentException ex) {
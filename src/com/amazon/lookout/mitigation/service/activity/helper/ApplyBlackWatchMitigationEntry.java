@@ -0,0 +1,24 @@
+package com.amazon.lookout.mitigation.service.activity.helper;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+import com.amazon.blackwatch.mitigation.state.model.BlackWatchTargetConfig;
+
+/**
+ * One mitigation of a batch apply, same fields as a single ApplyBlackWatchMitigation.
+ */
+@Value
+@Builder
+public class ApplyBlackWatchMitigationEntry {
+    @NonNull
+    String resourceId;
+    @NonNull
+    String resourceType;
+    Integer minutesToLive;
+    @NonNull
+    BlackWatchTargetConfig targetConfig;
+    boolean allowAutoMitigationOverride;
+    boolean bypassConfigValidations;
+}
@@ -0,0 +1,31 @@
+package com.amazon.lookout.mitigation.service.activity.helper;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+
+import com.amazon.lookout.mitigation.service.ApplyBlackWatchMitigationResponse;
+
+/**
+ * Outcome of one entry of a batch apply: either the response a single apply would have returned,
+ * or the exception it would have thrown.
+ */
+@Value
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class ApplyBlackWatchMitigationResult {
+    ApplyBlackWatchMitigationResponse response;
+    RuntimeException error;
+
+    public static ApplyBlackWatchMitigationResult succeeded(@NonNull ApplyBlackWatchMitigationResponse response) {
+        return new ApplyBlackWatchMitigationResult(response, null);
+    }
+
+    public static ApplyBlackWatchMitigationResult failed(@NonNull RuntimeException error) {
+        return new ApplyBlackWatchMitigationResult(null, error);
+    }
+
+    public boolean isSucceeded() {
+        return error == null;
+    }
+}
@@ -0,0 +1,23 @@
+package com.amazon.lookout.mitigation.service.activity.helper;
+
+import java.util.List;
+
+import lombok.Value;
+
+import com.amazon.lookout.mitigation.service.BlackWatchMitigationDefinition;
+
+/**
+ * ListBlackWatchMitigationChanges results.
+ */
+@Value
+public class BlackWatchMitigationChanges {
+    // mitigations created or modified since the token
+    List<BlackWatchMitigationDefinition> mitigations;
+    // mitigations deleted since the token
+    List<String> deletedMitigationIds;
+    // opaque token to pass back for the changes after these ones
+    String nextToken;
+    // true if the changes since the token aren't known, the caller must list all mitigations and then ask for
+    // the changes since nextToken
+    boolean resyncRequired;
+}
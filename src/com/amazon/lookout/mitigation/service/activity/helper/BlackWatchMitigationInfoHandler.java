@@ -17,7 +17,7 @@ import com.amazon.lookout.mitigation.service.UpdateBlackWatchMitigationRegionalC
 import com.amazon.lookout.mitigation.service.UpdateBlackWatchMitigationResponse;
 
 public interface BlackWatchMitigationInfoHandler {
-    public void deactivateMitigation(String mitigationId, MitigationActionMetadata actionMetadata);
+    public void deactivateMitigation(String mitigationId, MitigationActionMetadata actionMetadata, TSDMetrics tsdMetrics);
     public void changeOwnerARN(String mitigationId, String newOwnerARN, String expectedOwnerARN, MitigationActionMetadata actionMetadata);
 
     /**
@@ -25,10 +25,46 @@ public interface BlackWatchMitigationInfoHandler {
      */
     public void changeMitigationState(String mitigationId, MitigationState.State expectedState, MitigationState.State newState, MitigationActionMetadata actionMetadata);
 
+    public default List<BlackWatchMitigationDefinition> getBlackWatchMitigations(
+            String mitigationId, String resourceId, String resourceType,
+            String ownerARN, long maxNumberOfEntriesToReturn,
+            TSDMetrics tsdMetrics) {
+        return getBlackWatchMitigations(mitigationId, resourceId, resourceType, ownerARN,
+                maxNumberOfEntriesToReturn, MitigationProjection.Full, tsdMetrics);
+    }
+
+    /**
+     * @param projection parts of the mitigations to read and return.
+     */
     public List<BlackWatchMitigationDefinition> getBlackWatchMitigations(
             String mitigationId, String resourceId, String resourceType,
             String ownerARN, long maxNumberOfEntriesToReturn,
+            MitigationProjection projection, TSDMetrics tsdMetrics);
+
+    /**
+     * Same as getBlackWatchMitigations, one page at a time.
+     * @param nextToken token returned with the previous page, null for the first page.
+     * @param projection parts of the mitigations to read and return.
+     */
+    public BlackWatchMitigationsPage getBlackWatchMitigationsPage(
+            String mitigationId, String resourceId, String resourceType,
+            String ownerARN, long maxNumberOfEntriesToReturn, String nextToken,
+            MitigationProjection projection, TSDMetrics tsdMetrics);
+
+    /**
+     * Mitigations created, modified or deleted since a previous call.
+     * @param sinceToken nextToken returned by the previous call, null to get a token to start from.
+     * @param waitTimeMillis how long to wait for a change when there is none yet, 0 to return right away.
+     *        Implementations may return before, with no changes, when too many requests are waiting already.
+     * @throws IllegalArgumentException if the token is invalid, or changes are not tracked by this host.
+     */
+    public BlackWatchMitigationChanges getBlackWatchMitigationChanges(String sinceToken, long waitTimeMillis,
             TSDMetrics tsdMetrics);
+
+    /**
+     * Active mitigations whose recorded IP addresses contain or are contained in the given IP address or CIDR.
+     */
+    public List<BlackWatchMitigationDefinition> getMitigationsCoveringIP(String ipOrCidr, TSDMetrics tsdMetrics);
     
     static final int MAX_RAND_BOUND = 10000;
     static final String MIT_ID_DATE_FORMAT_STRING = "yyyyMMddHHmmssSSS";
@@ -48,6 +84,15 @@ public interface BlackWatchMitigationInfoHandler {
             Integer minsToLive, MitigationActionMetadata metadata,
             BlackWatchTargetConfig targetConfig, String userARN, TSDMetrics tsdMetrics, boolean allowAutoMitigationOverride,
             boolean bypassConfigValidations);
+
+    /**
+     * Apply many mitigations for the same owner, as if each entry was applied on its own. Entries of the same
+     * resource are applied in order, entries of different resources may be applied concurrently.
+     * A failing entry does not affect the other entries.
+     * @return one result per entry, in the order of the entries.
+     */
+    public List<ApplyBlackWatchMitigationResult> applyBlackWatchMitigations(List<ApplyBlackWatchMitigationEntry> entries,
+            MitigationActionMetadata metadata, String userARN, TSDMetrics tsdMetrics);
     
     public UpdateBlackWatchMitigationResponse updateBlackWatchMitigation(String mitigationId,
             Integer minsToLive, MitigationActionMetadata metadata, BlackWatchTargetConfig targetConfig,
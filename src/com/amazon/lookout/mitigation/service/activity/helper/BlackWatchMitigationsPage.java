@@ -0,0 +1,17 @@
+package com.amazon.lookout.mitigation.service.activity.helper;
+
+import java.util.List;
+
+import lombok.Value;
+
+import com.amazon.lookout.mitigation.service.BlackWatchMitigationDefinition;
+
+/**
+ * One page of ListBlackWatchMitigations results.
+ */
+@Value
+public class BlackWatchMitigationsPage {
+    List<BlackWatchMitigationDefinition> mitigations;
+    // opaque token to pass back for the next page, null if there are no more mitigations
+    String nextToken;
+}
@@ -0,0 +1,100 @@
+package com.amazon.lookout.mitigation.service.activity.helper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import lombok.NonNull;
+import lombok.Value;
+
+import amazon.mws.data.Datapoint;
+import com.amazon.aws158.commons.metric.TSDMetrics;
+import com.amazon.blackwatch.location.state.model.LocationState;
+
+/**
+ * Location lookups made while serving one request. Each location state, including the pair location's, and each
+ * location's BGP announcement datapoints are fetched at most once, however many checks of the request need them.
+ * The number of fetches is reported with the request metrics.
+ *
+ * Create one per request. The checks of the request may use it concurrently; a location looked up by two of them
+ * at the same time may be fetched twice. Memoized states are shared by the checks and must not be modified.
+ */
+@ThreadSafe
+public class LocationLookupContext {
+    @Value
+    private static class MemoizedLocationState {
+        LocationState locationState;
+        boolean bypassCache;
+    }
+
+    private final Map<String, MemoizedLocationState> locationStates = new ConcurrentHashMap<>();
+    private final Map<String, Optional<List<Datapoint>>> bgpTotalAnnouncements = new ConcurrentHashMap<>();
+
+    private final AtomicInteger locationStateFetches = new AtomicInteger();
+    private final AtomicInteger bgpTotalAnnouncementsFetches = new AtomicInteger();
+    private final AtomicInteger memoizedLookups = new AtomicInteger();
+
+    /**
+     * @param bypassCache a state memoized from a cached read is fetched again, bypassing the cache.
+     * @param fetch reads the state of a location, failures are not memoized.
+     */
+    public LocationState getLocationState(@NonNull String location, boolean bypassCache,
+                                          @NonNull Function<String, LocationState> fetch) {
+        MemoizedLocationState memoized = locationStates.get(location);
+        if (memoized != null && (memoized.isBypassCache() || !bypassCache)) {
+            memoizedLookups.incrementAndGet();
+            return memoized.getLocationState();
+        }
+
+        locationStateFetches.incrementAndGet();
+        LocationState locationState = fetch.apply(location);
+        MemoizedLocationState fetched = new MemoizedLocationState(locationState, bypassCache);
+        if (bypassCache) {
+            locationStates.put(location, fetched);
+        } else {
+            // never replace a read bypassing the cache fetched meanwhile
+            locationStates.putIfAbsent(location, fetched);
+        }
+        return locationState;
+    }
+
+    /**
+     * @param fetch reads the datapoints of a location, failures are not memoized.
+     */
+    public List<Datapoint> getBGPTotalAnnouncements(@NonNull String location,
+                                                    @NonNull Function<String, List<Datapoint>> fetch) {
+        Optional<List<Datapoint>> memoized = bgpTotalAnnouncements.get(location);
+        if (memoized != null) {
+            memoizedLookups.incrementAndGet();
+            return memoized.orElse(null);
+        }
+
+        bgpTotalAnnouncementsFetches.incrementAndGet();
+        List<Datapoint> datapoints = fetch.apply(location);
+        bgpTotalAnnouncements.put(location, Optional.ofNullable(datapoints));
+        return datapoints;
+    }
+
+    public int getLocationStateFetches() {
+        return locationStateFetches.get();
+    }
+
+    public int getBgpTotalAnnouncementsFetches() {
+        return bgpTotalAnnouncementsFetches.get();
+    }
+
+    public int getMemoizedLookups() {
+        return memoizedLookups.get();
+    }
+
+    public void addMetrics(@NonNull TSDMetrics tsdMetrics) {
+        tsdMetrics.addCount("LocationStateFetches", locationStateFetches.get());
+        tsdMetrics.addCount("BGPTotalAnnouncementsFetches", bgpTotalAnnouncementsFetches.get());
+        tsdMetrics.addCount("MemoizedLocationLookups", memoizedLookups.get());
+    }
+}
@@ -11,6 +11,14 @@ import java.util.Map;
 
 public interface LocationStateInfoHandler {
     public LocationState getLocationState(String location, TSDMetrics tsdMetrics);
+    /**
+     * @param bypassCache read the table instead of a cached state, for callers which write the state back.
+     */
+    public LocationState getLocationState(String location, boolean bypassCache, TSDMetrics tsdMetrics);
+    /**
+     * @param context lookups of the request, the location is read once per request.
+     */
+    public LocationState getLocationState(String location, LocationLookupContext context, TSDMetrics tsdMetrics);
     public BlackWatchLocation convertLocationState(LocationState in);
     public List<BlackWatchLocation> getAllBlackWatchLocations(TSDMetrics tsdMetrics);
     public void updateBlackWatchLocationAdminIn(String location, boolean adminIn, String reason, String locationType,
@@ -20,7 +28,13 @@ public interface LocationStateInfoHandler {
                                                  List<String> relatedLinks, boolean createMissingHost,
                                                  TSDMetrics tsdMetrics);
     public List<String> getPendingOperationLocks(String location, TSDMetrics tsdMetrics);
+    public List<String> getPendingOperationLocks(String location, LocationLookupContext context, TSDMetrics tsdMetrics);
     public Map<String, String> getOperationChanges(String location, TSDMetrics tsdMetrics);
+    public Map<String, String> getOperationChanges(String location, LocationLookupContext context, TSDMetrics tsdMetrics);
     public boolean validateOtherStacksInService(String location, TSDMetrics tsdMetrics) throws ExternalDependencyException;
+    public boolean validateOtherStacksInService(String location, LocationLookupContext context, TSDMetrics tsdMetrics)
+            throws ExternalDependencyException;
     public boolean checkIfLocationIsOperational(String location, TSDMetrics tsdMetrics) throws ExternalDependencyException;
+    public boolean checkIfLocationIsOperational(String location, LocationLookupContext context, TSDMetrics tsdMetrics)
+            throws ExternalDependencyException;
 }
@@ -0,0 +1,75 @@
+package com.amazon.lookout.mitigation.service.activity.helper;
+
+import java.util.List;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import com.amazon.blackwatch.mitigation.state.model.MitigationState;
+import com.amazon.lookout.mitigation.service.activity.helper.dynamodb.MitigationStateCodec;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Parts of a mitigation returned by ListBlackWatchMitigations.
+ */
+@RequiredArgsConstructor
+public enum MitigationProjection {
+    // mitigationId, resourceId and resourceType
+    IdsOnly(ImmutableList.of(
+            MitigationState.MITIGATION_ID_KEY,
+            MitigationState.RESOURCE_ID_KEY,
+            MitigationState.RESOURCE_TYPE_KEY)),
+    // ids, owner, state, expiry and rates, without location states, recorded resources and failure details.
+    // The settings JSON is read for the rates but not returned: the global traffic shaper rates of the JSON take
+    // precedence over ppsRate and bpsRate, which are only a fallback and are not written from the JSON on apply
+    // or update, so the rates can't be read from them alone. The JSON is parsed once per checksum, not per read.
+    Summary(ImmutableList.of(
+            MitigationState.MITIGATION_ID_KEY,
+            MitigationState.RESOURCE_ID_KEY,
+            MitigationState.RESOURCE_TYPE_KEY,
+            MitigationState.OWNER_ARN_KEY,
+            MitigationState.STATE_KEY,
+            MitigationProjection.CHANGE_TIME_KEY,
+            MitigationProjection.MINUTES_TO_LIVE_KEY,
+            MitigationStateCodec.MITIGATION_SETTINGS_JSON_KEY,
+            MitigationProjection.MITIGATION_SETTINGS_JSON_CHECKSUM_KEY,
+            MitigationProjection.PPS_RATE_KEY,
+            MitigationProjection.BPS_RATE_KEY,
+            MitigationProjection.ALLOW_AUTO_MITIGATION_OVERRIDE_KEY)),
+    // everything, with the per location states replaced by a deployment summary: location counts by job
+    // status, total PPS and BPS, and the number of locations not running the current settings
+    Deployment(null),
+    // everything
+    Full(null);
+
+    // MitigationState attributes which MitigationState has no key constant for
+    public static final String CHANGE_TIME_KEY = "changeTime";
+    public static final String MINUTES_TO_LIVE_KEY = "minutesToLive";
+    public static final String MITIGATION_SETTINGS_JSON_CHECKSUM_KEY = "mitigationSettingsJSONChecksum";
+    public static final String PPS_RATE_KEY = "ppsRate";
+    public static final String BPS_RATE_KEY = "bpsRate";
+    public static final String ALLOW_AUTO_MITIGATION_OVERRIDE_KEY = "allowAutoMitigationOverride";
+
+    /**
+     * MitigationState attributes to read, null for all of them.
+     */
+    @Getter
+    private final List<String> attributeNames;
+
+    /**
+     * @param name case insensitive name, dashes and underscores are ignored, null for Full.
+     * @throws IllegalArgumentException if the name is not a projection.
+     */
+    public static MitigationProjection fromString(String name) {
+        if (name == null || name.isEmpty()) {
+            return Full;
+        }
+        String normalized = name.replace("-", "").replace("_", "");
+        for (MitigationProjection projection : values()) {
+            if (projection.name().equalsIgnoreCase(normalized)) {
+                return projection;
+            }
+        }
+        throw new IllegalArgumentException("Unknown projection: " + name);
+    }
+}
@@ -0,0 +1,94 @@
+package com.amazon.lookout.mitigation.service.activity.helper.blackwatch;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.NonNull;
+import lombok.Value;
+
+import org.apache.commons.lang3.Validate;
+
+import com.amazon.aws158.commons.metric.TSDMetrics;
+import com.amazon.blackwatch.helper.BlackWatchHelper;
+import com.amazon.blackwatch.mitigation.state.model.BlackWatchTargetConfig;
+import com.amazon.lookout.mitigation.service.activity.validator.RequestValidator;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+
+/**
+ * Bounded cache of parsed mitigation settings JSON, keyed by MitigationSettingsJSONChecksum.
+ *
+ * Most stored mitigations share a handful of distinct settings, so listing or re-applying them
+ * would otherwise parse the same JSON over and over.
+ *
+ * Cached configs are shared between callers and must not be modified. Callers which merge
+ * request values into the stored config must parse their own copy.
+ *
+ * The checksum stored with a MitigationState is trusted only as a key: a hit whose JSON differs
+ * from the requested JSON is parsed again and replaces the entry.
+ */
+public class BlackWatchTargetConfigCache {
+    public static final int DEFAULT_MAXIMUM_SIZE = 4096;
+
+    @Value
+    private static class Entry {
+        String mitigationSettingsJSON;
+        BlackWatchTargetConfig targetConfig;
+    }
+
+    private final Cache<String, Entry> cache;
+    private final AtomicLong evictionsToReport = new AtomicLong();
+
+    public BlackWatchTargetConfigCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public BlackWatchTargetConfigCache(int maximumSize) {
+        Validate.isTrue(maximumSize > 0, "maximumSize must be positive");
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .removalListener(notification -> {
+                    if (notification.getCause() == RemovalCause.SIZE) {
+                        evictionsToReport.incrementAndGet();
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * @param checksum MitigationSettingsJSONChecksum stored with the settings, computed if null.
+     * @param mitigationSettingsJSON stored settings.
+     * @return the parsed settings, shared with other callers.
+     * @throws IllegalArgumentException if the settings can't be parsed, failures are not cached.
+     */
+    public BlackWatchTargetConfig getTargetConfig(String checksum, String mitigationSettingsJSON,
+            @NonNull TSDMetrics metrics) {
+        if (mitigationSettingsJSON == null) {
+            return RequestValidator.parseMitigationSettingsJSON(mitigationSettingsJSON);
+        }
+
+        String key = checksum != null ? checksum : BlackWatchHelper.getHexStringChecksum(mitigationSettingsJSON);
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null && entry.getMitigationSettingsJSON().equals(mitigationSettingsJSON)) {
+            metrics.addOne("TargetConfigCacheHit");
+            metrics.addZero("TargetConfigCacheMiss");
+            reportEvictions(metrics);
+            return entry.getTargetConfig();
+        }
+
+        metrics.addZero("TargetConfigCacheHit");
+        metrics.addOne("TargetConfigCacheMiss");
+        BlackWatchTargetConfig targetConfig = RequestValidator.parseMitigationSettingsJSON(mitigationSettingsJSON);
+        cache.put(key, new Entry(mitigationSettingsJSON, targetConfig));
+        reportEvictions(metrics);
+        return targetConfig;
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    private void reportEvictions(TSDMetrics metrics) {
+        metrics.addCount("TargetConfigCacheEviction", evictionsToReport.getAndSet(0));
+    }
+}
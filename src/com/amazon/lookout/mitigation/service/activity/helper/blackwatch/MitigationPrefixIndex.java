@@ -0,0 +1,258 @@
+package com.amazon.lookout.mitigation.service.activity.helper.blackwatch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.concurrent.Immutable;
+
+import lombok.NonNull;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazon.blackwatch.mitigation.state.model.BlackWatchMitigationResourceType;
+import com.amazon.blackwatch.mitigation.state.model.MitigationState;
+import com.amazon.blackwatch.mitigation.state.model.MitigationState.State;
+import com.google.common.net.InetAddresses;
+
+/**
+ * Binary prefix trie over the IPAddress recorded resources of Active mitigations.
+ *
+ * Each node holds the mitigations recorded on exactly that prefix, together with their owner and whether they
+ * allow auto mitigations to override them. A containment lookup walks at most one node per bit of the
+ * requested prefix and does not allocate once the request address is parsed.
+ *
+ * The index is built once per mitigation snapshot and never modified afterwards.
+ */
+@Immutable
+public final class MitigationPrefixIndex {
+    private static final Log LOG = LogFactory.getLog(MitigationPrefixIndex.class);
+
+    private static final int IPV4_BITS = 32;
+    private static final int IPV6_BITS = 128;
+
+    private static final class Entry {
+        private final String ownerARN;
+        private final boolean allowAutoMitigationOverride;
+        private final MitigationState mitigationState;
+
+        private Entry(MitigationState mitigationState) {
+            this.ownerARN = mitigationState.getOwnerARN();
+            this.allowAutoMitigationOverride = mitigationState.isAllowAutoMitigationOverride();
+            this.mitigationState = mitigationState;
+        }
+    }
+
+    private static final class Node {
+        private Node zero;
+        private Node one;
+        private Entry[] entries;
+
+        private Node child(int bit) {
+            return bit == 0 ? zero : one;
+        }
+
+        private Node getOrCreateChild(int bit) {
+            if (bit == 0) {
+                if (zero == null) {
+                    zero = new Node();
+                }
+                return zero;
+            }
+            if (one == null) {
+                one = new Node();
+            }
+            return one;
+        }
+
+        private void addEntry(Entry entry) {
+            if (entries == null) {
+                entries = new Entry[] { entry };
+            } else {
+                entries = Arrays.copyOf(entries, entries.length + 1);
+                entries[entries.length - 1] = entry;
+            }
+        }
+    }
+
+    private final Node ipv4Root = new Node();
+    private final Node ipv6Root = new Node();
+    private int prefixCount = 0;
+
+    private MitigationPrefixIndex() {
+    }
+
+    /**
+     * Build the index from the IPAddress recorded resources of the Active mitigations in the given collection.
+     * Recorded resources which cannot be parsed as an IP address or CIDR are skipped.
+     */
+    public static MitigationPrefixIndex fromMitigationStates(@NonNull Collection<MitigationState> mitigationStates) {
+        MitigationPrefixIndex index = new MitigationPrefixIndex();
+        for (MitigationState mitigationState : mitigationStates) {
+            if (!State.Active.name().equals(mitigationState.getState())
+                    || mitigationState.getRecordedResources() == null) {
+                continue;
+            }
+
+            Set<String> recordedIps = mitigationState.getRecordedResources()
+                    .get(BlackWatchMitigationResourceType.IPAddress.name());
+            if (recordedIps == null) {
+                continue;
+            }
+
+            Entry entry = new Entry(mitigationState);
+            for (String recordedIp : recordedIps) {
+                try {
+                    index.insert(recordedIp, entry);
+                } catch (IllegalArgumentException ex) {
+                    LOG.warn(String.format("[INVALID_PREFIX] Could not index recorded resource %s of mitigation %s",
+                            recordedIp, mitigationState.getMitigationId()));
+                }
+            }
+        }
+        return index;
+    }
+
+    private void insert(String ipOrCidr, Entry entry) {
+        byte[] address = parseAddress(ipOrCidr);
+        int prefixLength = parsePrefixLength(ipOrCidr, address.length * 8);
+
+        Node node = root(address);
+        for (int i = 0; i < prefixLength; ++i) {
+            node = node.getOrCreateChild(bitAt(address, i));
+        }
+        node.addEntry(entry);
+        ++prefixCount;
+    }
+
+    /**
+     * Find an Active mitigation owned by someone other than ownerARN whose recorded prefixes contain the
+     * given IP address or CIDR. Mitigations which do not allow auto mitigation override are preferred, so
+     * a non-null result allowing override means no covering mitigation forbids it.
+     *
+     * @return the covering mitigation, or null if the address is not covered by another owner's mitigation.
+     * An address which cannot be parsed is not covered by any mitigation.
+     */
+    public MitigationState findCoveringMitigationNotOwnedBy(@NonNull String ipOrCidr, @NonNull String ownerARN) {
+        byte[] address;
+        int prefixLength;
+        try {
+            address = parseAddress(ipOrCidr);
+            prefixLength = parsePrefixLength(ipOrCidr, address.length * 8);
+        } catch (IllegalArgumentException ex) {
+            LOG.warn("Treating unparsable address " + ipOrCidr + " as not covered by any mitigation");
+            return null;
+        }
+
+        MitigationState overridable = null;
+        Node node = root(address);
+        for (int i = 0; node != null; ++i) {
+            if (node.entries != null) {
+                for (Entry entry : node.entries) {
+                    if (entry.ownerARN.equals(ownerARN)) {
+                        continue;
+                    }
+                    if (!entry.allowAutoMitigationOverride) {
+                        return entry.mitigationState;
+                    }
+                    if (overridable == null) {
+                        overridable = entry.mitigationState;
+                    }
+                }
+            }
+            if (i == prefixLength) {
+                break;
+            }
+            node = node.child(bitAt(address, i));
+        }
+        return overridable;
+    }
+
+    /**
+     * Find the Active mitigations whose recorded prefixes overlap the given IP address or CIDR: the prefixes
+     * which contain it, on the path from the root, and the prefixes it contains, in the subtree below it.
+     *
+     * @return the overlapping mitigations, each one once, enclosing prefixes first.
+     */
+    public List<MitigationState> findMitigationsOverlapping(@NonNull String ipOrCidr) {
+        byte[] address = parseAddress(ipOrCidr);
+        int prefixLength = parsePrefixLength(ipOrCidr, address.length * 8);
+
+        Map<String, MitigationState> overlapping = new LinkedHashMap<>();
+        Node node = root(address);
+        for (int i = 0; i < prefixLength && node != null; ++i) {
+            addEntries(node, overlapping);
+            node = node.child(bitAt(address, i));
+        }
+
+        Deque<Node> subtree = new ArrayDeque<>();
+        if (node != null) {
+            subtree.push(node);
+        }
+        while (!subtree.isEmpty()) {
+            Node next = subtree.pop();
+            addEntries(next, overlapping);
+            if (next.one != null) {
+                subtree.push(next.one);
+            }
+            if (next.zero != null) {
+                subtree.push(next.zero);
+            }
+        }
+        return new ArrayList<>(overlapping.values());
+    }
+
+    private static void addEntries(Node node, Map<String, MitigationState> mitigationStatesById) {
+        if (node.entries != null) {
+            for (Entry entry : node.entries) {
+                mitigationStatesById.putIfAbsent(entry.mitigationState.getMitigationId(), entry.mitigationState);
+            }
+        }
+    }
+
+    /**
+     * @return number of prefixes held by the index.
+     */
+    public int size() {
+        return prefixCount;
+    }
+
+    private Node root(byte[] address) {
+        return address.length * 8 == IPV4_BITS ? ipv4Root : ipv6Root;
+    }
+
+    private static int bitAt(byte[] address, int index) {
+        return (address[index >> 3] >> (7 - (index & 7))) & 1;
+    }
+
+    private static byte[] parseAddress(String ipOrCidr) {
+        int slashIndex = ipOrCidr.indexOf('/');
+        String ip = slashIndex == -1 ? ipOrCidr : ipOrCidr.substring(0, slashIndex);
+        return InetAddresses.forString(ip.trim()).getAddress();
+    }
+
+    private static int parsePrefixLength(String ipOrCidr, int addressBits) {
+        int slashIndex = ipOrCidr.indexOf('/');
+        if (slashIndex == -1) {
+            return addressBits;
+        }
+
+        int prefixLength;
+        try {
+            prefixLength = Integer.parseInt(ipOrCidr.substring(slashIndex + 1).trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid CIDR " + ipOrCidr, ex);
+        }
+        Validate.isTrue(prefixLength >= 0 && prefixLength <= addressBits, "Invalid CIDR %s", ipOrCidr);
+        Validate.isTrue(addressBits == IPV4_BITS || addressBits == IPV6_BITS, "Invalid CIDR %s", ipOrCidr);
+        return prefixLength;
+    }
+}
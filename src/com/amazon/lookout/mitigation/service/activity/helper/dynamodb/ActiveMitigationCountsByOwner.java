@@ -0,0 +1,108 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.concurrent.Immutable;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import com.amazon.blackwatch.mitigation.state.model.MitigationState;
+import com.amazon.blackwatch.mitigation.state.model.MitigationState.State;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Number of Active mitigations per owner key, computed from one MitigationStateSnapshot.
+ *
+ * Owner keys are the keys of the per owner mitigation limit configuration, a mitigation counts
+ * towards every owner key its owner ARN contains.
+ *
+ * Snapshots which carry a MitigationChangeLog are counted incrementally from the mitigations changed since
+ * the snapshot of the previous counts, which are held until the next update. Snapshots without a log, or
+ * whose log no longer covers the previous counts, are counted from scratch.
+ */
+@Immutable
+public final class ActiveMitigationCountsByOwner {
+    private final MitigationStateSnapshot snapshot;
+    @Getter
+    private final ImmutableMap<String, Long> countsByOwnerKey;
+
+    private ActiveMitigationCountsByOwner(MitigationStateSnapshot snapshot, ImmutableMap<String, Long> countsByOwnerKey) {
+        this.snapshot = snapshot;
+        this.countsByOwnerKey = countsByOwnerKey;
+    }
+
+    public static ActiveMitigationCountsByOwner fromSnapshot(@NonNull MitigationStateSnapshot snapshot,
+                                                             @NonNull Set<String> ownerKeys) {
+        // Count per distinct owner ARN first, there are far fewer owners than mitigations
+        Map<String, Long> countsByOwnerARN = new HashMap<>();
+        snapshot.activeMitigationStates()
+                .map(MitigationState::getOwnerARN)
+                .forEach(ownerARN -> countsByOwnerARN.merge(ownerARN, 1L, Long::sum));
+
+        ImmutableMap.Builder<String, Long> countsByOwnerKey = ImmutableMap.builder();
+        for (String ownerKey : ownerKeys) {
+            long count = 0;
+            for (Map.Entry<String, Long> ownerCount : countsByOwnerARN.entrySet()) {
+                if (ownerCount.getKey() != null && ownerCount.getKey().contains(ownerKey)) {
+                    count += ownerCount.getValue();
+                }
+            }
+            countsByOwnerKey.put(ownerKey, count);
+        }
+        return new ActiveMitigationCountsByOwner(snapshot, countsByOwnerKey.build());
+    }
+
+    /**
+     * @return the counts for a newer snapshot, updated from the mitigations changed since these counts were
+     * taken when the change log of the snapshot covers them.
+     */
+    public ActiveMitigationCountsByOwner update(@NonNull MitigationStateSnapshot newSnapshot,
+                                                @NonNull Set<String> ownerKeys) {
+        if (newSnapshot == snapshot) {
+            return this;
+        }
+        MitigationChangeLog previousLog = snapshot.getChangeLog();
+        MitigationChangeLog changeLog = newSnapshot.getChangeLog();
+        if (previousLog == null || changeLog == null || !ownerKeys.equals(countsByOwnerKey.keySet())
+                || newSnapshot.getVersion() < snapshot.getVersion()
+                || !changeLog.covers(previousLog.getWatermarkMillis())) {
+            return fromSnapshot(newSnapshot, ownerKeys);
+        }
+
+        // changes are looked up with some overlap, counting each one as the difference between both
+        // snapshots makes counting one twice harmless
+        Set<String> changedIds = new HashSet<>(changeLog.getChangedSince(previousLog.getWatermarkMillis()));
+        changedIds.addAll(changeLog.getDeletedSince(previousLog.getWatermarkMillis()));
+
+        Map<String, Long> counts = new HashMap<>(countsByOwnerKey);
+        for (String mitigationId : changedIds) {
+            addActive(counts, snapshot.getMitigationState(mitigationId), -1);
+            addActive(counts, newSnapshot.getMitigationState(mitigationId), 1);
+        }
+        return new ActiveMitigationCountsByOwner(newSnapshot, ImmutableMap.copyOf(counts));
+    }
+
+    private static void addActive(Map<String, Long> counts, MitigationState mitigationState, long delta) {
+        if (mitigationState == null || !State.Active.name().equals(mitigationState.getState())
+                || mitigationState.getOwnerARN() == null) {
+            return;
+        }
+        counts.replaceAll((ownerKey, count) ->
+                mitigationState.getOwnerARN().contains(ownerKey) ? count + delta : count);
+    }
+
+    public long getSnapshotVersion() {
+        return snapshot.getVersion();
+    }
+
+    /**
+     * @return the number of Active mitigations for the owner key, 0 if the key is unknown.
+     */
+    public long getCount(String ownerKey) {
+        return countsByOwnerKey.getOrDefault(ownerKey, 0L);
+    }
+}
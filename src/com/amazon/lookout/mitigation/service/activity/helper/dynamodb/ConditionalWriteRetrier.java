@@ -0,0 +1,143 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import java.beans.ConstructorProperties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazon.aws158.commons.metric.TSDMetrics;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+
+/**
+ * Retries a read-modify-write of a mitigation when its conditional write fails because the item changed
+ * since it was read, which happens when the workers update it in parallel.
+ *
+ * Each attempt must read the item again. Attempts are limited by a budget and a deadline, and separated by a
+ * sleep with decorrelated jitter: a random time between the base delay and three times the previous sleep,
+ * capped, so concurrent writers spread out instead of retrying in lockstep.
+ *
+ * For every operation it reports <operation>.Attempts, <operation>.Conflicts and <operation>.RetriesExhausted,
+ * the conflict rate of an operation is Conflicts / Attempts.
+ */
+public class ConditionalWriteRetrier {
+    private static final Log LOG = LogFactory.getLog(ConditionalWriteRetrier.class);
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_BASE_DELAY_MILLIS = 25;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 1000;
+    public static final long DEFAULT_DEADLINE_MILLIS = 5000;
+
+    public static final ConditionalWriteRetrier DEFAULT = new ConditionalWriteRetrier(DEFAULT_MAX_ATTEMPTS,
+            DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS, DEFAULT_DEADLINE_MILLIS);
+
+    /**
+     * One read-modify-write, throwing ConditionalCheckFailedException when the write conflicts.
+     */
+    @FunctionalInterface
+    public interface Attempt<T> {
+        T run(int attempt);
+    }
+
+    /**
+     * Thrown when every attempt allowed by the budget and the deadline conflicted.
+     */
+    public static class RetriesExhaustedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        @Getter
+        private final int attempts;
+
+        RetriesExhaustedException(String operation, int attempts, ConditionalCheckFailedException cause) {
+            super(String.format("%s conflicted on all %d attempts", operation, attempts), cause);
+            this.attempts = attempts;
+        }
+    }
+
+    interface Sleeper {
+        void sleep(long millis) throws InterruptedException;
+    }
+
+    @Getter
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final long deadlineMillis;
+    private final Sleeper sleeper;
+    private final LongSupplier clock;
+
+    @ConstructorProperties({"maxAttempts", "baseDelayMillis", "maxDelayMillis", "deadlineMillis"})
+    public ConditionalWriteRetrier(int maxAttempts, long baseDelayMillis, long maxDelayMillis, long deadlineMillis) {
+        this(maxAttempts, baseDelayMillis, maxDelayMillis, deadlineMillis, Thread::sleep, System::currentTimeMillis);
+    }
+
+    ConditionalWriteRetrier(int maxAttempts, long baseDelayMillis, long maxDelayMillis, long deadlineMillis,
+                            @NonNull Sleeper sleeper, @NonNull LongSupplier clock) {
+        Validate.isTrue(maxAttempts > 0, "maxAttempts must be positive");
+        Validate.isTrue(baseDelayMillis >= 0, "baseDelayMillis must not be negative");
+        Validate.isTrue(maxDelayMillis >= baseDelayMillis, "maxDelayMillis must not be less than baseDelayMillis");
+        Validate.isTrue(deadlineMillis > 0, "deadlineMillis must be positive");
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.deadlineMillis = deadlineMillis;
+        this.sleeper = sleeper;
+        this.clock = clock;
+    }
+
+    /**
+     * @param operation name of the operation in logs and metrics.
+     * @return the result of the first attempt which didn't conflict.
+     * @throws RetriesExhaustedException if no attempt succeeded before the budget, the deadline or an interrupt.
+     */
+    public <T> T execute(@NonNull String operation, @NonNull Attempt<T> attempt, @NonNull TSDMetrics metrics) {
+        long deadline = clock.getAsLong() + deadlineMillis;
+        long previousDelay = baseDelayMillis;
+        int attempts = 0;
+        int conflicts = 0;
+        try {
+            while (true) {
+                try {
+                    T result = attempt.run(attempts++);
+                    metrics.addZero(operation + ".RetriesExhausted");
+                    return result;
+                } catch (ConditionalCheckFailedException ex) {
+                    ++conflicts;
+                    LOG.warn(String.format("ConditionalCheckFailedException during %s, attempt: %d",
+                            operation, attempts));
+                    long delay = nextDelay(previousDelay);
+                    if (attempts >= maxAttempts || clock.getAsLong() + delay >= deadline) {
+                        metrics.addOne(operation + ".RetriesExhausted");
+                        throw new RetriesExhaustedException(operation, attempts, ex);
+                    }
+                    try {
+                        sleeper.sleep(delay);
+                    } catch (InterruptedException intEx) {
+                        // If we were interrupted then stop trying and fail immediately.
+                        LOG.info("Interrupted while sleeping to retry " + operation);
+                        Thread.currentThread().interrupt();
+                        metrics.addOne(operation + ".RetriesExhausted");
+                        throw new RetriesExhaustedException(operation, attempts, ex);
+                    }
+                    previousDelay = delay;
+                }
+            }
+        } finally {
+            metrics.addCount(operation + ".Attempts", attempts);
+            metrics.addCount(operation + ".Conflicts", conflicts);
+        }
+    }
+
+    private long nextDelay(long previousDelay) {
+        long upper = Math.max(baseDelayMillis, Math.min(maxDelayMillis, previousDelay * 3));
+        if (upper <= baseDelayMillis) {
+            return baseDelayMillis;
+        }
+        return ThreadLocalRandom.current().nextLong(baseDelayMillis, upper + 1);
+    }
+}
@@ -1,6 +1,5 @@
 package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
 
-import com.amazon.aws158.commons.ipset.SubnetBasedIpSet;
 import com.amazon.aws158.commons.metric.TSDMetrics;
 import com.amazon.arn.ARN;
 import com.amazon.arn.ARNSyntaxException;
@@ -23,6 +22,7 @@ import com.amazon.lookout.mitigation.service.ApplyBlackWatchMitigationResponse;
 import com.amazon.lookout.mitigation.service.ApplyConfigError;
 import com.amazon.lookout.mitigation.service.BuildConfigError;
 import com.amazon.lookout.mitigation.service.BlackWatchMitigationDefinition;
+import com.amazon.lookout.mitigation.service.LocationDeploymentSummary;
 import com.amazon.lookout.mitigation.service.LocationMitigationStateSettings;
 import com.amazon.lookout.mitigation.service.MitigationActionMetadata;
 import com.amazon.lookout.mitigation.service.MitigationNotOwnedByRequestor400;
@@ -31,20 +31,29 @@ import com.amazon.lookout.mitigation.service.StatusCodeSummary;
 import com.amazon.lookout.mitigation.service.FailureDetails;
 import com.amazon.lookout.mitigation.service.UpdateBlackWatchMitigationRegionalCellPlacementResponse;
 import com.amazon.lookout.mitigation.service.UpdateBlackWatchMitigationResponse;
+import com.amazon.lookout.mitigation.service.activity.helper.ApplyBlackWatchMitigationEntry;
+import com.amazon.lookout.mitigation.service.activity.helper.ApplyBlackWatchMitigationResult;
+import com.amazon.lookout.mitigation.service.activity.helper.BlackWatchMitigationChanges;
 import com.amazon.lookout.mitigation.service.activity.helper.BlackWatchMitigationInfoHandler;
+import com.amazon.lookout.mitigation.service.activity.helper.BlackWatchMitigationsPage;
+import com.amazon.lookout.mitigation.service.activity.helper.MitigationProjection;
+import com.amazon.lookout.mitigation.service.activity.helper.blackwatch.BlackWatchTargetConfigCache;
+import com.amazon.lookout.mitigation.service.activity.helper.dynamodb.PaginatedMitigationStateScanner.MitigationStatePage;
 import com.amazon.lookout.mitigation.service.workflow.helper.DogFishValidationHelper;
-import com.amazon.lookout.mitigation.service.activity.validator.RequestValidator;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBSaveExpression;
-import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
-import com.amazonaws.services.dynamodbv2.model.Condition;
 import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
 import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.UncheckedTimeoutException;
 
+import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.Value;
 import one.util.streamex.EntryStream;
 
 import org.apache.commons.lang3.ObjectUtils;
@@ -53,16 +62,29 @@ import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
 public class DDBBasedBlackWatchMitigationInfoHandler implements BlackWatchMitigationInfoHandler {
@@ -79,6 +101,48 @@ public class DDBBasedBlackWatchMitigationInfoHandler implements BlackWatchMitiga
     private final String bamAndEc2OwnerArnPrefix;
     private final String realm;
     private final Map<String, Integer> mitigationLimitByOwner;
+    private final MitigationStateSnapshotProvider mitigationStateSnapshotProvider;
+    // writes the attributes of existing mitigations which changed since they were read
+    @NonNull
+    private final MitigationStateUpdater mitigationStateUpdater;
+
+    private final AtomicReference<ActiveMitigationCountsByOwner> activeMitigationCountsByOwner = new AtomicReference<>();
+    private final BlackWatchTargetConfigCache targetConfigCache = new BlackWatchTargetConfigCache();
+
+    // Optional, ListBlackWatchMitigations by owner scans the table when not set
+    private MitigationStateOwnerIndex mitigationStateOwnerIndex;
+
+    // Optional, ListBlackWatchMitigations returns a single page without nextToken when not set
+    private PaginatedMitigationStateScanner paginatedMitigationStateScanner;
+
+    // built on first use from the optional access paths above
+    private volatile MitigationStateQueryPlanner queryPlanner;
+
+    // Optional, batch applies read allocations and mitigations one entry at a time when not set
+    @Setter
+    private MitigationStateBatchReader mitigationStateBatchReader;
+
+    // Optional, new mitigations are saved first and their resources allocated afterwards when not set
+    @Setter
+    private TransactionalMitigationCreator transactionalMitigationCreator;
+
+    // Retries of writes conflicting with the workers, 3 attempts by default
+    @Setter
+    private ConditionalWriteRetrier conditionalWriteRetrier = ConditionalWriteRetrier.DEFAULT;
+
+    // Optional, batch applies apply their entries one after the other on the request thread when not set
+    @Setter
+    private ExecutorService batchApplyExecutor;
+
+    // Time a batch apply waits for its entries applied on batchApplyExecutor
+    @Setter
+    private long batchApplyTimeoutMillis = DEFAULT_BATCH_APPLY_TIMEOUT_MILLIS;
+
+    // Requests parked waiting for mitigation changes. Each one holds a request thread for up to
+    // ListBlackWatchMitigationChangesActivity.MAX_WAIT_TIME_SECONDS, so keep it well below the size of the
+    // request thread pool. Past the limit requests return right away with no changes, 0 disables waiting.
+    private int maxChangeWaiters = DEFAULT_MAX_CHANGE_WAITERS;
+    private final AtomicInteger changeWaiters = new AtomicInteger();
 
     private static final String DEFAULT_SHAPER_NAME = "default";
 
@@ -86,9 +150,16 @@ public class DDBBasedBlackWatchMitigationInfoHandler implements BlackWatchMitiga
 
     private static final int MAX_BW_IPADDRESSES = 256;
 
-    private static final int MAX_UPDATE_RETRIES = 3;
-    private static final int UPDATE_RETRY_SLEEP_MILLIS = 100;
-    private static final long REFRESH_PERIOD_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    static final int DEFAULT_MAX_CHANGE_WAITERS = 32;
+
+    static final long DEFAULT_BATCH_APPLY_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    // version of the ListBlackWatchMitigationChanges token format
+    private static final String CHANGES_TOKEN_PREFIX = "1:";
+
+    // job status of a location whose state doesn't have one
+    static final String UNKNOWN_JOB_STATUS = "UNKNOWN";
+
 
     // External clients (BAM) depend on the precise wording of this message,
     // avoid changing it if possible
@@ -96,18 +167,6 @@ public class DDBBasedBlackWatchMitigationInfoHandler implements BlackWatchMitiga
             "Could not save MitigationState, MitigationState must not be: %s",
             MitigationState.State.To_Delete.name());
 
-    private List<MitigationState> mitigationStateList;
-    private long lastUpdateTimestamp = 0;
-
-    private List<MitigationState> updateMitigationStateList() {
-        if (lastUpdateTimestamp + REFRESH_PERIOD_MILLIS < System.currentTimeMillis()) {
-            LOG.debug("Updating the mitigation state list...");
-            mitigationStateList = mitigationStateDynamoDBHelper.getAllMitigationStates(parallelScanSegments);
-            lastUpdateTimestamp = System.currentTimeMillis();
-        }
-        return mitigationStateList;
-    }
-
     private LocationMitigationStateSettings convertMitSSToLocMSS(MitigationStateSetting mitigationSettings) {
         return LocationMitigationStateSettings.builder()
                 .withBPS(mitigationSettings.getBPS())
@@ -117,153 +176,116 @@ public class DDBBasedBlackWatchMitigationInfoHandler implements BlackWatchMitiga
                 .build();
     }
 
+    public void setMitigationStateOwnerIndex(MitigationStateOwnerIndex mitigationStateOwnerIndex) {
+        this.mitigationStateOwnerIndex = mitigationStateOwnerIndex;
+        this.queryPlanner = null;
+    }
+
+    public void setPaginatedMitigationStateScanner(PaginatedMitigationStateScanner paginatedMitigationStateScanner) {
+        this.paginatedMitigationStateScanner = paginatedMitigationStateScanner;
+        this.queryPlanner = null;
+    }
+
+    private MitigationStateQueryPlanner getQueryPlanner() {
+        MitigationStateQueryPlanner planner = queryPlanner;
+        if (planner == null) {
+            planner = new MitigationStateQueryPlanner(mitigationStateDynamoDBHelper,
+                    resourceAllocationStateDynamoDBHelper, parallelScanSegments, mitigationStateOwnerIndex,
+                    paginatedMitigationStateScanner, mitigationStateSnapshotProvider);
+            queryPlanner = planner;
+        }
+        return planner;
+    }
+
     public long getMitigationsByOwner(String owner) {
-        updateMitigationStateList();
-        return mitigationStateList.stream()
-                .filter(ms -> ms.getState().equals(State.Active.name()))
+        if (mitigationLimitByOwner.containsKey(owner)) {
+            return getActiveMitigationCountsByOwner(null).getCount(owner);
+        }
+        return mitigationStateSnapshotProvider.getSnapshot().activeMitigationStates()
                 .filter(ms -> ms.getOwnerARN().contains(owner))
                 .count();
     }
 
-    //TODO: 
-    // we need change this method when we decide the strategy for nextToken
-    // 1. need pass nextToken as a parameter, parse it and use the parsed result in the db scan request
-    // 2. need construct a new nextToken and return it to the caller, so it knows if all items were returned or maxResults was hit.
+    /**
+     * Per owner key counts are updated once per snapshot version, the limit check is then a map lookup.
+     * The request which updates the counts publishes them, one ActiveMitigationsByOwner metric per configured
+     * owner key, so they can be watched against the limits.
+     * @param tsdMetrics metrics to publish the counts to, null to not publish them.
+     */
+    private ActiveMitigationCountsByOwner getActiveMitigationCountsByOwner(TSDMetrics tsdMetrics) {
+        MitigationStateSnapshot snapshot = mitigationStateSnapshotProvider.getSnapshot();
+        ActiveMitigationCountsByOwner counts = activeMitigationCountsByOwner.get();
+        if (counts == null || counts.getSnapshotVersion() != snapshot.getVersion()) {
+            ActiveMitigationCountsByOwner updated = counts == null
+                    ? ActiveMitigationCountsByOwner.fromSnapshot(snapshot, mitigationLimitByOwner.keySet())
+                    : counts.update(snapshot, mitigationLimitByOwner.keySet());
+            counts = activeMitigationCountsByOwner.accumulateAndGet(updated,
+                    (current, update) -> current == null || update.getSnapshotVersion() > current.getSnapshotVersion()
+                            ? update : current);
+            if (counts == updated && tsdMetrics != null) {
+                counts.getCountsByOwnerKey().forEach((ownerKey, count) ->
+                        tsdMetrics.addCount("ActiveMitigationsByOwner:" + ownerKey, count));
+            }
+        }
+        return counts;
+    }
+
     @Override
     public List<BlackWatchMitigationDefinition> getBlackWatchMitigations(String mitigationId, String resourceId,
-            String resourceType, String ownerARN, long maxNumberOfEntriesToReturn, TSDMetrics tsdMetrics) {
+            String resourceType, String ownerARN, long maxNumberOfEntriesToReturn, MitigationProjection projection,
+            TSDMetrics tsdMetrics) {
+        return getBlackWatchMitigationsPage(mitigationId, resourceId, resourceType, ownerARN,
+                maxNumberOfEntriesToReturn, null, projection, tsdMetrics).getMitigations();
+    }
+
+    @Override
+    public BlackWatchMitigationsPage getBlackWatchMitigationsPage(String mitigationId, String resourceId,
+            String resourceType, String ownerARN, long maxNumberOfEntriesToReturn, String nextToken,
+            MitigationProjection projection, TSDMetrics tsdMetrics) {
 
         BlackWatchResourceTypeValidator typeValidator = null;
+        Validate.notNull(projection);
         Validate.notNull(tsdMetrics);
         try (TSDMetrics subMetrics = tsdMetrics.newSubMetrics("DDBBasedBlackWatchMitigationInfoHandler"
                 + ".getBlackWatchMitigations")) {
+            subMetrics.addOne("Projection." + projection.name());
             List<BlackWatchMitigationDefinition> listOfBlackWatchMitigations = new ArrayList<>();
+            MitigationStatePage page;
             try {
-                DynamoDBScanExpression scanExpression = new DynamoDBScanExpression();
+                List<String> canonicalResourceIds = null;
                 if (resourceType != null && !resourceType.isEmpty()) {
                     BlackWatchMitigationResourceType blackWatchMitigationResourceType = BlackWatchMitigationResourceType.valueOf(resourceType);
                     typeValidator = resourceTypeValidatorMap.get(blackWatchMitigationResourceType);
-                    scanExpression.addFilterCondition(MitigationState.RESOURCE_TYPE_KEY,
-                        new Condition()
-                            .withComparisonOperator(ComparisonOperator.EQ)
-                            .withAttributeValueList(new AttributeValue().withS(resourceType)));
-                }
-
-                if (mitigationId != null && !mitigationId.isEmpty()) {
-                    scanExpression.addFilterCondition(MitigationState.MITIGATION_ID_KEY, 
-                            new Condition()
-                                .withComparisonOperator(ComparisonOperator.EQ)
-                                .withAttributeValueList(new AttributeValue().withS(mitigationId)));
                 }
                 if (resourceId != null && !resourceId.isEmpty()) {
                     if (typeValidator != null) {
-                        resourceId = typeValidator.getCanonicalStringRepresentation(resourceId);
-                        scanExpression.addFilterCondition(MitigationState.RESOURCE_ID_KEY,
-                            new Condition()
-                                .withComparisonOperator(ComparisonOperator.EQ)
-                                .withAttributeValueList(new AttributeValue().withS(resourceId)));
+                        canonicalResourceIds = ImmutableList.of(typeValidator.getCanonicalStringRepresentation(resourceId));
                     } else {
                         final String finalResourceId = resourceId;
-                        List<AttributeValue> resourceIdAttributeValueList = EntryStream.of(resourceTypeValidatorMap)
+                        canonicalResourceIds = EntryStream.of(resourceTypeValidatorMap)
                             .map((keyValue) -> {
                                 try {
-                                    return new AttributeValue().withS(keyValue.getValue().getCanonicalStringRepresentation(finalResourceId));
+                                    return keyValue.getValue().getCanonicalStringRepresentation(finalResourceId);
                                 } catch (IllegalArgumentException e) {
                                     return null;
                                 }
-                            } ).nonNull().toList();
-                        scanExpression.addFilterCondition(MitigationState.RESOURCE_ID_KEY,
-                            new Condition()
-                                .withComparisonOperator(ComparisonOperator.IN)
-                                .withAttributeValueList(resourceIdAttributeValueList));
+                            } ).nonNull().distinct().toList();
                     }
                 }
-                if (ownerARN != null && !ownerARN.isEmpty()) {
-                    scanExpression.addFilterCondition(MitigationState.OWNER_ARN_KEY, 
-                            new Condition()
-                                .withComparisonOperator(ComparisonOperator.EQ)
-                                .withAttributeValueList(new AttributeValue().withS(ownerARN)));
-                }
-                
-                List<MitigationState> mitigationStates = mitigationStateDynamoDBHelper
-                        .getMitigationState(scanExpression, parallelScanSegments);
-                
-                for (MitigationState ms : mitigationStates) {
-                    //Opted for a different POJO between the service layer and the DB layer.  Unfortunately it creates 
-                    //this dirt.
-                    MitigationActionMetadata mitigationActionMetadata =
-                            BlackWatchHelper.bwMetadataToCoralMetadata(ms.getLatestMitigationActionMetadata());
-                    
-                    Map<String, MitigationStateSetting> locState = ObjectUtils.defaultIfNull(
-                            ms.getLocationMitigationState(), new HashMap<String, MitigationStateSetting>());
-                    Map<String, LocationMitigationStateSettings> locationMitigationState = new HashMap<>();
-
-                    for (Map.Entry<String, MitigationStateSetting> entry: locState.entrySet()) {
-                        LocationMitigationStateSettings locationMitigationStateSettings = null;
-                        if (entry.getValue() != null) {
-                            locationMitigationStateSettings = convertMitSSToLocMSS(entry.getValue());
-                        }
-                        locationMitigationState.put(entry.getKey(), locationMitigationStateSettings);
-                    }
-
-                    // PPS & BPS: return the values stored in JSON global_traffic_shaper,
-                    // if they exist.  If not, fall back to the fields in MitigationState.
-                    BlackWatchTargetConfig targetConfig = RequestValidator.parseMitigationSettingsJSON(
-                            ms.getMitigationSettingsJSON());
-
-                    Long ppsRate = null;
-
-                    try {
-                        ppsRate = targetConfig
-                            .getMitigation_config()
-                            .getGlobal_traffic_shaper()
-                            .get(DEFAULT_SHAPER_NAME)
-                            .getGlobal_pps();
-                    } catch (NullPointerException npe) {
-                        // Key doesn't exist, do nothing, ppsRate is still null
-                    }
-
-                    if (ppsRate == null) {
-                        // Fallback to the value stored in MitigationState
-                        ppsRate = ms.getPpsRate();
-                    }
 
-                    Long bpsRate = null;
-
-                    try {
-                        bpsRate = targetConfig
-                            .getMitigation_config()
-                            .getGlobal_traffic_shaper()
-                            .get(DEFAULT_SHAPER_NAME)
-                            .getGlobal_bps();
-                    } catch (NullPointerException npe) {
-                        // Key doesn't exist, do nothing, bpsRate is still null
-                    }
-
-                    if (bpsRate == null) {
-                        // Fallback to the value stored in MitigationState
-                        bpsRate = ms.getBpsRate();
-                    }
-
-                    BlackWatchMitigationDefinition mitigationDefinition = BlackWatchMitigationDefinition.builder()
-                            .withMitigationId(ms.getMitigationId())
-                            .withResourceId(ms.getResourceId())
-                            .withResourceType(ms.getResourceType())
-                            .withChangeTime(ms.getChangeTime())
-                            .withOwnerARN(ms.getOwnerARN())
-                            .withState(ms.getState())
-                            .withGlobalPPS(ppsRate)
-                            .withGlobalBPS(bpsRate)
-                            .withMitigationSettingsJSON(ms.getMitigationSettingsJSON())
-                            .withMitigationSettingsJSONChecksum(ms.getMitigationSettingsJSONChecksum())
-                            .withMinutesToLiveAtChangeTime(ms.getMinutesToLive().intValue())
-                            .withExpiryTime(ms.getChangeTime() + TimeUnit.MINUTES.toMillis(ms.getMinutesToLive()))
-                            .withLatestMitigationActionMetadata(mitigationActionMetadata)
-                            .withLocationMitigationState(locationMitigationState)
-                            .withRecordedResources(ms.getRecordedResources())
-                            .withFailureDetails(parseFailureDetails(ms))
-                            .withAllowAutoMitigationOverride(ms.isAllowAutoMitigationOverride())
-                            .build();
+                MitigationStateQueryPlanner.MitigationStateQuery query = MitigationStateQueryPlanner.MitigationStateQuery.builder()
+                        .mitigationId(mitigationId)
+                        .resourceType(resourceType)
+                        .canonicalResourceIds(canonicalResourceIds)
+                        .ownerARN(ownerARN)
+                        .build();
+                page = getQueryPlanner().getMitigationStatePage(query, maxNumberOfEntriesToReturn, nextToken,
+                        projection.getAttributeNames(), subMetrics);
+
+                for (MitigationState ms : page.getMitigationStates()) {
+                    BlackWatchMitigationDefinition mitigationDefinition = projection.getAttributeNames() == null
+                            ? toMitigationDefinition(ms, projection, subMetrics)
+                            : toProjectedMitigationDefinition(ms, projection, subMetrics);
                     listOfBlackWatchMitigations.add(mitigationDefinition);
                     if (listOfBlackWatchMitigations.size() >= maxNumberOfEntriesToReturn) {
                         break;
@@ -277,10 +299,304 @@ public class DDBBasedBlackWatchMitigationInfoHandler implements BlackWatchMitiga
                 subMetrics.addOne(QUERY_BLACKWATCH_MITIGATION_FAILURE);
                 throw ex;
             }
-            return listOfBlackWatchMitigations;
+            subMetrics.addCount("HasNextToken", page.getNextToken() == null ? 0 : 1);
+            return new BlackWatchMitigationsPage(listOfBlackWatchMitigations, page.getNextToken());
+        }
+    }
+
+    /**
+     * @param maxChangeWaiters requests which may wait for mitigation changes at the same time, 0 to never wait.
+     */
+    public void setMaxChangeWaiters(int maxChangeWaiters) {
+        Validate.isTrue(maxChangeWaiters >= 0, "maxChangeWaiters must not be negative");
+        this.maxChangeWaiters = maxChangeWaiters;
+    }
+
+    @Override
+    public BlackWatchMitigationChanges getBlackWatchMitigationChanges(String sinceToken, long waitTimeMillis,
+            TSDMetrics tsdMetrics) {
+        Validate.notNull(tsdMetrics);
+        Validate.isTrue(waitTimeMillis >= 0, "waitTimeMillis must not be negative");
+        try (TSDMetrics subMetrics = tsdMetrics.newSubMetrics("DDBBasedBlackWatchMitigationInfoHandler"
+                + ".getBlackWatchMitigationChanges")) {
+            MitigationStateSnapshot snapshot = mitigationStateSnapshotProvider.getSnapshot();
+            if (snapshot.getChangeLog() == null) {
+                // not a 500: the call can't succeed until a provider which tracks changes is configured
+                subMetrics.addOne("ChangesNotTracked");
+                throw new IllegalArgumentException("ListBlackWatchMitigationChanges is not supported: the "
+                        + "configured MitigationState snapshot provider doesn't track mitigation changes");
+            }
+            subMetrics.addZero("ChangesNotTracked");
+            Long sinceMillis = sinceToken == null ? null : decodeChangesToken(sinceToken);
+            BlackWatchMitigationChanges changes = getChangesSince(snapshot, sinceMillis, subMetrics);
+            if (waitTimeMillis == 0 || changes.isResyncRequired() || !changes.getDeletedMitigationIds().isEmpty()
+                    || !changes.getMitigations().isEmpty()) {
+                return changes;
+            }
+
+            // nothing changed yet, park until the snapshot moves or the wait time is over
+            if (changeWaiters.incrementAndGet() > maxChangeWaiters) {
+                changeWaiters.decrementAndGet();
+                subMetrics.addOne("ChangeWaitersExhausted");
+                return changes;
+            }
+            subMetrics.addZero("ChangeWaitersExhausted");
+            long startTime = System.currentTimeMillis();
+            try {
+                long deadline = startTime + waitTimeMillis;
+                long remainingMillis = waitTimeMillis;
+                while (remainingMillis > 0 && changes.getMitigations().isEmpty()
+                        && changes.getDeletedMitigationIds().isEmpty() && !changes.isResyncRequired()) {
+                    snapshot = mitigationStateSnapshotProvider.awaitSnapshotAfter(snapshot.getVersion(),
+                            remainingMillis);
+                    changes = getChangesSince(snapshot, sinceMillis, subMetrics);
+                    remainingMillis = deadline - System.currentTimeMillis();
+                }
+            } catch (InterruptedException ex) {
+                LOG.info("Interrupted while waiting for mitigation changes");
+                Thread.currentThread().interrupt();
+            } finally {
+                changeWaiters.decrementAndGet();
+                subMetrics.addCount("ChangeWaitMillis", System.currentTimeMillis() - startTime);
+            }
+            return changes;
+        }
+    }
+
+    @Override
+    public List<BlackWatchMitigationDefinition> getMitigationsCoveringIP(String ipOrCidr, TSDMetrics tsdMetrics) {
+        Validate.notNull(ipOrCidr);
+        Validate.notNull(tsdMetrics);
+        try (TSDMetrics subMetrics = tsdMetrics.newSubMetrics("DDBBasedBlackWatchMitigationInfoHandler"
+                + ".getMitigationsCoveringIP")) {
+            List<MitigationState> mitigationStates = mitigationStateSnapshotProvider.getSnapshot()
+                    .getActiveMitigationPrefixIndex().findMitigationsOverlapping(ipOrCidr);
+            List<BlackWatchMitigationDefinition> mitigations = new ArrayList<>(mitigationStates.size());
+            for (MitigationState ms : mitigationStates) {
+                mitigations.add(toMitigationDefinition(ms, MitigationProjection.Full, subMetrics));
+            }
+            subMetrics.addCount("CoveringMitigations", mitigations.size());
+            return mitigations;
         }
     }
 
+    private BlackWatchMitigationChanges getChangesSince(MitigationStateSnapshot snapshot, Long sinceMillis,
+            TSDMetrics subMetrics) {
+        MitigationChangeLog changeLog = snapshot.getChangeLog();
+        String nextToken = encodeChangesToken(changeLog.getWatermarkMillis());
+
+        if (sinceMillis == null || !changeLog.covers(sinceMillis)) {
+            subMetrics.addOne("ResyncRequired");
+            return new BlackWatchMitigationChanges(Collections.emptyList(), Collections.emptyList(),
+                    nextToken, true);
+        }
+        subMetrics.addZero("ResyncRequired");
+
+        List<BlackWatchMitigationDefinition> mitigations = new ArrayList<>();
+        List<String> deletedMitigationIds = new ArrayList<>(changeLog.getDeletedSince(sinceMillis));
+        for (String mitigationId : changeLog.getChangedSince(sinceMillis)) {
+            MitigationState ms = snapshot.getMitigationState(mitigationId);
+            if (ms != null) {
+                mitigations.add(toMitigationDefinition(ms, MitigationProjection.Full, subMetrics));
+            } else {
+                deletedMitigationIds.add(mitigationId);
+            }
+        }
+        subMetrics.addCount("ChangedMitigations", mitigations.size());
+        subMetrics.addCount("DeletedMitigations", deletedMitigationIds.size());
+        subMetrics.addCount("ChangeLogSize", changeLog.size());
+        return new BlackWatchMitigationChanges(mitigations, deletedMitigationIds, nextToken, false);
+    }
+
+    static String encodeChangesToken(long watermarkMillis) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                (CHANGES_TOKEN_PREFIX + watermarkMillis).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static long decodeChangesToken(String token) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            Validate.isTrue(decoded.startsWith(CHANGES_TOKEN_PREFIX));
+            long watermarkMillis = Long.parseLong(decoded.substring(CHANGES_TOKEN_PREFIX.length()));
+            Validate.isTrue(watermarkMillis > 0);
+            return watermarkMillis;
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Invalid sinceToken: " + token, ex);
+        }
+    }
+
+    private BlackWatchMitigationDefinition toMitigationDefinition(MitigationState ms, MitigationProjection projection,
+            TSDMetrics subMetrics) {
+        //Opted for a different POJO between the service layer and the DB layer.  Unfortunately it creates 
+        //this dirt.
+        MitigationActionMetadata mitigationActionMetadata =
+                BlackWatchHelper.bwMetadataToCoralMetadata(ms.getLatestMitigationActionMetadata());
+
+        Map<String, MitigationStateSetting> locState = ObjectUtils.defaultIfNull(
+                ms.getLocationMitigationState(), new HashMap<String, MitigationStateSetting>());
+        Map<String, LocationMitigationStateSettings> locationMitigationState = null;
+        LocationDeploymentSummary locationDeploymentSummary = null;
+
+        if (projection == MitigationProjection.Deployment) {
+            locationDeploymentSummary = summarizeLocationMitigationState(locState,
+                    ms.getMitigationSettingsJSONChecksum());
+        } else {
+            locationMitigationState = new HashMap<>();
+            for (Map.Entry<String, MitigationStateSetting> entry: locState.entrySet()) {
+                LocationMitigationStateSettings locationMitigationStateSettings = null;
+                if (entry.getValue() != null) {
+                    locationMitigationStateSettings = convertMitSSToLocMSS(entry.getValue());
+                }
+                locationMitigationState.put(entry.getKey(), locationMitigationStateSettings);
+            }
+        }
+
+        BlackWatchTargetConfig targetConfig = targetConfigCache.getTargetConfig(
+                ms.getMitigationSettingsJSONChecksum(), ms.getMitigationSettingsJSON(), subMetrics);
+        Long ppsRate = globalPPS(ms, targetConfig);
+        Long bpsRate = globalBPS(ms, targetConfig);
+
+        BlackWatchMitigationDefinition mitigationDefinition = BlackWatchMitigationDefinition.builder()
+                .withMitigationId(ms.getMitigationId())
+                .withResourceId(ms.getResourceId())
+                .withResourceType(ms.getResourceType())
+                .withChangeTime(ms.getChangeTime())
+                .withOwnerARN(ms.getOwnerARN())
+                .withState(ms.getState())
+                .withGlobalPPS(ppsRate)
+                .withGlobalBPS(bpsRate)
+                .withMitigationSettingsJSON(ms.getMitigationSettingsJSON())
+                .withMitigationSettingsJSONChecksum(ms.getMitigationSettingsJSONChecksum())
+                .withMinutesToLiveAtChangeTime(ms.getMinutesToLive().intValue())
+                .withExpiryTime(ms.getChangeTime() + TimeUnit.MINUTES.toMillis(ms.getMinutesToLive()))
+                .withLatestMitigationActionMetadata(mitigationActionMetadata)
+                .withLocationMitigationState(locationMitigationState)
+                .withLocationDeploymentSummary(locationDeploymentSummary)
+                .withRecordedResources(ms.getRecordedResources())
+                .withFailureDetails(parseFailureDetails(ms))
+                .withAllowAutoMitigationOverride(ms.isAllowAutoMitigationOverride())
+                .build();
+        return mitigationDefinition;
+    }
+
+    /**
+     * PPS: return the value stored in JSON global_traffic_shaper, if it exists.
+     * If not, fall back to the field in MitigationState.
+     */
+    private static Long globalPPS(MitigationState ms, BlackWatchTargetConfig targetConfig) {
+        Long ppsRate = null;
+
+        try {
+            ppsRate = targetConfig
+                .getMitigation_config()
+                .getGlobal_traffic_shaper()
+                .get(DEFAULT_SHAPER_NAME)
+                .getGlobal_pps();
+        } catch (NullPointerException npe) {
+            // Key doesn't exist, do nothing, ppsRate is still null
+        }
+
+        if (ppsRate == null) {
+            // Fallback to the value stored in MitigationState
+            ppsRate = ms.getPpsRate();
+        }
+        return ppsRate;
+    }
+
+    /**
+     * BPS: return the value stored in JSON global_traffic_shaper, if it exists.
+     * If not, fall back to the field in MitigationState.
+     */
+    private static Long globalBPS(MitigationState ms, BlackWatchTargetConfig targetConfig) {
+        Long bpsRate = null;
+
+        try {
+            bpsRate = targetConfig
+                .getMitigation_config()
+                .getGlobal_traffic_shaper()
+                .get(DEFAULT_SHAPER_NAME)
+                .getGlobal_bps();
+        } catch (NullPointerException npe) {
+            // Key doesn't exist, do nothing, bpsRate is still null
+        }
+
+        if (bpsRate == null) {
+            // Fallback to the value stored in MitigationState
+            bpsRate = ms.getBpsRate();
+        }
+        return bpsRate;
+    }
+
+    /**
+     * Aggregate the per location states of a mitigation in one pass. A location without a state, or whose
+     * checksum differs from the mitigation's, has not deployed the current settings and is counted as stale.
+     */
+    static LocationDeploymentSummary summarizeLocationMitigationState(
+            Map<String, MitigationStateSetting> locationMitigationState, String mitigationSettingsJSONChecksum) {
+        Map<String, Integer> locationCountsByJobStatus = new HashMap<>();
+        long totalPPS = 0;
+        long totalBPS = 0;
+        int staleChecksumLocations = 0;
+
+        for (MitigationStateSetting setting : locationMitigationState.values()) {
+            if (setting == null) {
+                locationCountsByJobStatus.merge(UNKNOWN_JOB_STATUS, 1, Integer::sum);
+                ++staleChecksumLocations;
+                continue;
+            }
+            locationCountsByJobStatus.merge(
+                    ObjectUtils.defaultIfNull(setting.getConfigDeploymentJobStatus(), UNKNOWN_JOB_STATUS),
+                    1, Integer::sum);
+            if (setting.getPPS() != null) {
+                totalPPS += setting.getPPS();
+            }
+            if (setting.getBPS() != null) {
+                totalBPS += setting.getBPS();
+            }
+            if (!Objects.equals(setting.getMitigationSettingsJSONChecksum(), mitigationSettingsJSONChecksum)) {
+                ++staleChecksumLocations;
+            }
+        }
+
+        return LocationDeploymentSummary.builder()
+                .withNumLocations(locationMitigationState.size())
+                .withLocationCountsByJobStatus(locationCountsByJobStatus)
+                .withTotalPPS(totalPPS)
+                .withTotalBPS(totalBPS)
+                .withNumStaleChecksumLocations(staleChecksumLocations)
+                .build();
+    }
+
+    /**
+     * Convert the attributes of a mitigation which are part of a partial projection, the settings JSON, location
+     * states and failure details are not returned. Rates are the same as the ones of a full projection.
+     */
+    private BlackWatchMitigationDefinition toProjectedMitigationDefinition(MitigationState ms,
+            MitigationProjection projection, TSDMetrics subMetrics) {
+        BlackWatchMitigationDefinition.Builder builder = BlackWatchMitigationDefinition.builder()
+                .withMitigationId(ms.getMitigationId())
+                .withResourceId(ms.getResourceId())
+                .withResourceType(ms.getResourceType());
+        if (projection == MitigationProjection.Summary) {
+            BlackWatchTargetConfig targetConfig = targetConfigCache.getTargetConfig(
+                    ms.getMitigationSettingsJSONChecksum(), ms.getMitigationSettingsJSON(), subMetrics);
+            builder.withOwnerARN(ms.getOwnerARN())
+                    .withState(ms.getState())
+                    .withChangeTime(ms.getChangeTime())
+                    .withGlobalPPS(globalPPS(ms, targetConfig))
+                    .withGlobalBPS(globalBPS(ms, targetConfig))
+                    .withMitigationSettingsJSONChecksum(ms.getMitigationSettingsJSONChecksum())
+                    .withAllowAutoMitigationOverride(ms.isAllowAutoMitigationOverride());
+            if (ms.getMinutesToLive() != null) {
+                builder.withMinutesToLiveAtChangeTime(ms.getMinutesToLive().intValue());
+                if (ms.getChangeTime() != null) {
+                    builder.withExpiryTime(ms.getChangeTime() + TimeUnit.MINUTES.toMillis(ms.getMinutesToLive()));
+                }
+            }
+        }
+        return builder.build();
+    }
+
     private FailureDetails parseFailureDetails(MitigationState ms) {
         if (ms.getFailureDetails() == null) {
             return null;
@@ -337,6 +653,7 @@ public class DDBBasedBlackWatchMitigationInfoHandler implements BlackWatchMitiga
                 + ".updateBlackWatchMitigationRegionalCellPlacement")) {
 
             MitigationState mitigationState = mitigationStateDynamoDBHelper.getMitigationState(mitigationId);
+            Map<String, AttributeValue> originalAttributes = attributesBeforeUpdate(mitigationState);
 
             if (mitigationState == null) {
                 String message = String.format("MitigationId:%s could not be found in MitigationState table.",
@@ -356,9 +673,10 @@ public class DDBBasedBlackWatchMitigationInfoHandler implements BlackWatchMitiga
 
             BlackWatchTargetConfig existingTargetConfig = null;
             try {
-                existingTargetConfig = BlackWatchTargetConfig.fromJSONString(
-                        mitigationState.getMitigationSettingsJSON());
-            } catch (IOException e) {
+                existingTargetConfig = targetConfigCache.getTargetConfig(
+                        mitigationState.getMitigationSettingsJSONChecksum(),
+                        mitigationState.getMitigationSettingsJSON(), subMetrics);
+            } catch (IllegalArgumentException e) {
                 throw new IllegalStateException(String.format("Failed to parse mitigation config for " +
                         "existing mitigation %s", mitigationId), e);
             }
@@ -386,7 +704,7 @@ public class DDBBasedBlackWatchMitigationInfoHandler implements BlackWatchMitiga
             placement.setCellNames(cellNames);
             mitigationState.setRegionalPlacement(placement);
             try {
-                saveMitigationState(mitigationState, false, subMetrics);
+                saveMitigationState(mitigationState, originalAttributes, false, subMetrics);
 
                 subMetrics.addCount("ExistingMitgationModified", 1);
                 UpdateBlackWatchMitigationRegionalCellPlacementResponse response =
@@ -412,111 +730,144 @@ public class DDBBasedBlackWatchMitigationInfoHandler implements BlackWatchMitiga
         Validate.notNull(tsdMetrics);
         validateBypassConfigValidation(userARN, bypassConfigValidations);
 
+        // null when the mitigation settings are not being updated
+        String mitigationSettingsJSON = targetConfig != null ? targetConfig.getJsonString() : null;
+        String mitigationSettingsJSONChecksum = mitigationSettingsJSON != null
+                ? BlackWatchHelper.getHexStringChecksum(mitigationSettingsJSON) : null;
+
         try (TSDMetrics subMetrics = tsdMetrics.newSubMetrics("DDBBasedBlackWatchMitigationInfoHandler"
                 + ".updateBlackWatchMitigation")) {
             // since Optimistic locking is enabled for MitigationState table, let's retry couple of
             // times to update the mitigation state since workers can update this in parallel
-            for (int attempt = 0; attempt < MAX_UPDATE_RETRIES; attempt++) {
-                MitigationState mitigationState = mitigationStateDynamoDBHelper.getMitigationState(mitigationId);
-
-                if (mitigationState == null) {
-                    String message = String.format("MitigationId:%s could not be found in MitigationState table.", 
-                            mitigationId);
-                    subMetrics.addOne("BadMitigationId");
-                    throw new IllegalArgumentException(message);
-                } else if (mitigationState.getState().equals(MitigationState.State.To_Delete.name())) {
-                    throw new IllegalArgumentException(TO_DELETE_CONDITIONAL_FAILURE_MESSAGE);
-                }
-
-                subMetrics.addZero("BadMitigationId");
-                String resourceId = mitigationState.getResourceId();
-                String resourceTypeString = mitigationState.getResourceType();
-                BlackWatchMitigationResourceType resourceType = BlackWatchMitigationResourceType.valueOf(resourceTypeString);
-                BlackWatchResourceTypeValidator typeValidator = resourceTypeValidatorMap.get(resourceType);
-                if (typeValidator == null) {
-                    String msg = String.format("Resource type specific validator could not be found! Type:%s", 
-                            resourceTypeString);
-                    throw new IllegalArgumentException(msg);
-                }
+            try {
+                return conditionalWriteRetrier.execute("UpdateBlackWatchMitigation", attempt -> {
+                    MitigationState mitigationState = mitigationStateDynamoDBHelper.getMitigationState(mitigationId);
+                    Map<String, AttributeValue> originalAttributes = attributesBeforeUpdate(mitigationState);
 
-                String mitigationSettingsJSON;
-                if (targetConfig != null) {
-                    // need to validate updated mitigation settings
-                    mitigationSettingsJSON = targetConfig.getJsonString();
+                    if (mitigationState == null) {
+                        String message = String.format("MitigationId:%s could not be found in MitigationState table.", 
+                                mitigationId);
+                        subMetrics.addOne("BadMitigationId");
+                        throw new IllegalArgumentException(message);
+                    } else if (mitigationState.getState().equals(MitigationState.State.To_Delete.name())) {
+                        throw new IllegalArgumentException(TO_DELETE_CONDITIONAL_FAILURE_MESSAGE);
+                    }
 
-                    BlackWatchTargetConfig existingTargetConfig = null;
-                    try {
-                        existingTargetConfig = BlackWatchTargetConfig.fromJSONString(mitigationState.getMitigationSettingsJSON());
-                    } catch (IOException e) {
-                        throw new IllegalStateException(String.format("Failed to parse mitigation config for existing mitigation %s", mitigationId), e);
+                    subMetrics.addZero("BadMitigationId");
+                    String resourceId = mitigationState.getResourceId();
+                    String resourceTypeString = mitigationState.getResourceType();
+                    BlackWatchMitigationResourceType resourceType = BlackWatchMitigationResourceType.valueOf(resourceTypeString);
+                    BlackWatchResourceTypeValidator typeValidator = resourceTypeValidatorMap.get(resourceType);
+                    if (typeValidator == null) {
+                        String msg = String.format("Resource type specific validator could not be found! Type:%s", 
+                                resourceTypeString);
+                        throw new IllegalArgumentException(msg);
                     }
 
-                    if (mitigationState.getState().equals(State.Failed.name())) {
-                        if (existingTargetConfig.equals(targetConfig)) {
-                            String message = String.format("Trying to update mitigation %s in FAILED state with same target config", mitigationState.getMitigationId());
-                            throw new IllegalArgumentException(message);
+                    if (targetConfig != null) {
+                        // need to validate updated mitigation settings
+                        BlackWatchTargetConfig existingTargetConfig = null;
+                        try {
+                            existingTargetConfig = targetConfigCache.getTargetConfig(
+                                    mitigationState.getMitigationSettingsJSONChecksum(),
+                                    mitigationState.getMitigationSettingsJSON(), subMetrics);
+                        } catch (IllegalArgumentException e) {
+                            throw new IllegalStateException(String.format("Failed to parse mitigation config for existing mitigation %s", mitigationId), e);
                         }
 
-                        // reset num failures when transitioning from Failed -> Active state
-                        resetNumFailures(mitigationState);
-                    }
+                        if (mitigationState.getState().equals(State.Failed.name())) {
+                            if (existingTargetConfig.equals(targetConfig)) {
+                                String message = String.format("Trying to update mitigation %s in FAILED state with same target config", mitigationState.getMitigationId());
+                                throw new IllegalArgumentException(message);
+                            }
 
-                    String canonicalResourceId = typeValidator.getCanonicalStringRepresentation(resourceId);
-                    Map<BlackWatchMitigationResourceType, Set<String>> resourceMap =
-                            typeValidator.getCanonicalMapOfResources(resourceId, targetConfig);
-                    LOG.info(String.format("Extracted canonical resource:%s and resource sets:%s",
-                            canonicalResourceId, ReflectionToStringBuilder.toString(resourceMap)));
-                    validateResources(resourceMap);
-                } else {
-                    // mitigation settings are not being updated
-                    mitigationSettingsJSON = null;
-                }
+                            // reset num failures when transitioning from Failed -> Active state
+                            resetNumFailures(mitigationState);
+                        }
+
+                        String canonicalResourceId = typeValidator.getCanonicalStringRepresentation(resourceId);
+                        Map<BlackWatchMitigationResourceType, Set<String>> resourceMap =
+                                typeValidator.getCanonicalMapOfResources(resourceId, targetConfig);
+                        LOG.info(String.format("Extracted canonical resource:%s and resource sets:%s",
+                                canonicalResourceId, ReflectionToStringBuilder.toString(resourceMap)));
+                        validateResources(resourceMap);
+                    }
 
-                String previousOwnerARN = mitigationState.getOwnerARN();
-                mitigationState.setState(MitigationState.State.Active.name());
-                mitigationState.setChangeTime(System.currentTimeMillis());
-                mitigationState.setBypassConfigValidations(bypassConfigValidations);
-                mitigationState.setOwnerARN(userARN);
-                if (mitigationSettingsJSON != null) {
-                    // update mitigation settings JSON
+                    String previousOwnerARN = mitigationState.getOwnerARN();
+                    mitigationState.setState(MitigationState.State.Active.name());
+                    mitigationState.setChangeTime(System.currentTimeMillis());
+                    mitigationState.setBypassConfigValidations(bypassConfigValidations);
+                    mitigationState.setOwnerARN(userARN);
+                    // null settings are not updated
                     mitigationState.setMitigationSettingsJSON(mitigationSettingsJSON);
-                    mitigationState.setMitigationSettingsJSONChecksum(
-                            BlackWatchHelper.getHexStringChecksum(mitigationSettingsJSON));
-                } else {
-                    // do not update mitigation settings JSON
-                    mitigationState.setMitigationSettingsJSON(null);
-                    mitigationState.setMitigationSettingsJSONChecksum(null);
-                }
-                mitigationState.setMinutesToLive(minsToLive);
-                BlackWatchMitigationActionMetadata bwMetadata = BlackWatchHelper.coralMetadataToBWMetadata(metadata);
-                mitigationState.setLatestMitigationActionMetadata(bwMetadata);
+                    mitigationState.setMitigationSettingsJSONChecksum(mitigationSettingsJSONChecksum);
+                    mitigationState.setMinutesToLive(minsToLive);
+                    BlackWatchMitigationActionMetadata bwMetadata = BlackWatchHelper.coralMetadataToBWMetadata(metadata);
+                    mitigationState.setLatestMitigationActionMetadata(bwMetadata);
 
-                try {
-                    saveMitigationState(mitigationState, false, subMetrics);
+                    saveMitigationState(mitigationState, originalAttributes, false, subMetrics);
 
                     subMetrics.addCount("ExistingMitgationModified", 1);
                     UpdateBlackWatchMitigationResponse response = new UpdateBlackWatchMitigationResponse();
                     response.setMitigationId(mitigationId);
                     response.setPreviousOwnerARN(previousOwnerARN);
                     return response;
-                } catch (ConditionalCheckFailedException e) {
-                    try {
-                        LOG.warn(String.format("ConditionalCheckFailedException while doing update "
-                                + "mitigation on mitigation ID: %s, retry attempt: %d", mitigationId, attempt + 1));
-                        Thread.sleep((long) ((attempt + 1)*UPDATE_RETRY_SLEEP_MILLIS*Math.random()));
-                    } catch (InterruptedException intEx) {
-                        // If we were interrupted then stop trying and fail immediately.
-                        LOG.info("Interrupted while sleeping to retry");
-                        Thread.currentThread().interrupt();
-                    }
-                }
+                }, subMetrics);
+            } catch (ConditionalWriteRetrier.RetriesExhaustedException e) {
+                String message = String.format("Failed to update MitigationState due to ConditionalCheckFailedException " +
+                        "even after retrying for %d times, please try calling this API again", e.getAttempts());
+                throw new IllegalArgumentException(message);
             }
-            String message = String.format("Failed to update MitigationState due to ConditionalCheckFailedException " +
-                    "even after retrying for %d times, please try calling this API again", MAX_UPDATE_RETRIES);
-            throw new IllegalArgumentException(message);
         }
     }
-    
+
+    @Value
+    private static class ResourceIdentity {
+        String resourceId;
+        // IP address of IPAddress and ElasticIP resources, null for other types
+        String ipAddress;
+    }
+
+    /**
+     * Supporting 'ARN, IP Address' format for resources
+     */
+    private ResourceIdentity parseResourceId(String resourceId, BlackWatchMitigationResourceType resourceType) {
+        if (resourceType.equals(BlackWatchMitigationResourceType.ElasticIP)) {
+            String[] resourceData = resourceId.split(",");
+            if (resourceData.length != 2) {
+                throw new IllegalArgumentException("Resource ID must be 'ARN,EIP' format for now!");
+            }
+            return new ResourceIdentity(resourceData[0], resourceData[1]);
+        } else if (resourceType.equals(BlackWatchMitigationResourceType.GLB)) {
+            // TODO: remove the SFO boolean
+            if (!realm.equalsIgnoreCase("us-west-2") && !realm.equalsIgnoreCase("us-east-1") && !realm.equalsIgnoreCase("us-west-1")) {
+                throw new IllegalArgumentException("GLB Mitigations can only be placed in PDX (us-west-2) or IAD (us-east-1).");   
+            }
+        } else if (resourceType.equals(BlackWatchMitigationResourceType.IPAddress)) {
+            return new ResourceIdentity(resourceId, resourceId);
+        }
+        return new ResourceIdentity(resourceId, null);
+    }
+
+    /**
+     * Allocations and mitigations read ahead for a batch apply. A prefetched resource without an
+     * allocation is known to be unallocated, resources which were not prefetched are read from the table.
+     */
+    @Value
+    private static class PrefetchedReads {
+        static final PrefetchedReads NONE = new PrefetchedReads(
+                Collections.emptySet(), Collections.emptyMap(), Collections.emptyMap());
+
+        Set<String> prefetchedResourceIds;
+        Map<String, ResourceAllocationState> resourceAllocationStates;
+        // entries are removed as they are used
+        Map<String, MitigationState> mitigationStates;
+
+        boolean isPrefetched(String resourceId) {
+            return prefetchedResourceIds.contains(resourceId);
+        }
+    }
+
     /**
      * Validate the resource Sets
      * @param resourceMap Map of ResourceType to Set of resources.
@@ -551,13 +902,256 @@ public class DDBBasedBlackWatchMitigationInfoHandler implements BlackWatchMitiga
         Validate.notNull(userARN);
         Validate.notNull(tsdMetrics);
         validateBypassConfigValidation(userARN, bypassConfigValidations);
-        validateUserMitigationLimitExceed(userARN);
+        validateUserMitigationLimitExceed(userARN, tsdMetrics);
+
+        return applyBlackWatchMitigation(resourceId, resourceTypeString, minsToLive, metadata, targetConfig, userARN,
+                tsdMetrics, allowAutoMitigationOverride, bypassConfigValidations, null, PrefetchedReads.NONE);
+    }
+
+    @Override
+    public List<ApplyBlackWatchMitigationResult> applyBlackWatchMitigations(List<ApplyBlackWatchMitigationEntry> entries,
+            MitigationActionMetadata metadata, String userARN, TSDMetrics tsdMetrics) {
+        Validate.notNull(entries);
+        Validate.notNull(userARN);
+        Validate.notNull(tsdMetrics);
 
+        try (TSDMetrics subMetrics = tsdMetrics.newSubMetrics("DDBBasedBlackWatchMitigationInfoHandler"
+                + ".applyBlackWatchMitigations")) {
+            subMetrics.addCount("BatchSize", entries.size());
+
+            // every entry is checked against the same snapshot and counts
+            MitigationStateSnapshot snapshot = mitigationStateSnapshotProvider.getSnapshot();
+            ActiveMitigationCountsByOwner counts = mitigationLimitByOwner.isEmpty()
+                    ? null : getActiveMitigationCountsByOwner(subMetrics);
+            PrefetchedReads reads = prefetch(entries, subMetrics);
+
+            ApplyBlackWatchMitigationResult[] results = new ApplyBlackWatchMitigationResult[entries.size()];
+            if (batchApplyExecutor == null) {
+                // mitigations created by earlier entries count towards the owner limit of later ones
+                int mitigationsCreated = 0;
+                for (int i = 0; i < entries.size(); ++i) {
+                    ApplyBlackWatchMitigationEntry entry = entries.get(i);
+                    try {
+                        validateUserMitigationLimitExceed(userARN, counts, mitigationsCreated, subMetrics);
+                    } catch (RuntimeException ex) {
+                        results[i] = failedEntry(entry, ex);
+                        continue;
+                    }
+                    results[i] = applyEntry(entry, metadata, userARN, subMetrics, snapshot, reads);
+                    if (results[i].isSucceeded() && results[i].getResponse().isNewMitigationCreated()) {
+                        ++mitigationsCreated;
+                    }
+                }
+            } else {
+                applyConcurrently(entries, metadata, userARN, subMetrics, snapshot, counts, reads, results);
+            }
+
+            subMetrics.addCount("FailedEntries", Arrays.stream(results).filter(r -> !r.isSucceeded()).count());
+            return Arrays.asList(results);
+        }
+    }
+
+    /**
+     * Apply the entries of different resources at the same time on batchApplyExecutor. Entries of the same
+     * resource run one after the other, in order.
+     *
+     * The owner limit can't wait for the outcome of earlier entries, so it is checked up front, in order: the
+     * first entry of a resource without a prefetched allocation is assumed to create a mitigation.
+     */
+    private void applyConcurrently(List<ApplyBlackWatchMitigationEntry> entries, MitigationActionMetadata metadata,
+            String userARN, TSDMetrics metrics, MitigationStateSnapshot snapshot, ActiveMitigationCountsByOwner counts,
+            PrefetchedReads reads, ApplyBlackWatchMitigationResult[] results) {
+        Map<String, List<Integer>> entriesByResource = new LinkedHashMap<>();
+        int mitigationsReserved = 0;
+        for (int i = 0; i < entries.size(); ++i) {
+            ApplyBlackWatchMitigationEntry entry = entries.get(i);
+            try {
+                validateUserMitigationLimitExceed(userARN, counts, mitigationsReserved, metrics);
+            } catch (RuntimeException ex) {
+                results[i] = failedEntry(entry, ex);
+                continue;
+            }
+            // entries whose resource can't be resolved fail on their own, in a group of their own
+            String resourceKey = Optional.ofNullable(canonicalResourceId(entry)).orElse("#" + i);
+            List<Integer> group = entriesByResource.computeIfAbsent(resourceKey, key -> new ArrayList<>());
+            if (group.isEmpty() && reads.getResourceAllocationStates().get(resourceKey) == null) {
+                ++mitigationsReserved;
+            }
+            group.add(i);
+        }
+
+        List<BatchApplyGroup> groups = new ArrayList<>(entriesByResource.size());
+        for (List<Integer> entryIndexes : entriesByResource.values()) {
+            // sub metrics are not shared across threads, each task gets its own
+            BatchApplyGroup group = new BatchApplyGroup(entryIndexes,
+                    metrics.newSubMetrics("applyBlackWatchMitigations.resource"));
+            group.future = batchApplyExecutor.submit(() -> {
+                if (!group.claimed.compareAndSet(false, true)) {
+                    return null;
+                }
+                try {
+                    List<ApplyBlackWatchMitigationResult> groupResults = new ArrayList<>(entryIndexes.size());
+                    for (int i : entryIndexes) {
+                        groupResults.add(applyEntry(entries.get(i), metadata, userARN, group.metrics, snapshot,
+                                reads));
+                    }
+                    return groupResults;
+                } finally {
+                    group.metrics.end();
+                }
+            });
+            groups.add(group);
+        }
+
+        long deadline = System.currentTimeMillis() + batchApplyTimeoutMillis;
+        int incompleteEntries = 0;
+        for (BatchApplyGroup group : groups) {
+            List<ApplyBlackWatchMitigationResult> groupResults = null;
+            try {
+                groupResults = group.future.get(Math.max(0, deadline - System.currentTimeMillis()),
+                        TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (TimeoutException | ExecutionException ex) {
+                LOG.warn("Batch apply did not complete the entries of resource "
+                        + entries.get(group.entryIndexes.get(0)).getResourceId(), ex);
+            }
+            if (groupResults == null) {
+                // a group which didn't start yet never will, one which is running may still complete after this
+                if (group.claimed.compareAndSet(false, true)) {
+                    group.metrics.end();
+                }
+                group.future.cancel(true);
+                incompleteEntries += group.entryIndexes.size();
+                for (int i : group.entryIndexes) {
+                    results[i] = failedEntry(entries.get(i), new UncheckedTimeoutException(String.format(
+                            "Batch apply did not complete within %d ms", batchApplyTimeoutMillis)));
+                }
+                continue;
+            }
+            for (int j = 0; j < group.entryIndexes.size(); ++j) {
+                results[group.entryIndexes.get(j)] = groupResults.get(j);
+            }
+        }
+        metrics.addCount("IncompleteEntries", incompleteEntries);
+    }
+
+    /**
+     * Entries of one resource of a batch apply, applied by a single task. The task and the request thread giving
+     * up on it both claim the group, whichever claims it first ends its metrics.
+     */
+    @RequiredArgsConstructor
+    private static class BatchApplyGroup {
+        private final List<Integer> entryIndexes;
+        private final TSDMetrics metrics;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private Future<List<ApplyBlackWatchMitigationResult>> future;
+    }
+
+    private ApplyBlackWatchMitigationResult applyEntry(ApplyBlackWatchMitigationEntry entry,
+            MitigationActionMetadata metadata, String userARN, TSDMetrics metrics, MitigationStateSnapshot snapshot,
+            PrefetchedReads reads) {
+        try {
+            validateBypassConfigValidation(userARN, entry.isBypassConfigValidations());
+            return ApplyBlackWatchMitigationResult.succeeded(applyBlackWatchMitigation(entry.getResourceId(),
+                    entry.getResourceType(), entry.getMinutesToLive(), metadata, entry.getTargetConfig(),
+                    userARN, metrics, entry.isAllowAutoMitigationOverride(), entry.isBypassConfigValidations(),
+                    snapshot, reads));
+        } catch (RuntimeException ex) {
+            return failedEntry(entry, ex);
+        }
+    }
+
+    private static ApplyBlackWatchMitigationResult failedEntry(ApplyBlackWatchMitigationEntry entry,
+            RuntimeException ex) {
+        LOG.warn(String.format("Failed to apply mitigation on resourceId:%s resourceType:%s",
+                entry.getResourceId(), entry.getResourceType()), ex);
+        return ApplyBlackWatchMitigationResult.failed(ex);
+    }
+
+    /**
+     * @return the canonical resource id of the entry, null if it can't be resolved, applying it reports the error.
+     */
+    private String canonicalResourceId(ApplyBlackWatchMitigationEntry entry) {
+        try {
+            BlackWatchMitigationResourceType resourceType =
+                    BlackWatchMitigationResourceType.valueOf(entry.getResourceType());
+            BlackWatchResourceTypeValidator typeValidator = resourceTypeValidatorMap.get(resourceType);
+            if (typeValidator == null) {
+                return null;
+            }
+            ResourceIdentity identity = parseResourceId(entry.getResourceId(), resourceType);
+            return typeValidator.getCanonicalStringRepresentation(identity.getResourceId());
+        } catch (RuntimeException ex) {
+            LOG.debug("Could not resolve resource " + entry.getResourceId(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * Read the allocations and mitigations of all entries with two BatchGetItem calls. Entries whose
+     * resourceId can't be resolved are left out, applying them reports the error.
+     */
+    private PrefetchedReads prefetch(List<ApplyBlackWatchMitigationEntry> entries, TSDMetrics metrics) {
+        if (mitigationStateBatchReader == null || entries.size() < 2) {
+            return PrefetchedReads.NONE;
+        }
+
+        Set<String> resourceIds = new HashSet<>();
+        for (ApplyBlackWatchMitigationEntry entry : entries) {
+            String canonicalResourceId = canonicalResourceId(entry);
+            if (canonicalResourceId == null) {
+                continue;
+            }
+            resourceIds.add(canonicalResourceId);
+            if (BlackWatchMitigationResourceType.ElasticIP.name().equals(entry.getResourceType())) {
+                resourceIds.add(parseResourceId(entry.getResourceId(), BlackWatchMitigationResourceType.ElasticIP)
+                        .getIpAddress());
+            }
+        }
+
+        Map<String, ResourceAllocationState> resourceAllocationStates =
+                mitigationStateBatchReader.getResourceAllocationStates(resourceIds);
+        // entries of different resources take their mitigations out of this map concurrently
+        Map<String, MitigationState> mitigationStates = new ConcurrentHashMap<>(
+                mitigationStateBatchReader.getMitigationStates(resourceAllocationStates.values().stream()
+                        .map(ResourceAllocationState::getMitigationId)
+                        .collect(Collectors.toSet())));
+        metrics.addCount("PrefetchedResourceAllocations", resourceAllocationStates.size());
+        metrics.addCount("PrefetchedMitigations", mitigationStates.size());
+        return new PrefetchedReads(resourceIds, resourceAllocationStates, mitigationStates);
+    }
+
+    /**
+     * The allocations of the resource and of the IP address of an ElasticIP are both known before reading
+     * anything, read them with one BatchGetItem instead of one GetItem after the other.
+     */
+    private PrefetchedReads prefetchElasticIPAllocations(PrefetchedReads reads,
+            BlackWatchMitigationResourceType resourceType, String canonicalResourceId, String ipAddress,
+            TSDMetrics metrics) {
+        if (mitigationStateBatchReader == null || !resourceType.equals(BlackWatchMitigationResourceType.ElasticIP)
+                || reads.isPrefetched(canonicalResourceId)) {
+            return reads;
+        }
+        Validate.notNull(ipAddress);
+
+        Set<String> resourceIds = ImmutableSet.of(canonicalResourceId, ipAddress);
+        Map<String, ResourceAllocationState> resourceAllocationStates =
+                mitigationStateBatchReader.getResourceAllocationStates(resourceIds);
+        metrics.addCount("PrefetchedResourceAllocations", resourceAllocationStates.size());
+        return new PrefetchedReads(resourceIds, resourceAllocationStates, reads.getMitigationStates());
+    }
+
+    /**
+     * @param snapshot snapshot to check superset prefixes against, null to get the current one when needed.
+     * @param reads items read ahead by a batch apply.
+     */
+    private ApplyBlackWatchMitigationResponse applyBlackWatchMitigation(String resourceId, String resourceTypeString,
+            Integer minsToLive, MitigationActionMetadata metadata, BlackWatchTargetConfig targetConfig,
+            String userARN, TSDMetrics tsdMetrics, boolean allowAutoMitigationOverride, boolean bypassConfigValidations,
+            MitigationStateSnapshot snapshot, PrefetchedReads reads) {
         try (TSDMetrics subMetrics = tsdMetrics.newSubMetrics("DDBBasedBlackWatchMitigationInfoHandler"
                 + ".applyBlackWatchMitigation")) {
-            boolean newMitigationCreated = false;
-            String mitigationId;
-            
             BlackWatchMitigationResourceType resourceType = BlackWatchMitigationResourceType.valueOf(resourceTypeString);
             BlackWatchResourceTypeValidator typeValidator = resourceTypeValidatorMap.get(resourceType);
             if (typeValidator == null) {
@@ -567,202 +1161,226 @@ public class DDBBasedBlackWatchMitigationInfoHandler implements BlackWatchMitiga
                 throw new IllegalArgumentException(msg);
             }
 
-            // Supporting 'ARN, IP Address' format for resources
-            String ipAddress = null;
-            if (resourceType.equals(BlackWatchMitigationResourceType.ElasticIP)) {
-                String[] resourceData = resourceId.split(",");
-                if (resourceData.length != 2) {
-                    throw new IllegalArgumentException("Resource ID must be 'ARN,EIP' format for now!");
-                }
-                resourceId = resourceData[0];
-                ipAddress = resourceData[1];
-            } else if (resourceType.equals(BlackWatchMitigationResourceType.GLB)) {
-                // TODO: remove the SFO boolean
-                if (!realm.equalsIgnoreCase("us-west-2") && !realm.equalsIgnoreCase("us-east-1") && !realm.equalsIgnoreCase("us-west-1")) {
-                    throw new IllegalArgumentException("GLB Mitigations can only be placed in PDX (us-west-2) or IAD (us-east-1).");   
-                }
-            } else if (resourceType.equals(BlackWatchMitigationResourceType.IPAddress)) {
-                ipAddress = resourceId;
-            }
+            ResourceIdentity identity = parseResourceId(resourceId, resourceType);
+            resourceId = identity.getResourceId();
+            String ipAddress = identity.getIpAddress();
 
             String canonicalResourceId = typeValidator.getCanonicalStringRepresentation(resourceId);
+            // serialized and checksummed once, every attempt writes or compares the same settings
             String mitigationSettingsJSON = targetConfig.getJsonString();
+            String mitigationSettingsJSONChecksum = BlackWatchHelper.getHexStringChecksum(mitigationSettingsJSON);
             Map<BlackWatchMitigationResourceType, Set<String>> resourceMap = 
                     typeValidator.getCanonicalMapOfResources(resourceId, targetConfig);
             LOG.info(String.format("Extracted canonical resource:%s and resource sets:%s",
                     canonicalResourceId, ReflectionToStringBuilder.toString(resourceMap)));
             validateResources(resourceMap);
                         
-            ResourceAllocationState resourceState = resourceAllocationStateDynamoDBHelper
-                    .getResourceAllocationState(canonicalResourceId);
+            PrefetchedReads entryReads = prefetchElasticIPAllocations(reads, resourceType, canonicalResourceId,
+                    ipAddress, subMetrics);
+            ResourceAllocationState resourceState = entryReads.isPrefetched(canonicalResourceId)
+                    ? entryReads.getResourceAllocationStates().get(canonicalResourceId)
+                    : resourceAllocationStateDynamoDBHelper.getResourceAllocationState(canonicalResourceId);
 
             // since Optimistic locking is enabled for MitigationState table, let's retry couple of
             // times to update the mitigation state since workers can update this in parallel
-            for (int attempt = 0; attempt < MAX_UPDATE_RETRIES; attempt++) {
-                MitigationState mitigationState;
-
-                if (resourceState != null) {
-                    Validate.isTrue(resourceState.getResourceType().equals(resourceTypeString),
-                            String.format("Recorded resourceId:%s with type:%s does not match the specified type:%s",
-                                    canonicalResourceId, resourceState.getResourceType(), resourceTypeString));
-                    newMitigationCreated = false;
-                    mitigationId = resourceState.getMitigationId();
-                    mitigationState = mitigationStateDynamoDBHelper.getMitigationState(mitigationId);
-                    if (mitigationState == null) {
-                        String message = String.format("MitigationId:%s returned from the resource does not exist!", 
-                                mitigationId);
-                        throw new IllegalArgumentException(message);
-                    } else if (mitigationState.getState().equals(MitigationState.State.To_Delete.name())) {
-                        throw new IllegalArgumentException(TO_DELETE_CONDITIONAL_FAILURE_MESSAGE);
-                    } else if (mitigationState.getState().equals(MitigationState.State.Failed.name())) {
-                        BlackWatchTargetConfig existingTargetConfig = null;
-                        try {
-                            existingTargetConfig = BlackWatchTargetConfig.fromJSONString(mitigationState.getMitigationSettingsJSON());
-                        } catch (IOException e) {
-                            throw new IllegalStateException(String.format("Failed to parse mitigation config for existing mitigation %s", mitigationId), e);
-                        }
-                        if (existingTargetConfig.equals(targetConfig)) {
-                            String message = String.format("Mitigation %s is in FAILED state, cannot apply same target config", mitigationState.getMitigationId());
+            try {
+                return conditionalWriteRetrier.execute("ApplyBlackWatchMitigation", attempt -> {
+                    boolean newMitigationCreated;
+                    String mitigationId;
+                    MitigationState mitigationState;
+                    Map<String, AttributeValue> originalAttributes = null;
+
+                    if (resourceState != null) {
+                        Validate.isTrue(resourceState.getResourceType().equals(resourceTypeString),
+                                String.format("Recorded resourceId:%s with type:%s does not match the specified type:%s",
+                                        canonicalResourceId, resourceState.getResourceType(), resourceTypeString));
+                        newMitigationCreated = false;
+                        mitigationId = resourceState.getMitigationId();
+                        // a prefetched mitigation is used once, retries and later entries on the same
+                        // mitigation need the version written by this attempt
+                        MitigationState prefetched = entryReads.getMitigationStates().remove(mitigationId);
+                        mitigationState = prefetched != null
+                                ? prefetched : mitigationStateDynamoDBHelper.getMitigationState(mitigationId);
+                        originalAttributes = attributesBeforeUpdate(mitigationState);
+                        if (mitigationState == null) {
+                            String message = String.format("MitigationId:%s returned from the resource does not exist!", 
+                                    mitigationId);
                             throw new IllegalArgumentException(message);
+                        } else if (mitigationState.getState().equals(MitigationState.State.To_Delete.name())) {
+                            throw new IllegalArgumentException(TO_DELETE_CONDITIONAL_FAILURE_MESSAGE);
+                        } else if (mitigationState.getState().equals(MitigationState.State.Failed.name())) {
+                            BlackWatchTargetConfig existingTargetConfig = null;
+                            try {
+                                existingTargetConfig = targetConfigCache.getTargetConfig(
+                                        mitigationState.getMitigationSettingsJSONChecksum(),
+                                        mitigationState.getMitigationSettingsJSON(), subMetrics);
+                            } catch (IllegalArgumentException e) {
+                                throw new IllegalStateException(String.format("Failed to parse mitigation config for existing mitigation %s", mitigationId), e);
+                            }
+                            if (existingTargetConfig.equals(targetConfig)) {
+                                String message = String.format("Mitigation %s is in FAILED state, cannot apply same target config", mitigationState.getMitigationId());
+                                throw new IllegalArgumentException(message);
+                            }
+
+                            // set numFailures to be 0 when transitioning to ACTIVE state
+                            resetNumFailures(mitigationState);
                         }
-
-                        // set numFailures to be 0 when transitioning to ACTIVE state
-                        resetNumFailures(mitigationState);
-                    }
-                    if (!mitigationState.getOwnerARN().equals(userARN)) {
-                        String message = String.format("Cannot apply update to mitigationId:%s as the calling owner:%s "
-                                + "does not match the recorded owner:%s", mitigationId, userARN, mitigationState.getOwnerARN());
-                        throw new MitigationNotOwnedByRequestor400(message);
+                        if (!mitigationState.getOwnerARN().equals(userARN)) {
+                            String message = String.format("Cannot apply update to mitigationId:%s as the calling owner:%s "
+                                    + "does not match the recorded owner:%s", mitigationId, userARN, mitigationState.getOwnerARN());
+                            throw new MitigationNotOwnedByRequestor400(message);
+                        }
+                    } else {
+                        // check if ElasticIP is already allocated
+                        if (resourceTypeString.equals(BlackWatchMitigationResourceType.ElasticIP.name())) {
+                            Validate.notNull(ipAddress);
+                            ResourceAllocationState resourceAllocationState = entryReads.isPrefetched(ipAddress)
+                                    ? entryReads.getResourceAllocationStates().get(ipAddress)
+                                    : resourceAllocationStateDynamoDBHelper.getResourceAllocationState(ipAddress);
+                            // resourceAllocationState is non-null when ElasticIP is already allocated
+                            if (resourceAllocationState != null) {
+                                String msg = String.format("Could not create EIP mitigation for resourceId:%s resourceType:%s "
+                                        + "since ElasticIP:%s conflicts with an existing mitigation with mitigationId:%s.",
+                                        canonicalResourceId, resourceType, ipAddress, resourceAllocationState.getMitigationId());
+                                throw new MitigationNotOwnedByRequestor400(msg);
+                            }
+                        }
+                        newMitigationCreated = true;
+                        mitigationId = generateMitigationId(realm);
+                        mitigationState = MitigationState.builder()
+                                .mitigationId(mitigationId)
+                                .resourceId(canonicalResourceId)
+                                .allowAutoMitigationOverride(allowAutoMitigationOverride)
+                                .bypassConfigValidations(bypassConfigValidations)
+                                .resourceType(resourceTypeString)
+                                .ownerARN(userARN)
+                                .build();
                     }
-                } else {
-                    // check if ElasticIP is already allocated
-                    if (resourceTypeString.equals(BlackWatchMitigationResourceType.ElasticIP.name())) {
-                        Validate.notNull(ipAddress);
-                        ResourceAllocationState resourceAllocationState = resourceAllocationStateDynamoDBHelper.getResourceAllocationState(ipAddress);
-                        // resourceAllocationState is non-null when ElasticIP is already allocated
-                        if (resourceAllocationState != null) {
-                            String msg = String.format("Could not create EIP mitigation for resourceId:%s resourceType:%s "
-                                    + "since ElasticIP:%s conflicts with an existing mitigation with mitigationId:%s.",
-                                    canonicalResourceId, resourceType, ipAddress, resourceAllocationState.getMitigationId());
-                            throw new MitigationNotOwnedByRequestor400(msg);
+
+                    subMetrics.addCount("RequestCoveredByExistingMitigation", 0);
+
+                    // Need to prevent auto-mitigations from BAM and EC2 from creating more specific
+                    // mitigations within the IP space already covered by existing mitigations.
+                    // Route53 creates and maintains long-lasting mitigations on larger IP prefixes (/22).
+                    if (userARN.startsWith(bamAndEc2OwnerArnPrefix) && ipAddress != null) {
+                        Optional<MitigationState> mitigationStateWithSupersetPrefix = Optional.ofNullable(
+                                Optional.ofNullable(snapshot).orElseGet(mitigationStateSnapshotProvider::getSnapshot)
+                                        .getActiveMitigationPrefixIndex()
+                                        .findCoveringMitigationNotOwnedBy(ipAddress, userARN));
+
+                        //If customers is ok to allow BAM overriding mitigation, then do nothing.
+                        //Otherwise, throw out the error
+                        if (mitigationStateWithSupersetPrefix.isPresent() && !mitigationStateWithSupersetPrefix.get().isAllowAutoMitigationOverride()) {
+                            String errorMsg = String.format("The request is rejected since the user %s is "
+                                    + "auto mitigation (BAM or EC2), and mitigation %s already exists on a superset prefix",
+                                    userARN,
+                                    mitigationStateWithSupersetPrefix.get().getMitigationId());
+                            LOG.warn(errorMsg);
+                            subMetrics.addCount("RequestCoveredByExistingMitigation", 1);
+                            throw new MitigationNotOwnedByRequestor400(errorMsg);
                         }
                     }
-                    newMitigationCreated = true;
-                    mitigationId = generateMitigationId(realm);
-                    mitigationState = MitigationState.builder()
-                            .mitigationId(mitigationId)
-                            .resourceId(canonicalResourceId)
-                            .allowAutoMitigationOverride(allowAutoMitigationOverride)
-                            .bypassConfigValidations(bypassConfigValidations)
-                            .resourceType(resourceTypeString)
-                            .ownerARN(userARN)
-                            .build();
-                }
 
-                subMetrics.addCount("RequestCoveredByExistingMitigation", 0);
-
-                // Need to prevent auto-mitigations from BAM and EC2 from creating more specific
-                // mitigations within the IP space already covered by existing mitigations.
-                // Route53 creates and maintains long-lasting mitigations on larger IP prefixes (/22).
-                if (userARN.startsWith(bamAndEc2OwnerArnPrefix) && ipAddress != null) {
-                    final String ipAddressToCheck = ipAddress;
-
-                    updateMitigationStateList();
-
-                    Optional<MitigationState> mitigationStateWithSupersetPrefix = mitigationStateList.stream()
-                            .filter(ms -> ms.getState().equals(State.Active.name()))
-                            .filter(ms -> !ms.getOwnerARN().equals(userARN))
-                            .filter(ms -> isRequestIpCoveredByExistingMitigation(ipAddressToCheck, ms))
-                            .findAny();
-
-                    //If customers is ok to allow BAM overriding mitigation, then do nothing.
-                    //Otherwise, throw out the error
-                    if (mitigationStateWithSupersetPrefix.isPresent() && !mitigationStateWithSupersetPrefix.get().isAllowAutoMitigationOverride()) {
-                        String errorMsg = String.format("The request is rejected since the user %s is "
-                                + "auto mitigation (BAM or EC2), and mitigation %s already exists on a superset prefix",
-                                userARN,
-                                mitigationStateWithSupersetPrefix.get().getMitigationId());
-                        LOG.warn(errorMsg);
-                        subMetrics.addCount("RequestCoveredByExistingMitigation", 1);
-                        throw new MitigationNotOwnedByRequestor400(errorMsg);
+                    BlackWatchResourceTypeHelper resourceTypeHelper = resourceTypeHelpers.get(resourceType);
+                    if (resourceTypeHelper == null) {
+                        String message = String.format("Resource type specific helper could not be found! Type:%s",  resourceType);
+                        LOG.error(message);
+                        throw new IllegalArgumentException(message);
                     }
-                }
 
-                mitigationState.setState(MitigationState.State.Active.name());
-                mitigationState.setChangeTime(System.currentTimeMillis());
-                mitigationState.setMitigationSettingsJSON(mitigationSettingsJSON);
-                mitigationState.setMitigationSettingsJSONChecksum(
-                        BlackWatchHelper.getHexStringChecksum(mitigationSettingsJSON));
-                mitigationState.setMinutesToLive(minsToLive);
-                BlackWatchMitigationActionMetadata bwMetadata = BlackWatchHelper.coralMetadataToBWMetadata(metadata);
-                mitigationState.setLatestMitigationActionMetadata(bwMetadata);
-
-                BlackWatchResourceTypeHelper resourceTypeHelper = resourceTypeHelpers.get(resourceType);
-                if (resourceTypeHelper == null) {
-                    String message = String.format("Resource type specific helper could not be found! Type:%s",  resourceType);
-                    LOG.error(message);
-                    throw new IllegalArgumentException(message);
-                }
-                resourceTypeHelper.updateResourceBriefInformation(mitigationState);
-                LOG.debug("mitigation state after update: " + mitigationState.toString());
+                    if (!newMitigationCreated && reapplyWithoutConfigChange(mitigationState, originalAttributes,
+                            mitigationSettingsJSONChecksum, minsToLive, metadata, resourceTypeHelper, subMetrics)) {
+                        subMetrics.addCount("NewMitgationCreated", 0);
+                        subMetrics.addCount("ExistingMitgationModified", 1);
 
-                try {
-                    saveMitigationState(mitigationState, newMitigationCreated, subMetrics);
-
-                    if (newMitigationCreated) {
-                        boolean allocationProposalSuccess = resourceAllocationHelper.proposeNewMitigationResourceAllocation(
-                                mitigationId, canonicalResourceId, resourceTypeString);
-                        if (!allocationProposalSuccess) {
-                            String msg = String.format("Could not complete resource allocation for mitigationId:%s "
-                                    + "resourceId:%s resourceType:%s", mitigationId, canonicalResourceId, resourceType);
-                            mitigationStateDynamoDBHelper.deleteMitigationState(mitigationState);
-                            throw new IllegalArgumentException(msg);
-                        }
-                        if (resourceTypeString.equals(BlackWatchMitigationResourceType.ElasticIP.name())) {
-                            Validate.notNull(ipAddress);
-                            Map<String, Set<String>> addMap = ImmutableMap.of(BlackWatchMitigationResourceType.IPAddress.name(),
-                                    Collections.singleton(IPAddressResourceTypeValidator.convertIPToCanonicalStringRepresentation
-                                            (ipAddress)));
-                            LOG.info("Allocating Resource:" + addMap.toString() + " to mitigationId:" + mitigationId);
-                            resourceAllocationHelper.proposeAdditionalResourcesForMitigation(mitigationId, addMap);
-                        }
+                        ApplyBlackWatchMitigationResponse response = new ApplyBlackWatchMitigationResponse();
+                        response.setNewMitigationCreated(false);
+                        response.setMitigationId(mitigationId);
+                        return response;
                     }
 
-                    subMetrics.addCount("NewMitgationCreated", newMitigationCreated ? 1 : 0);
-                    subMetrics.addCount("ExistingMitgationModified", newMitigationCreated ? 0 : 1);
+                    mitigationState.setState(MitigationState.State.Active.name());
+                    mitigationState.setChangeTime(System.currentTimeMillis());
+                    mitigationState.setMitigationSettingsJSON(mitigationSettingsJSON);
+                    mitigationState.setMitigationSettingsJSONChecksum(mitigationSettingsJSONChecksum);
+                    mitigationState.setMinutesToLive(minsToLive);
+                    BlackWatchMitigationActionMetadata bwMetadata = BlackWatchHelper.coralMetadataToBWMetadata(metadata);
+                    mitigationState.setLatestMitigationActionMetadata(bwMetadata);
+
+                    resourceTypeHelper.updateResourceBriefInformation(mitigationState);
+                    LOG.debug("mitigation state after update: " + mitigationState.toString());
 
-                    ApplyBlackWatchMitigationResponse response = new ApplyBlackWatchMitigationResponse();
-                    response.setNewMitigationCreated(newMitigationCreated);
-                    response.setMitigationId(mitigationId);
-                    return response;
-                } catch (ConditionalCheckFailedException e) {
-                    // do not retry if its a new mitigation
-                    if (newMitigationCreated) {
-                        String message = "Could not save MitigationState due to conditional failure! "
-                                + "Conflicting MitigationId on a new mitigation.";
-                        throw new IllegalArgumentException(message);
-                    }
                     try {
-                        LOG.warn(String.format("ConditionalCheckFailedException while doing update "
-                                + "mitigation on mitigation ID: %s, retry attempt: %d", mitigationId, attempt + 1));
-                        Thread.sleep((long) ((attempt + 1)*UPDATE_RETRY_SLEEP_MILLIS*Math.random()));
-                    } catch (InterruptedException intEx) {
-                        // If we were interrupted then stop trying and fail immediately.
-                        LOG.info("Interrupted while sleeping to retry");
-                        Thread.currentThread().interrupt();
+                        if (newMitigationCreated && transactionalMitigationCreator != null) {
+                            createMitigationTransactionally(mitigationState, canonicalResourceId, resourceTypeString,
+                                    ipAddress, subMetrics);
+                        } else {
+                            saveMitigationState(mitigationState, originalAttributes, newMitigationCreated, subMetrics);
+                        }
+
+                        if (newMitigationCreated && transactionalMitigationCreator == null) {
+                            boolean allocationProposalSuccess = resourceAllocationHelper.proposeNewMitigationResourceAllocation(
+                                    mitigationId, canonicalResourceId, resourceTypeString);
+                            if (!allocationProposalSuccess) {
+                                String msg = String.format("Could not complete resource allocation for mitigationId:%s "
+                                        + "resourceId:%s resourceType:%s", mitigationId, canonicalResourceId, resourceType);
+                                mitigationStateDynamoDBHelper.deleteMitigationState(mitigationState);
+                                throw new IllegalArgumentException(msg);
+                            }
+                            if (resourceTypeString.equals(BlackWatchMitigationResourceType.ElasticIP.name())) {
+                                Validate.notNull(ipAddress);
+                                Map<String, Set<String>> addMap = ImmutableMap.of(BlackWatchMitigationResourceType.IPAddress.name(),
+                                        Collections.singleton(IPAddressResourceTypeValidator.convertIPToCanonicalStringRepresentation
+                                                (ipAddress)));
+                                LOG.info("Allocating Resource:" + addMap.toString() + " to mitigationId:" + mitigationId);
+                                resourceAllocationHelper.proposeAdditionalResourcesForMitigation(mitigationId, addMap);
+                            }
+                        }
+
+                        subMetrics.addCount("NewMitgationCreated", newMitigationCreated ? 1 : 0);
+                        subMetrics.addCount("ExistingMitgationModified", newMitigationCreated ? 0 : 1);
+
+                        ApplyBlackWatchMitigationResponse response = new ApplyBlackWatchMitigationResponse();
+                        response.setNewMitigationCreated(newMitigationCreated);
+                        response.setMitigationId(mitigationId);
+                        return response;
+                    } catch (ConditionalCheckFailedException e) {
+                        // do not retry if its a new mitigation
+                        if (newMitigationCreated) {
+                            String message = "Could not save MitigationState due to conditional failure! "
+                                    + "Conflicting MitigationId on a new mitigation.";
+                            throw new IllegalArgumentException(message);
+                        }
+                        throw e;
                     }
-                }
+                }, subMetrics);
+            } catch (ConditionalWriteRetrier.RetriesExhaustedException e) {
+                String message = String.format("Failed to update MitigationState due to ConditionalCheckFailedException " +
+                        "even after retrying for %d times, please try calling this API again", e.getAttempts());
+                throw new IllegalArgumentException(message);
             }
-            String message = String.format("Failed to update MitigationState due to ConditionalCheckFailedException " +
-                    "even after retrying for %d times, please try calling this API again", MAX_UPDATE_RETRIES);
-            throw new IllegalArgumentException(message);
         }
     }
 
-    private void validateUserMitigationLimitExceed(String userArn) {
+    private void validateUserMitigationLimitExceed(String userArn, TSDMetrics tsdMetrics) {
+        if (mitigationLimitByOwner.isEmpty()) {
+            return;
+        }
+        validateUserMitigationLimitExceed(userArn, getActiveMitigationCountsByOwner(tsdMetrics), 0, tsdMetrics);
+    }
+
+    /**
+     * @param additionalMitigations mitigations created since the counts were taken.
+     */
+    private void validateUserMitigationLimitExceed(String userArn, ActiveMitigationCountsByOwner counts,
+            int additionalMitigations, TSDMetrics tsdMetrics) {
+        if (mitigationLimitByOwner.isEmpty()) {
+            return;
+        }
+
         mitigationLimitByOwner.entrySet().stream().forEach((userKey) -> {
                     if (userArn.contains(userKey.getKey())) {
-                        long mitigationCount = getMitigationsByOwner(userKey.getKey());
+                        long mitigationCount = counts.getCount(userKey.getKey()) + additionalMitigations;
                         if (mitigationCount >= userKey.getValue()) {
                             throw new MitigationLimitByOwnerExceeded400(String.format("Owner: %s (ARN:%s) has Exceeded "
                                     + "permitted limit: %d Existing Active Mitigation Count: %d",
@@ -788,26 +1406,91 @@ public class DDBBasedBlackWatchMitigationInfoHandler implements BlackWatchMitiga
         }
     }
 
-    boolean isRequestIpCoveredByExistingMitigation(
-            final String ipAddress,
-            final MitigationState mitigationState) {
-        return ObjectUtils.defaultIfNull(mitigationState.getRecordedResources().get(BlackWatchMitigationResourceType.IPAddress.name()),
-                new HashSet<String>())
-                .stream()
-                .anyMatch(ip -> {
-                    SubnetBasedIpSet subnetBasedIpSet = new SubnetBasedIpSet(ImmutableList.of(ip));
-                    return subnetBasedIpSet.isMember(ipAddress);
-                });
+    /**
+     * Write a new mitigation and the allocations of its resources in one transaction, instead of saving the
+     * mitigation, proposing the allocations and deleting the mitigation again if they are taken.
+     */
+    private void createMitigationTransactionally(MitigationState mitigationState, String canonicalResourceId,
+            String resourceTypeString, String ipAddress, TSDMetrics subMetrics) {
+        setDefaultMinutesToLive(mitigationState);
+
+        Map<String, String> resourceTypesByResourceId = new HashMap<>();
+        resourceTypesByResourceId.put(canonicalResourceId, resourceTypeString);
+        if (resourceTypeString.equals(BlackWatchMitigationResourceType.ElasticIP.name())) {
+            Validate.notNull(ipAddress);
+            String canonicalIpAddress = IPAddressResourceTypeValidator.convertIPToCanonicalStringRepresentation(ipAddress);
+            LOG.info("Allocating Resource:" + canonicalIpAddress + " to mitigationId:" + mitigationState.getMitigationId());
+            resourceTypesByResourceId.put(canonicalIpAddress, BlackWatchMitigationResourceType.IPAddress.name());
+        }
+
+        try {
+            transactionalMitigationCreator.create(mitigationState, resourceTypesByResourceId);
+            subMetrics.addZero("TransactionalCreateConflict");
+        } catch (TransactionalMitigationCreator.ItemAlreadyExistsException ex) {
+            subMetrics.addOne("TransactionalCreateConflict");
+            throw ex;
+        }
     }
 
-    private void saveMitigationState(MitigationState mitigationState, boolean newMitigationCreated,
-            TSDMetrics subMetrics) {
-        
-        Integer minsToLive = mitigationState.getMinutesToLive();
-        if (minsToLive == null || minsToLive == 0) {
-            mitigationState.setMinutesToLive(DEFAULT_MINUTES_TO_LIVE);
+    private static void setDefaultMinutesToLive(MitigationState mitigationState) {
+        mitigationState.setMinutesToLive(effectiveMinutesToLive(mitigationState.getMinutesToLive()));
+    }
+
+    private static int effectiveMinutesToLive(Integer minsToLive) {
+        return minsToLive == null || minsToLive == 0 ? DEFAULT_MINUTES_TO_LIVE : minsToLive;
+    }
+
+    /**
+     * Handle an apply which doesn't change the config of an active mitigation of the same owner, without
+     * rewriting the mitigation, since every rewrite makes the workers deploy it again.
+     * The action metadata and the resource brief information are always recorded. changeTime and minutesToLive
+     * are updated too unless the mitigation already expires no earlier than requested. The update is conditional on
+     * the mitigation being unchanged since it was read, and on its state and owner.
+     * @return false if the apply needs a full write, it changes more than the expiry.
+     * @throws ConditionalCheckFailedException if the mitigation changed since it was read.
+     */
+    private boolean reapplyWithoutConfigChange(MitigationState mitigationState,
+            Map<String, AttributeValue> originalAttributes, String mitigationSettingsJSONChecksum, Integer minsToLive,
+            MitigationActionMetadata metadata, BlackWatchResourceTypeHelper resourceTypeHelper, TSDMetrics subMetrics) {
+        if (!MitigationState.State.Active.name().equals(mitigationState.getState())
+                || mitigationState.getChangeTime() == null
+                || !mitigationSettingsJSONChecksum.equals(mitigationState.getMitigationSettingsJSONChecksum())) {
+            subMetrics.addZero("ApplyMetadataOnlyUpdate");
+            subMetrics.addZero("ApplyExpiryOnlyUpdate");
+            return false;
         }
-        DynamoDBSaveExpression saveExpression = new DynamoDBSaveExpression();
+
+        long now = System.currentTimeMillis();
+        int requestedMinutesToLive = effectiveMinutesToLive(minsToLive);
+        long storedExpiry = mitigationState.getChangeTime()
+                + TimeUnit.MINUTES.toMillis(effectiveMinutesToLive(mitigationState.getMinutesToLive()));
+        long requestedExpiry = now + TimeUnit.MINUTES.toMillis(requestedMinutesToLive);
+        boolean extendsExpiry = requestedExpiry > storedExpiry;
+        if (extendsExpiry) {
+            mitigationState.setChangeTime(now);
+            mitigationState.setMinutesToLive(requestedMinutesToLive);
+        } else {
+            LOG.info(String.format("Mitigation %s already has the requested config and expiry, only recording the "
+                    + "action metadata", mitigationState.getMitigationId()));
+        }
+        mitigationState.setLatestMitigationActionMetadata(BlackWatchHelper.coralMetadataToBWMetadata(metadata));
+        resourceTypeHelper.updateResourceBriefInformation(mitigationState);
+
+        Map<String, ExpectedAttributeValue> expectedAttributes = ImmutableMap.of(
+                MitigationState.STATE_KEY, new ExpectedAttributeValue(new AttributeValue(MitigationState.State.Active.name()))
+                        .withComparisonOperator(ComparisonOperator.EQ),
+                MitigationState.OWNER_ARN_KEY, new ExpectedAttributeValue(new AttributeValue(mitigationState.getOwnerARN()))
+                        .withComparisonOperator(ComparisonOperator.EQ));
+        updateMitigationState(originalAttributes, mitigationState, expectedAttributes, subMetrics);
+        subMetrics.addCount("ApplyMetadataOnlyUpdate", extendsExpiry ? 0 : 1);
+        subMetrics.addCount("ApplyExpiryOnlyUpdate", extendsExpiry ? 1 : 0);
+        return true;
+    }
+
+    private void saveMitigationState(MitigationState mitigationState, Map<String, AttributeValue> originalAttributes,
+            boolean newMitigationCreated, TSDMetrics subMetrics) {
+        
+        setDefaultMinutesToLive(mitigationState);
         Map<String, ExpectedAttributeValue> expectedAttributes = new HashMap<String, ExpectedAttributeValue>();
         if (newMitigationCreated) {
             ExpectedAttributeValue doesNotExistValue = new ExpectedAttributeValue(false);
@@ -819,8 +1502,38 @@ public class DDBBasedBlackWatchMitigationInfoHandler implements BlackWatchMitiga
             expectedAttribute.setComparisonOperator(ComparisonOperator.NE);
             expectedAttributes.put(MitigationState.STATE_KEY, expectedAttribute);
         }
-        saveExpression.setExpected(expectedAttributes);
 
+        updateMitigationState(newMitigationCreated ? null : originalAttributes, mitigationState, expectedAttributes,
+                subMetrics);
+    }
+
+    /**
+     * @return the attributes of the mitigation as read, to write only what changed, null if there is no mitigation.
+     */
+    private Map<String, AttributeValue> attributesBeforeUpdate(MitigationState mitigationState) {
+        if (mitigationState == null) {
+            return null;
+        }
+        return mitigationStateUpdater.toAttributes(mitigationState);
+    }
+
+    /**
+     * Write the changes made to a mitigation since its attributes were read, or the whole mitigation when
+     * it is new, if the mitigation matches the expected attributes.
+     */
+    private void updateMitigationState(Map<String, AttributeValue> originalAttributes, MitigationState mitigationState,
+            Map<String, ExpectedAttributeValue> expectedAttributes, TSDMetrics tsdMetrics) {
+        if (originalAttributes != null) {
+            int changedAttributes = mitigationStateUpdater.update(originalAttributes, mitigationState,
+                    expectedAttributes);
+            if (tsdMetrics != null) {
+                tsdMetrics.addCount("ChangedAttributes", changedAttributes);
+            }
+            return;
+        }
+
+        DynamoDBSaveExpression saveExpression = new DynamoDBSaveExpression();
+        saveExpression.setExpected(expectedAttributes);
         mitigationStateDynamoDBHelper.performConditionalMitigationStateUpdate(mitigationState, saveExpression);
     }
 
@@ -830,52 +1543,45 @@ public class DDBBasedBlackWatchMitigationInfoHandler implements BlackWatchMitiga
         throw new RuntimeException(msg);
     }
 
-    public void deactivateMitigation(final String mitigationId, final MitigationActionMetadata actionMetadata) {
+    public void deactivateMitigation(final String mitigationId, final MitigationActionMetadata actionMetadata,
+            final TSDMetrics tsdMetrics) {
         final BlackWatchMitigationActionMetadata actionMetadataBlackWatch =
                 BlackWatchHelper.coralMetadataToBWMetadata(actionMetadata);
 
-        // Allow a few retries to avoid clashing with the workers
-        for (int attempt = 0; attempt < MAX_UPDATE_RETRIES; attempt++) {
-            MitigationState state = mitigationStateDynamoDBHelper.getMitigationState(mitigationId);
-
-            if (state == null) {
-                throw new IllegalArgumentException("Specified mitigation Id " + mitigationId + " does not exist");
-            } else if (state.getState().equals(MitigationState.State.Expired.name())
-                    || state.getState().equals(MitigationState.State.To_Delete.name())) {
-                return;  // Already in the desired state
-            }
-
-            state.setState(MitigationState.State.Expired.name());
-            state.setLatestMitigationActionMetadata(actionMetadataBlackWatch);
-
-            // Make update conditional on the mitigation not being in To_Delete state
-            DynamoDBSaveExpression expression = new DynamoDBSaveExpression();
-            ExpectedAttributeValue expectNotToDelete = new ExpectedAttributeValue(
-                    new AttributeValue(MitigationState.State.To_Delete.name()));
-            expectNotToDelete.setComparisonOperator(ComparisonOperator.NE);
-            Map<String, ExpectedAttributeValue> expected = new HashMap<String, ExpectedAttributeValue>();
-            expected.put(MitigationState.STATE_KEY, expectNotToDelete);
-            expression.setExpected(expected);
-
+        try (TSDMetrics subMetrics = tsdMetrics.newSubMetrics("DDBBasedBlackWatchMitigationInfoHandler"
+                + ".deactivateMitigation")) {
+            // Allow a few retries to avoid clashing with the workers
             try {
-                mitigationStateDynamoDBHelper.performConditionalMitigationStateUpdate(
-                        state, expression);
-                return;
-            } catch (ConditionalCheckFailedException e) {
-                try {
-                    Thread.sleep((long) ((attempt + 1)*UPDATE_RETRY_SLEEP_MILLIS*Math.random()));
-                } catch (InterruptedException intEx) {
-                    // If we were interrupted then stop trying and fail immediately.
-                    LOG.info("Interrupted while sleeping to retry");
-                    Thread.currentThread().interrupt();
-                    failDeactivateMitigation(mitigationId, attempt);
-                }
+                conditionalWriteRetrier.execute("DeactivateMitigation", attempt -> {
+                    MitigationState state = mitigationStateDynamoDBHelper.getMitigationState(mitigationId);
+                    Map<String, AttributeValue> originalAttributes = attributesBeforeUpdate(state);
+
+                    if (state == null) {
+                        throw new IllegalArgumentException("Specified mitigation Id " + mitigationId + " does not exist");
+                    } else if (state.getState().equals(MitigationState.State.Expired.name())
+                            || state.getState().equals(MitigationState.State.To_Delete.name())) {
+                        return null;  // Already in the desired state
+                    }
+
+                    state.setState(MitigationState.State.Expired.name());
+                    state.setLatestMitigationActionMetadata(actionMetadataBlackWatch);
+
+                    // Make update conditional on the mitigation not being in To_Delete state
+                    ExpectedAttributeValue expectNotToDelete = new ExpectedAttributeValue(
+                            new AttributeValue(MitigationState.State.To_Delete.name()));
+                    expectNotToDelete.setComparisonOperator(ComparisonOperator.NE);
+                    Map<String, ExpectedAttributeValue> expected = new HashMap<String, ExpectedAttributeValue>();
+                    expected.put(MitigationState.STATE_KEY, expectNotToDelete);
+
+                    updateMitigationState(originalAttributes, state, expected, subMetrics);
+                    return null;
+                }, subMetrics);
+            } catch (ConditionalWriteRetrier.RetriesExhaustedException e) {
+                // If we used all attempts and still failed to update the state, something
+                // is probably wrong.
+                failDeactivateMitigation(mitigationId, e.getAttempts());
             }
         }
-
-        // If we used all attempts and still failed to update the state, something
-        // is probably wrong.
-        failDeactivateMitigation(mitigationId, MAX_UPDATE_RETRIES);
     }
 
     public void changeOwnerARN(String mitigationId, String newOwnerARN, String expectedOwnerARN,
@@ -885,18 +1591,17 @@ public class DDBBasedBlackWatchMitigationInfoHandler implements BlackWatchMitiga
         if (state == null) {
             throw new IllegalArgumentException("Specified mitigation Id " + mitigationId + " does not exist");
         }
+        Map<String, AttributeValue> originalAttributes = attributesBeforeUpdate(state);
 
         state.setOwnerARN(newOwnerARN);
         BlackWatchMitigationActionMetadata actionMetadataBlackWatch =
                 BlackWatchHelper.coralMetadataToBWMetadata(actionMetadata);
         state.setLatestMitigationActionMetadata(actionMetadataBlackWatch);
-        DynamoDBSaveExpression condition = new DynamoDBSaveExpression();
         ExpectedAttributeValue expectedValue = new ExpectedAttributeValue(new AttributeValue(expectedOwnerARN));
         expectedValue.setComparisonOperator(ComparisonOperator.EQ);
         Map<String, ExpectedAttributeValue> expectedAttributes =
                 ImmutableMap.of(MitigationState.OWNER_ARN_KEY, expectedValue);
-        condition.setExpected(expectedAttributes);
-        mitigationStateDynamoDBHelper.performConditionalMitigationStateUpdate(state, condition);
+        updateMitigationState(originalAttributes, state, expectedAttributes, null);
     }
 
     public void changeMitigationState(String mitigationId, MitigationState.State expectedState, MitigationState.State newState,
@@ -906,6 +1611,7 @@ public class DDBBasedBlackWatchMitigationInfoHandler implements BlackWatchMitiga
         if (state == null) {
             throw new IllegalArgumentException("Specified mitigationId : " + mitigationId + " does not exist");
         }
+        Map<String, AttributeValue> originalAttributes = attributesBeforeUpdate(state);
 
         // reset num failures when transitioning from failed to active
         if (expectedState.equals(State.Failed) && newState.equals(State.Active)) {
@@ -917,13 +1623,11 @@ public class DDBBasedBlackWatchMitigationInfoHandler implements BlackWatchMitiga
                 BlackWatchHelper.coralMetadataToBWMetadata(actionMetadata);
         state.setLatestMitigationActionMetadata(actionMetadataBlackWatch);
         state.setChangeTime(System.currentTimeMillis());
-        DynamoDBSaveExpression condition = new DynamoDBSaveExpression();
         ExpectedAttributeValue expectedValue = new ExpectedAttributeValue(new AttributeValue(expectedState.name()));
         expectedValue.setComparisonOperator(ComparisonOperator.EQ);
         Map<String, ExpectedAttributeValue> expectedAttributes =
                 ImmutableMap.of(MitigationState.STATE_KEY, expectedValue);
-        condition.setExpected(expectedAttributes);
-        mitigationStateDynamoDBHelper.performConditionalMitigationStateUpdate(state, condition);
+        updateMitigationState(originalAttributes, state, expectedAttributes, null);
     }
 }
 
@@ -7,6 +7,14 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -29,16 +37,50 @@ import com.amazon.blackwatch.location.state.model.LocationState;
 import com.amazon.blackwatch.location.state.storage.LocationStateDynamoDBHelper;
 import com.amazon.lookout.mitigation.location.type.LocationType;
 import com.amazon.lookout.mitigation.service.BlackWatchLocation;
+import com.amazon.lookout.mitigation.service.activity.helper.LocationLookupContext;
 import com.amazon.lookout.mitigation.service.activity.helper.LocationStateInfoHandler;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.datamodeling.S3Link;
+import com.amazonaws.services.dynamodbv2.datamodeling.StandardModelFactories;
 import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
 import com.amazon.lookout.mitigation.service.activity.helper.mws.MWSHelper;
-
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * LocationState reads go through a per host cache with a short TTL, since a single request reads the same
+ * location several times. Entries are invalidated on this host's writes; writes from other hosts are seen
+ * once the entry expires.
+ *
+ * Every caller gets its own copy of a cached state, so callers may modify it. Paths which modify and write a
+ * state, or which take a location out of service based on it, read it with bypassCache, so they start from the
+ * table rather than from a state up to the TTL old. The cache serves the read-only lookups, mostly the operational
+ * status of a location. LocationStateCacheHit, LocationStateCacheMiss and LocationStateCacheBypass tell how
+ * much of the read traffic it takes.
+ *
+ * The remote calls of the operational checks (MWS datapoints and expected mitigations of every stack) run
+ * concurrently on a bounded executor, so a check takes as long as its slowest dependency rather than the sum of
+ * them. The calls still running are cancelled once a location is found not operational, since the outcome no
+ * longer depends on them, or when the deadline of the check passes. When the executor is saturated the calls run
+ * on the request thread instead.
+ */
 public class DDBBasedLocationStateInfoHandler implements LocationStateInfoHandler {
     private static final Log LOG = LogFactory.getLog(DDBBasedLocationStateInfoHandler.class);
     public static final String DDB_QUERY_FAILURE_COUNT = "DynamoDBQueryFailureCount";
+    public static final long DEFAULT_LOCATION_STATE_CACHE_TTL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    public static final long DEFAULT_OPERATIONAL_CHECK_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(20);
+    public static final int DEFAULT_DEPENDENCY_EXECUTOR_THREADS = 16;
+    public static final int DEFAULT_DEPENDENCY_EXECUTOR_QUEUE_SIZE = 64;
 
     private static final int DATAPOINTS_TO_BE_EVALUATED = 2; //MWS Datapoints that needs to be evaluated
 
+    private static final DynamoDBMapperTableModel<LocationState> LOCATION_STATE_MODEL = StandardModelFactories
+            .of(S3Link.Factory.of(null))
+            .getTableFactory(DynamoDBMapperConfig.DEFAULT)
+            .getTable(LocationState.class);
+
     private final int totalSegments = 2;
 
     private LocationStateDynamoDBHelper locationStateDynamoDBHelper;
@@ -47,40 +89,163 @@ public class DDBBasedLocationStateInfoHandler implements LocationStateInfoHandle
 
     private MWSHelper mwsHelper;
 
+    // LocationState by location name, empty if the location doesn't exist, null if caching is disabled
+    private final Cache<String, Optional<LocationState>> locationStateCache;
+
+    private final ExecutorService dependencyExecutor;
+    private final long operationalCheckTimeoutMillis;
+
     private final Pattern locationNameRegex = Pattern.compile("^(?<location>[A-Za-z]+-[A-Za-z]+[0-9]+(?:(?:-[fF][0-9]+-)|(?:-[dD])|(?:-)))(?<stack>[0-9]+)$");
 
     public DDBBasedLocationStateInfoHandler(@NonNull LocationStateDynamoDBHelper locationStateDynamoDBHelper) {
         this.locationStateDynamoDBHelper = locationStateDynamoDBHelper;
         this.activeMitigationsHelper = null;
         this.mwsHelper = null;
+        this.locationStateCache = buildLocationStateCache(DEFAULT_LOCATION_STATE_CACHE_TTL_MILLIS);
+        this.dependencyExecutor = newDependencyExecutor(DEFAULT_DEPENDENCY_EXECUTOR_THREADS,
+                DEFAULT_DEPENDENCY_EXECUTOR_QUEUE_SIZE);
+        this.operationalCheckTimeoutMillis = DEFAULT_OPERATIONAL_CHECK_TIMEOUT_MILLIS;
     }
 
-    @ConstructorProperties({ "locationStateDynamoDBHelper", "activeMitigationsHelper", "mwsHelper"})
     public DDBBasedLocationStateInfoHandler(@NonNull LocationStateDynamoDBHelper locationStateDynamoDBHelper,
                                             @NonNull ActiveMitigationsHelper activeMitigationsHelper,
                                             @NonNull MWSHelper mwsHelper) {
+        this(locationStateDynamoDBHelper, activeMitigationsHelper, mwsHelper, DEFAULT_LOCATION_STATE_CACHE_TTL_MILLIS);
+    }
+
+    /**
+     * @param locationStateCacheTtlMillis how long a LocationState read is reused, 0 to always read the table.
+     */
+    @ConstructorProperties({ "locationStateDynamoDBHelper", "activeMitigationsHelper", "mwsHelper",
+            "locationStateCacheTtlMillis"})
+    public DDBBasedLocationStateInfoHandler(@NonNull LocationStateDynamoDBHelper locationStateDynamoDBHelper,
+                                            @NonNull ActiveMitigationsHelper activeMitigationsHelper,
+                                            @NonNull MWSHelper mwsHelper,
+                                            long locationStateCacheTtlMillis) {
+        this(locationStateDynamoDBHelper, activeMitigationsHelper, mwsHelper, locationStateCacheTtlMillis,
+                DEFAULT_OPERATIONAL_CHECK_TIMEOUT_MILLIS, DEFAULT_DEPENDENCY_EXECUTOR_THREADS,
+                DEFAULT_DEPENDENCY_EXECUTOR_QUEUE_SIZE);
+    }
+
+    /**
+     * @param locationStateCacheTtlMillis how long a LocationState read is reused, 0 to always read the table.
+     * @param operationalCheckTimeoutMillis how long an operational check waits for its remote calls.
+     * @param dependencyExecutorThreads threads running the remote calls of the operational checks.
+     * @param dependencyExecutorQueueSize remote calls waiting for a thread, past it they run on the request thread.
+     */
+    @ConstructorProperties({ "locationStateDynamoDBHelper", "activeMitigationsHelper", "mwsHelper",
+            "locationStateCacheTtlMillis", "operationalCheckTimeoutMillis", "dependencyExecutorThreads",
+            "dependencyExecutorQueueSize"})
+    public DDBBasedLocationStateInfoHandler(@NonNull LocationStateDynamoDBHelper locationStateDynamoDBHelper,
+                                            @NonNull ActiveMitigationsHelper activeMitigationsHelper,
+                                            @NonNull MWSHelper mwsHelper,
+                                            long locationStateCacheTtlMillis,
+                                            long operationalCheckTimeoutMillis,
+                                            int dependencyExecutorThreads,
+                                            int dependencyExecutorQueueSize) {
+        this(locationStateDynamoDBHelper, activeMitigationsHelper, mwsHelper, locationStateCacheTtlMillis,
+                newDependencyExecutor(dependencyExecutorThreads, dependencyExecutorQueueSize),
+                operationalCheckTimeoutMillis);
+    }
+
+    DDBBasedLocationStateInfoHandler(@NonNull LocationStateDynamoDBHelper locationStateDynamoDBHelper,
+                                     @NonNull ActiveMitigationsHelper activeMitigationsHelper,
+                                     @NonNull MWSHelper mwsHelper,
+                                     long locationStateCacheTtlMillis,
+                                     @NonNull ExecutorService dependencyExecutor,
+                                     long operationalCheckTimeoutMillis) {
+        Validate.isTrue(operationalCheckTimeoutMillis > 0, "operationalCheckTimeoutMillis must be positive");
         this.locationStateDynamoDBHelper = locationStateDynamoDBHelper;
         this.activeMitigationsHelper = activeMitigationsHelper;
         this.mwsHelper = mwsHelper;
+        this.locationStateCache = buildLocationStateCache(locationStateCacheTtlMillis);
+        this.dependencyExecutor = dependencyExecutor;
+        this.operationalCheckTimeoutMillis = operationalCheckTimeoutMillis;
+    }
+
+    private static ExecutorService newDependencyExecutor(int threads, int queueSize) {
+        Validate.isTrue(threads > 0, "dependencyExecutorThreads must be positive");
+        Validate.isTrue(queueSize > 0, "dependencyExecutorQueueSize must be positive");
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("LocationOperationalCheck-%d")
+                        .setDaemon(true)
+                        .build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static Cache<String, Optional<LocationState>> buildLocationStateCache(long ttlMillis) {
+        Validate.isTrue(ttlMillis >= 0, "locationStateCacheTtlMillis must not be negative");
+        if (ttlMillis == 0) {
+            return null;
+        }
+        return CacheBuilder.newBuilder()
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .build();
     }
 
     @Override
     public LocationState getLocationState(String location, TSDMetrics tsdMetrics) {
+        return getLocationState(location, false, tsdMetrics);
+    }
+
+    @Override
+    public LocationState getLocationState(String location, boolean bypassCache, TSDMetrics tsdMetrics) {
         Validate.notEmpty(location);
         Validate.notNull(tsdMetrics);
 
         try (TSDMetrics subMetrics = tsdMetrics.newSubMetrics("DDBBasedLocationStateInfoHandler.getLocationState")) {
+            boolean useCache = !bypassCache && locationStateCache != null;
+            // hits and misses only count reads which may use the cache, bypasses the ones which may not
+            subMetrics.addCount("LocationStateCacheBypass", bypassCache && locationStateCache != null ? 1 : 0);
+            if (useCache) {
+                Optional<LocationState> cached = locationStateCache.getIfPresent(location);
+                subMetrics.addCount("LocationStateCacheHit", cached != null ? 1 : 0);
+                subMetrics.addCount("LocationStateCacheMiss", cached != null ? 0 : 1);
+                if (cached != null) {
+                    return cached.map(DDBBasedLocationStateInfoHandler::copy).orElse(null);
+                }
+            }
+
+            LocationState locationState;
             try {
-                return locationStateDynamoDBHelper.getLocationState(location);
+                locationState = locationStateDynamoDBHelper.getLocationState(location);
             } catch (Exception ex) {
                 String msg = String.format("Caught Exception when querying with LocationName - %s", location);
                 LOG.warn(msg, ex);
                 subMetrics.addOne(DDB_QUERY_FAILURE_COUNT);
                 throw ex;
             }
+            // the caller may modify the state it gets, cache a copy
+            if (useCache) {
+                locationStateCache.put(location,
+                        Optional.ofNullable(locationState).map(DDBBasedLocationStateInfoHandler::copy));
+            }
+            return locationState;
         }
     }
 
+    /**
+     * LocationState has no copy constructor, copy all its attributes by converting it to an item and back.
+     */
+    static LocationState copy(LocationState locationState) {
+        return LOCATION_STATE_MODEL.unconvert(LOCATION_STATE_MODEL.convert(locationState));
+    }
+
+    @Override
+    public LocationState getLocationState(String location, LocationLookupContext context, TSDMetrics tsdMetrics) {
+        return getLocationState(location, false, context, tsdMetrics);
+    }
+
+    private LocationState getLocationState(String location, boolean bypassCache, LocationLookupContext context,
+                                           TSDMetrics tsdMetrics) {
+        return context.getLocationState(location, bypassCache, name -> bypassCache
+                ? getLocationState(name, true, tsdMetrics) : getLocationState(name, tsdMetrics));
+    }
+
     public BlackWatchLocation convertLocationState(LocationState in) {
         String locationBuildStatus = null;
 
@@ -133,7 +298,14 @@ public class DDBBasedLocationStateInfoHandler implements LocationStateInfoHandle
 
     private void updateLocationState(LocationState locationState, TSDMetrics tsdMetrics) {
         try (TSDMetrics subMetrics = tsdMetrics.newSubMetrics("DDBBasedLocationStateInfoHandler.updateLocationState")) {
-            locationStateDynamoDBHelper.updateLocationState(locationState);
+            try {
+                locationStateDynamoDBHelper.updateLocationState(locationState);
+            } finally {
+                // a failed conditional write means the cached state is stale as well
+                if (locationStateCache != null) {
+                    locationStateCache.invalidate(locationState.getLocationName());
+                }
+            }
         } catch (ConditionalCheckFailedException conditionEx) {
             String msg = String.format("Caught Condition Check Exception updating location: %s with state: %s",
                     locationState.getLocationName(), locationState);
@@ -189,7 +361,7 @@ public class DDBBasedLocationStateInfoHandler implements LocationStateInfoHandle
         Validate.notEmpty(reason);
 
         try(TSDMetrics subMetrics = tsdMetrics.newSubMetrics("DDBBasedLocationStateInfoHandler.updateBlackWatchLocationAdminIn")) {
-            LocationState ls = getLocationState(location, subMetrics);
+            LocationState ls = getLocationState(location, true, subMetrics);
 
             Map<String, LocationOperation> operationLocks = computeOperationLocks(ls, requestAdminIn, operationId, changeId, overrideLocks);
             boolean adminIn = operationLocks.isEmpty();
@@ -249,7 +421,7 @@ public class DDBBasedLocationStateInfoHandler implements LocationStateInfoHandle
                                                  List<String> relatedLinks, boolean createMissingHost,
                                                  TSDMetrics tsdMetrics) {
         try (TSDMetrics subMetrics = tsdMetrics.newSubMetrics("DDBBasedLocationStateInfoHandler.requestHostStatusChange")) {
-            LocationState locationState = getLocationState(location, tsdMetrics);
+            LocationState locationState = getLocationState(location, true, tsdMetrics);
 
             if (locationState.requestHostStatusChange(hostName, requestedStatus, changeReason, changeUser, changeHost,
                     relatedLinks, createMissingHost)) {
@@ -261,7 +433,12 @@ public class DDBBasedLocationStateInfoHandler implements LocationStateInfoHandle
     }
 
     public List<String> getPendingOperationLocks(String location, TSDMetrics tsdMetrics) {
-        LocationState locationState = getLocationState(location, tsdMetrics);
+        return getPendingOperationLocks(location, new LocationLookupContext(), tsdMetrics);
+    }
+
+    @Override
+    public List<String> getPendingOperationLocks(String location, LocationLookupContext context, TSDMetrics tsdMetrics) {
+        LocationState locationState = getLocationState(location, context, tsdMetrics);
         Map<String, LocationOperation> operationLocks = locationState.getOrCreateOperationLocksMap();
         List<String> pendingOperationLocks = new ArrayList<>();
         operationLocks.values().forEach(locationOperation -> pendingOperationLocks.add(locationOperation.getChangeId()));
@@ -276,8 +453,13 @@ public class DDBBasedLocationStateInfoHandler implements LocationStateInfoHandle
      */
     @Override
     public Map<String, String> getOperationChanges(String location, TSDMetrics tsdMetrics) {
+        return getOperationChanges(location, new LocationLookupContext(), tsdMetrics);
+    }
+
+    @Override
+    public Map<String, String> getOperationChanges(String location, LocationLookupContext context, TSDMetrics tsdMetrics) {
         LOG.info("Getting operation changes for location: " + location);
-        LocationState locationState = getLocationState(location, tsdMetrics);
+        LocationState locationState = getLocationState(location, context, tsdMetrics);
         Map<String, LocationOperation> operationLocks = locationState.getOrCreateOperationLocksMap();
         return operationLocks.entrySet().stream()
                 .collect(Collectors.toMap(
@@ -336,6 +518,12 @@ public class DDBBasedLocationStateInfoHandler implements LocationStateInfoHandle
      *         including a BlackWatchLocation representing currentLocation as well.
      */
     List<BlackWatchLocation> getAllBlackWatchLocationsProtectingTheSameNetwork(LocationState currentLocation, TSDMetrics tsdMetrics) {
+        return getAllBlackWatchLocationsProtectingTheSameNetwork(currentLocation, false, new LocationLookupContext(),
+                tsdMetrics);
+    }
+
+    private List<BlackWatchLocation> getAllBlackWatchLocationsProtectingTheSameNetwork(LocationState currentLocation,
+            boolean bypassCache, LocationLookupContext context, TSDMetrics tsdMetrics) {
         boolean locTypeStartsWithTc = Optional.of(currentLocation)
                 .map(LocationState::getLocationType)
                 .map(locType -> locType.startsWith("TC"))
@@ -344,7 +532,7 @@ public class DDBBasedLocationStateInfoHandler implements LocationStateInfoHandle
         if (locTypeStartsWithTc) {
             /* Only border/transit center locations protect resources in pairs */
             String locationPairName = locationPairName(currentLocation.getLocationName());
-            LocationState pairLocationState = getLocationState(locationPairName, tsdMetrics);
+            LocationState pairLocationState = getLocationState(locationPairName, bypassCache, context, tsdMetrics);
 
             if (pairLocationState != null) {
                 return Arrays.asList(convertLocationState(currentLocation), convertLocationState(pairLocationState));
@@ -356,10 +544,11 @@ public class DDBBasedLocationStateInfoHandler implements LocationStateInfoHandle
         return Collections.singletonList(convertLocationState(currentLocation));
     }
 
-    private boolean hasAnnouncedRoutes(String location, TSDMetrics tsdMetrics) {
+    private boolean hasAnnouncedRoutes(String location, LocationLookupContext context, TSDMetrics tsdMetrics) {
         double routeCount = 0;
         try {
-            List<Datapoint> datapoints = mwsHelper.getBGPTotalAnnouncements(location, tsdMetrics);
+            List<Datapoint> datapoints = context.getBGPTotalAnnouncements(location,
+                    name -> mwsHelper.getBGPTotalAnnouncements(name, tsdMetrics));
             if (datapoints.size() < DATAPOINTS_TO_BE_EVALUATED) {
                 throw new IllegalStateException("Last two datapoints for the location: " + location + " not found");
             }
@@ -392,19 +581,190 @@ public class DDBBasedLocationStateInfoHandler implements LocationStateInfoHandle
         return isOperational;
     }
 
-    private boolean isLocationOperational(String location, List<BlackWatchLocation> allStacksAtLocation, TSDMetrics tsdMetrics)
+    private interface MeteredCall {
+        boolean call(TSDMetrics tsdMetrics) throws Exception;
+    }
+
+    /**
+     * A remote call of an operational check, running on the dependency executor with its own metrics, since
+     * metrics are not shared between threads. Whoever claims the call first ends its metrics: the call itself
+     * once it ran, or cancel when the call never started.
+     */
+    private static class DependencyCall {
+        private final TSDMetrics tsdMetrics;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final Future<Boolean> result;
+
+        private DependencyCall(ExecutorService executor, TSDMetrics tsdMetrics, MeteredCall call) {
+            this.tsdMetrics = tsdMetrics;
+            this.result = executor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    // cancelled before it started
+                    return false;
+                }
+                try {
+                    return call.call(tsdMetrics);
+                } finally {
+                    tsdMetrics.end();
+                }
+            });
+        }
+
+        private void cancel() {
+            result.cancel(true);
+            if (claimed.compareAndSet(false, true)) {
+                tsdMetrics.end();
+            }
+        }
+    }
+
+    /**
+     * Remote calls of an operational check, running on the dependency executor.
+     */
+    private static class OperationalCheck {
+        private final String location;
+        private final DependencyCall areRoutesAnnounced;
+        private final DependencyCall hasExpectedMitigations;
+        private LocationState locationState;
+
+        private OperationalCheck(String location, DependencyCall areRoutesAnnounced,
+                                 DependencyCall hasExpectedMitigations) {
+            this.location = location;
+            this.areRoutesAnnounced = areRoutesAnnounced;
+            this.hasExpectedMitigations = hasExpectedMitigations;
+        }
+
+        private void cancel() {
+            areRoutesAnnounced.cancel();
+            hasExpectedMitigations.cancel();
+        }
+    }
+
+    private boolean hasExpectedMitigations(String location, List<BlackWatchLocation> allStacksAtLocation,
+            TSDMetrics tsdMetrics) throws ExternalDependencyException {
+        boolean succeeded = false;
+        try {
+            boolean hasExpectedMitigations = activeMitigationsHelper.hasExpectedMitigations(
+                    DeviceName.BLACKWATCH_BORDER, allStacksAtLocation, location);
+            succeeded = true;
+            tsdMetrics.addCount("HasExpectedMitigations", hasExpectedMitigations ? 1 : 0);
+            return hasExpectedMitigations;
+        } finally {
+            tsdMetrics.addCount("ExpectedMitigationsCheckFailure", succeeded ? 0 : 1);
+        }
+    }
+
+    /**
+     * Start the remote calls of the check, then read the location state on the calling thread meanwhile.
+     */
+    private OperationalCheck startOperationalCheck(String location, List<BlackWatchLocation> allStacksAtLocation,
+            boolean bypassCache, LocationLookupContext context, TSDMetrics tsdMetrics) {
+        OperationalCheck check = new OperationalCheck(location,
+                new DependencyCall(dependencyExecutor,
+                        tsdMetrics.newSubMetrics("DDBBasedLocationStateInfoHandler.hasAnnouncedRoutes"),
+                        routesMetrics -> hasAnnouncedRoutes(location, context, routesMetrics)),
+                new DependencyCall(dependencyExecutor,
+                        tsdMetrics.newSubMetrics("DDBBasedLocationStateInfoHandler.hasExpectedMitigations"),
+                        mitigationsMetrics -> hasExpectedMitigations(location, allStacksAtLocation,
+                                mitigationsMetrics)));
+        try {
+            check.locationState = getLocationState(location, bypassCache, context, tsdMetrics);
+        } catch (RuntimeException ex) {
+            check.cancel();
+            throw ex;
+        }
+        return check;
+    }
+
+    /**
+     * Wait for the checks until the deadline. As soon as one location is not operational the result is decided,
+     * so the checks still running are cancelled, as they are when one of them fails or the deadline passes.
+     * @return whether all the locations are operational.
+     */
+    private boolean finishOperationalChecks(List<OperationalCheck> checks, long deadlineMillis, TSDMetrics tsdMetrics)
             throws ExternalDependencyException {
-        LocationState locationState = getLocationState(location, tsdMetrics);
-        boolean areRoutesAnnounced = hasAnnouncedRoutes(location, tsdMetrics);
-        boolean hasExpectedMitigations = activeMitigationsHelper.hasExpectedMitigations(DeviceName.BLACKWATCH_BORDER, allStacksAtLocation, location);
-        return evaluateOperationalFlags(locationState, areRoutesAnnounced, hasExpectedMitigations);
+        long startTime = System.currentTimeMillis();
+        boolean timedOut = false;
+        try {
+            // an out of service location is not operational whatever its dependencies return
+            for (OperationalCheck check : checks) {
+                if (isOutOfService(check.locationState)) {
+                    LOG.info("Location: " + check.location + " is AdminIn but not InService, so not operational");
+                    tsdMetrics.addOne("OperationalCheckShortCircuit");
+                    return false;
+                }
+            }
+            for (OperationalCheck check : checks) {
+                boolean areRoutesAnnounced = awaitDependency(check.areRoutesAnnounced.result, check.location,
+                        deadlineMillis);
+                boolean hasExpectedMitigations = awaitDependency(check.hasExpectedMitigations.result, check.location,
+                        deadlineMillis);
+                if (!evaluateOperationalFlags(check.locationState, areRoutesAnnounced, hasExpectedMitigations)) {
+                    tsdMetrics.addOne("OperationalCheckShortCircuit");
+                    return false;
+                }
+            }
+            tsdMetrics.addZero("OperationalCheckShortCircuit");
+            return true;
+        } catch (ExternalDependencyException ex) {
+            timedOut = ex.getCause() instanceof TimeoutException;
+            throw ex;
+        } finally {
+            // no-op for the calls which already completed
+            checks.forEach(OperationalCheck::cancel);
+            tsdMetrics.addCount("OperationalCheckWaitMillis", System.currentTimeMillis() - startTime);
+            tsdMetrics.addCount("OperationalCheckTimeout", timedOut ? 1 : 0);
+        }
+    }
+
+    /**
+     * Mirrors evaluateOperationalFlags: an AdminIn location needs to be InService to be operational.
+     */
+    private static boolean isOutOfService(LocationState locationState) {
+        return locationState.getAdminIn() && !locationState.getInService();
+    }
+
+    private static boolean awaitDependency(Future<Boolean> dependency, String location, long deadlineMillis)
+            throws ExternalDependencyException {
+        try {
+            return dependency.get(Math.max(0, deadlineMillis - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            String msg = "Timed out checking whether location: " + location + " is operational";
+            LOG.warn(msg);
+            throw new ExternalDependencyException(msg, ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted checking whether location: " + location + " is operational", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof ExternalDependencyException) {
+                throw (ExternalDependencyException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
     }
 
     @Override
     public boolean validateOtherStacksInService(String location, TSDMetrics tsdMetrics) throws ExternalDependencyException {
+        LocationLookupContext context = new LocationLookupContext();
+        try {
+            return validateOtherStacksInService(location, context, tsdMetrics);
+        } finally {
+            context.addMetrics(tsdMetrics);
+        }
+    }
+
+    @Override
+    public boolean validateOtherStacksInService(String location, LocationLookupContext context, TSDMetrics tsdMetrics)
+            throws ExternalDependencyException {
         LOG.info("Validating if other stacks are in service for location: " + location);
-        LocationState locationState = getLocationState(location, tsdMetrics);
-        List<BlackWatchLocation> allStacksAtLocation = getAllBlackWatchLocationsProtectingTheSameNetwork(locationState, tsdMetrics);
+        // decides whether this stack may be taken out, so it must not act on another host's stale view
+        LocationState locationState = getLocationState(location, true, context, tsdMetrics);
+        List<BlackWatchLocation> allStacksAtLocation = getAllBlackWatchLocationsProtectingTheSameNetwork(locationState, true,
+                context, tsdMetrics);
         boolean otherStackinService = allStacksAtLocation.size() > 1 ? true : false;
         LOG.info("Stacks at this location: " + allStacksAtLocation.toString());
         for (BlackWatchLocation stack : allStacksAtLocation) {
@@ -412,26 +772,54 @@ public class DDBBasedLocationStateInfoHandler implements LocationStateInfoHandle
              * This is intermediate check when request to take a stack out arrives while other stack
              * is being taken out (other stack: AdminIn = false, but InService true).
              */
-            if(!stack.getLocation().equals(location)) {
-                if ( !stack.isAdminIn()) {
-                    return false;
+            if(!stack.getLocation().equals(location) && !stack.isAdminIn()) {
+                return false;
+            }
+        }
+        if (!otherStackinService) {
+            return false;
+        }
+
+        // check the other stacks at once, the request waits for the slowest dependency only
+        long deadlineMillis = System.currentTimeMillis() + operationalCheckTimeoutMillis;
+        List<OperationalCheck> checks = new ArrayList<>();
+        try {
+            for (BlackWatchLocation stack : allStacksAtLocation) {
+                if (!stack.getLocation().equals(location)) {
+                    checks.add(startOperationalCheck(stack.getLocation(), allStacksAtLocation, true, context,
+                            tsdMetrics));
                 }
-                otherStackinService = otherStackinService 
-                        && isLocationOperational(stack.getLocation(), allStacksAtLocation, tsdMetrics);
             }
+        } catch (RuntimeException ex) {
+            checks.forEach(OperationalCheck::cancel);
+            throw ex;
         }
-        return otherStackinService;
+        return finishOperationalChecks(checks, deadlineMillis, tsdMetrics);
     }
 
     @Override
     public boolean checkIfLocationIsOperational(String location, TSDMetrics tsdMetrics) throws ExternalDependencyException {
+        LocationLookupContext context = new LocationLookupContext();
+        try {
+            return checkIfLocationIsOperational(location, context, tsdMetrics);
+        } finally {
+            context.addMetrics(tsdMetrics);
+        }
+    }
+
+    @Override
+    public boolean checkIfLocationIsOperational(String location, LocationLookupContext context, TSDMetrics tsdMetrics)
+            throws ExternalDependencyException {
         LOG.info("Checking if location: " + location + ", is operational.");
-        LocationState locationState = getLocationState(location, tsdMetrics);
+        LocationState locationState = getLocationState(location, context, tsdMetrics);
         if (location.toLowerCase().startsWith("be")) {
             return locationState.getInService();
         }
         else {
-            List<BlackWatchLocation> allStacksAtLocation = getAllBlackWatchLocationsProtectingTheSameNetwork(locationState, tsdMetrics);
-            return isLocationOperational(location, allStacksAtLocation, tsdMetrics); }
+            List<BlackWatchLocation> allStacksAtLocation = getAllBlackWatchLocationsProtectingTheSameNetwork(locationState,
+                    false, context, tsdMetrics);
+            long deadlineMillis = System.currentTimeMillis() + operationalCheckTimeoutMillis;
+            OperationalCheck check = startOperationalCheck(location, allStacksAtLocation, false, context, tsdMetrics);
+            return finishOperationalChecks(Collections.singletonList(check), deadlineMillis, tsdMetrics); }
     }
 }
@@ -0,0 +1,118 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.annotation.concurrent.Immutable;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import org.apache.commons.lang3.Validate;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * When each mitigation last changed, as observed by a MitigationStateSnapshotProvider following the table
+ * stream or diffing periodic scans, so clients can ask for the mitigations created, modified or deleted since a
+ * point in time instead of listing the whole table.
+ *
+ * Changes are stamped with the time of the poll or scan which observed them, which is also the watermark of the
+ * log: every change made before the watermark is in the log. Stamps are taken from the clock of the
+ * host, and a watermark issued by one host may be used on another, so changes are looked up with
+ * CLOCK_SKEW_MILLIS of overlap. Clients see some changes twice, never miss one.
+ *
+ * The log only covers the time since the provider started tracking changes, and changes older than the
+ * retention are dropped. Earlier points in time are not covered and require a full listing.
+ */
+@Immutable
+public final class MitigationChangeLog {
+    public static final long CLOCK_SKEW_MILLIS = 5000;
+
+    // start of the covered time
+    @Getter
+    private final long trackedSinceMillis;
+    // every change before this time is in the log
+    @Getter
+    private final long watermarkMillis;
+    private final ImmutableMap<String, Long> changedAtMillisById;
+    private final ImmutableMap<String, Long> deletedAtMillisById;
+
+    private MitigationChangeLog(long trackedSinceMillis, long watermarkMillis,
+                                Map<String, Long> changedAtMillisById, Map<String, Long> deletedAtMillisById) {
+        this.trackedSinceMillis = trackedSinceMillis;
+        this.watermarkMillis = watermarkMillis;
+        this.changedAtMillisById = ImmutableMap.copyOf(changedAtMillisById);
+        this.deletedAtMillisById = ImmutableMap.copyOf(deletedAtMillisById);
+    }
+
+    /**
+     * @return an empty log covering the time from startMillis, when the provider started tracking changes.
+     */
+    public static MitigationChangeLog startingAt(long startMillis) {
+        return new MitigationChangeLog(startMillis, startMillis, ImmutableMap.of(), ImmutableMap.of());
+    }
+
+    /**
+     * @param deletedById for every changed mitigation, whether it was deleted.
+     * @param observedAtMillis start of the poll which observed the changes, the new watermark.
+     * @param retentionMillis changes older than this are dropped and no longer covered.
+     */
+    public MitigationChangeLog record(@NonNull Map<String, Boolean> deletedById, long observedAtMillis,
+                                      long retentionMillis) {
+        Validate.isTrue(retentionMillis > 0, "retentionMillis must be positive");
+        long horizon = observedAtMillis - retentionMillis;
+        ImmutableMap.Builder<String, Long> changed = ImmutableMap.builder();
+        ImmutableMap.Builder<String, Long> deleted = ImmutableMap.builder();
+        changedAtMillisById.forEach((mitigationId, changedAt) -> {
+            if (changedAt >= horizon && !deletedById.containsKey(mitigationId)) {
+                changed.put(mitigationId, changedAt);
+            }
+        });
+        deletedAtMillisById.forEach((mitigationId, deletedAt) -> {
+            if (deletedAt >= horizon && !deletedById.containsKey(mitigationId)) {
+                deleted.put(mitigationId, deletedAt);
+            }
+        });
+        deletedById.forEach((mitigationId, isDeleted) ->
+                (isDeleted ? deleted : changed).put(mitigationId, observedAtMillis));
+
+        return new MitigationChangeLog(Math.max(trackedSinceMillis, horizon),
+                Math.max(watermarkMillis, observedAtMillis), changed.build(), deleted.build());
+    }
+
+    /**
+     * @return whether every change since the given time is in the log.
+     */
+    public boolean covers(long sinceMillis) {
+        return sinceMillis - CLOCK_SKEW_MILLIS >= trackedSinceMillis;
+    }
+
+    /**
+     * @return mitigations created or modified since the given time and not deleted afterwards.
+     */
+    public Set<String> getChangedSince(long sinceMillis) {
+        return since(changedAtMillisById, sinceMillis);
+    }
+
+    /**
+     * @return mitigations deleted since the given time and not created again afterwards.
+     */
+    public Set<String> getDeletedSince(long sinceMillis) {
+        return since(deletedAtMillisById, sinceMillis);
+    }
+
+    public int size() {
+        return changedAtMillisById.size() + deletedAtMillisById.size();
+    }
+
+    private static Set<String> since(Map<String, Long> changesById, long sinceMillis) {
+        Validate.isTrue(sinceMillis > 0, "sinceMillis must be positive");
+        long from = sinceMillis - CLOCK_SKEW_MILLIS;
+        return changesById.entrySet().stream()
+                .filter(entry -> entry.getValue() >= from)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+}
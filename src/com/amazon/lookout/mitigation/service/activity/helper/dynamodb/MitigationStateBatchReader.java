@@ -0,0 +1,117 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import java.beans.ConstructorProperties;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import lombok.NonNull;
+
+import org.apache.commons.lang3.Validate;
+
+import com.amazon.blackwatch.mitigation.state.model.MitigationState;
+import com.amazon.blackwatch.mitigation.state.model.ResourceAllocationState;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+/**
+ * Reads many ResourceAllocationState or MitigationState items with BatchGetItem.
+ *
+ * Keys are read in requests of up to 100 items, unprocessed keys are read again. Mitigations are decoded with
+ * MitigationStateCodec before they are unmarshalled, like every other reader of the table.
+ */
+public class MitigationStateBatchReader {
+    // BatchGetItem limit
+    static final int MAX_KEYS_PER_REQUEST = 100;
+    static final int MAX_ATTEMPTS = 5;
+    private static final long RETRY_BACKOFF_MILLIS = 50;
+
+    // hash key of the resource allocation table
+    private static final String RESOURCE_ALLOCATION_HASH_KEY = "resourceId";
+
+    private final AmazonDynamoDB dynamoDBClient;
+    private final DynamoDBMapper mapper;
+    private final String mitigationStateTableName;
+    private final String resourceAllocationStateTableName;
+
+    @ConstructorProperties({"dynamoDBClient", "mitigationStateTableName", "resourceAllocationStateTableName"})
+    public MitigationStateBatchReader(@NonNull AmazonDynamoDB dynamoDBClient, @NonNull String mitigationStateTableName,
+                                      @NonNull String resourceAllocationStateTableName) {
+        Validate.notEmpty(mitigationStateTableName);
+        Validate.notEmpty(resourceAllocationStateTableName);
+        this.dynamoDBClient = dynamoDBClient;
+        this.mapper = new DynamoDBMapper(dynamoDBClient);
+        this.mitigationStateTableName = mitigationStateTableName;
+        this.resourceAllocationStateTableName = resourceAllocationStateTableName;
+    }
+
+    /**
+     * @return allocations by resourceId, resources without an allocation are absent.
+     */
+    public Map<String, ResourceAllocationState> getResourceAllocationStates(@NonNull Collection<String> resourceIds) {
+        return load(resourceAllocationStateTableName, RESOURCE_ALLOCATION_HASH_KEY, resourceIds).stream()
+                .map(item -> mapper.marshallIntoObject(ResourceAllocationState.class, item))
+                .collect(Collectors.toMap(ResourceAllocationState::getResourceId, Function.identity(), (a, b) -> a));
+    }
+
+    /**
+     * @return mitigations by mitigationId, unknown mitigations are absent.
+     */
+    public Map<String, MitigationState> getMitigationStates(@NonNull Collection<String> mitigationIds) {
+        return load(mitigationStateTableName, MitigationState.MITIGATION_ID_KEY, mitigationIds).stream()
+                .map(item -> mapper.marshallIntoObject(MitigationState.class, MitigationStateCodec.decode(item)))
+                .collect(Collectors.toMap(MitigationState::getMitigationId, Function.identity(), (a, b) -> a));
+    }
+
+    private List<Map<String, AttributeValue>> load(String tableName, String hashKeyName,
+            Collection<String> hashKeys) {
+        if (hashKeys.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Map<String, AttributeValue>> items = new ArrayList<>(hashKeys.size());
+        for (List<String> chunk : Lists.partition(new ArrayList<>(new LinkedHashSet<>(hashKeys)),
+                MAX_KEYS_PER_REQUEST)) {
+            KeysAndAttributes keys = new KeysAndAttributes()
+                    .withConsistentRead(true)
+                    .withKeys(chunk.stream()
+                            .map(key -> ImmutableMap.of(hashKeyName, new AttributeValue(key)))
+                            .collect(Collectors.toList()));
+            Map<String, KeysAndAttributes> requestItems = ImmutableMap.of(tableName, keys);
+            for (int attempt = 1; !requestItems.isEmpty(); ++attempt) {
+                if (attempt > MAX_ATTEMPTS) {
+                    throw new IllegalStateException(String.format("Could not read %d keys of table %s after %d attempts",
+                            requestItems.get(tableName).getKeys().size(), tableName, MAX_ATTEMPTS));
+                }
+                if (attempt > 1) {
+                    backOff(attempt);
+                }
+                BatchGetItemResult result = dynamoDBClient.batchGetItem(
+                        new BatchGetItemRequest().withRequestItems(requestItems));
+                items.addAll(result.getResponses().getOrDefault(tableName, Collections.emptyList()));
+                requestItems = result.getUnprocessedKeys() == null
+                        ? Collections.emptyMap() : result.getUnprocessedKeys();
+            }
+        }
+        return items;
+    }
+
+    private static void backOff(int attempt) {
+        try {
+            Thread.sleep(RETRY_BACKOFF_MILLIS << (attempt - 2));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted reading unprocessed keys", ex);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import lombok.NonNull;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Reads the large attributes of a MitigationState, the settings JSON and the per location states, stored as
+ * gzipped binary values.
+ *
+ * A compressed value is a B attribute starting with FORMAT_MARKER, then the format of the payload:
+ * - FORMAT_GZIP_STRING: the gzipped UTF-8 bytes of an S value;
+ * - FORMAT_GZIP_ATTRIBUTE_VALUE: any other value, gzipped in the binary form read by readValue.
+ *
+ * Values in the legacy plain form are returned unchanged, so the readers of this service decode before any
+ * writer compresses. This service has no compressing writer: the mapper based reads of
+ * MitigationStateDynamoDBHelper and the workers don't decode, and a targeted update of one location can't be
+ * applied to a compressed locationMitigationState. A writer can only be added once all of them handle the
+ * compressed form.
+ *
+ * Decode items before handing them to DynamoDBMapper.marshallIntoObject: the mapper only accepts the plain form.
+ */
+public class MitigationStateCodec {
+    public static final String MITIGATION_SETTINGS_JSON_KEY = "mitigationSettingsJSON";
+    public static final String LOCATION_MITIGATION_STATE_KEY = "locationMitigationState";
+    public static final Set<String> COMPRESSIBLE_ATTRIBUTES = ImmutableSet.of(
+            MITIGATION_SETTINGS_JSON_KEY, LOCATION_MITIGATION_STATE_KEY);
+
+    static final byte FORMAT_MARKER = (byte) 0xC5;
+    static final byte FORMAT_GZIP_STRING = 1;
+    static final byte FORMAT_GZIP_ATTRIBUTE_VALUE = 2;
+
+    // types in the binary form of a value, also written by the tests
+    static final byte TYPE_S = 1;
+    static final byte TYPE_N = 2;
+    static final byte TYPE_B = 3;
+    static final byte TYPE_BOOL = 4;
+    static final byte TYPE_NULL = 5;
+    static final byte TYPE_M = 6;
+    static final byte TYPE_L = 7;
+    static final byte TYPE_SS = 8;
+    static final byte TYPE_NS = 9;
+    static final byte TYPE_BS = 10;
+
+    /**
+     * @return the item with its compressed attributes in the plain form, the item itself if none is compressed.
+     */
+    public static Map<String, AttributeValue> decode(@NonNull Map<String, AttributeValue> item) {
+        Map<String, AttributeValue> decoded = null;
+        for (String name : COMPRESSIBLE_ATTRIBUTES) {
+            AttributeValue value = item.get(name);
+            if (isCompressed(value)) {
+                if (decoded == null) {
+                    decoded = new HashMap<>(item);
+                }
+                decoded.put(name, decode(value));
+            }
+        }
+        return decoded == null ? item : decoded;
+    }
+
+    /**
+     * @return the plain form of a value, the value itself if it isn't compressed.
+     */
+    public static AttributeValue decode(AttributeValue value) {
+        if (!isCompressed(value)) {
+            return value;
+        }
+        ByteBuffer buffer = value.getB().duplicate();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        byte format = bytes[1];
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(bytes, 2, bytes.length - 2))) {
+            switch (format) {
+                case FORMAT_GZIP_STRING:
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    byte[] chunk = new byte[4096];
+                    int read;
+                    while ((read = gzip.read(chunk)) > 0) {
+                        out.write(chunk, 0, read);
+                    }
+                    return new AttributeValue().withS(new String(out.toByteArray(), StandardCharsets.UTF_8));
+                case FORMAT_GZIP_ATTRIBUTE_VALUE:
+                    return readValue(new DataInputStream(gzip));
+                default:
+                    throw new IllegalArgumentException("Unknown compressed attribute format " + format);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    static boolean isCompressed(AttributeValue value) {
+        if (value == null || value.getB() == null) {
+            return false;
+        }
+        ByteBuffer buffer = value.getB();
+        return buffer.remaining() > 2 && buffer.get(buffer.position()) == FORMAT_MARKER;
+    }
+
+    private static AttributeValue readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case TYPE_S:
+                return new AttributeValue().withS(readString(in));
+            case TYPE_N:
+                return new AttributeValue().withN(readString(in));
+            case TYPE_B:
+                return new AttributeValue().withB(readBytes(in));
+            case TYPE_BOOL:
+                return new AttributeValue().withBOOL(in.readBoolean());
+            case TYPE_NULL:
+                return new AttributeValue().withNULL(true);
+            case TYPE_M:
+                int entries = in.readInt();
+                Map<String, AttributeValue> map = new LinkedHashMap<>(entries * 2);
+                for (int i = 0; i < entries; ++i) {
+                    String key = readString(in);
+                    map.put(key, readValue(in));
+                }
+                return new AttributeValue().withM(map);
+            case TYPE_L:
+                int elements = in.readInt();
+                List<AttributeValue> list = new ArrayList<>(elements);
+                for (int i = 0; i < elements; ++i) {
+                    list.add(readValue(in));
+                }
+                return new AttributeValue().withL(list);
+            case TYPE_SS:
+                return new AttributeValue().withSS(readStrings(in));
+            case TYPE_NS:
+                return new AttributeValue().withNS(readStrings(in));
+            case TYPE_BS:
+                int buffers = in.readInt();
+                List<ByteBuffer> bs = new ArrayList<>(buffers);
+                for (int i = 0; i < buffers; ++i) {
+                    bs.add(readBytes(in));
+                }
+                return new AttributeValue().withBS(bs);
+            default:
+                throw new IllegalArgumentException("Unknown attribute value type " + type);
+        }
+    }
+
+    // length prefixed UTF-8
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> strings = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            strings.add(readString(in));
+        }
+        return strings;
+    }
+
+    private static ByteBuffer readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+}
@@ -0,0 +1,146 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import java.beans.ConstructorProperties;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import lombok.NonNull;
+
+import org.apache.commons.lang3.Validate;
+
+import com.amazon.blackwatch.mitigation.state.model.MitigationState;
+import com.amazon.lookout.mitigation.service.activity.helper.dynamodb.PaginatedMitigationStateScanner.MitigationStatePage;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Global secondary index on the MitigationState table keyed by ownerARN.
+ *
+ * The index must project all attributes, the items returned by a query are converted to
+ * MitigationState without going back to the table.
+ */
+public class MitigationStateOwnerIndex {
+    private static final int MIN_ITEMS_PER_READ = 25;
+    private static final int MAX_ITEMS_PER_READ = 1000;
+
+    private final AmazonDynamoDB dynamoDBClient;
+    private final String mitigationStateTableName;
+    private final String ownerIndexName;
+    private final DynamoDBMapper mapper;
+
+    @ConstructorProperties({"dynamoDBClient", "mitigationStateTableName", "ownerIndexName"})
+    public MitigationStateOwnerIndex(@NonNull AmazonDynamoDB dynamoDBClient, @NonNull String mitigationStateTableName,
+                                     @NonNull String ownerIndexName) {
+        Validate.notEmpty(mitigationStateTableName);
+        Validate.notEmpty(ownerIndexName);
+        this.dynamoDBClient = dynamoDBClient;
+        this.mitigationStateTableName = mitigationStateTableName;
+        this.ownerIndexName = ownerIndexName;
+        this.mapper = new DynamoDBMapper(dynamoDBClient);
+    }
+
+    /**
+     * @return all mitigations owned by ownerARN, in index order.
+     */
+    public List<MitigationState> getMitigationStatesByOwner(@NonNull String ownerARN) {
+        return getMitigationStatesByOwner(ownerARN, null);
+    }
+
+    /**
+     * @param attributeNames attributes to read, null for all attributes.
+     * @return all mitigations owned by ownerARN, in index order, with only the requested attributes.
+     */
+    public List<MitigationState> getMitigationStatesByOwner(@NonNull String ownerARN, List<String> attributeNames) {
+        List<MitigationState> mitigationStates = new ArrayList<>();
+        Map<String, AttributeValue> lastEvaluatedKey = null;
+        do {
+            QueryResult result = dynamoDBClient.query(buildQuery(ownerARN, attributeNames)
+                    .withExclusiveStartKey(lastEvaluatedKey));
+            result.getItems().forEach(item -> mitigationStates.add(
+                    mapper.marshallIntoObject(MitigationState.class, MitigationStateCodec.decode(item))));
+            lastEvaluatedKey = result.getLastEvaluatedKey();
+        } while (lastEvaluatedKey != null && !lastEvaluatedKey.isEmpty());
+        return mitigationStates;
+    }
+
+    /**
+     * Read the next page of the mitigations owned by ownerARN which match the filter, in index order. Each read
+     * is limited to what is still missing from the page.
+     *
+     * @param attributeNames attributes to read, must include the mitigationId, null for all attributes.
+     * @param exclusiveStartMitigationId mitigationId the previous page ended after, null for the first page.
+     * @return the page, whose nextToken is the mitigationId the next page starts after, null once every
+     * mitigation of the owner was read.
+     */
+    public MitigationStatePage getMitigationStatePageByOwner(@NonNull String ownerARN, List<String> attributeNames,
+                                                             @NonNull Predicate<MitigationState> filter, long maxItems,
+                                                             String exclusiveStartMitigationId) {
+        Validate.isTrue(maxItems > 0, "maxItems must be positive");
+        Validate.isTrue(attributeNames == null || attributeNames.contains(MitigationState.MITIGATION_ID_KEY),
+                "The mitigationId is needed to resume the query");
+
+        List<MitigationState> mitigationStates = new ArrayList<>();
+        Map<String, AttributeValue> startKey = exclusiveStartMitigationId == null ? null : ImmutableMap.of(
+                MitigationState.OWNER_ARN_KEY, new AttributeValue(ownerARN),
+                MitigationState.MITIGATION_ID_KEY, new AttributeValue(exclusiveStartMitigationId));
+        while (true) {
+            long missing = maxItems - mitigationStates.size();
+            QueryResult result = dynamoDBClient.query(buildQuery(ownerARN, attributeNames)
+                    .withLimit((int) Math.min(MAX_ITEMS_PER_READ, Math.max(MIN_ITEMS_PER_READ, missing)))
+                    .withExclusiveStartKey(startKey));
+
+            String lastRead = null;
+            for (Map<String, AttributeValue> item : result.getItems()) {
+                if (mitigationStates.size() == maxItems) {
+                    // page is full in the middle of this read, resume right after the last item looked at
+                    return new MitigationStatePage(mitigationStates, lastRead);
+                }
+                MitigationState mitigationState = mapper.marshallIntoObject(MitigationState.class,
+                        MitigationStateCodec.decode(item));
+                lastRead = mitigationState.getMitigationId();
+                if (filter.test(mitigationState)) {
+                    mitigationStates.add(mitigationState);
+                }
+            }
+
+            startKey = result.getLastEvaluatedKey();
+            if (startKey == null || startKey.isEmpty()) {
+                return new MitigationStatePage(mitigationStates, null);
+            }
+            if (mitigationStates.size() == maxItems) {
+                return new MitigationStatePage(mitigationStates,
+                        startKey.get(MitigationState.MITIGATION_ID_KEY).getS());
+            }
+        }
+    }
+
+    private QueryRequest buildQuery(String ownerARN, List<String> attributeNames) {
+        Map<String, String> expressionAttributeNames = new HashMap<>();
+        expressionAttributeNames.put("#owner", MitigationState.OWNER_ARN_KEY);
+        String projectionExpression = null;
+        if (attributeNames != null) {
+            List<String> placeholders = new ArrayList<>();
+            for (String attributeName : attributeNames) {
+                String placeholder = "#p" + placeholders.size();
+                expressionAttributeNames.put(placeholder, attributeName);
+                placeholders.add(placeholder);
+            }
+            projectionExpression = String.join(", ", placeholders);
+        }
+
+        return new QueryRequest()
+                .withTableName(mitigationStateTableName)
+                .withIndexName(ownerIndexName)
+                .withKeyConditionExpression("#owner = :owner")
+                .withProjectionExpression(projectionExpression)
+                .withExpressionAttributeNames(expressionAttributeNames)
+                .withExpressionAttributeValues(ImmutableMap.of(":owner", new AttributeValue(ownerARN)));
+    }
+}
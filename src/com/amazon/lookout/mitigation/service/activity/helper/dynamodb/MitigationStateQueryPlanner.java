@@ -0,0 +1,353 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazon.aws158.commons.metric.TSDMetrics;
+import com.amazon.blackwatch.mitigation.state.model.MitigationState;
+import com.amazon.blackwatch.mitigation.state.model.ResourceAllocationState;
+import com.amazon.blackwatch.mitigation.state.storage.MitigationStateDynamoDBHelper;
+import com.amazon.blackwatch.mitigation.state.storage.ResourceAllocationStateDynamoDBHelper;
+import com.amazon.lookout.mitigation.service.activity.helper.dynamodb.PaginatedMitigationStateScanner.MitigationStatePage;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
+import com.amazonaws.services.dynamodbv2.model.Condition;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Picks the cheapest access path to the MitigationState table for a ListBlackWatchMitigations query.
+ *
+ * In order of preference:
+ * - mitigationId: GetItem on the hash key.
+ * - resourceId: GetItem of every mitigation of the resource, if a snapshot provider is configured. The
+ *   mitigations of a resource are the ones the MitigationState snapshot has for it, including rows kept after
+ *   their allocation was released or moved to a newer mitigation, plus the mitigation its ResourceAllocationState
+ *   points to, which covers a mitigation created since the snapshot.
+ * - ownerARN: query on the owner GSI, if one is configured.
+ * - otherwise: filtered parallel scan.
+ *
+ * Predicates not used by the access path are applied to the returned items, so every plan returns the same
+ * mitigations as the filtered scan would. The resourceId lookup falls back to the scan when the snapshot is
+ * older than MAX_RESOURCE_LOOKUP_SNAPSHOT_AGE_MILLIS: it would miss a mitigation created after the snapshot
+ * whose allocation was already released, and an allocation is only released once its mitigation was
+ * deactivated and withdrawn from the locations, which takes longer than that.
+ */
+@RequiredArgsConstructor
+public class MitigationStateQueryPlanner {
+    private static final Log LOG = LogFactory.getLog(MitigationStateQueryPlanner.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static final long MAX_RESOURCE_LOOKUP_SNAPSHOT_AGE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    enum QueryPlan {
+        GetByMitigationId,
+        ResourceAllocationLookup,
+        OwnerIndexQuery,
+        ParallelScan
+    }
+
+    @Value
+    @Builder
+    static class MitigationStateQuery {
+        String mitigationId;
+        String resourceType;
+        // canonical representations of the requested resourceId, null if no resourceId was requested
+        List<String> canonicalResourceIds;
+        String ownerARN;
+
+        boolean matches(MitigationState ms) {
+            return (StringUtils.isEmpty(mitigationId) || mitigationId.equals(ms.getMitigationId()))
+                    && (StringUtils.isEmpty(resourceType) || resourceType.equals(ms.getResourceType()))
+                    && (canonicalResourceIds == null || canonicalResourceIds.contains(ms.getResourceId()))
+                    && (StringUtils.isEmpty(ownerARN) || ownerARN.equals(ms.getOwnerARN()));
+        }
+    }
+
+    /**
+     * Position of a listing not served by the paginated scanner, serialized into the nextToken.
+     */
+    static class ListPosition {
+        @Getter @JsonProperty("q")
+        private int queryHash;
+        @Getter @JsonProperty("p")
+        private QueryPlan plan;
+        // mitigationId the page ended with, the next page starts after it
+        @Getter @JsonProperty("a")
+        private String after;
+
+        ListPosition() {
+        }
+
+        ListPosition(int queryHash, QueryPlan plan, String after) {
+            this.queryHash = queryHash;
+            this.plan = plan;
+            this.after = after;
+        }
+    }
+
+    private final MitigationStateDynamoDBHelper mitigationStateDynamoDBHelper;
+    private final ResourceAllocationStateDynamoDBHelper resourceAllocationStateDynamoDBHelper;
+    private final int parallelScanSegments;
+    // optional, null when the table has no owner index
+    private final MitigationStateOwnerIndex mitigationStateOwnerIndex;
+    // optional, without it scan results are truncated to one page
+    private final PaginatedMitigationStateScanner paginatedMitigationStateScanner;
+    // optional, without it listings by resourceId scan the table or query the owner index
+    private final MitigationStateSnapshotProvider mitigationStateSnapshotProvider;
+
+    QueryPlan plan(@NonNull MitigationStateQuery query) {
+        if (StringUtils.isNotEmpty(query.getMitigationId())) {
+            return QueryPlan.GetByMitigationId;
+        }
+        if (query.getCanonicalResourceIds() != null && mitigationStateSnapshotProvider != null) {
+            return QueryPlan.ResourceAllocationLookup;
+        }
+        if (StringUtils.isNotEmpty(query.getOwnerARN()) && mitigationStateOwnerIndex != null) {
+            return QueryPlan.OwnerIndexQuery;
+        }
+        return QueryPlan.ParallelScan;
+    }
+
+    public List<MitigationState> getMitigationStates(@NonNull MitigationStateQuery query, @NonNull TSDMetrics metrics) {
+        return getMitigationStates(query, null, metrics);
+    }
+
+    private List<MitigationState> getMitigationStates(MitigationStateQuery query, List<String> attributeNames,
+                                                      TSDMetrics metrics) {
+        if (query.getCanonicalResourceIds() != null && query.getCanonicalResourceIds().isEmpty()) {
+            // the resourceId is not valid for any resource type, nothing can match
+            return Collections.emptyList();
+        }
+
+        QueryPlan plan = plan(query);
+        addPlanMetrics(plan, metrics);
+
+        List<MitigationState> candidates;
+        switch (plan) {
+            case GetByMitigationId:
+                MitigationState ms = mitigationStateDynamoDBHelper.getMitigationState(query.getMitigationId());
+                candidates = ms == null ? Collections.emptyList() : Collections.singletonList(ms);
+                break;
+            case ResourceAllocationLookup:
+                candidates = getByResourceAllocation(query, metrics);
+                break;
+            case OwnerIndexQuery:
+                candidates = mitigationStateOwnerIndex.getMitigationStatesByOwner(query.getOwnerARN(), attributeNames);
+                break;
+            default:
+                candidates = scan(query);
+                break;
+        }
+        metrics.addCount("ItemsRead", candidates.size());
+
+        return candidates.stream()
+                .filter(query::matches)
+                .collect(Collectors.toList());
+    }
+
+    private static void addPlanMetrics(QueryPlan plan, TSDMetrics metrics) {
+        for (QueryPlan p : QueryPlan.values()) {
+            metrics.addCount("QueryPlan." + p.name(), p == plan ? 1 : 0);
+        }
+    }
+
+    /**
+     * Like getMitigationStates, but returns at most maxItems mitigations, and a nextToken to read the rest.
+     *
+     * The scan plan reads pages with the paginated scanner when one is configured, and the owner index plan
+     * reads pages from the index. The other plans read every match of the query for each page, and pages are cut
+     * from the matches ordered by mitigationId.
+     *
+     * @throws IllegalArgumentException if the nextToken is malformed or was issued for a different query.
+     */
+    public MitigationStatePage getMitigationStatePage(@NonNull MitigationStateQuery query, long maxItems,
+                                                      String nextToken, @NonNull TSDMetrics metrics) {
+        return getMitigationStatePage(query, maxItems, nextToken, null, metrics);
+    }
+
+    /**
+     * Same as getMitigationStatePage, reading only some attributes of the mitigations where the access path
+     * returns many of them: the owner index query and the paginated scan. Single item reads return all attributes.
+     *
+     * @param attributeNames attributes to read, null for all attributes.
+     */
+    public MitigationStatePage getMitigationStatePage(@NonNull MitigationStateQuery query, long maxItems,
+                                                      String nextToken, List<String> attributeNames,
+                                                      @NonNull TSDMetrics metrics) {
+        Validate.isTrue(maxItems > 0, "maxItems must be positive");
+        attributeNames = withQueryAttributes(attributeNames, query);
+        QueryPlan plan = plan(query);
+        if (plan == QueryPlan.ParallelScan && paginatedMitigationStateScanner != null
+                && !(query.getCanonicalResourceIds() != null && query.getCanonicalResourceIds().isEmpty())) {
+            addPlanMetrics(plan, metrics);
+            return paginatedMitigationStateScanner.scanPage(buildScanFilter(query), maxItems, nextToken,
+                    attributeNames, metrics);
+        }
+
+        int queryHash = buildScanFilter(query).hashCode();
+        String after = null;
+        if (nextToken != null) {
+            ListPosition position = decode(nextToken);
+            Validate.isTrue(position.getQueryHash() == queryHash && position.getPlan() == plan,
+                    "nextToken was issued for a different query");
+            after = position.getAfter();
+        }
+
+        if (plan == QueryPlan.OwnerIndexQuery) {
+            addPlanMetrics(plan, metrics);
+            MitigationStatePage page = mitigationStateOwnerIndex.getMitigationStatePageByOwner(query.getOwnerARN(),
+                    attributeNames, query::matches, maxItems, after);
+            metrics.addCount("ItemsRead", page.getMitigationStates().size());
+            return new MitigationStatePage(page.getMitigationStates(), page.getNextToken() == null
+                    ? null : encode(new ListPosition(queryHash, plan, page.getNextToken())));
+        }
+
+        String start = after;
+        List<MitigationState> mitigationStates = getMitigationStates(query, attributeNames, metrics).stream()
+                .filter(ms -> start == null || ms.getMitigationId().compareTo(start) > 0)
+                .sorted(Comparator.comparing(MitigationState::getMitigationId))
+                .collect(Collectors.toList());
+        if (mitigationStates.size() <= maxItems) {
+            return new MitigationStatePage(mitigationStates, null);
+        }
+        mitigationStates = new ArrayList<>(mitigationStates.subList(0, (int) maxItems));
+        return new MitigationStatePage(mitigationStates, encode(new ListPosition(queryHash, plan,
+                mitigationStates.get(mitigationStates.size() - 1).getMitigationId())));
+    }
+
+    static String encode(ListPosition position) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(position));
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to encode the listing position", ex);
+        }
+    }
+
+    static ListPosition decode(String nextToken) {
+        try {
+            ListPosition position = MAPPER.readValue(
+                    new String(Base64.getUrlDecoder().decode(nextToken), StandardCharsets.UTF_8), ListPosition.class);
+            Validate.notNull(position.getPlan());
+            Validate.notNull(position.getAfter());
+            return position;
+        } catch (IOException | IllegalArgumentException | NullPointerException ex) {
+            throw new IllegalArgumentException("Invalid nextToken: " + nextToken, ex);
+        }
+    }
+
+    /**
+     * The returned mitigations are matched against the query, so the attributes it filters on must be read.
+     */
+    private static List<String> withQueryAttributes(List<String> attributeNames, MitigationStateQuery query) {
+        if (attributeNames == null) {
+            return null;
+        }
+        Set<String> attributes = new LinkedHashSet<>(attributeNames);
+        attributes.add(MitigationState.MITIGATION_ID_KEY);
+        if (StringUtils.isNotEmpty(query.getResourceType())) {
+            attributes.add(MitigationState.RESOURCE_TYPE_KEY);
+        }
+        if (query.getCanonicalResourceIds() != null) {
+            attributes.add(MitigationState.RESOURCE_ID_KEY);
+        }
+        if (StringUtils.isNotEmpty(query.getOwnerARN())) {
+            attributes.add(MitigationState.OWNER_ARN_KEY);
+        }
+        return new ArrayList<>(attributes);
+    }
+
+    private List<MitigationState> getByResourceAllocation(MitigationStateQuery query, TSDMetrics metrics) {
+        MitigationStateSnapshot snapshot = mitigationStateSnapshotProvider.getSnapshot();
+        if (snapshot.getAgeMillis() > MAX_RESOURCE_LOOKUP_SNAPSHOT_AGE_MILLIS) {
+            LOG.debug(String.format("MitigationState snapshot is %d ms old, falling back to scan",
+                    snapshot.getAgeMillis()));
+            metrics.addOne("ResourceAllocationLookupFallbackToScan");
+            return scan(query);
+        }
+        metrics.addZero("ResourceAllocationLookupFallbackToScan");
+
+        Set<String> mitigationIds = new LinkedHashSet<>();
+        for (String canonicalResourceId : query.getCanonicalResourceIds()) {
+            ResourceAllocationState resourceState = resourceAllocationStateDynamoDBHelper
+                    .getResourceAllocationState(canonicalResourceId);
+            if (resourceState != null) {
+                mitigationIds.add(resourceState.getMitigationId());
+            }
+            mitigationIds.addAll(snapshot.getMitigationIdsByResourceId(canonicalResourceId));
+        }
+
+        // the snapshot only tells which rows to read, they are read from the table like with every other plan
+        List<MitigationState> mitigationStates = new ArrayList<>(mitigationIds.size());
+        for (String mitigationId : mitigationIds) {
+            MitigationState ms = mitigationStateDynamoDBHelper.getMitigationState(mitigationId);
+            if (ms != null) {
+                mitigationStates.add(ms);
+            }
+        }
+        return mitigationStates;
+    }
+
+    private List<MitigationState> scan(MitigationStateQuery query) {
+        DynamoDBScanExpression scanExpression = new DynamoDBScanExpression();
+        Map<String, Condition> scanFilter = buildScanFilter(query);
+        if (!scanFilter.isEmpty()) {
+            scanExpression.setScanFilter(scanFilter);
+        }
+        return mitigationStateDynamoDBHelper.getMitigationState(scanExpression, parallelScanSegments);
+    }
+
+    private static Map<String, Condition> buildScanFilter(MitigationStateQuery query) {
+        Map<String, Condition> scanFilter = new LinkedHashMap<>();
+        if (StringUtils.isNotEmpty(query.getResourceType())) {
+            scanFilter.put(MitigationState.RESOURCE_TYPE_KEY,
+                new Condition()
+                    .withComparisonOperator(ComparisonOperator.EQ)
+                    .withAttributeValueList(new AttributeValue().withS(query.getResourceType())));
+        }
+        if (StringUtils.isNotEmpty(query.getMitigationId())) {
+            scanFilter.put(MitigationState.MITIGATION_ID_KEY,
+                new Condition()
+                    .withComparisonOperator(ComparisonOperator.EQ)
+                    .withAttributeValueList(new AttributeValue().withS(query.getMitigationId())));
+        }
+        if (query.getCanonicalResourceIds() != null) {
+            scanFilter.put(MitigationState.RESOURCE_ID_KEY,
+                new Condition()
+                    .withComparisonOperator(ComparisonOperator.IN)
+                    .withAttributeValueList(query.getCanonicalResourceIds().stream()
+                            .map(id -> new AttributeValue().withS(id))
+                            .collect(Collectors.toList())));
+        }
+        if (StringUtils.isNotEmpty(query.getOwnerARN())) {
+            scanFilter.put(MitigationState.OWNER_ARN_KEY,
+                new Condition()
+                    .withComparisonOperator(ComparisonOperator.EQ)
+                    .withAttributeValueList(new AttributeValue().withS(query.getOwnerARN())));
+        }
+        return scanFilter;
+    }
+}
@@ -0,0 +1,119 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import javax.annotation.concurrent.Immutable;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import com.amazon.blackwatch.mitigation.state.model.MitigationState;
+import com.amazon.blackwatch.mitigation.state.model.MitigationState.State;
+import com.amazon.lookout.mitigation.service.activity.helper.blackwatch.MitigationPrefixIndex;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Versioned, immutable view of the MitigationState table held in memory.
+ *
+ * A new snapshot is published every time the backing table content is refreshed, the version is strictly
+ * increasing for a given provider. The MitigationState objects held by a snapshot are shared between all
+ * readers and must be treated as read-only.
+ *
+ * Indexes over the mitigations are built together with the snapshot, so request path lookups never
+ * have to walk the whole table. The index by resourceId is only needed by listings, it is built on first use.
+ *
+ * Providers which follow the table stream attach the log of the changes which led to the snapshot, null for
+ * the others.
+ */
+@Immutable
+public final class MitigationStateSnapshot {
+    @Getter
+    private final long version;
+    @Getter
+    private final long createdAtMillis;
+    private final ImmutableMap<String, MitigationState> mitigationStatesById;
+    @Getter
+    private final MitigationPrefixIndex activeMitigationPrefixIndex;
+    @Getter
+    private final MitigationChangeLog changeLog;
+    private final Supplier<ImmutableListMultimap<String, String>> mitigationIdsByResourceId =
+            Suppliers.memoize(this::indexByResourceId);
+
+    public MitigationStateSnapshot(long version, long createdAtMillis,
+                                   @NonNull Map<String, MitigationState> mitigationStatesById) {
+        this(version, createdAtMillis, mitigationStatesById, null);
+    }
+
+    public MitigationStateSnapshot(long version, long createdAtMillis,
+                                   @NonNull Map<String, MitigationState> mitigationStatesById,
+                                   MitigationChangeLog changeLog) {
+        this.version = version;
+        this.createdAtMillis = createdAtMillis;
+        this.mitigationStatesById = ImmutableMap.copyOf(mitigationStatesById);
+        this.activeMitigationPrefixIndex = MitigationPrefixIndex.fromMitigationStates(this.mitigationStatesById.values());
+        this.changeLog = changeLog;
+    }
+
+    /**
+     * Build a snapshot from a full table scan result.
+     */
+    public static MitigationStateSnapshot fromMitigationStates(long version, @NonNull Collection<MitigationState> states) {
+        return fromMitigationStates(version, states, null);
+    }
+
+    /**
+     * Build a snapshot from a full table scan result, with the log of the changes which follow the scan.
+     */
+    public static MitigationStateSnapshot fromMitigationStates(long version, @NonNull Collection<MitigationState> states,
+                                                               MitigationChangeLog changeLog) {
+        ImmutableMap.Builder<String, MitigationState> builder = ImmutableMap.builder();
+        states.forEach(ms -> builder.put(ms.getMitigationId(), ms));
+        return new MitigationStateSnapshot(version, System.currentTimeMillis(), builder.build(), changeLog);
+    }
+
+    public MitigationState getMitigationState(String mitigationId) {
+        return mitigationStatesById.get(mitigationId);
+    }
+
+    /**
+     * @return the ids of every mitigation of the resource, whatever their state.
+     */
+    public List<String> getMitigationIdsByResourceId(String resourceId) {
+        return mitigationIdsByResourceId.get().get(resourceId);
+    }
+
+    private ImmutableListMultimap<String, String> indexByResourceId() {
+        ImmutableListMultimap.Builder<String, String> builder = ImmutableListMultimap.builder();
+        mitigationStatesById.values().stream()
+                .filter(ms -> ms.getResourceId() != null)
+                .forEach(ms -> builder.put(ms.getResourceId(), ms.getMitigationId()));
+        return builder.build();
+    }
+
+    public Collection<MitigationState> getMitigationStates() {
+        return mitigationStatesById.values();
+    }
+
+    public Stream<MitigationState> activeMitigationStates() {
+        return mitigationStatesById.values().stream()
+                .filter(ms -> State.Active.name().equals(ms.getState()));
+    }
+
+    public int size() {
+        return mitigationStatesById.size();
+    }
+
+    public long getAgeMillis() {
+        return System.currentTimeMillis() - createdAtMillis;
+    }
+
+    ImmutableMap<String, MitigationState> getMitigationStatesById() {
+        return mitigationStatesById;
+    }
+}
@@ -0,0 +1,21 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+/**
+ * Source of the in-memory MitigationState snapshot used by checks on the request path
+ * (superset prefix check, per owner mitigation limit) that need to look at every mitigation.
+ */
+public interface MitigationStateSnapshotProvider {
+    /**
+     * @return the most recent snapshot of the MitigationState table, never null.
+     */
+    MitigationStateSnapshot getSnapshot();
+
+    /**
+     * Wait until a snapshot newer than the given version is published. Providers which don't publish
+     * snapshots on their own return the current snapshot right away.
+     * @return the first snapshot newer than the version, or the current snapshot after the timeout.
+     */
+    default MitigationStateSnapshot awaitSnapshotAfter(long version, long timeoutMillis) throws InterruptedException {
+        return getSnapshot();
+    }
+}
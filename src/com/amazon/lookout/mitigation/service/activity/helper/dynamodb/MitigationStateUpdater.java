@@ -0,0 +1,189 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import java.beans.ConstructorProperties;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import lombok.NonNull;
+
+import org.apache.commons.lang3.Validate;
+
+import com.amazon.blackwatch.mitigation.state.model.MitigationState;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperFieldModel;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
+import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+
+/**
+ * Writes the attributes of a MitigationState which changed since it was read, with one UpdateItem call.
+ *
+ * The change is computed by comparing the attributes of the item as it was read with the attributes of the
+ * modified item:
+ * - top level attributes with a new non-null value are SET, null attributes are left untouched, same as a
+ *   save which skips null attributes;
+ * - maps present on both sides are compared entry by entry, so changing one location of locationMitigationState
+ *   only writes that location, and entries removed from a map are REMOVEd.
+ *
+ * The update is conditional on the item existing, on the expected attributes given by the caller and on the
+ * version of the item being the version which was read, same as the optimistic locking of a DynamoDBMapper save.
+ * A mitigation changed since it was read fails the update with a ConditionalCheckFailedException, for the caller
+ * to read it again and retry, typically with a ConditionalWriteRetrier.
+ */
+public class MitigationStateUpdater {
+    private final AmazonDynamoDB dynamoDBClient;
+    private final String mitigationStateTableName;
+    private final DynamoDBMapperTableModel<MitigationState> model;
+    private final String hashKeyName;
+    private final String versionName;
+
+    @ConstructorProperties({"dynamoDBClient", "mitigationStateTableName"})
+    public MitigationStateUpdater(@NonNull AmazonDynamoDB dynamoDBClient, @NonNull String mitigationStateTableName) {
+        Validate.notEmpty(mitigationStateTableName);
+        this.dynamoDBClient = dynamoDBClient;
+        this.mitigationStateTableName = mitigationStateTableName;
+        this.model = new DynamoDBMapper(dynamoDBClient).getTableModel(MitigationState.class,
+                DynamoDBMapperConfig.DEFAULT);
+        this.hashKeyName = model.hashKey().name();
+        this.versionName = model.fields().stream()
+                .filter(DynamoDBMapperFieldModel::versioned)
+                .map(DynamoDBMapperFieldModel::name)
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * @return the attributes of the mitigation, to be taken before it is modified.
+     */
+    public Map<String, AttributeValue> toAttributes(@NonNull MitigationState mitigationState) {
+        return model.convert(mitigationState);
+    }
+
+    /**
+     * @param original attributes of the mitigation as it was read.
+     * @param updated the modified mitigation.
+     * @param expected conditions on the current item, only EQ, NE and exists=false are supported.
+     * @return number of attributes written.
+     * @throws com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException if the mitigation
+     *         doesn't exist, changed since it was read or a condition isn't met.
+     */
+    public int update(@NonNull Map<String, AttributeValue> original, @NonNull MitigationState updated,
+                      @NonNull Map<String, ExpectedAttributeValue> expected) {
+        Expression expression = new Expression();
+        List<String> setClauses = new ArrayList<>();
+        List<String> removeClauses = new ArrayList<>();
+
+        model.convert(updated).forEach((name, value) -> {
+            if (!name.equals(hashKeyName) && !name.equals(versionName)) {
+                diff(expression, expression.name(name), original.get(name), value, setClauses, removeClauses);
+            }
+        });
+        int changedAttributes = setClauses.size() + removeClauses.size();
+        if (changedAttributes == 0) {
+            return 0;
+        }
+
+        if (versionName != null) {
+            String version = expression.name(versionName);
+            setClauses.add(String.format("%s = if_not_exists(%s, %s) + %s",
+                    version, version, expression.value(new AttributeValue().withN("0")),
+                    expression.value(new AttributeValue().withN("1"))));
+        }
+
+        StringBuilder updateExpression = new StringBuilder();
+        if (!setClauses.isEmpty()) {
+            updateExpression.append("SET ").append(String.join(", ", setClauses));
+        }
+        if (!removeClauses.isEmpty()) {
+            updateExpression.append(updateExpression.length() == 0 ? "" : " ")
+                    .append("REMOVE ").append(String.join(", ", removeClauses));
+        }
+
+        List<String> conditions = new ArrayList<>();
+        conditions.add(String.format("attribute_exists(%s)", expression.name(hashKeyName)));
+        if (versionName != null) {
+            AttributeValue readVersion = original.get(versionName);
+            conditions.add(readVersion == null
+                    ? String.format("attribute_not_exists(%s)", expression.name(versionName))
+                    : String.format("%s = %s", expression.name(versionName), expression.value(readVersion)));
+        }
+        expected.forEach((name, value) -> conditions.add(condition(expression, name, value)));
+
+        UpdateItemRequest request = new UpdateItemRequest()
+                .withTableName(mitigationStateTableName)
+                .withKey(model.convertKey(updated))
+                .withUpdateExpression(updateExpression.toString())
+                .withConditionExpression(String.join(" AND ", conditions))
+                .withExpressionAttributeNames(expression.names)
+                .withExpressionAttributeValues(expression.values);
+        dynamoDBClient.updateItem(request);
+        return changedAttributes;
+    }
+
+    private static void diff(Expression expression, String path, AttributeValue before, AttributeValue after,
+                             List<String> setClauses, List<String> removeClauses) {
+        if (Objects.equals(before, after)) {
+            return;
+        }
+        if (before != null && before.getM() != null && after.getM() != null) {
+            after.getM().forEach((key, value) -> diff(expression, path + "." + expression.name(key),
+                    before.getM().get(key), value, setClauses, removeClauses));
+            before.getM().keySet().stream()
+                    .filter(key -> !after.getM().containsKey(key))
+                    .forEach(key -> removeClauses.add(path + "." + expression.name(key)));
+            return;
+        }
+        setClauses.add(String.format("%s = %s", path, expression.value(after)));
+    }
+
+    private static String condition(Expression expression, String name, ExpectedAttributeValue expectedValue) {
+        String attribute = expression.name(name);
+        if (Boolean.FALSE.equals(expectedValue.getExists())) {
+            return String.format("attribute_not_exists(%s)", attribute);
+        }
+        Validate.isTrue(expectedValue.getAttributeValueList() == null || expectedValue.getAttributeValueList().isEmpty(),
+                "Attribute value lists are not supported");
+        AttributeValue value = expectedValue.getValue();
+        Validate.notNull(value, "Expected value of %s is missing", name);
+        ComparisonOperator operator = expectedValue.getComparisonOperator() == null
+                ? ComparisonOperator.EQ : ComparisonOperator.fromValue(expectedValue.getComparisonOperator());
+        switch (operator) {
+            case EQ:
+                return String.format("%s = %s", attribute, expression.value(value));
+            case NE:
+                return String.format("%s <> %s", attribute, expression.value(value));
+            default:
+                throw new IllegalArgumentException("Unsupported comparison operator " + operator);
+        }
+    }
+
+    /**
+     * Placeholders of one update request.
+     */
+    private static class Expression {
+        private final Map<String, String> names = new HashMap<>();
+        private final Map<String, AttributeValue> values = new HashMap<>();
+        private final Map<String, String> placeholdersByName = new HashMap<>();
+
+        String name(String name) {
+            return placeholdersByName.computeIfAbsent(name, n -> {
+                String placeholder = "#n" + placeholdersByName.size();
+                names.put(placeholder, n);
+                return placeholder;
+            });
+        }
+
+        String value(AttributeValue value) {
+            String placeholder = ":v" + values.size();
+            values.put(placeholder, value);
+            return placeholder;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import java.beans.ConstructorProperties;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Value;
+
+import org.apache.commons.lang3.Validate;
+
+import com.amazon.aws158.commons.metric.TSDMetrics;
+import com.amazon.blackwatch.mitigation.state.model.MitigationState;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.Condition;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Segmented scan of the MitigationState table which stops as soon as a page is full.
+ *
+ * The position of every scan segment is carried between calls in an opaque nextToken, so a page
+ * of N mitigations reads roughly N items instead of the whole table. Segments are read in order, each
+ * read is limited to what is still missing from the page (within [MIN_ITEMS_PER_READ, MAX_ITEMS_PER_READ]).
+ * When a read returns more matches than needed, the segment resumes after the last returned mitigation.
+ *
+ * The MitigationState table is keyed by mitigationId only, which is all a segment position needs.
+ */
+public class PaginatedMitigationStateScanner {
+    private static final int MIN_ITEMS_PER_READ = 25;
+    private static final int MAX_ITEMS_PER_READ = 1000;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final AmazonDynamoDB dynamoDBClient;
+    private final String mitigationStateTableName;
+    private final int totalSegments;
+    private final DynamoDBMapper mapper;
+
+    @Value
+    public static class MitigationStatePage {
+        List<MitigationState> mitigationStates;
+        // null once every segment is exhausted
+        String nextToken;
+    }
+
+    /**
+     * Scan position, serialized into the nextToken.
+     */
+    static class ScanPosition {
+        @Getter @JsonProperty("q")
+        private int queryHash;
+        // per segment: null = not started, "" = exhausted, otherwise the last mitigationId read
+        @Getter @JsonProperty("s")
+        private String[] segments;
+
+        ScanPosition() {
+        }
+
+        ScanPosition(int queryHash, int totalSegments) {
+            this.queryHash = queryHash;
+            this.segments = new String[totalSegments];
+        }
+
+        boolean isExhausted() {
+            for (String segment : segments) {
+                if (!"".equals(segment)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    @ConstructorProperties({"dynamoDBClient", "mitigationStateTableName", "parallelScanSegments"})
+    public PaginatedMitigationStateScanner(@NonNull AmazonDynamoDB dynamoDBClient,
+                                           @NonNull String mitigationStateTableName, int parallelScanSegments) {
+        Validate.notEmpty(mitigationStateTableName);
+        Validate.isTrue(parallelScanSegments > 0, "parallelScanSegments must be positive");
+        this.dynamoDBClient = dynamoDBClient;
+        this.mitigationStateTableName = mitigationStateTableName;
+        this.totalSegments = parallelScanSegments;
+        this.mapper = new DynamoDBMapper(dynamoDBClient);
+    }
+
+    /**
+     * Read the next page of mitigations matching the scan filter.
+     *
+     * @param scanFilter filter conditions of the query, must be the same for all pages of one listing.
+     * @param maxItems maximum number of mitigations to return.
+     * @param nextToken token returned with the previous page, null for the first page.
+     * @throws IllegalArgumentException if the nextToken is malformed or was issued for a different query.
+     */
+    public MitigationStatePage scanPage(@NonNull Map<String, Condition> scanFilter, long maxItems, String nextToken,
+                                        @NonNull TSDMetrics metrics) {
+        return scanPage(scanFilter, maxItems, nextToken, null, metrics);
+    }
+
+    /**
+     * Same as scanPage, reading only some attributes of the mitigations.
+     *
+     * @param attributeNames attributes to read, must include the mitigationId, null for all attributes.
+     */
+    public MitigationStatePage scanPage(@NonNull Map<String, Condition> scanFilter, long maxItems, String nextToken,
+                                        List<String> attributeNames, @NonNull TSDMetrics metrics) {
+        Validate.isTrue(maxItems > 0, "maxItems must be positive");
+        Validate.isTrue(attributeNames == null || attributeNames.contains(MitigationState.MITIGATION_ID_KEY),
+                "The mitigationId is needed to resume the scan");
+        int queryHash = scanFilter.hashCode();
+        ScanPosition position = nextToken == null ? new ScanPosition(queryHash, totalSegments) : decode(nextToken);
+        Validate.isTrue(position.getQueryHash() == queryHash && position.getSegments().length == totalSegments,
+                "nextToken was issued for a different query");
+
+        List<MitigationState> mitigationStates = new ArrayList<>();
+        int itemsRead = 0;
+        int reads = 0;
+        for (int segment = 0; segment < totalSegments && mitigationStates.size() < maxItems; ++segment) {
+            while (!"".equals(position.segments[segment]) && mitigationStates.size() < maxItems) {
+                long missing = maxItems - mitigationStates.size();
+                ScanRequest request = new ScanRequest()
+                        .withTableName(mitigationStateTableName)
+                        .withSegment(segment)
+                        .withTotalSegments(totalSegments)
+                        .withLimit((int) Math.min(MAX_ITEMS_PER_READ, Math.max(MIN_ITEMS_PER_READ, missing)))
+                        .withConsistentRead(false);
+                if (!scanFilter.isEmpty()) {
+                    request.setScanFilter(scanFilter);
+                }
+                if (attributeNames != null) {
+                    // AttributesToGet rather than a ProjectionExpression, expressions can't be used with a ScanFilter
+                    request.setAttributesToGet(attributeNames);
+                }
+                if (position.segments[segment] != null) {
+                    request.setExclusiveStartKey(ImmutableMap.of(
+                            MitigationState.MITIGATION_ID_KEY, new AttributeValue(position.segments[segment])));
+                }
+
+                ScanResult result = dynamoDBClient.scan(request);
+                ++reads;
+                itemsRead += result.getScannedCount() == null ? 0 : result.getScannedCount();
+
+                List<Map<String, AttributeValue>> items = result.getItems();
+                int consumed = (int) Math.min(items.size(), missing);
+                for (int i = 0; i < consumed; ++i) {
+                    mitigationStates.add(mapper.marshallIntoObject(MitigationState.class,
+                            MitigationStateCodec.decode(items.get(i))));
+                }
+
+                if (consumed < items.size()) {
+                    // page is full in the middle of this read, resume right after the last returned item
+                    position.segments[segment] = mitigationStates.get(mitigationStates.size() - 1).getMitigationId();
+                } else if (result.getLastEvaluatedKey() == null || result.getLastEvaluatedKey().isEmpty()) {
+                    position.segments[segment] = "";
+                } else {
+                    position.segments[segment] = result.getLastEvaluatedKey().get(MitigationState.MITIGATION_ID_KEY).getS();
+                }
+            }
+        }
+
+        metrics.addCount("ScanReads", reads);
+        metrics.addCount("ItemsScanned", itemsRead);
+        return new MitigationStatePage(mitigationStates, position.isExhausted() ? null : encode(position));
+    }
+
+    static String encode(ScanPosition position) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(position));
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to encode the scan position", ex);
+        }
+    }
+
+    static ScanPosition decode(String nextToken) {
+        try {
+            ScanPosition position = MAPPER.readValue(
+                    new String(Base64.getUrlDecoder().decode(nextToken), StandardCharsets.UTF_8), ScanPosition.class);
+            Validate.notNull(position.getSegments());
+            return position;
+        } catch (IOException | IllegalArgumentException | NullPointerException ex) {
+            throw new IllegalArgumentException("Invalid nextToken: " + nextToken, ex);
+        }
+    }
+}
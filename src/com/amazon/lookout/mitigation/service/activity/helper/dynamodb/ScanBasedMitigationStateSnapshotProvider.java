@@ -0,0 +1,276 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import java.beans.ConstructorProperties;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import lombok.NonNull;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazon.aws158.commons.metric.TSDMetrics;
+import com.amazon.blackwatch.mitigation.state.model.MitigationState;
+import com.amazon.blackwatch.mitigation.state.storage.MitigationStateDynamoDBHelper;
+import com.amazon.coral.metrics.MetricsFactory;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Snapshot provider which periodically rescans the whole MitigationState table.
+ * Used where the table stream is not available, e.g. in tests against DynamoDBLocal.
+ *
+ * Refreshes are single-flight: at most one scan is in flight at any time, no matter how many callers
+ * observe a stale snapshot. Once the first snapshot is loaded a stale snapshot is still served while the
+ * refresh runs in the background (stale-while-revalidate); only callers arriving before the first
+ * snapshot exists wait for the scan to complete.
+ *
+ * After a failed refresh no new scan is started until a backoff has passed, doubling with every consecutive
+ * failure, so an unavailable table is not hit by a scan per call. Callers then keep getting the last snapshot
+ * until it is older than the maximum staleness, after which they fail instead of acting on outdated state.
+ *
+ * Every snapshot carries a MitigationChangeLog built by diffing each scan against the previous snapshot.
+ * Changes are stamped with the start of the scan which found them, the watermark of the log: anything written
+ * before a scan started is seen by it. The log covers the time since the first scan, within
+ * CHANGE_LOG_RETENTION_MILLIS.
+ */
+@ThreadSafe
+public class ScanBasedMitigationStateSnapshotProvider implements MitigationStateSnapshotProvider {
+    private static final Log LOG = LogFactory.getLog(ScanBasedMitigationStateSnapshotProvider.class);
+    static final long DEFAULT_REFRESH_PERIOD_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    static final long DEFAULT_FAILURE_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    static final long MAX_FAILURE_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(2);
+    static final long DEFAULT_MAX_STALENESS_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    static final long CHANGE_LOG_RETENTION_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    private final MitigationStateDynamoDBHelper mitigationStateDynamoDBHelper;
+    private final int parallelScanSegments;
+    private final long refreshPeriodMillis;
+    private final long failureBackoffMillis;
+    private final long maxStalenessMillis;
+    private final MetricsFactory metricsFactory;
+    private final Executor refreshExecutor;
+
+    private final AtomicReference<MitigationStateSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<MitigationStateSnapshot>> inFlightRefresh = new AtomicReference<>();
+    private final AtomicInteger waitingCallers = new AtomicInteger();
+    // completed with the next snapshot published, replaced on every publish
+    private volatile CompletableFuture<MitigationStateSnapshot> nextSnapshot = new CompletableFuture<>();
+
+    // no refresh is started before this time after a failure
+    private volatile long retryNotBeforeMillis = 0;
+    private volatile Exception lastFailure;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    // reported with the next refresh
+    private final AtomicInteger staleSnapshotsServed = new AtomicInteger();
+    private final AtomicInteger unavailableSnapshots = new AtomicInteger();
+
+    @ConstructorProperties({"mitigationStateDynamoDBHelper", "parallelScanSegments", "metricsFactory"})
+    public ScanBasedMitigationStateSnapshotProvider(@NonNull MitigationStateDynamoDBHelper mitigationStateDynamoDBHelper,
+                                                    int parallelScanSegments, @NonNull MetricsFactory metricsFactory) {
+        this(mitigationStateDynamoDBHelper, parallelScanSegments, DEFAULT_REFRESH_PERIOD_MILLIS,
+                DEFAULT_FAILURE_BACKOFF_MILLIS, DEFAULT_MAX_STALENESS_MILLIS, metricsFactory,
+                Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                        .setNameFormat("MitigationStateSnapshotRefresher-%d")
+                        .setDaemon(true)
+                        .build()));
+    }
+
+    ScanBasedMitigationStateSnapshotProvider(@NonNull MitigationStateDynamoDBHelper mitigationStateDynamoDBHelper,
+                                             int parallelScanSegments, long refreshPeriodMillis,
+                                             long failureBackoffMillis, long maxStalenessMillis,
+                                             @NonNull MetricsFactory metricsFactory, @NonNull Executor refreshExecutor) {
+        Validate.isTrue(refreshPeriodMillis > 0, "refreshPeriodMillis must be positive");
+        Validate.isTrue(failureBackoffMillis > 0, "failureBackoffMillis must be positive");
+        Validate.isTrue(maxStalenessMillis > refreshPeriodMillis, "maxStalenessMillis must exceed refreshPeriodMillis");
+        this.mitigationStateDynamoDBHelper = mitigationStateDynamoDBHelper;
+        this.parallelScanSegments = parallelScanSegments;
+        this.refreshPeriodMillis = refreshPeriodMillis;
+        this.failureBackoffMillis = failureBackoffMillis;
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.metricsFactory = metricsFactory;
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    @Override
+    public MitigationStateSnapshot getSnapshot() {
+        MitigationStateSnapshot current = snapshot.get();
+        if (current == null) {
+            if (isBackingOff()) {
+                throw unavailable("no mitigation state snapshot loaded yet");
+            }
+            // Nothing to serve yet, join the scan in flight
+            waitingCallers.incrementAndGet();
+            try {
+                return refresh().join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                throw ex;
+            } finally {
+                waitingCallers.decrementAndGet();
+            }
+        }
+
+        long ageMillis = current.getAgeMillis();
+        if (ageMillis > refreshPeriodMillis) {
+            if (!isBackingOff()) {
+                refresh();
+            }
+            if (ageMillis > maxStalenessMillis) {
+                throw unavailable("the mitigation state snapshot is " + ageMillis + " ms old");
+            }
+            staleSnapshotsServed.incrementAndGet();
+        }
+        return current;
+    }
+
+    /**
+     * Scans only run when callers find the snapshot stale, so waiting callers wake up at least once per refresh
+     * period to start the next scan themselves. Meanwhile they are parked on a future completed by the next
+     * publish, and return as soon as any refresh lands.
+     */
+    @Override
+    public MitigationStateSnapshot awaitSnapshotAfter(long version, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (true) {
+            // read the future before the snapshot, a snapshot published in between completes it
+            CompletableFuture<MitigationStateSnapshot> next = nextSnapshot;
+            MitigationStateSnapshot current = getSnapshot();
+            long remainingMillis = deadline - System.currentTimeMillis();
+            if (current.getVersion() > version || remainingMillis <= 0) {
+                return current;
+            }
+            try {
+                next.get(Math.min(remainingMillis, refreshPeriodMillis), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                // the snapshot went stale, the next getSnapshot() starts a refresh
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException("Snapshot futures are never completed exceptionally", ex);
+            }
+        }
+    }
+
+    private boolean isBackingOff() {
+        return System.currentTimeMillis() < retryNotBeforeMillis;
+    }
+
+    private IllegalStateException unavailable(String reason) {
+        unavailableSnapshots.incrementAndGet();
+        return new IllegalStateException("Mitigation state snapshot unavailable, " + reason
+                + ", consecutive refresh failures: " + consecutiveFailures.get(), lastFailure);
+    }
+
+    /**
+     * Start a refresh unless one is already in flight.
+     * @return the refresh in flight, completed with the new snapshot.
+     */
+    private CompletableFuture<MitigationStateSnapshot> refresh() {
+        while (true) {
+            CompletableFuture<MitigationStateSnapshot> inFlight = inFlightRefresh.get();
+            if (inFlight != null) {
+                return inFlight;
+            }
+
+            CompletableFuture<MitigationStateSnapshot> future = new CompletableFuture<>();
+            if (inFlightRefresh.compareAndSet(null, future)) {
+                try {
+                    refreshExecutor.execute(() -> runRefresh(future));
+                } catch (RuntimeException ex) {
+                    inFlightRefresh.set(null);
+                    future.completeExceptionally(ex);
+                }
+                return future;
+            }
+        }
+    }
+
+    private void runRefresh(CompletableFuture<MitigationStateSnapshot> future) {
+        try (TSDMetrics metrics = new TSDMetrics(metricsFactory, "ScanBasedMitigationStateSnapshotProvider.refresh")) {
+            long startTime = System.currentTimeMillis();
+            try {
+                LOG.debug("Updating the mitigation state snapshot...");
+                MitigationStateSnapshot previous = snapshot.get();
+                if (previous != null) {
+                    metrics.addCount("SnapshotAgeMillis", previous.getAgeMillis());
+                }
+                long nextVersion = previous == null ? 1 : previous.getVersion() + 1;
+                Collection<MitigationState> states = mitigationStateDynamoDBHelper.getAllMitigationStates(
+                        parallelScanSegments);
+                MitigationChangeLog changeLog;
+                if (previous == null) {
+                    changeLog = MitigationChangeLog.startingAt(startTime);
+                } else {
+                    Map<String, Boolean> deletedById = diff(previous, states);
+                    metrics.addCount("MitigationsChanged", deletedById.size());
+                    changeLog = previous.getChangeLog().record(deletedById, startTime, CHANGE_LOG_RETENTION_MILLIS);
+                }
+                MitigationStateSnapshot refreshed = MitigationStateSnapshot.fromMitigationStates(nextVersion, states,
+                        changeLog);
+                snapshot.set(refreshed);
+                CompletableFuture<MitigationStateSnapshot> published = nextSnapshot;
+                nextSnapshot = new CompletableFuture<>();
+                published.complete(refreshed);
+                consecutiveFailures.set(0);
+                lastFailure = null;
+                retryNotBeforeMillis = 0;
+
+                metrics.addZero("RefreshFailure");
+                metrics.addCount("SnapshotSize", refreshed.size());
+                inFlightRefresh.set(null);
+                future.complete(refreshed);
+            } catch (Exception ex) {
+                LOG.error("Failed to refresh the mitigation state snapshot", ex);
+                metrics.addOne("RefreshFailure");
+                int failures = consecutiveFailures.incrementAndGet();
+                lastFailure = ex;
+                // set before the refresh is released, so no caller starts another one meanwhile
+                retryNotBeforeMillis = System.currentTimeMillis() + failureBackoffMillis(failures);
+                metrics.addCount("ConsecutiveRefreshFailures", failures);
+                inFlightRefresh.set(null);
+                future.completeExceptionally(ex);
+            } finally {
+                metrics.addCount("RefreshDurationMillis", System.currentTimeMillis() - startTime);
+                metrics.addCount("WaitingCallers", waitingCallers.get());
+                metrics.addCount("StaleSnapshotsServed", staleSnapshotsServed.getAndSet(0));
+                metrics.addCount("SnapshotUnavailable", unavailableSnapshots.getAndSet(0));
+            }
+        }
+    }
+
+    /**
+     * @return for every mitigation created, modified or deleted since the previous snapshot, whether it was deleted.
+     */
+    private static Map<String, Boolean> diff(MitigationStateSnapshot previous, Collection<MitigationState> states) {
+        Map<String, Boolean> deletedById = new HashMap<>();
+        Map<String, MitigationState> previousStatesById = new HashMap<>(previous.getMitigationStatesById());
+        for (MitigationState mitigationState : states) {
+            MitigationState previousState = previousStatesById.remove(mitigationState.getMitigationId());
+            if (!Objects.equals(previousState, mitigationState)) {
+                deletedById.put(mitigationState.getMitigationId(), false);
+            }
+        }
+        previousStatesById.keySet().forEach(mitigationId -> deletedById.put(mitigationId, true));
+        return deletedById;
+    }
+
+    private long failureBackoffMillis(int consecutiveFailures) {
+        long backoffMillis = failureBackoffMillis << Math.min(consecutiveFailures - 1, 20);
+        return Math.min(Math.max(backoffMillis, failureBackoffMillis), MAX_FAILURE_BACKOFF_MILLIS);
+    }
+}
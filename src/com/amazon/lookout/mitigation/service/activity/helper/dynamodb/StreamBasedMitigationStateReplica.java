@@ -0,0 +1,343 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import java.beans.ConstructorProperties;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import lombok.NonNull;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazon.aws158.commons.metric.TSDMetrics;
+import com.amazon.blackwatch.mitigation.state.model.MitigationState;
+import com.amazon.blackwatch.mitigation.state.storage.MitigationStateDynamoDBHelper;
+import com.amazon.coral.metrics.MetricsFactory;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBStreams;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.DescribeStreamRequest;
+import com.amazonaws.services.dynamodbv2.model.DescribeStreamResult;
+import com.amazonaws.services.dynamodbv2.model.ExpiredIteratorException;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsRequest;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorRequest;
+import com.amazonaws.services.dynamodbv2.model.OperationType;
+import com.amazonaws.services.dynamodbv2.model.Record;
+import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
+import com.amazonaws.services.dynamodbv2.model.Shard;
+import com.amazonaws.services.dynamodbv2.model.ShardIteratorType;
+import com.amazonaws.services.dynamodbv2.model.StreamRecord;
+import com.amazonaws.services.dynamodbv2.model.TrimmedDataAccessException;
+
+/**
+ * In-memory replica of the MitigationState table kept current from the table stream.
+ *
+ * The replica bootstraps from a single parallel scan and afterwards only reads the change records from the
+ * table stream, so the request path never pays for a full table scan. Shard iterators are positioned at the
+ * tip of the stream before the bootstrap scan starts, so no change can fall in between the scan and the first
+ * poll; changes that are already part of the scan are simply applied again, which is harmless since every
+ * record carries the full new image of the item.
+ *
+ * It is executed periodically (see run()), every run drains the available stream records, coalesces them per
+ * mitigation and publishes a new immutable snapshot if anything changed. If the stream position is lost
+ * (expired iterator, trimmed data, stream re-created) the replica falls back to a fresh bootstrap.
+ *
+ * Every snapshot carries a MitigationChangeLog of the mitigations changed since the last bootstrap, within
+ * CHANGE_LOG_RETENTION_MILLIS, so clients can poll for changes instead of listing the table.
+ *
+ * The table stream must be configured with a view type including NEW_IMAGE.
+ */
+@ThreadSafe
+public class StreamBasedMitigationStateReplica implements MitigationStateSnapshotProvider, Runnable {
+    private static final Log LOG = LogFactory.getLog(StreamBasedMitigationStateReplica.class);
+
+    private static final int MAX_RECORDS_PER_GET = 1000;
+    private static final int MAX_GET_RECORDS_CALLS_PER_SHARD = 20;
+    // same as the retention of the table stream
+    static final long CHANGE_LOG_RETENTION_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    private final AmazonDynamoDB dynamoDBClient;
+    private final AmazonDynamoDBStreams dynamoDBStreamsClient;
+    private final MitigationStateDynamoDBHelper mitigationStateDynamoDBHelper;
+    private final String mitigationStateTableName;
+    private final int parallelScanSegments;
+    private final MetricsFactory metricsFactory;
+    private final DynamoDBMapper mapper;
+
+    private volatile MitigationStateSnapshot snapshot;
+    // completed with the next snapshot when it is published, then replaced
+    private volatile CompletableFuture<MitigationStateSnapshot> nextSnapshot = new CompletableFuture<>();
+
+    // Guarded by this
+    private String streamArn;
+    // shardId -> current iterator, shards are removed once they are closed and fully read
+    private final Map<String, String> shardIterators = new LinkedHashMap<>();
+    // shards which have been fully read, used to decide when a child shard may be started
+    private final Set<String> completedShardIds = new HashSet<>();
+
+    @ConstructorProperties({"dynamoDBClient", "dynamoDBStreamsClient", "mitigationStateDynamoDBHelper",
+            "mitigationStateTableName", "parallelScanSegments", "metricsFactory"})
+    public StreamBasedMitigationStateReplica(@NonNull AmazonDynamoDB dynamoDBClient,
+                                             @NonNull AmazonDynamoDBStreams dynamoDBStreamsClient,
+                                             @NonNull MitigationStateDynamoDBHelper mitigationStateDynamoDBHelper,
+                                             @NonNull String mitigationStateTableName,
+                                             int parallelScanSegments,
+                                             @NonNull MetricsFactory metricsFactory) {
+        Validate.notEmpty(mitigationStateTableName);
+        Validate.isTrue(parallelScanSegments > 0, "parallelScanSegments must be positive");
+        this.dynamoDBClient = dynamoDBClient;
+        this.dynamoDBStreamsClient = dynamoDBStreamsClient;
+        this.mitigationStateDynamoDBHelper = mitigationStateDynamoDBHelper;
+        this.mitigationStateTableName = mitigationStateTableName;
+        this.parallelScanSegments = parallelScanSegments;
+        this.metricsFactory = metricsFactory;
+        this.mapper = new DynamoDBMapper(dynamoDBClient);
+    }
+
+    @Override
+    public MitigationStateSnapshot getSnapshot() {
+        MitigationStateSnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+
+        // Only reached before the first scheduled run completed
+        synchronized (this) {
+            if (snapshot == null) {
+                try (TSDMetrics metrics = new TSDMetrics(metricsFactory, "StreamBasedMitigationStateReplica.bootstrap")) {
+                    bootstrap(metrics);
+                }
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Callers are parked on a future completed by the next publish, they don't hold any lock or thread of the
+     * replica while waiting.
+     */
+    @Override
+    public MitigationStateSnapshot awaitSnapshotAfter(long version, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (true) {
+            // read the future before the snapshot, a snapshot published in between completes it
+            CompletableFuture<MitigationStateSnapshot> next = nextSnapshot;
+            MitigationStateSnapshot current = getSnapshot();
+            long remainingMillis = deadline - System.currentTimeMillis();
+            if (current.getVersion() > version || remainingMillis <= 0) {
+                return current;
+            }
+            try {
+                next.get(remainingMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                return getSnapshot();
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException("Snapshot futures are never completed exceptionally", ex);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        try (TSDMetrics metrics = new TSDMetrics(metricsFactory, "StreamBasedMitigationStateReplica.poll")) {
+            try {
+                poll(metrics);
+                metrics.addZero("PollFailure");
+            } catch (Exception ex) {
+                LOG.error("A problem occurred when polling the MitigationState table stream.", ex);
+                metrics.addOne("PollFailure");
+            }
+        }
+    }
+
+    synchronized void poll(TSDMetrics metrics) {
+        if (snapshot == null || streamArn == null) {
+            bootstrap(metrics);
+            return;
+        }
+
+        long pollStartMillis = System.currentTimeMillis();
+        Map<String, Optional<MitigationState>> changes = new LinkedHashMap<>();
+        boolean shardClosed = false;
+        long oldestRecordMillis = Long.MAX_VALUE;
+        int recordCount = 0;
+
+        try {
+            for (String shardId : new ArrayList<>(shardIterators.keySet())) {
+                String iterator = shardIterators.get(shardId);
+                for (int call = 0; iterator != null && call < MAX_GET_RECORDS_CALLS_PER_SHARD; ++call) {
+                    GetRecordsResult result = dynamoDBStreamsClient.getRecords(new GetRecordsRequest()
+                            .withShardIterator(iterator)
+                            .withLimit(MAX_RECORDS_PER_GET));
+                    for (Record record : result.getRecords()) {
+                        StreamRecord streamRecord = record.getDynamodb();
+                        applyRecord(changes, record.getEventName(), streamRecord);
+                        if (streamRecord.getApproximateCreationDateTime() != null) {
+                            oldestRecordMillis = Math.min(oldestRecordMillis,
+                                    streamRecord.getApproximateCreationDateTime().getTime());
+                        }
+                        ++recordCount;
+                    }
+                    iterator = result.getNextShardIterator();
+                    if (result.getRecords().isEmpty()) {
+                        // caught up with this shard for now
+                        break;
+                    }
+                }
+
+                if (iterator == null) {
+                    shardIterators.remove(shardId);
+                    completedShardIds.add(shardId);
+                    shardClosed = true;
+                } else {
+                    shardIterators.put(shardId, iterator);
+                }
+            }
+
+            if (shardClosed) {
+                discoverShards(ShardIteratorType.TRIM_HORIZON);
+            }
+        } catch (ExpiredIteratorException | TrimmedDataAccessException | ResourceNotFoundException ex) {
+            LOG.warn("Lost position in the MitigationState table stream, rebuilding the replica from a table scan", ex);
+            metrics.addOne("Rebootstrap");
+            bootstrap(metrics);
+            return;
+        }
+
+        metrics.addCount("RecordsRead", recordCount);
+        metrics.addCount("MitigationsChanged", changes.size());
+        metrics.addCount("OpenShards", shardIterators.size());
+        if (oldestRecordMillis != Long.MAX_VALUE) {
+            metrics.addCount("StreamLagMillis", System.currentTimeMillis() - oldestRecordMillis);
+        }
+
+        if (!changes.isEmpty()) {
+            publish(changes, pollStartMillis);
+        }
+        metrics.addCount("SnapshotSize", snapshot.size());
+        metrics.addCount("SnapshotVersion", snapshot.getVersion());
+    }
+
+    private void applyRecord(Map<String, Optional<MitigationState>> changes, String eventName,
+                             StreamRecord streamRecord) {
+        if (OperationType.REMOVE.toString().equals(eventName)) {
+            AttributeValue key = streamRecord.getKeys().get(MitigationState.MITIGATION_ID_KEY);
+            changes.put(key.getS(), Optional.empty());
+        } else {
+            Map<String, AttributeValue> newImage = streamRecord.getNewImage();
+            Validate.notNull(newImage, "MitigationState table stream must include NEW_IMAGE");
+            MitigationState mitigationState = mapper.marshallIntoObject(MitigationState.class,
+                    MitigationStateCodec.decode(newImage));
+            changes.put(mitigationState.getMitigationId(), Optional.of(mitigationState));
+        }
+    }
+
+    private void publish(Map<String, Optional<MitigationState>> changes, long observedAtMillis) {
+        MitigationStateSnapshot current = snapshot;
+        Map<String, MitigationState> statesById = new HashMap<>(current.getMitigationStatesById());
+        Map<String, Boolean> deletedById = new HashMap<>();
+        changes.forEach((mitigationId, mitigationState) -> {
+            if (mitigationState.isPresent()) {
+                statesById.put(mitigationId, mitigationState.get());
+            } else {
+                statesById.remove(mitigationId);
+            }
+            deletedById.put(mitigationId, !mitigationState.isPresent());
+        });
+        MitigationChangeLog changeLog = current.getChangeLog()
+                .record(deletedById, observedAtMillis, CHANGE_LOG_RETENTION_MILLIS);
+        setSnapshot(new MitigationStateSnapshot(current.getVersion() + 1, System.currentTimeMillis(), statesById,
+                changeLog));
+    }
+
+    private void setSnapshot(MitigationStateSnapshot newSnapshot) {
+        snapshot = newSnapshot;
+        CompletableFuture<MitigationStateSnapshot> published = nextSnapshot;
+        nextSnapshot = new CompletableFuture<>();
+        published.complete(newSnapshot);
+    }
+
+    private void bootstrap(TSDMetrics metrics) {
+        long startTime = System.currentTimeMillis();
+
+        streamArn = dynamoDBClient.describeTable(mitigationStateTableName).getTable().getLatestStreamArn();
+        Validate.notNull(streamArn, "Stream is not enabled on table " + mitigationStateTableName);
+
+        shardIterators.clear();
+        completedShardIds.clear();
+        // position on the tip of every open shard before scanning, anything written after this point
+        // will be read from the stream
+        discoverShards(ShardIteratorType.LATEST);
+
+        long nextVersion = snapshot == null ? 1 : snapshot.getVersion() + 1;
+        // changes made while the stream position was lost are unknown, the log starts over
+        setSnapshot(MitigationStateSnapshot.fromMitigationStates(nextVersion,
+                mitigationStateDynamoDBHelper.getAllMitigationStates(parallelScanSegments),
+                MitigationChangeLog.startingAt(startTime)));
+
+        metrics.addCount("BootstrapMillis", System.currentTimeMillis() - startTime);
+        metrics.addCount("SnapshotSize", snapshot.size());
+        LOG.info(String.format("Bootstrapped MitigationState replica with %d mitigations from stream %s",
+                snapshot.size(), streamArn));
+    }
+
+    /**
+     * Start reading every open shard which is not read yet. Shards whose parent is still being read
+     * are left for a later call, so the changes to an item are always applied in order.
+     */
+    private void discoverShards(ShardIteratorType newShardIteratorType) {
+        List<Shard> shards = new ArrayList<>();
+        String lastEvaluatedShardId = null;
+        do {
+            DescribeStreamResult result = dynamoDBStreamsClient.describeStream(new DescribeStreamRequest()
+                    .withStreamArn(streamArn)
+                    .withExclusiveStartShardId(lastEvaluatedShardId));
+            shards.addAll(result.getStreamDescription().getShards());
+            lastEvaluatedShardId = result.getStreamDescription().getLastEvaluatedShardId();
+        } while (lastEvaluatedShardId != null);
+
+        for (Shard shard : shards) {
+            String shardId = shard.getShardId();
+            if (shardIterators.containsKey(shardId) || completedShardIds.contains(shardId)) {
+                continue;
+            }
+
+            boolean isOpen = shard.getSequenceNumberRange().getEndingSequenceNumber() == null;
+            if (newShardIteratorType == ShardIteratorType.LATEST) {
+                if (isOpen) {
+                    shardIterators.put(shardId, getShardIterator(shardId, newShardIteratorType));
+                } else {
+                    // everything in a closed shard is older than the scan which follows
+                    completedShardIds.add(shardId);
+                }
+            } else if (shard.getParentShardId() == null
+                    || completedShardIds.contains(shard.getParentShardId())
+                    || shards.stream().noneMatch(s -> s.getShardId().equals(shard.getParentShardId()))) {
+                shardIterators.put(shardId, getShardIterator(shardId, newShardIteratorType));
+            }
+        }
+    }
+
+    private String getShardIterator(String shardId, ShardIteratorType shardIteratorType) {
+        return dynamoDBStreamsClient.getShardIterator(new GetShardIteratorRequest()
+                .withStreamArn(streamArn)
+                .withShardId(shardId)
+                .withShardIteratorType(shardIteratorType))
+                .getShardIterator();
+    }
+}
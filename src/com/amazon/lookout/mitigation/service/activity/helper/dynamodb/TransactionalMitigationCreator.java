@@ -0,0 +1,233 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import java.beans.ConstructorProperties;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+import lombok.NonNull;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazon.blackwatch.mitigation.state.model.MitigationState;
+import com.amazon.blackwatch.mitigation.state.model.ResourceAllocationState;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperFieldModel;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.CancellationReason;
+import com.amazonaws.services.dynamodbv2.model.Put;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItem;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsRequest;
+import com.amazonaws.services.dynamodbv2.model.TransactionCanceledException;
+import com.amazonaws.services.dynamodbv2.model.TransactionInProgressException;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Creates a new MitigationState together with the allocations of its resources in one TransactWriteItems call.
+ *
+ * Every item is written only if it doesn't exist yet. The allocations follow the same steps as
+ * ResourceAllocationHelper: they are written proposed, in the transaction, then confirmed one by one once the
+ * transaction succeeded, conditional on still being proposed for this mitigation. So there is no window in
+ * which the mitigation exists without its allocations, nothing to clean up when a resource turns out to be
+ * allocated already, and a create interrupted before confirming leaves the same state as an interrupted propose.
+ *
+ * New items get the initial version DynamoDBMapper would have given them. Transactions cancelled for a
+ * transient reason are retried with the same client request token, so a retry of a transaction which did
+ * succeed doesn't apply it twice.
+ */
+public class TransactionalMitigationCreator {
+    private static final Log LOG = LogFactory.getLog(TransactionalMitigationCreator.class);
+    private static final String CONDITIONAL_CHECK_FAILED = "ConditionalCheckFailed";
+    // cancellation reasons which may not happen again on a retry
+    private static final Set<String> TRANSIENT_CANCELLATION_REASONS = ImmutableSet.of(
+            "TransactionConflict", "ThrottlingError", "ProvisionedThroughputExceeded");
+    private static final String CONFIRMED_FIELD = "confirmed";
+    private static final AttributeValue INITIAL_VERSION = new AttributeValue().withN("1");
+
+    static final int MAX_ATTEMPTS = 3;
+    private static final long BASE_DELAY_MILLIS = 25;
+
+    private final AmazonDynamoDB dynamoDBClient;
+    private final String mitigationStateTableName;
+    private final String resourceAllocationStateTableName;
+    private final DynamoDBMapperTableModel<MitigationState> mitigationStateModel;
+    private final DynamoDBMapperTableModel<ResourceAllocationState> resourceAllocationStateModel;
+    private final ConditionalWriteRetrier.Sleeper sleeper;
+
+    /**
+     * Thrown when the mitigation or one of its resources already exists, nothing was written.
+     */
+    public static class ItemAlreadyExistsException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        ItemAlreadyExistsException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    @ConstructorProperties({"dynamoDBClient", "mitigationStateTableName", "resourceAllocationStateTableName"})
+    public TransactionalMitigationCreator(@NonNull AmazonDynamoDB dynamoDBClient,
+                                          @NonNull String mitigationStateTableName,
+                                          @NonNull String resourceAllocationStateTableName) {
+        this(dynamoDBClient, mitigationStateTableName, resourceAllocationStateTableName, Thread::sleep);
+    }
+
+    TransactionalMitigationCreator(@NonNull AmazonDynamoDB dynamoDBClient, @NonNull String mitigationStateTableName,
+                                   @NonNull String resourceAllocationStateTableName,
+                                   @NonNull ConditionalWriteRetrier.Sleeper sleeper) {
+        Validate.notEmpty(mitigationStateTableName);
+        Validate.notEmpty(resourceAllocationStateTableName);
+        this.dynamoDBClient = dynamoDBClient;
+        this.mitigationStateTableName = mitigationStateTableName;
+        this.resourceAllocationStateTableName = resourceAllocationStateTableName;
+        this.sleeper = sleeper;
+        DynamoDBMapper mapper = new DynamoDBMapper(dynamoDBClient);
+        this.mitigationStateModel = mapper.getTableModel(MitigationState.class, DynamoDBMapperConfig.DEFAULT);
+        this.resourceAllocationStateModel = mapper.getTableModel(ResourceAllocationState.class,
+                DynamoDBMapperConfig.DEFAULT);
+    }
+
+    /**
+     * @param mitigationState the new mitigation, its version is set to the initial version.
+     * @param resourceTypesByResourceId canonical resources to allocate to the mitigation, with their resource type.
+     * @throws ItemAlreadyExistsException if the mitigationId or any of the resources is taken.
+     */
+    public void create(@NonNull MitigationState mitigationState, @NonNull Map<String, String> resourceTypesByResourceId) {
+        List<TransactWriteItem> items = new ArrayList<>();
+        List<String> itemDescriptions = new ArrayList<>();
+
+        items.add(putIfNotExists(mitigationStateTableName, mitigationStateModel.hashKey().name(),
+                convertNew(mitigationStateModel, mitigationState)));
+        itemDescriptions.add("mitigationId " + mitigationState.getMitigationId());
+
+        List<ResourceAllocationState> allocations = new ArrayList<>();
+        resourceTypesByResourceId.forEach((resourceId, resourceType) -> {
+            ResourceAllocationState allocation = new ResourceAllocationState();
+            allocation.setResourceId(resourceId);
+            allocation.setResourceType(resourceType);
+            allocation.setMitigationId(mitigationState.getMitigationId());
+            allocation.setConfirmed(false);
+            allocations.add(allocation);
+            items.add(putIfNotExists(resourceAllocationStateTableName, resourceAllocationStateModel.hashKey().name(),
+                    convertNew(resourceAllocationStateModel, allocation)));
+            itemDescriptions.add("resourceId " + resourceId);
+        });
+
+        writeTransaction(new TransactWriteItemsRequest()
+                .withTransactItems(items)
+                .withClientRequestToken(UUID.randomUUID().toString()),
+                mitigationState.getMitigationId(), itemDescriptions);
+
+        allocations.forEach(this::confirm);
+    }
+
+    private void writeTransaction(TransactWriteItemsRequest request, String mitigationId,
+                                  List<String> itemDescriptions) {
+        for (int attempt = 1; ; ++attempt) {
+            try {
+                dynamoDBClient.transactWriteItems(request);
+                return;
+            } catch (TransactionCanceledException ex) {
+                List<CancellationReason> reasons = ex.getCancellationReasons() == null
+                        ? Collections.emptyList() : ex.getCancellationReasons();
+                for (int i = 0; i < reasons.size() && i < itemDescriptions.size(); ++i) {
+                    if (CONDITIONAL_CHECK_FAILED.equals(reasons.get(i).getCode())) {
+                        String message = String.format("Could not create mitigation %s, %s already exists",
+                                mitigationId, itemDescriptions.get(i));
+                        LOG.warn(message);
+                        throw new ItemAlreadyExistsException(message, ex);
+                    }
+                }
+                boolean transientCancellation = reasons.stream()
+                        .anyMatch(reason -> TRANSIENT_CANCELLATION_REASONS.contains(reason.getCode()));
+                if (!transientCancellation || attempt >= MAX_ATTEMPTS) {
+                    throw ex;
+                }
+                LOG.info(String.format("Creating mitigation %s cancelled on attempt %d: %s", mitigationId, attempt,
+                        reasons.stream().map(CancellationReason::getCode).collect(Collectors.joining(","))));
+            } catch (TransactionInProgressException ex) {
+                // an earlier attempt with the same token is still running
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw ex;
+                }
+            }
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * Second step of the allocation, as ResourceAllocationHelper does after proposing.
+     */
+    private void confirm(ResourceAllocationState allocation) {
+        DynamoDBMapperFieldModel<ResourceAllocationState, Object> confirmed =
+                resourceAllocationStateModel.field(CONFIRMED_FIELD);
+        Map<String, String> names = new HashMap<>();
+        Map<String, AttributeValue> values = new HashMap<>();
+        names.put("#confirmed", confirmed.name());
+        names.put("#mitigationId", resourceAllocationStateModel.field("mitigationId").name());
+        values.put(":confirmed", confirmed.convert(Boolean.TRUE));
+        values.put(":proposed", confirmed.convert(Boolean.FALSE));
+        values.put(":mitigationId", new AttributeValue(allocation.getMitigationId()));
+        StringBuilder update = new StringBuilder("SET #confirmed = :confirmed");
+        int versions = 0;
+        for (DynamoDBMapperFieldModel<ResourceAllocationState, Object> version : resourceAllocationStateModel.versions()) {
+            String name = "#version" + versions++;
+            names.put(name, version.name());
+            update.append(String.format(", %s = %s + :one", name, name));
+            values.put(":one", INITIAL_VERSION);
+        }
+
+        dynamoDBClient.updateItem(new UpdateItemRequest()
+                .withTableName(resourceAllocationStateTableName)
+                .withKey(ImmutableMap.of(resourceAllocationStateModel.hashKey().name(),
+                        new AttributeValue(allocation.getResourceId())))
+                .withUpdateExpression(update.toString())
+                .withConditionExpression("#mitigationId = :mitigationId AND #confirmed = :proposed")
+                .withExpressionAttributeNames(names)
+                .withExpressionAttributeValues(values));
+        allocation.setConfirmed(true);
+    }
+
+    /**
+     * @return the attributes of a new item, with its version attributes set to the initial version, on the
+     *         object too, as DynamoDBMapper.save sets them.
+     */
+    private static <T> Map<String, AttributeValue> convertNew(DynamoDBMapperTableModel<T> model, T object) {
+        for (DynamoDBMapperFieldModel<T, Object> version : model.versions()) {
+            version.set(object, version.unconvert(INITIAL_VERSION));
+        }
+        return model.convert(object);
+    }
+
+    private void backOff(int attempt) {
+        long delay = BASE_DELAY_MILLIS << (attempt - 1);
+        try {
+            sleeper.sleep(delay + ThreadLocalRandom.current().nextLong(delay));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying a transaction", ex);
+        }
+    }
+
+    private static TransactWriteItem putIfNotExists(String tableName, String hashKeyName,
+                                                    Map<String, AttributeValue> item) {
+        return new TransactWriteItem().withPut(new Put()
+                .withTableName(tableName)
+                .withItem(item)
+                .withConditionExpression("attribute_not_exists(#key)")
+                .withExpressionAttributeNames(ImmutableMap.of("#key", hashKeyName)));
+    }
+}
@@ -1,9 +1,19 @@
 package com.amazon.lookout.mitigation.service.activity.helper.mws;
 
 import java.beans.ConstructorProperties;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
 import amazon.mws.data.DateTimeRange;
 import amazon.mws.data.DimensionConstants;
@@ -14,6 +24,7 @@ import amazon.mws.query.MonitoringQueryClient;
 import amazon.mws.request.GetMetricDataRequest;
 import amazon.query.types.DateTime;
 import lombok.NonNull;
+import lombok.Value;
 import amazon.mws.query.MonitoringQueryClientProvider;
 import amazon.mws.response.GetMetricDataResponse;
 import amazon.mws.types.Stat;
@@ -24,6 +35,17 @@ import com.amazon.aws158.commons.metric.TSDMetrics;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+/**
+ * MWS queries for location metrics.
+ *
+ * Datapoints are aggregated per minute, so they are cached per (location, metric, period) until the next minute
+ * starts, and concurrent queries for the same key share one MWS call, waiting for it up to a deadline. Failures
+ * are not cached, and expired entries are evicted once a minute. Cached datapoints are shared between callers and
+ * can't be modified.
+ *
+ * Each query fetches the datapoints of a single location. Checking N locations still costs N MWS requests.
+ * Callers checking several locations run them concurrently, so they wait for the slowest request, not the sum.
+ */
 public class MWSHelper {
 
     private static final Log LOG = LogFactory.getLog(MWSHelper.class);
@@ -38,10 +60,50 @@ public class MWSHelper {
     private static final String MWS_QUERY_SUCCESS_METRIC_KEY = "MWSDataQuerySuccess";
     private static final String MWS_QUERY_FAILED_METRIC_KEY = "MWSDataQueryFailed";
     private static final String NUM_MWS_QUERY_ATTEMPTS_KEY = "NumMWSQueryAttempts";
+    private static final String DATAPOINT_CACHE_HIT_METRIC_KEY = "MWSDatapointCacheHit";
+    private static final String DATAPOINT_CACHE_COALESCED_METRIC_KEY = "MWSDatapointCacheCoalesced";
+
+    private static final long DATAPOINT_CACHE_PERIOD_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    static final long DEFAULT_DATAPOINT_WAIT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    @Value
+    private static class DatapointsKey {
+        // upper case, as the MWS dimension
+        String location;
+        String metricName;
+        StatPeriod statPeriod;
+    }
+
+    @Value
+    private static class CachedDatapoints {
+        CompletableFuture<List<Datapoint>> datapoints;
+        long expiresAtMillis;
+    }
+
+    private final ConcurrentMap<DatapointsKey, CachedDatapoints> datapointCache = new ConcurrentHashMap<>();
+
+    private final LongSupplier clock;
+
+    private final AtomicLong nextEvictionAtMillis = new AtomicLong();
+
+    // how long a caller waits for a fetch started by another caller
+    private final long datapointWaitTimeoutMillis;
 
     private MWSHelper(MonitoringQueryClientProvider mwsClientProvider, Map<String, String> defaultDimensions) {
-        this.mwsQueryClient = mwsClientProvider.getClient();
+        this(mwsClientProvider.getClient(), defaultDimensions, System::currentTimeMillis);
+    }
+
+    MWSHelper(@NonNull MonitoringQueryClient mwsQueryClient, @NonNull Map<String, String> defaultDimensions,
+              @NonNull LongSupplier clock) {
+        this(mwsQueryClient, defaultDimensions, clock, DEFAULT_DATAPOINT_WAIT_TIMEOUT_MILLIS);
+    }
+
+    MWSHelper(@NonNull MonitoringQueryClient mwsQueryClient, @NonNull Map<String, String> defaultDimensions,
+              @NonNull LongSupplier clock, long datapointWaitTimeoutMillis) {
+        this.mwsQueryClient = mwsQueryClient;
         this.mwsMetricBaseDimensions = defaultDimensions;
+        this.clock = clock;
+        this.datapointWaitTimeoutMillis = datapointWaitTimeoutMillis;
     }
 
     @ConstructorProperties({"mwsClientProvider", "mwsMetricDataset"})
@@ -97,7 +159,9 @@ public class MWSHelper {
             tsdMetrics.addOne(NUM_MWS_QUERY_ATTEMPTS_KEY);
             GetMetricDataResponse response = (GetMetricDataResponse) mwsQueryClient
                     .requestResponse(getMetricDataRequest);
-            LOG.info("MWS response: " + response.toString());
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("MWS response: " + response.toString());
+            }
             tsdMetrics.addZero(MWS_QUERY_SUCCESS_METRIC_KEY);
             return response;
         } catch (Exception ex) {
@@ -106,23 +170,89 @@ public class MWSHelper {
         }
     }
 
+    /**
+     * Return the datapoints cached for the key in the current minute, or fetch them. Concurrent callers missing
+     * the cache wait for the first caller's fetch, up to datapointWaitTimeoutMillis.
+     */
+    private List<Datapoint> getCachedDatapoints(DatapointsKey key, Supplier<List<Datapoint>> fetch,
+                                                TSDMetrics tsdMetrics) throws MWSRequestException {
+        long now = clock.getAsLong();
+        evictExpiredDatapoints(now);
+        CompletableFuture<List<Datapoint>> fetched = new CompletableFuture<>();
+        CachedDatapoints cached = datapointCache.compute(key, (k, current) ->
+                current != null && current.getExpiresAtMillis() > now ? current
+                        : new CachedDatapoints(fetched, now - now % DATAPOINT_CACHE_PERIOD_MILLIS
+                                + DATAPOINT_CACHE_PERIOD_MILLIS));
+
+        if (cached.getDatapoints() != fetched) {
+            boolean coalesced = !cached.getDatapoints().isDone();
+            tsdMetrics.addCount(DATAPOINT_CACHE_HIT_METRIC_KEY, coalesced ? 0 : 1);
+            tsdMetrics.addCount(DATAPOINT_CACHE_COALESCED_METRIC_KEY, coalesced ? 1 : 0);
+            try {
+                return cached.getDatapoints().get(datapointWaitTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new MWSRequestException("Interrupted waiting for MWS request", ex);
+            } catch (TimeoutException ex) {
+                throw new MWSRequestException("Timed out waiting for MWS request", ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                throw new MWSRequestException("MWS request failed", ex.getCause());
+            }
+        }
+
+        tsdMetrics.addZero(DATAPOINT_CACHE_HIT_METRIC_KEY);
+        tsdMetrics.addZero(DATAPOINT_CACHE_COALESCED_METRIC_KEY);
+        try {
+            List<Datapoint> datapoints = Collections.unmodifiableList(fetch.get());
+            fetched.complete(datapoints);
+            return datapoints;
+        } catch (Throwable ex) {
+            // callers which joined this fetch get the failure, Errors included, rather than waiting for it
+            fetched.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            if (fetched.isCompletedExceptionally()) {
+                // not cached, the next caller retries
+                datapointCache.remove(key, cached);
+            }
+        }
+    }
+
+    /**
+     * Expired entries are replaced when their key is read again, the others are removed once a minute.
+     */
+    private void evictExpiredDatapoints(long now) {
+        long evictAt = nextEvictionAtMillis.get();
+        if (now >= evictAt && nextEvictionAtMillis.compareAndSet(evictAt, now + DATAPOINT_CACHE_PERIOD_MILLIS)) {
+            datapointCache.values().removeIf(cached -> cached.getExpiresAtMillis() <= now);
+        }
+    }
+
     public List<Datapoint> getBGPTotalAnnouncements(String location, TSDMetrics tsdMetrics) throws MWSRequestException {
         String metricName = "AnnouncedCount";
         String serviceName = "BlackWatchBGPController";
         StatPeriod statPeriod = StatPeriod.OneMinute;
         Stat stat = Stat.sum;
         String methodName = "AnnouncedRoutes";
-        DateTime startTime = new DateTime(System.currentTimeMillis() - MWS_MAX_HISTORY_TO_FETCH);
-        DateTime endTime = new DateTime(System.currentTimeMillis());
-        TimeRange timeRange = new DateTimeRange(startTime, endTime);
-
-        Map<String, String> dimensions = new HashMap<>(mwsMetricBaseDimensions);
-        dimensions.put(DimensionConstants.MARKETPLACE_KEY, location.toUpperCase());
-        dimensions.put(DimensionConstants.SERVICE_NAME_KEY, serviceName);
-        dimensions.put(DimensionConstants.METRIC_KEY, metricName);
-        dimensions.put(DimensionConstants.METHOD_NAME_KEY, methodName);
-
-        GetMetricDataResponse response = getDataForVaribles(dimensions, statPeriod, stat, timeRange, tsdMetrics);
-        return response.getStatisticSeries().get(0).getDatapoints();
+
+        String marketplace = location.toUpperCase();
+        return getCachedDatapoints(new DatapointsKey(marketplace, metricName, statPeriod), () -> {
+            long now = clock.getAsLong();
+            DateTime startTime = new DateTime(now - MWS_MAX_HISTORY_TO_FETCH);
+            DateTime endTime = new DateTime(now);
+            TimeRange timeRange = new DateTimeRange(startTime, endTime);
+
+            Map<String, String> dimensions = new HashMap<>(mwsMetricBaseDimensions);
+            dimensions.put(DimensionConstants.MARKETPLACE_KEY, marketplace);
+            dimensions.put(DimensionConstants.SERVICE_NAME_KEY, serviceName);
+            dimensions.put(DimensionConstants.METRIC_KEY, metricName);
+            dimensions.put(DimensionConstants.METHOD_NAME_KEY, methodName);
+
+            GetMetricDataResponse response = getDataForVaribles(dimensions, statPeriod, stat, timeRange, tsdMetrics);
+            return response.getStatisticSeries().get(0).getDatapoints();
+        }, tsdMetrics);
     }
-}
\ No newline at end of file
+}
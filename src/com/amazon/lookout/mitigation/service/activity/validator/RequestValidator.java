@@ -18,6 +18,7 @@ import com.amazon.blackwatch.host.status.model.HostStatusEnum;
 import com.amazon.blackwatch.mitigation.state.model.MitigationState;
 import com.amazon.lookout.mitigation.service.AbortDeploymentRequest;
 import com.amazon.lookout.mitigation.service.ApplyBlackWatchMitigationRequest;
+import com.amazon.lookout.mitigation.service.ApplyBlackWatchMitigationsRequest;
 import com.amazon.lookout.mitigation.service.ChangeBlackWatchMitigationOwnerARNRequest;
 import com.amazon.lookout.mitigation.service.ChangeBlackWatchMitigationStateRequest;
 import com.amazon.lookout.mitigation.service.CreateMitigationRequest;
@@ -29,9 +30,11 @@ import com.amazon.lookout.mitigation.service.GetLocationHostStatusRequest;
 import com.amazon.lookout.mitigation.service.GetMitigationDefinitionRequest;
 import com.amazon.lookout.mitigation.service.GetMitigationHistoryRequest;
 import com.amazon.lookout.mitigation.service.GetMitigationInfoRequest;
+import com.amazon.lookout.mitigation.service.GetMitigationsCoveringIPRequest;
 import com.amazon.lookout.mitigation.service.GetRequestStatusRequest;
 import com.amazon.lookout.mitigation.service.ListActiveMitigationsForServiceRequest;
 import com.amazon.lookout.mitigation.service.ListBlackWatchLocationsRequest;
+import com.amazon.lookout.mitigation.service.ListBlackWatchMitigationChangesRequest;
 import com.amazon.lookout.mitigation.service.ListBlackWatchMitigationsRequest;
 import com.amazon.lookout.mitigation.service.MitigationActionMetadata;
 import com.amazon.lookout.mitigation.service.MitigationModificationRequest;
@@ -43,8 +46,10 @@ import com.amazon.lookout.mitigation.service.UpdateBlackWatchMitigationRequest;
 import com.amazon.lookout.mitigation.service.UpdateBlackWatchLocationStateRequest;
 import com.amazon.lookout.mitigation.service.UpdateLocationStateRequest;
 import com.amazon.lookout.mitigation.service.GetLocationOperationalStatusRequest;
+import com.amazon.lookout.mitigation.service.activity.ApplyBlackWatchMitigationsActivity;
 import com.amazon.lookout.mitigation.service.activity.GetLocationDeploymentHistoryActivity;
 import com.amazon.lookout.mitigation.service.activity.GetMitigationHistoryActivity;
+import com.amazon.lookout.mitigation.service.activity.ListBlackWatchMitigationChangesActivity;
 import com.amazon.lookout.mitigation.service.activity.ListBlackWatchMitigationsActivity;
 import com.amazon.lookout.mitigation.service.constants.DeviceName;
 import com.amazon.lookout.mitigation.service.mitigation.model.MitigationTemplate;
@@ -236,6 +241,28 @@ public class RequestValidator {
 
     }
     
+    public void validateListBlackWatchMitigationChangesRequest(@NonNull ListBlackWatchMitigationChangesRequest request) {
+        validateMetadata(request.getMitigationActionMetadata());
+        Integer waitTimeSeconds = request.getWaitTimeSeconds();
+        if (waitTimeSeconds != null && (waitTimeSeconds < 0
+                || waitTimeSeconds > ListBlackWatchMitigationChangesActivity.MAX_WAIT_TIME_SECONDS)) {
+            String msg = String.format("waitTimeSeconds must be between 0 and %d, instead found: %d",
+                    ListBlackWatchMitigationChangesActivity.MAX_WAIT_TIME_SECONDS, waitTimeSeconds);
+            LOG.info(msg);
+            throw new IllegalArgumentException(msg);
+        }
+    }
+
+    public void validateGetMitigationsCoveringIPRequest(@NonNull GetMitigationsCoveringIPRequest request) {
+        validateMetadata(request.getMitigationActionMetadata());
+        String ipOrCidr = request.getIpOrCidr();
+        if (StringUtils.isBlank(ipOrCidr) || !(IPUtils.isValidIp(ipOrCidr) || IPUtils.isValidCIDR(ipOrCidr))) {
+            String msg = "ipOrCidr must be a valid IP address or CIDR, instead found: " + ipOrCidr;
+            LOG.info(msg);
+            throw new IllegalArgumentException(msg);
+        }
+    }
+
     /**
      * Validates if the request object passed to the DeleteMitigationAPI is valid.
      * @param request Instance of DeleteMitigationFromAllLocationsRequest representing the input to the DeleteMitigationAPI.
@@ -947,7 +974,31 @@ public class RequestValidator {
            @NonNull ApplyBlackWatchMitigationRequest request,
            String userARN) {
         validateMetadata(request.getMitigationActionMetadata());
+        return validateApplyBlackWatchMitigationEntry(request, userARN);
+    }
 
+    /**
+     * Validates the batch itself, its entries are validated one by one with validateApplyBlackWatchMitigationEntry.
+     */
+    public void validateApplyBlackWatchMitigationsRequest(@NonNull ApplyBlackWatchMitigationsRequest request) {
+        validateMetadata(request.getMitigationActionMetadata());
+        List<ApplyBlackWatchMitigationRequest> mitigations = request.getMitigations();
+        if (mitigations == null || mitigations.isEmpty()
+                || mitigations.size() > ApplyBlackWatchMitigationsActivity.MAX_MITIGATIONS_PER_REQUEST) {
+            String msg = String.format("mitigations must have between 1 and %d entries, instead found: %d",
+                    ApplyBlackWatchMitigationsActivity.MAX_MITIGATIONS_PER_REQUEST,
+                    mitigations == null ? 0 : mitigations.size());
+            LOG.info(msg);
+            throw new IllegalArgumentException(msg);
+        }
+    }
+
+    /**
+     * Validates one mitigation to apply, except for its metadata which a batch carries for all its entries.
+     */
+    public BlackWatchTargetConfig validateApplyBlackWatchMitigationEntry(
+           @NonNull ApplyBlackWatchMitigationRequest request,
+           String userARN) {
         BlackWatchMitigationResourceType blackWatchMitigationResourceType = validateResourceType(request.getResourceType());
         validateResourceId(request.getResourceId(), blackWatchMitigationResourceType);
         validateMinutesToLive(request.getMinutesToLive());
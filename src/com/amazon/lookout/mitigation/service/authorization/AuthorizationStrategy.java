@@ -68,6 +68,7 @@ import com.amazon.coral.service.BasicAuthorizationInfo;
 import com.amazon.coral.service.Context;
 import com.amazon.lookout.mitigation.service.AbortDeploymentRequest;
 import com.amazon.lookout.mitigation.service.ApplyBlackWatchMitigationRequest;
+import com.amazon.lookout.mitigation.service.ApplyBlackWatchMitigationsRequest;
 import com.amazon.lookout.mitigation.service.ChangeBlackWatchMitigationOwnerARNRequest;
 import com.amazon.lookout.mitigation.service.DeactivateBlackWatchMitigationRequest;
 import com.amazon.lookout.mitigation.service.GetLocationDeploymentHistoryRequest;
@@ -75,8 +76,10 @@ import com.amazon.lookout.mitigation.service.GetLocationHostStatusRequest;
 import com.amazon.lookout.mitigation.service.GetMitigationDefinitionRequest;
 import com.amazon.lookout.mitigation.service.GetMitigationHistoryRequest;
 import com.amazon.lookout.mitigation.service.GetMitigationInfoRequest;
+import com.amazon.lookout.mitigation.service.GetMitigationsCoveringIPRequest;
 import com.amazon.lookout.mitigation.service.GetRequestStatusRequest;
 import com.amazon.lookout.mitigation.service.ListActiveMitigationsForServiceRequest;
+import com.amazon.lookout.mitigation.service.ListBlackWatchMitigationChangesRequest;
 import com.amazon.lookout.mitigation.service.ListBlackWatchMitigationsRequest;
 import com.amazon.lookout.mitigation.service.MitigationModificationRequest;
 import com.amazon.lookout.mitigation.service.UpdateBlackWatchMitigationRequest;
@@ -135,6 +138,9 @@ public class AuthorizationStrategy extends AbstractAwsAuthorizationStrategy {
     private static final String WRITE_OPERATION_PREFIX = "write";
     private static final String READ_OPERATION_PREFIX = "read";
 
+    // batch applies are authorized entry by entry as this operation
+    private static final String APPLY_BLACKWATCH_MITIGATION_OPERATION = "ApplyBlackWatchMitigation";
+
     private static final String BLACKWATCH_API_RESOURCE_PREFIX = "BLACKWATCH_API";
     private static final String BLACKWATCH_MITIGATION_RESOURCE_PREFIX = "BLACKWATCH_MITIGATION";
     private static final String BLACKWATCH_API_TARGET_IP_SPACE_TAG = "aws:BlackWatchAPI/TargetIPSpace";
@@ -213,11 +219,35 @@ public class AuthorizationStrategy extends AbstractAwsAuthorizationStrategy {
     @Override
     public List<AuthorizationInfo> getAuthorizationInfoList(Context context, Object request)
             throws AccessDeniedException {
+        if (request instanceof ApplyBlackWatchMitigationsRequest) {
+            return getApplyBlackWatchMitigationsAuthorizationInfoList((ApplyBlackWatchMitigationsRequest) request);
+        }
+
         RequestInfo requestInfo = getRequestInfo(context.getOperation().toString(), request);
         if (requestInfo == null) {
             throw new RuntimeException("Failed getting request info for request " + request);
         }
+        return getAuthorizationInfoList(requestInfo);
+    }
+
+    /**
+     * Every entry of a batch apply is authorized as the ApplyBlackWatchMitigation it stands for, so policies
+     * granting ApplyBlackWatchMitigation on some destinations grant the same destinations in a batch.
+     */
+    private List<AuthorizationInfo> getApplyBlackWatchMitigationsAuthorizationInfoList(
+            ApplyBlackWatchMitigationsRequest request) {
+        if (CollectionUtils.isEmpty(request.getMitigations())) {
+            throw new BadRequest400("mitigations must not be empty");
+        }
+        List<AuthorizationInfo> authInfoList = new LinkedList<>();
+        for (ApplyBlackWatchMitigationRequest entry : request.getMitigations()) {
+            authInfoList.addAll(getAuthorizationInfoList(generateApplyBlackWatchMitigationRequestInfo(
+                    APPLY_BLACKWATCH_MITIGATION_OPERATION, WRITE_OPERATION_PREFIX, entry)));
+        }
+        return authInfoList;
+    }
 
+    private List<AuthorizationInfo> getAuthorizationInfoList(RequestInfo requestInfo) {
         String resourceName = arnPrefix + requestInfo.getRelativeArn();
 
         LOG.debug("Action: " + requestInfo.getAction() + " ; " + "Resource (ARN): " + resourceName);
@@ -514,6 +544,18 @@ public class AuthorizationStrategy extends AbstractAwsAuthorizationStrategy {
                 (action, request) ->
                         generateListBlackWatchMitigationRequestInfo(action, READ_OPERATION_PREFIX));
 
+        addRequestInfoParser(
+                parsersByRequestType,
+                ListBlackWatchMitigationChangesRequest.class,
+                (action, request) ->
+                        generateListBlackWatchMitigationRequestInfo(action, READ_OPERATION_PREFIX));
+
+        addRequestInfoParser(
+                parsersByRequestType,
+                GetMitigationsCoveringIPRequest.class,
+                (action, request) ->
+                        generateListBlackWatchMitigationRequestInfo(action, READ_OPERATION_PREFIX));
+
         addRequestInfoParser(
                 parsersByRequestType,
                 DeactivateBlackWatchMitigationRequest.class,
@@ -0,0 +1,122 @@
+package com.amazon.lookout.mitigation.service.activity;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import static org.mockito.Mockito.*;
+
+import com.amazon.aws158.commons.metric.TSDMetrics;
+import com.amazon.blackwatch.mitigation.state.model.BlackWatchTargetConfig;
+import com.amazon.coral.service.Identity;
+import com.amazon.lookout.mitigation.service.ApplyBlackWatchMitigationRequest;
+import com.amazon.lookout.mitigation.service.ApplyBlackWatchMitigationResponse;
+import com.amazon.lookout.mitigation.service.ApplyBlackWatchMitigationsRequest;
+import com.amazon.lookout.mitigation.service.ApplyBlackWatchMitigationsResponse;
+import com.amazon.lookout.mitigation.service.BadRequest400;
+import com.amazon.lookout.mitigation.service.MitigationActionMetadata;
+import com.amazon.lookout.mitigation.service.MitigationLimitByOwnerExceeded400;
+import com.amazon.lookout.mitigation.service.activity.helper.ApplyBlackWatchMitigationEntry;
+import com.amazon.lookout.mitigation.service.activity.helper.ApplyBlackWatchMitigationResult;
+import com.amazon.lookout.test.common.util.TestUtils;
+
+public class ApplyBlackWatchMitigationsActivityTest extends ActivityTestHelper {
+    private ApplyBlackWatchMitigationsRequest request;
+    private ApplyBlackWatchMitigationRequest valid;
+    private ApplyBlackWatchMitigationRequest invalid;
+
+    private ApplyBlackWatchMitigationsActivity applyBlackWatchMitigationsActivity;
+
+    @Before
+    public void setup() {
+        TestUtils.configureLogging();
+        applyBlackWatchMitigationsActivity =
+                spy(new ApplyBlackWatchMitigationsActivity(requestValidator, blackwatchMitigationInfoHandler));
+        identity.setAttribute(Identity.AWS_USER_ARN, userArn);
+
+        valid = new ApplyBlackWatchMitigationRequest();
+        valid.setResourceId("1.2.3.4");
+        valid.setResourceType("IPAddress");
+        invalid = new ApplyBlackWatchMitigationRequest();
+        invalid.setResourceId("1.2.3.5");
+        invalid.setResourceType("NotAResourceType");
+
+        request = new ApplyBlackWatchMitigationsRequest();
+        request.setMitigations(Arrays.asList(invalid, valid));
+        request.setMitigationActionMetadata(
+                MitigationActionMetadata.builder()
+                .withUser("Khaleesi")
+                .withToolName("JUnit")
+                .withDescription("Test Descr")
+                .withRelatedTickets(Arrays.asList("1234", "5655"))
+                .build());
+        when(requestValidator.validateApplyBlackWatchMitigationEntry(valid, userArn))
+                .thenReturn(new BlackWatchTargetConfig());
+        when(requestValidator.validateApplyBlackWatchMitigationEntry(invalid, userArn))
+                .thenThrow(new IllegalArgumentException("Invalid resource type"));
+
+        Mockito.doReturn(requestId).when(applyBlackWatchMitigationsActivity).getRequestId();
+        Mockito.doReturn(identity).when(applyBlackWatchMitigationsActivity).getIdentity();
+    }
+
+    /**
+     * Test invalid entries get their own result and valid ones are applied
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Test
+    public void testApplyBlackWatchMitigationsActivity() {
+        ApplyBlackWatchMitigationResponse applied = new ApplyBlackWatchMitigationResponse();
+        applied.setMitigationId("mit-1");
+        Mockito.doReturn(Arrays.asList(ApplyBlackWatchMitigationResult.succeeded(applied)))
+                .when(blackwatchMitigationInfoHandler).applyBlackWatchMitigations(anyList(),
+                        isA(MitigationActionMetadata.class), eq(userArn), isA(TSDMetrics.class));
+
+        ApplyBlackWatchMitigationsResponse response = applyBlackWatchMitigationsActivity.enact(request);
+        assertEquals(requestId, response.getRequestId());
+        assertEquals(2, response.getResults().size());
+        assertEquals("BadRequest400", response.getResults().get(0).getErrorType());
+        assertNull(response.getResults().get(0).getResponse());
+        assertNull(response.getResults().get(1).getErrorType());
+        assertEquals("mit-1", response.getResults().get(1).getResponse().getMitigationId());
+        assertEquals(requestId, response.getResults().get(1).getResponse().getRequestId());
+
+        ArgumentCaptor<List> entries = ArgumentCaptor.forClass(List.class);
+        verify(blackwatchMitigationInfoHandler).applyBlackWatchMitigations(entries.capture(),
+                isA(MitigationActionMetadata.class), eq(userArn), isA(TSDMetrics.class));
+        assertEquals(1, entries.getValue().size());
+        assertEquals("1.2.3.4", ((ApplyBlackWatchMitigationEntry) entries.getValue().get(0)).getResourceId());
+    }
+
+    /**
+     * Test an entry failing in the handler is reported as the error a single apply would have thrown
+     */
+    @Test
+    public void testApplyBlackWatchMitigationsActivity_EntryFailed() {
+        request.setMitigations(Arrays.asList(valid));
+        Mockito.doReturn(Arrays.asList(ApplyBlackWatchMitigationResult.failed(
+                new MitigationLimitByOwnerExceeded400("Limit exceeded"))))
+                .when(blackwatchMitigationInfoHandler).applyBlackWatchMitigations(anyList(),
+                        isA(MitigationActionMetadata.class), eq(userArn), isA(TSDMetrics.class));
+
+        ApplyBlackWatchMitigationsResponse response = applyBlackWatchMitigationsActivity.enact(request);
+        assertEquals("MitigationLimitByOwnerExceeded400", response.getResults().get(0).getErrorType());
+        assertEquals("Limit exceeded", response.getResults().get(0).getErrorMessage());
+    }
+
+    /**
+     * Test an invalid batch fails the call
+     */
+    @Test(expected = BadRequest400.class)
+    public void testApplyBlackWatchMitigationsActivity_InvalidBatch() {
+        Mockito.doThrow(new IllegalArgumentException("mitigations must have between 1 and 25 entries"))
+                .when(requestValidator).validateApplyBlackWatchMitigationsRequest(request);
+
+        applyBlackWatchMitigationsActivity.enact(request);
+    }
+}
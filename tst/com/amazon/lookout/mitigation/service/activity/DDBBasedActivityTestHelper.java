@@ -32,6 +32,8 @@ import com.amazon.blackwatch.mitigation.resource.validator.IPAddressResourceType
 import com.amazon.lookout.mitigation.service.MitigationActionMetadata;
 import com.amazon.lookout.mitigation.service.activity.helper.BlackWatchMitigationInfoHandler;
 import com.amazon.lookout.mitigation.service.activity.helper.dynamodb.DDBBasedBlackWatchMitigationInfoHandler;
+import com.amazon.lookout.mitigation.service.activity.helper.dynamodb.MitigationStateUpdater;
+import com.amazon.lookout.mitigation.service.activity.helper.dynamodb.ScanBasedMitigationStateSnapshotProvider;
 import com.amazon.lookout.mitigation.service.activity.validator.RequestValidator;
 import com.amazon.lookout.mitigation.service.constants.DeviceName;
 import com.amazon.lookout.mitigation.service.mitigation.model.MitigationTemplate;
@@ -154,9 +156,21 @@ public class DDBBasedActivityTestHelper {
         dogfishHelper = mock(DogFishValidationHelper.class);
         blackwatchMitigationInfoHandler = new DDBBasedBlackWatchMitigationInfoHandler(mitigationStateDDBHelper,
                 resourceAllocationStateDDBHelper, resourceAllocationHelper, dogfishHelper, resourceTypeValidatorMap,
-                resourceTypeHelpers, parallelScanSegments, userArn, realm, mitigationsbyOwner);
+                resourceTypeHelpers, parallelScanSegments, userArn, realm, mitigationsbyOwner,
+                new ScanBasedMitigationStateSnapshotProvider(mitigationStateDDBHelper, parallelScanSegments, metricsFactory),
+                new MitigationStateUpdater(dynamoDBClient, mitigationStateTableName()));
     }
     
+    /**
+     * @return name of the table created by mitigationStateDDBHelper.
+     */
+    private static String mitigationStateTableName() {
+        return dynamoDBClient.listTables().getTableNames().stream()
+                .filter(tableName -> tableName.contains("MitigationState"))
+                .findFirst()
+                .get();
+    }
+
     protected <T extends Activity> T setupActivity(T activity) {
         Context context = mock(Context.class);
         when(context.getMetrics()).thenReturn(metrics);
@@ -8,6 +8,7 @@ import com.amazon.lookout.mitigation.service.BadRequest400;
 import com.amazon.lookout.mitigation.service.BlackWatchLocation;
 import com.amazon.lookout.mitigation.service.GetLocationOperationalStatusRequest;
 import com.amazon.lookout.mitigation.service.GetLocationOperationalStatusResponse;
+import com.amazon.lookout.mitigation.service.activity.helper.LocationLookupContext;
 import com.amazon.lookout.mitigation.service.activity.helper.LocationStateInfoHandler;
 import com.amazon.lookout.mitigation.service.activity.helper.dynamodb.DDBBasedLocationStateInfoHandler;
 import com.amazon.lookout.mitigation.service.activity.helper.mws.MWSRequestException;
@@ -65,13 +66,13 @@ public class GetLocationOperationalStatusActivityTest extends ActivityTestHelper
                 .getLocationState(eq(location), isA(TSDMetrics.class));
 
         Mockito.doReturn(true).when(locationStateInfoHandler)
-                .checkIfLocationIsOperational(eq(location), isA(TSDMetrics.class));
+                .checkIfLocationIsOperational(eq(location), isA(LocationLookupContext.class), isA(TSDMetrics.class));
 
         Mockito.doReturn(new ArrayList<String>()).when(locationStateInfoHandler)
-                .getPendingOperationLocks(eq(location), isA(TSDMetrics.class));
+                .getPendingOperationLocks(eq(location), isA(LocationLookupContext.class), isA(TSDMetrics.class));
 
         Mockito.doReturn(new TreeMap<>()).when(locationStateInfoHandler)
-                .getOperationChanges(eq(location), isA(TSDMetrics.class));
+                .getOperationChanges(eq(location), isA(LocationLookupContext.class), isA(TSDMetrics.class));
 
         GetLocationOperationalStatusResponse response = getLocationOperationalStatusActivity.enact(request);
 
@@ -98,13 +99,13 @@ public class GetLocationOperationalStatusActivityTest extends ActivityTestHelper
                 .getLocationState(eq(location), isA(TSDMetrics.class));
 
         Mockito.doReturn(false).when(locationStateInfoHandler)
-                .checkIfLocationIsOperational(eq(location), isA(TSDMetrics.class));
+                .checkIfLocationIsOperational(eq(location), isA(LocationLookupContext.class), isA(TSDMetrics.class));
 
         Mockito.doReturn(pendingOperations).when(locationStateInfoHandler)
-                .getPendingOperationLocks(eq(location), isA(TSDMetrics.class));
+                .getPendingOperationLocks(eq(location), isA(LocationLookupContext.class), isA(TSDMetrics.class));
 
         Mockito.doReturn(new TreeMap<>()).when(locationStateInfoHandler)
-                .getOperationChanges(eq(location), isA(TSDMetrics.class));
+                .getOperationChanges(eq(location), isA(LocationLookupContext.class), isA(TSDMetrics.class));
 
         GetLocationOperationalStatusResponse response = getLocationOperationalStatusActivity.enact(request);
 
@@ -130,7 +131,7 @@ public class GetLocationOperationalStatusActivityTest extends ActivityTestHelper
                 .hasExpectedMitigations(eq(DeviceName.BLACKWATCH_BORDER), Mockito.anyListOf(BlackWatchLocation.class), eq(location));
 
         Mockito.doReturn(new TreeMap<>()).when(locationStateInfoHandler)
-                .getOperationChanges(eq(location), isA(TSDMetrics.class));
+                .getOperationChanges(eq(location), isA(LocationLookupContext.class), isA(TSDMetrics.class));
 
         //RoutesAnnounced
         List<Datapoint> datapoints = new ArrayList<>();
@@ -153,6 +154,10 @@ public class GetLocationOperationalStatusActivityTest extends ActivityTestHelper
         assertEquals(true, response.isIsOperational());
         assertEquals(new ArrayList<String>(), response.getPendingOperations());
         assertEquals(new TreeMap<String, String>(), response.getOperationChanges());
+
+        // the location and its datapoints are fetched once for the whole request
+        Mockito.verify(locationStateInfoHandler, Mockito.times(1)).getLocationState(eq(location), isA(TSDMetrics.class));
+        Mockito.verify(mwsHelper, Mockito.times(1)).getBGPTotalAnnouncements(eq(location), isA(TSDMetrics.class));
     }
 
 
@@ -164,7 +169,7 @@ public class GetLocationOperationalStatusActivityTest extends ActivityTestHelper
         Mockito.doNothing().when(requestValidator).validateGetLocationOperationalStatusRequest(request);
         Mockito.doReturn(requestId).when(getLocationOperationalStatusActivity).getRequestId();
         Mockito.doReturn(new TreeMap<>()).when(locationStateInfoHandler)
-                .getOperationChanges(eq(location), isA(TSDMetrics.class));
+                .getOperationChanges(eq(location), isA(LocationLookupContext.class), isA(TSDMetrics.class));
 
         Mockito.doReturn(locationState).when(locationStateInfoHandler)
                 .getLocationState(eq(location), isA(TSDMetrics.class));
@@ -207,7 +212,7 @@ public class GetLocationOperationalStatusActivityTest extends ActivityTestHelper
         Mockito.doNothing().when(requestValidator).validateGetLocationOperationalStatusRequest(request);
         Mockito.doReturn(requestId).when(getLocationOperationalStatusActivity).getRequestId();
         Mockito.doReturn(new TreeMap<>()).when(locationStateInfoHandler)
-                .getOperationChanges(eq(location), isA(TSDMetrics.class));
+                .getOperationChanges(eq(location), isA(LocationLookupContext.class), isA(TSDMetrics.class));
 
         Mockito.doReturn(locationState).when(locationStateInfoHandler)
                 .getLocationState(eq(location), isA(TSDMetrics.class));
@@ -250,7 +255,7 @@ public class GetLocationOperationalStatusActivityTest extends ActivityTestHelper
         Mockito.doNothing().when(requestValidator).validateGetLocationOperationalStatusRequest(request);
         Mockito.doReturn(requestId).when(getLocationOperationalStatusActivity).getRequestId();
         Mockito.doReturn(new TreeMap<>()).when(locationStateInfoHandler)
-                .getOperationChanges(eq(location), isA(TSDMetrics.class));
+                .getOperationChanges(eq(location), isA(LocationLookupContext.class), isA(TSDMetrics.class));
 
         LocationState locationState = LocationState.builder()
                 .locationName(location)
@@ -303,13 +308,13 @@ public class GetLocationOperationalStatusActivityTest extends ActivityTestHelper
                 .getLocationState(eq(location), isA(TSDMetrics.class));
 
         Mockito.doReturn(true).when(locationStateInfoHandler)
-                .checkIfLocationIsOperational(eq(location), isA(TSDMetrics.class));
+                .checkIfLocationIsOperational(eq(location), isA(LocationLookupContext.class), isA(TSDMetrics.class));
 
         Mockito.doReturn(new ArrayList<String>()).when(locationStateInfoHandler)
-                .getPendingOperationLocks(eq(location), isA(TSDMetrics.class));
+                .getPendingOperationLocks(eq(location), isA(LocationLookupContext.class), isA(TSDMetrics.class));
 
         Mockito.doReturn(new TreeMap<>()).when(locationStateInfoHandler)
-                .getOperationChanges(eq(location), isA(TSDMetrics.class));
+                .getOperationChanges(eq(location), isA(LocationLookupContext.class), isA(TSDMetrics.class));
 
         GetLocationOperationalStatusResponse response = getLocationOperationalStatusActivity.enact(request);
     }
@@ -327,16 +332,16 @@ public class GetLocationOperationalStatusActivityTest extends ActivityTestHelper
                 .getLocationState(eq(location), isA(TSDMetrics.class));
 
         Mockito.doReturn(true).when(locationStateInfoHandler)
-                .checkIfLocationIsOperational(eq(location), isA(TSDMetrics.class));
+                .checkIfLocationIsOperational(eq(location), isA(LocationLookupContext.class), isA(TSDMetrics.class));
 
         Mockito.doReturn(new ArrayList<String>()).when(locationStateInfoHandler)
-                .getPendingOperationLocks(eq(location), isA(TSDMetrics.class));
+                .getPendingOperationLocks(eq(location), isA(LocationLookupContext.class), isA(TSDMetrics.class));
 
         Map<String, String> mockOperationChanges = new TreeMap<>();
         mockOperationChanges.put("operationId1", "changeId1");
 
         Mockito.doReturn(mockOperationChanges).when(locationStateInfoHandler)
-                .getOperationChanges(eq(location), isA(TSDMetrics.class));
+                .getOperationChanges(eq(location), isA(LocationLookupContext.class), isA(TSDMetrics.class));
 
         GetLocationOperationalStatusResponse response = getLocationOperationalStatusActivity.enact(request);
 
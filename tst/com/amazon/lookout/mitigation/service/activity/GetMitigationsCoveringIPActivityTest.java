@@ -0,0 +1,67 @@
+package com.amazon.lookout.mitigation.service.activity;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.mockito.Mockito.*;
+
+import com.amazon.aws158.commons.metric.TSDMetrics;
+import com.amazon.lookout.mitigation.service.BadRequest400;
+import com.amazon.lookout.mitigation.service.BlackWatchMitigationDefinition;
+import com.amazon.lookout.mitigation.service.GetMitigationsCoveringIPRequest;
+import com.amazon.lookout.mitigation.service.GetMitigationsCoveringIPResponse;
+import com.amazon.lookout.mitigation.service.MitigationActionMetadata;
+
+public class GetMitigationsCoveringIPActivityTest extends ActivityTestHelper {
+    private GetMitigationsCoveringIPRequest request;
+
+    private GetMitigationsCoveringIPActivity getMitigationsCoveringIPActivity;
+
+    @Before
+    public void setup() {
+        getMitigationsCoveringIPActivity =
+                spy(new GetMitigationsCoveringIPActivity(requestValidator, blackwatchMitigationInfoHandler));
+        request = new GetMitigationsCoveringIPRequest();
+        request.setIpOrCidr("10.0.0.0/24");
+        request.setMitigationActionMetadata(
+                MitigationActionMetadata.builder()
+                .withUser("Khaleesi")
+                .withToolName("JUnit")
+                .withDescription("Test Descr")
+                .withRelatedTickets(Arrays.asList("1234", "5655"))
+                .build());
+    }
+
+    /**
+     * Test get mitigations covering ip activity works
+     */
+    @Test
+    public void testGetMitigationsCoveringIPActivity() {
+        Mockito.doReturn(requestId).when(getMitigationsCoveringIPActivity).getRequestId();
+
+        List<BlackWatchMitigationDefinition> mitigations = Arrays.asList(new BlackWatchMitigationDefinition());
+        Mockito.doReturn(mitigations)
+                .when(blackwatchMitigationInfoHandler).getMitigationsCoveringIP(eq("10.0.0.0/24"), isA(TSDMetrics.class));
+
+        GetMitigationsCoveringIPResponse response = getMitigationsCoveringIPActivity.enact(request);
+        assertEquals(requestId, response.getRequestId());
+        assertEquals(mitigations, response.getMitigationList());
+    }
+
+    /**
+     * Test an invalid IP address is a bad request
+     */
+    @Test(expected = BadRequest400.class)
+    public void testGetMitigationsCoveringIPActivity_InvalidIp() {
+        Mockito.doReturn(requestId).when(getMitigationsCoveringIPActivity).getRequestId();
+        Mockito.doThrow(new IllegalArgumentException()).when(requestValidator).validateGetMitigationsCoveringIPRequest(request);
+
+        getMitigationsCoveringIPActivity.enact(request);
+    }
+}
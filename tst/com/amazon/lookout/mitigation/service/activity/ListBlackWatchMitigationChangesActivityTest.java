@@ -0,0 +1,107 @@
+package com.amazon.lookout.mitigation.service.activity;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.mockito.Mockito.*;
+
+import com.amazon.aws158.commons.metric.TSDMetrics;
+import com.amazon.lookout.mitigation.service.BadRequest400;
+import com.amazon.lookout.mitigation.service.BlackWatchMitigationDefinition;
+import com.amazon.lookout.mitigation.service.ListBlackWatchMitigationChangesRequest;
+import com.amazon.lookout.mitigation.service.ListBlackWatchMitigationChangesResponse;
+import com.amazon.lookout.mitigation.service.MitigationActionMetadata;
+import com.amazon.lookout.mitigation.service.activity.helper.BlackWatchMitigationChanges;
+
+public class ListBlackWatchMitigationChangesActivityTest extends ActivityTestHelper {
+    private ListBlackWatchMitigationChangesRequest request;
+
+    private ListBlackWatchMitigationChangesActivity listBlackWatchMitigationChangesActivity;
+
+    @Before
+    public void setup() {
+        listBlackWatchMitigationChangesActivity =
+                spy(new ListBlackWatchMitigationChangesActivity(requestValidator, blackwatchMitigationInfoHandler));
+        request = new ListBlackWatchMitigationChangesRequest();
+        request.setSinceToken("token1");
+        request.setMitigationActionMetadata(
+                MitigationActionMetadata.builder()
+                .withUser("Khaleesi")
+                .withToolName("JUnit")
+                .withDescription("Test Descr")
+                .withRelatedTickets(Arrays.asList("1234", "5655"))
+                .build());
+    }
+
+    /**
+     * Test list blackwatch mitigation changes activity works
+     */
+    @Test
+    public void testListBlackWatchMitigationChangesActivity() {
+        Mockito.doReturn(requestId).when(listBlackWatchMitigationChangesActivity).getRequestId();
+
+        List<BlackWatchMitigationDefinition> changedMitigations = new ArrayList<>();
+        Mockito.doReturn(new BlackWatchMitigationChanges(changedMitigations, Arrays.asList("mit-2"), "token2", false))
+                .when(blackwatchMitigationInfoHandler).getBlackWatchMitigationChanges(eq("token1"), anyLong(), isA(TSDMetrics.class));
+
+        ListBlackWatchMitigationChangesResponse response = listBlackWatchMitigationChangesActivity.enact(request);
+        assertEquals(requestId, response.getRequestId());
+        assertEquals(changedMitigations, response.getMitigationList());
+        assertEquals(Arrays.asList("mit-2"), response.getDeletedMitigationIds());
+        assertEquals("token2", response.getNextToken());
+        assertFalse(response.isResyncRequired());
+    }
+
+    /**
+     * Test the wait time is passed to the handler
+     */
+    @Test
+    public void testListBlackWatchMitigationChangesActivity_Wait() {
+        Mockito.doReturn(requestId).when(listBlackWatchMitigationChangesActivity).getRequestId();
+        request.setWaitTimeSeconds(20);
+
+        Mockito.doReturn(new BlackWatchMitigationChanges(Collections.emptyList(), Collections.emptyList(), "token1", false))
+                .when(blackwatchMitigationInfoHandler).getBlackWatchMitigationChanges(eq("token1"), eq(20_000L), isA(TSDMetrics.class));
+
+        ListBlackWatchMitigationChangesResponse response = listBlackWatchMitigationChangesActivity.enact(request);
+        assertEquals("token1", response.getNextToken());
+        verify(blackwatchMitigationInfoHandler).getBlackWatchMitigationChanges(eq("token1"), eq(20_000L), isA(TSDMetrics.class));
+    }
+
+    /**
+     * Test an expired token asks for a resync
+     */
+    @Test
+    public void testListBlackWatchMitigationChangesActivity_ResyncRequired() {
+        Mockito.doReturn(requestId).when(listBlackWatchMitigationChangesActivity).getRequestId();
+
+        Mockito.doReturn(new BlackWatchMitigationChanges(Collections.emptyList(), Collections.emptyList(), "token2", true))
+                .when(blackwatchMitigationInfoHandler).getBlackWatchMitigationChanges(eq("token1"), anyLong(), isA(TSDMetrics.class));
+
+        ListBlackWatchMitigationChangesResponse response = listBlackWatchMitigationChangesActivity.enact(request);
+        assertTrue(response.isResyncRequired());
+        assertTrue(response.getMitigationList().isEmpty());
+        assertEquals("token2", response.getNextToken());
+    }
+
+    /**
+     * Test a malformed token is a bad request
+     */
+    @Test(expected = BadRequest400.class)
+    public void testListBlackWatchMitigationChangesActivity_InvalidToken() {
+        Mockito.doReturn(requestId).when(listBlackWatchMitigationChangesActivity).getRequestId();
+
+        Mockito.doThrow(new IllegalArgumentException("Invalid sinceToken: token1"))
+                .when(blackwatchMitigationInfoHandler).getBlackWatchMitigationChanges(eq("token1"), anyLong(), isA(TSDMetrics.class));
+
+        listBlackWatchMitigationChangesActivity.enact(request);
+    }
+}
@@ -17,6 +17,8 @@ import com.amazon.lookout.mitigation.service.BlackWatchMitigationDefinition;
 import com.amazon.lookout.mitigation.service.ListBlackWatchMitigationsRequest;
 import com.amazon.lookout.mitigation.service.ListBlackWatchMitigationsResponse;
 import com.amazon.lookout.mitigation.service.MitigationActionMetadata;
+import com.amazon.lookout.mitigation.service.activity.helper.BlackWatchMitigationsPage;
+import com.amazon.lookout.mitigation.service.activity.helper.MitigationProjection;
 
 public class ListBlackWatchMitigationsActivityTest extends ActivityTestHelper {
     private ListBlackWatchMitigationsRequest request;
@@ -49,11 +51,14 @@ public class ListBlackWatchMitigationsActivityTest extends ActivityTestHelper {
         
         List<BlackWatchMitigationDefinition> listOfBlackWatchMitigationDefinition = new ArrayList<>();
                
-        Mockito.doReturn(listOfBlackWatchMitigationDefinition).when(blackwatchMitigationInfoHandler).getBlackWatchMitigations(anyString(), anyString(), anyString(), anyString(), anyLong(), isA(TSDMetrics.class));
+        Mockito.doReturn(new BlackWatchMitigationsPage(listOfBlackWatchMitigationDefinition, "token"))
+                .when(blackwatchMitigationInfoHandler).getBlackWatchMitigationsPage(anyString(), anyString(), anyString(),
+                        anyString(), anyLong(), anyString(), any(MitigationProjection.class), isA(TSDMetrics.class));
         
         ListBlackWatchMitigationsResponse response = listBlackWatchMitigationsActivity.enact(request);
         assertEquals(listOfBlackWatchMitigationDefinition, response.getMitigationList());
         assertEquals(requestId, response.getRequestId());
+        assertEquals("token", response.getNextToken());
     }
     
     /**
@@ -64,7 +69,9 @@ public class ListBlackWatchMitigationsActivityTest extends ActivityTestHelper {
         Mockito.doReturn(requestId).when(listBlackWatchMitigationsActivity).getRequestId();
 
         List<BlackWatchMitigationDefinition> listOfBlackWatchMitigationDefinition = new ArrayList<>();
-        Mockito.doReturn(listOfBlackWatchMitigationDefinition).when(blackwatchMitigationInfoHandler).getBlackWatchMitigations(anyString(), anyString(), anyString(), anyString(), anyLong(), isA(TSDMetrics.class));
+        Mockito.doReturn(new BlackWatchMitigationsPage(listOfBlackWatchMitigationDefinition, null))
+                .when(blackwatchMitigationInfoHandler).getBlackWatchMitigationsPage(anyString(), anyString(), anyString(),
+                        anyString(), anyLong(), anyString(), any(MitigationProjection.class), isA(TSDMetrics.class));
         ListBlackWatchMitigationsResponse response = listBlackWatchMitigationsActivity.enact(request);
         assertEquals(requestId, response.getRequestId());
         assertTrue(response.getMitigationList().isEmpty());
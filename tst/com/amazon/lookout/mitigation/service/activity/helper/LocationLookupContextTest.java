@@ -0,0 +1,90 @@
+package com.amazon.lookout.mitigation.service.activity.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import amazon.mws.data.Datapoint;
+import com.amazon.blackwatch.location.state.model.LocationState;
+
+public class LocationLookupContextTest {
+    private static final String location = "brg-test99-1";
+
+    @Test
+    public void testLocationStateFetchedOnce() {
+        LocationState locationState = LocationState.builder().locationName(location).build();
+        AtomicInteger reads = new AtomicInteger();
+        Function<String, LocationState> fetch = name -> {
+            reads.incrementAndGet();
+            return locationState;
+        };
+
+        LocationLookupContext context = new LocationLookupContext();
+        assertSame(locationState, context.getLocationState(location, false, fetch));
+        assertSame(locationState, context.getLocationState(location, false, fetch));
+        assertEquals(1, reads.get());
+
+        // a read bypassing the cache replaces the cached read once, then serves both
+        context.getLocationState(location, true, fetch);
+        context.getLocationState(location, true, fetch);
+        context.getLocationState(location, false, fetch);
+        assertEquals(2, reads.get());
+
+        assertEquals(2, context.getLocationStateFetches());
+        assertEquals(3, context.getMemoizedLookups());
+    }
+
+    @Test
+    public void testMissingLocationFetchedOnce() {
+        AtomicInteger reads = new AtomicInteger();
+        LocationLookupContext context = new LocationLookupContext();
+        for (int i = 0; i < 3; ++i) {
+            assertNull(context.getLocationState(location, false, name -> {
+                reads.incrementAndGet();
+                return null;
+            }));
+        }
+        assertEquals(1, reads.get());
+    }
+
+    @Test
+    public void testBGPTotalAnnouncementsFetchedOnce() {
+        List<Datapoint> datapoints = new ArrayList<>();
+        AtomicInteger reads = new AtomicInteger();
+        LocationLookupContext context = new LocationLookupContext();
+        for (int i = 0; i < 3; ++i) {
+            assertSame(datapoints, context.getBGPTotalAnnouncements(location, name -> {
+                reads.incrementAndGet();
+                return datapoints;
+            }));
+        }
+        context.getBGPTotalAnnouncements("brg-test99-2", name -> Collections.emptyList());
+
+        assertEquals(2, context.getBgpTotalAnnouncementsFetches());
+        assertEquals(2, context.getMemoizedLookups());
+        assertEquals(1, reads.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFailuresNotMemoized() {
+        LocationLookupContext context = new LocationLookupContext();
+        try {
+            context.getLocationState(location, false, name -> {
+                throw new IllegalStateException();
+            });
+        } catch (IllegalStateException ex) {
+            assertEquals(1, context.getLocationStateFetches());
+        }
+        context.getLocationState(location, false, name -> {
+            throw new IllegalStateException();
+        });
+    }
+}
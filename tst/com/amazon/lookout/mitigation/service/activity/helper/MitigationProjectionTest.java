@@ -0,0 +1,41 @@
+package com.amazon.lookout.mitigation.service.activity.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+import org.junit.Test;
+
+import com.amazon.blackwatch.mitigation.state.model.MitigationState;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+
+public class MitigationProjectionTest {
+    @Test
+    public void testFromString() {
+        assertEquals(MitigationProjection.Full, MitigationProjection.fromString(null));
+        assertEquals(MitigationProjection.Full, MitigationProjection.fromString(""));
+        assertEquals(MitigationProjection.IdsOnly, MitigationProjection.fromString("ids-only"));
+        assertEquals(MitigationProjection.IdsOnly, MitigationProjection.fromString("IDS_ONLY"));
+        assertEquals(MitigationProjection.Summary, MitigationProjection.fromString("summary"));
+        assertEquals(MitigationProjection.Deployment, MitigationProjection.fromString("deployment"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownProjectionRejected() {
+        MitigationProjection.fromString("everything");
+    }
+
+    @Test
+    public void testAttributeNamesAreMitigationStateAttributes() {
+        DynamoDBMapperTableModel<MitigationState> model = new DynamoDBMapper(mock(AmazonDynamoDB.class))
+                .getTableModel(MitigationState.class, DynamoDBMapperConfig.DEFAULT);
+        for (MitigationProjection projection : MitigationProjection.values()) {
+            if (projection.getAttributeNames() != null) {
+                // field throws for unknown attributes
+                projection.getAttributeNames().forEach(name -> assertEquals(name, model.field(name).name()));
+            }
+        }
+    }
+}
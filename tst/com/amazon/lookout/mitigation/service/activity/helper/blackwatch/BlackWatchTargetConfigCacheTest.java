@@ -0,0 +1,86 @@
+package com.amazon.lookout.mitigation.service.activity.helper.blackwatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazon.aws158.commons.metric.TSDMetrics;
+import com.amazon.blackwatch.mitigation.state.model.BlackWatchTargetConfig;
+import com.amazon.coral.metrics.Metrics;
+import com.amazon.coral.metrics.MetricsFactory;
+
+public class BlackWatchTargetConfigCacheTest {
+    private static final String json1 = "{ }";
+    private static final String json2 = "{ \"mitigation_config\": {} }";
+
+    private final MetricsFactory metricsFactory = mock(MetricsFactory.class);
+    private final Metrics metrics = mock(Metrics.class);
+    private TSDMetrics tsdMetrics;
+
+    @Before
+    public void setup() {
+        when(metricsFactory.newMetrics()).thenReturn(metrics);
+        when(metrics.newMetrics()).thenReturn(metrics);
+        tsdMetrics = new TSDMetrics(metricsFactory);
+    }
+
+    @Test
+    public void testHitReturnsSameConfig() {
+        BlackWatchTargetConfigCache cache = new BlackWatchTargetConfigCache();
+        BlackWatchTargetConfig first = cache.getTargetConfig("checksum1", json1, tsdMetrics);
+        BlackWatchTargetConfig second = cache.getTargetConfig("checksum1", json1, tsdMetrics);
+
+        assertSame(first, second);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testMissingChecksumIsComputed() {
+        BlackWatchTargetConfigCache cache = new BlackWatchTargetConfigCache();
+        BlackWatchTargetConfig first = cache.getTargetConfig(null, json1, tsdMetrics);
+        BlackWatchTargetConfig second = cache.getTargetConfig(null, json1, tsdMetrics);
+
+        assertSame(first, second);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testChecksumCollisionIsReparsed() throws Exception {
+        BlackWatchTargetConfigCache cache = new BlackWatchTargetConfigCache();
+        BlackWatchTargetConfig first = cache.getTargetConfig("same", json1, tsdMetrics);
+        BlackWatchTargetConfig second = cache.getTargetConfig("same", json2, tsdMetrics);
+
+        assertNotSame(first, second);
+        assertEquals(BlackWatchTargetConfig.fromJSONString(json2), second);
+    }
+
+    @Test
+    public void testEviction() {
+        BlackWatchTargetConfigCache cache = new BlackWatchTargetConfigCache(1);
+        TSDMetrics countingMetrics = mock(TSDMetrics.class);
+        cache.getTargetConfig("checksum1", json1, countingMetrics);
+        cache.getTargetConfig("checksum2", json2, countingMetrics);
+
+        assertEquals(1, cache.size());
+        // the evicted entry has to be parsed again
+        cache.getTargetConfig("checksum1", json1, countingMetrics);
+        verify(countingMetrics, times(3)).addOne("TargetConfigCacheMiss");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidJSONIsNotCached() {
+        BlackWatchTargetConfigCache cache = new BlackWatchTargetConfigCache();
+        try {
+            cache.getTargetConfig("checksum", "{ not json", tsdMetrics);
+        } finally {
+            assertEquals(0, cache.size());
+        }
+    }
+}
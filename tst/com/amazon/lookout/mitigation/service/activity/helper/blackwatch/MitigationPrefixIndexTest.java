@@ -0,0 +1,149 @@
+package com.amazon.lookout.mitigation.service.activity.helper.blackwatch;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.amazon.blackwatch.mitigation.state.model.BlackWatchMitigationResourceType;
+import com.amazon.blackwatch.mitigation.state.model.MitigationState;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+public class MitigationPrefixIndexTest {
+    private static final String owner1 = "owner1";
+    private static final String owner2 = "owner2";
+
+    private static MitigationState mitigation(String mitigationId, String owner, String state,
+            boolean allowAutoMitigationOverride, String... recordedIps) {
+        return MitigationState.builder()
+                .mitigationId(mitigationId)
+                .ownerARN(owner)
+                .state(state)
+                .allowAutoMitigationOverride(allowAutoMitigationOverride)
+                .recordedResources(ImmutableMap.of(BlackWatchMitigationResourceType.IPAddress.name(),
+                        ImmutableSet.copyOf(recordedIps)))
+                .build();
+    }
+
+    @Test
+    public void testIpCoveredBySupersetPrefix() {
+        MitigationPrefixIndex index = MitigationPrefixIndex.fromMitigationStates(Arrays.asList(
+                mitigation("mit-1", owner1, "Active", false, "10.0.0.0/22", "192.168.1.1/32")));
+
+        assertEquals(2, index.size());
+        assertEquals("mit-1", index.findCoveringMitigationNotOwnedBy("10.0.1.5", owner2).getMitigationId());
+        assertEquals("mit-1", index.findCoveringMitigationNotOwnedBy("10.0.2.0/24", owner2).getMitigationId());
+        assertEquals("mit-1", index.findCoveringMitigationNotOwnedBy("10.0.0.0/22", owner2).getMitigationId());
+        assertEquals("mit-1", index.findCoveringMitigationNotOwnedBy("192.168.1.1", owner2).getMitigationId());
+        // broader than the recorded prefix
+        assertNull(index.findCoveringMitigationNotOwnedBy("10.0.0.0/21", owner2));
+        assertNull(index.findCoveringMitigationNotOwnedBy("10.0.4.1", owner2));
+        assertNull(index.findCoveringMitigationNotOwnedBy("192.168.1.2", owner2));
+    }
+
+    @Test
+    public void testUnparsableAddressNotCovered() {
+        MitigationPrefixIndex index = MitigationPrefixIndex.fromMitigationStates(Arrays.asList(
+                mitigation("mit-1", owner1, "Active", false, "0.0.0.0/0")));
+
+        assertNull(index.findCoveringMitigationNotOwnedBy("not-an-ip", owner2));
+        assertNull(index.findCoveringMitigationNotOwnedBy("10.0.0.0/33", owner2));
+        assertNull(index.findCoveringMitigationNotOwnedBy("10.0.0.0/x", owner2));
+    }
+
+    @Test
+    public void testOwnMitigationIgnored() {
+        MitigationPrefixIndex index = MitigationPrefixIndex.fromMitigationStates(Arrays.asList(
+                mitigation("mit-1", owner1, "Active", false, "10.0.0.0/22")));
+
+        assertNull(index.findCoveringMitigationNotOwnedBy("10.0.1.5", owner1));
+    }
+
+    @Test
+    public void testInactiveMitigationIgnored() {
+        MitigationPrefixIndex index = MitigationPrefixIndex.fromMitigationStates(Arrays.asList(
+                mitigation("mit-1", owner1, "Expired", false, "10.0.0.0/22")));
+
+        assertEquals(0, index.size());
+        assertNull(index.findCoveringMitigationNotOwnedBy("10.0.1.5", owner2));
+    }
+
+    @Test
+    public void testNonOverridableMitigationPreferred() {
+        MitigationPrefixIndex index = MitigationPrefixIndex.fromMitigationStates(Arrays.asList(
+                mitigation("mit-1", owner1, "Active", true, "10.0.0.0/24"),
+                mitigation("mit-2", owner1, "Active", false, "10.0.0.0/16")));
+
+        MitigationState covering = index.findCoveringMitigationNotOwnedBy("10.0.0.1", owner2);
+        assertEquals("mit-2", covering.getMitigationId());
+        assertFalse(covering.isAllowAutoMitigationOverride());
+
+        covering = index.findCoveringMitigationNotOwnedBy("10.0.0.0/20", owner2);
+        assertEquals("mit-2", covering.getMitigationId());
+    }
+
+    @Test
+    public void testOnlyOverridableMitigationReturned() {
+        MitigationPrefixIndex index = MitigationPrefixIndex.fromMitigationStates(Arrays.asList(
+                mitigation("mit-1", owner1, "Active", true, "10.0.0.0/24")));
+
+        MitigationState covering = index.findCoveringMitigationNotOwnedBy("10.0.0.1", owner2);
+        assertEquals("mit-1", covering.getMitigationId());
+        assertTrue(covering.isAllowAutoMitigationOverride());
+    }
+
+    @Test
+    public void testIpv6() {
+        MitigationPrefixIndex index = MitigationPrefixIndex.fromMitigationStates(Arrays.asList(
+                mitigation("mit-1", owner1, "Active", false, "2001:db8::/32", "10.0.0.0/8")));
+
+        assertEquals("mit-1", index.findCoveringMitigationNotOwnedBy("2001:db8:1::1", owner2).getMitigationId());
+        assertNull(index.findCoveringMitigationNotOwnedBy("2001:db9::1", owner2));
+        // IPv4 and IPv6 prefixes live in separate tries
+        assertNull(index.findCoveringMitigationNotOwnedBy("a00::/8", owner2));
+    }
+
+    @Test
+    public void testInvalidRecordedResourceSkipped() {
+        MitigationPrefixIndex index = MitigationPrefixIndex.fromMitigationStates(Arrays.asList(
+                mitigation("mit-1", owner1, "Active", false, "not-an-ip", "10.0.0.0/40", "10.0.0.0/8")));
+
+        assertEquals(1, index.size());
+        assertNotNull(index.findCoveringMitigationNotOwnedBy("10.1.1.1", owner2));
+    }
+
+    @Test
+    public void testFindMitigationsOverlapping() {
+        MitigationPrefixIndex index = MitigationPrefixIndex.fromMitigationStates(Arrays.asList(
+                mitigation("mit-1", owner1, "Active", false, "10.0.0.0/8"),
+                mitigation("mit-2", owner2, "Active", true, "10.1.0.0/16", "10.2.0.0/16"),
+                mitigation("mit-3", owner1, "Active", false, "10.1.2.3/32"),
+                mitigation("mit-4", owner1, "Expired", false, "10.1.2.3/32"),
+                mitigation("mit-5", owner2, "Active", false, "192.168.0.0/16")));
+
+        assertEquals(Arrays.asList("mit-1", "mit-2", "mit-3"), ids(index.findMitigationsOverlapping("10.1.2.3")));
+        assertEquals(Arrays.asList("mit-1", "mit-2", "mit-3"), ids(index.findMitigationsOverlapping("10.1.0.0/16")));
+        // a query containing several prefixes of a mitigation returns it once
+        assertEquals(Arrays.asList("mit-1", "mit-2", "mit-3"), ids(index.findMitigationsOverlapping("10.0.0.0/8")));
+        assertEquals(Arrays.asList("mit-1", "mit-2", "mit-3", "mit-5"),
+                ids(index.findMitigationsOverlapping("0.0.0.0/0")));
+        assertEquals(Arrays.asList("mit-1"), ids(index.findMitigationsOverlapping("10.3.0.0/16")));
+        assertTrue(index.findMitigationsOverlapping("172.16.0.0/12").isEmpty());
+        assertTrue(index.findMitigationsOverlapping("2001:db8::/32").isEmpty());
+    }
+
+    private static List<String> ids(List<MitigationState> mitigationStates) {
+        return mitigationStates.stream().map(MitigationState::getMitigationId).collect(Collectors.toList());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRequest() {
+        MitigationPrefixIndex.fromMitigationStates(Collections.emptyList())
+                .findCoveringMitigationNotOwnedBy("10.0.0.0/33", owner2);
+    }
+}
@@ -0,0 +1,86 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.amazon.blackwatch.mitigation.state.model.MitigationState;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+public class ActiveMitigationCountsByOwnerTest {
+
+    private static MitigationState mitigation(String mitigationId, String ownerARN, String state) {
+        return MitigationState.builder()
+                .mitigationId(mitigationId)
+                .ownerARN(ownerARN)
+                .state(state)
+                .build();
+    }
+
+    @Test
+    public void testCountsByOwnerKey() {
+        MitigationStateSnapshot snapshot = MitigationStateSnapshot.fromMitigationStates(7, Arrays.asList(
+                mitigation("mit-1", "arn:aws:iam::123:role/bam_1", "Active"),
+                mitigation("mit-2", "arn:aws:iam::123:role/bam_2", "Active"),
+                mitigation("mit-3", "arn:aws:iam::123:role/bam_2", "Expired"),
+                mitigation("mit-4", "arn:aws:iam::456:role/route53", "Active")));
+
+        ActiveMitigationCountsByOwner counts = ActiveMitigationCountsByOwner.fromSnapshot(snapshot,
+                ImmutableSet.of("role/bam", "role/bam_2", "role/route53", "role/unknown"));
+
+        assertEquals(7, counts.getSnapshotVersion());
+        assertEquals(2, counts.getCount("role/bam"));
+        assertEquals(1, counts.getCount("role/bam_2"));
+        assertEquals(1, counts.getCount("role/route53"));
+        assertEquals(0, counts.getCount("role/unknown"));
+        assertEquals(0, counts.getCount("not-configured"));
+    }
+
+    @Test
+    public void testCountsUpdatedFromChangeLog() {
+        Set<String> ownerKeys = ImmutableSet.of("role/bam", "role/route53");
+        MitigationState bam1 = mitigation("mit-1", "arn:aws:iam::123:role/bam_1", "Active");
+        MitigationState bam2 = mitigation("mit-2", "arn:aws:iam::123:role/bam_2", "Active");
+        MitigationState route53 = mitigation("mit-3", "arn:aws:iam::456:role/route53", "Active");
+        MitigationChangeLog changeLog = MitigationChangeLog.startingAt(1000)
+                .record(ImmutableMap.of("mit-3", false), 100000, 1000000);
+        MitigationStateSnapshot snapshot = new MitigationStateSnapshot(1, 100000,
+                ImmutableMap.of("mit-1", bam1, "mit-2", bam2, "mit-3", route53), changeLog);
+        ActiveMitigationCountsByOwner counts = ActiveMitigationCountsByOwner.fromSnapshot(snapshot, ownerKeys);
+        assertSame(counts, counts.update(snapshot, ownerKeys));
+
+        // mit-2 expires, mit-3 is deleted, mit-4 is created
+        Map<String, MitigationState> statesById = ImmutableMap.of(
+                "mit-1", bam1,
+                "mit-2", mitigation("mit-2", "arn:aws:iam::123:role/bam_2", "Expired"),
+                "mit-4", mitigation("mit-4", "arn:aws:iam::123:role/bam_4", "Active"));
+        MitigationStateSnapshot updatedSnapshot = new MitigationStateSnapshot(2, 200000, statesById,
+                changeLog.record(ImmutableMap.of("mit-2", false, "mit-3", true, "mit-4", false), 200000, 1000000));
+
+        ActiveMitigationCountsByOwner updated = counts.update(updatedSnapshot, ownerKeys);
+        assertEquals(2, updated.getSnapshotVersion());
+        assertEquals(2, updated.getCount("role/bam"));
+        assertEquals(0, updated.getCount("role/route53"));
+        assertEquals(ActiveMitigationCountsByOwner.fromSnapshot(updatedSnapshot, ownerKeys).getCountsByOwnerKey(),
+                updated.getCountsByOwnerKey());
+    }
+
+    @Test
+    public void testCountsRebuiltWithoutChangeLog() {
+        Set<String> ownerKeys = ImmutableSet.of("role/bam");
+        ActiveMitigationCountsByOwner counts = ActiveMitigationCountsByOwner.fromSnapshot(
+                MitigationStateSnapshot.fromMitigationStates(1, Arrays.asList(
+                        mitigation("mit-1", "arn:aws:iam::123:role/bam_1", "Active"))), ownerKeys);
+
+        ActiveMitigationCountsByOwner updated = counts.update(MitigationStateSnapshot.fromMitigationStates(2,
+                Arrays.asList(mitigation("mit-1", "arn:aws:iam::123:role/bam_1", "Active"),
+                        mitigation("mit-2", "arn:aws:iam::123:role/bam_2", "Active"))), ownerKeys);
+        assertEquals(2, updated.getCount("role/bam"));
+    }
+}
@@ -0,0 +1,89 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.amazon.aws158.commons.metric.TSDMetrics;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+
+public class ConditionalWriteRetrierTest {
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private final TSDMetrics metrics = mock(TSDMetrics.class);
+    private final AtomicLong now = new AtomicLong();
+    private final List<Long> sleeps = new ArrayList<>();
+
+    private ConditionalWriteRetrier retrier(int maxAttempts, long deadlineMillis) {
+        return new ConditionalWriteRetrier(maxAttempts, 10, 100, deadlineMillis, millis -> {
+            sleeps.add(millis);
+            now.addAndGet(millis);
+        }, now::get);
+    }
+
+    @Test
+    public void testRetriesConflicts() {
+        AtomicInteger calls = new AtomicInteger();
+        String result = retrier(5, 10000).execute("Op", attempt -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new ConditionalCheckFailedException("conflict");
+            }
+            return "done";
+        }, metrics);
+
+        assertEquals("done", result);
+        assertEquals(2, sleeps.size());
+        sleeps.forEach(sleep -> assertTrue(sleep >= 10 && sleep <= 100));
+        // decorrelated jitter, each sleep is at most three times the previous one
+        assertTrue(sleeps.get(1) <= sleeps.get(0) * 3);
+        verify(metrics).addCount("Op.Attempts", 3);
+        verify(metrics).addCount("Op.Conflicts", 2);
+        verify(metrics).addZero("Op.RetriesExhausted");
+    }
+
+    @Test
+    public void testBudgetExhausted() {
+        thrown.expect(ConditionalWriteRetrier.RetriesExhaustedException.class);
+        thrown.expectMessage("all 3 attempts");
+        try {
+            retrier(3, 10000).execute("Op", attempt -> {
+                throw new ConditionalCheckFailedException("conflict");
+            }, metrics);
+        } finally {
+            verify(metrics).addCount("Op.Attempts", 3);
+            verify(metrics).addOne("Op.RetriesExhausted");
+        }
+    }
+
+    @Test
+    public void testDeadlineStopsRetries() {
+        thrown.expect(ConditionalWriteRetrier.RetriesExhaustedException.class);
+        thrown.expectMessage("all 1 attempts");
+        retrier(10, 5).execute("Op", attempt -> {
+            throw new ConditionalCheckFailedException("conflict");
+        }, metrics);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOtherFailuresNotRetried() {
+        try {
+            retrier(3, 10000).execute("Op", attempt -> {
+                throw new IllegalArgumentException("bad request");
+            }, metrics);
+        } finally {
+            verify(metrics).addCount("Op.Attempts", 1);
+            verify(metrics).addCount("Op.Conflicts", 0);
+        }
+    }
+}
@@ -28,6 +28,11 @@ import com.amazon.blackwatch.mitigation.resource.validator.ELBResourceTypeValida
 import com.amazon.blackwatch.mitigation.resource.validator.IPAddressListResourceTypeValidator;
 import com.amazon.blackwatch.mitigation.resource.validator.IPAddressResourceTypeValidator;
 import com.amazon.lookout.mitigation.service.*;
+import com.amazon.lookout.mitigation.service.activity.helper.ApplyBlackWatchMitigationEntry;
+import com.amazon.lookout.mitigation.service.activity.helper.ApplyBlackWatchMitigationResult;
+import com.amazon.lookout.mitigation.service.activity.helper.BlackWatchMitigationChanges;
+import com.amazon.lookout.mitigation.service.activity.helper.MitigationProjection;
+import com.amazon.lookout.mitigation.service.activity.helper.blackwatch.MitigationPrefixIndex;
 import com.amazon.lookout.mitigation.service.workflow.helper.DogFishMetadataProvider;
 import com.amazon.lookout.mitigation.service.workflow.helper.DogFishValidationHelper;
 import com.amazon.lookout.models.prefixes.DogfishIPPrefix;
@@ -49,10 +54,13 @@ import org.junit.Test;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -61,12 +69,16 @@ import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.amazon.lookout.utils.DynamoDBLocalMocks;
@@ -87,6 +99,7 @@ public class DDBBasedBlackWatchMitigationInfoHandlerTest {
     private static ResourceAllocationStateDynamoDBHelper resourceAllocationStateDDBHelper;
     private static ResourceAllocationHelper resourceAllocationHelper;
     private static MitigationStateDynamoDBHelper mitigationStateDynamoDBHelper;
+    private static MitigationStateUpdater mitigationStateUpdater;
     private static ELBResourceHelper elbResourceHelper;
 
     private static MetricsFactory metricsFactory = Mockito.mock(MetricsFactory.class);
@@ -169,9 +182,21 @@ public class DDBBasedBlackWatchMitigationInfoHandlerTest {
             handleActiveBWAPIMitigations, acceptMitigationsAtMasterRegion);
         blackWatchMitigationInfoHandler = new DDBBasedBlackWatchMitigationInfoHandler(mitigationStateDynamoDBHelper, 
                 resourceAllocationStateDDBHelper, resourceAllocationHelper, dogfishValidator, 
-                resourceTypeValidatorMap, resourceTypeHelpers,  4, testBamAndEc2OwnerArnPrefix, "us-east-1", mitigationLimitbyOwner);
+                resourceTypeValidatorMap, resourceTypeHelpers,  4, testBamAndEc2OwnerArnPrefix, "us-east-1", mitigationLimitbyOwner,
+                new ScanBasedMitigationStateSnapshotProvider(mitigationStateDynamoDBHelper, 4, metricsFactory),
+                mitigationStateUpdater);
     }
     
+    /**
+     * @return name of the table created by mitigationStateDynamoDBHelper.
+     */
+    private static String mitigationStateTableName() {
+        return dynamoDBClient.listTables().getTableNames().stream()
+                .filter(tableName -> tableName.contains("MitigationState"))
+                .findFirst()
+                .get();
+    }
+
     @BeforeClass
     public static void setUpOnce() {
         TestUtils.configureLogging();
@@ -221,11 +246,15 @@ public class DDBBasedBlackWatchMitigationInfoHandlerTest {
 
         mitigationStateDynamoDBHelper = new MitigationStateDynamoDBHelper(dynamoDBClient, realm, domain, metricsFactory);
         resourceAllocationStateDDBHelper = new ResourceAllocationStateDynamoDBHelper(dynamoDBClient, realm, domain, metricsFactory);
+        mitigationStateDynamoDBHelper.createTableIfNotExist(BillingMode.PAY_PER_REQUEST);
+        mitigationStateUpdater = new MitigationStateUpdater(dynamoDBClient, mitigationStateTableName());
         resourceAllocationHelper = new ResourceAllocationHelper(mitigationStateDynamoDBHelper, 
                 resourceAllocationStateDDBHelper, metricsFactory);
         blackWatchMitigationInfoHandler = new DDBBasedBlackWatchMitigationInfoHandler(mitigationStateDynamoDBHelper, 
                 resourceAllocationStateDDBHelper, resourceAllocationHelper, dogfishValidator, resourceTypeValidatorMap,
-                resourceTypeHelpers, 4, testBamAndEc2OwnerArnPrefix, "us-east-1", mitigationLimitbyOwner);
+                resourceTypeHelpers, 4, testBamAndEc2OwnerArnPrefix, "us-east-1", mitigationLimitbyOwner,
+                new ScanBasedMitigationStateSnapshotProvider(mitigationStateDynamoDBHelper, 4, metricsFactory),
+                mitigationStateUpdater);
 
         BlackWatchMitigationResourceType testblackWatchIPAddressResourceType = BlackWatchMitigationResourceType.valueOf(testIPAddressResourceType);
 
@@ -389,7 +418,7 @@ public class DDBBasedBlackWatchMitigationInfoHandlerTest {
             .withRelatedTickets(Arrays.asList("4321"))
             .build();
         mitigationStateDynamoDBHelper.batchUpdateState(Arrays.asList(mitigationState1, mitigationState2)); 
-        blackWatchMitigationInfoHandler.deactivateMitigation(mitigationState1.getMitigationId(), requestMetadata);
+        blackWatchMitigationInfoHandler.deactivateMitigation(mitigationState1.getMitigationId(), requestMetadata, tsdMetrics);
         MitigationState newMitigationState = mitigationStateDynamoDBHelper.getMitigationState(mitigationState1.getMitigationId());
         assertEquals(MitigationState.State.Expired.name(), newMitigationState.getState());
         assertEquals(requestMetadata.getUser(), newMitigationState.getLatestMitigationActionMetadata().getUser());
@@ -408,7 +437,7 @@ public class DDBBasedBlackWatchMitigationInfoHandlerTest {
             .build();
         mitigationState1.setState(MitigationState.State.To_Delete.name());
         mitigationStateDynamoDBHelper.batchUpdateState(Arrays.asList(mitigationState1, mitigationState2)); 
-        blackWatchMitigationInfoHandler.deactivateMitigation(mitigationState1.getMitigationId(), requestMetadata);
+        blackWatchMitigationInfoHandler.deactivateMitigation(mitigationState1.getMitigationId(), requestMetadata, tsdMetrics);
         mitigationState1.setState(MitigationState.State.Active.name());
     }
 
@@ -423,7 +452,7 @@ public class DDBBasedBlackWatchMitigationInfoHandlerTest {
             .withRelatedTickets(Arrays.asList("4321"))
             .build();
         try {
-            blackWatchMitigationInfoHandler.deactivateMitigation(mitigationState1.getMitigationId() + "Fail", requestMetadata);
+            blackWatchMitigationInfoHandler.deactivateMitigation(mitigationState1.getMitigationId() + "Fail", requestMetadata, tsdMetrics);
         } catch (IllegalArgumentException ex) {
             caughtException = ex;
         }
@@ -696,6 +725,181 @@ public class DDBBasedBlackWatchMitigationInfoHandlerTest {
         validateMitigation(listOfBlackwatchMitigation.get(0), mitigationState1);
     }
     
+    @Test
+    public void testGetBlackWatchMitigationsDeploymentSummary() {
+        mitigationStateDynamoDBHelper.batchUpdateState(Arrays.asList(mitigationState3));
+        List<BlackWatchMitigationDefinition> listOfBlackwatchMitigation = blackWatchMitigationInfoHandler
+                .getBlackWatchMitigationsPage(null, null, null, null, 1, null, MitigationProjection.Deployment,
+                        tsdMetrics).getMitigations();
+        assertEquals(1, listOfBlackwatchMitigation.size());
+        BlackWatchMitigationDefinition mitigation = listOfBlackwatchMitigation.get(0);
+        assertNull(mitigation.getLocationMitigationState());
+        assertEquals(mitigationState3.getMitigationSettingsJSON(), mitigation.getMitigationSettingsJSON());
+
+        LocationDeploymentSummary summary = mitigation.getLocationDeploymentSummary();
+        assertEquals(Integer.valueOf(1), summary.getNumLocations());
+        assertEquals(Long.valueOf(1000L), summary.getTotalPPS());
+        assertEquals(Long.valueOf(1000L), summary.getTotalBPS());
+        // the location runs checksum abcdefgh, the mitigation's is ABABABABA
+        assertEquals(Integer.valueOf(1), summary.getNumStaleChecksumLocations());
+    }
+
+    @Test
+    public void testGetBlackWatchMitigationsSummaryRatesMatchFull() {
+        mitigationState1.setMitigationSettingsJSON("{\"mitigation_config\": {\"global_traffic_shaper\": "
+                + "{\"default\": {\"global_pps\": 4242}}}}");
+        mitigationState1.setMitigationSettingsJSONChecksum(
+                BlackWatchHelper.getHexStringChecksum(mitigationState1.getMitigationSettingsJSON()));
+        mitigationStateDynamoDBHelper.batchUpdateState(Arrays.asList(mitigationState1));
+
+        BlackWatchMitigationDefinition full = blackWatchMitigationInfoHandler.getBlackWatchMitigationsPage(
+                testMitigation1, null, null, null, 1, null, MitigationProjection.Full, tsdMetrics)
+                .getMitigations().get(0);
+        BlackWatchMitigationDefinition summary = blackWatchMitigationInfoHandler.getBlackWatchMitigationsPage(
+                testMitigation1, null, null, null, 1, null, MitigationProjection.Summary, tsdMetrics)
+                .getMitigations().get(0);
+
+        assertEquals(Long.valueOf(4242L), full.getGlobalPPS());
+        assertEquals(full.getGlobalPPS(), summary.getGlobalPPS());
+        // no global_bps in the JSON, both fall back to the stored rate
+        assertEquals(mitigationState1.getBpsRate(), summary.getGlobalBPS());
+        assertEquals(full.getGlobalBPS(), summary.getGlobalBPS());
+        assertNull(summary.getMitigationSettingsJSON());
+        assertNull(summary.getLocationMitigationState());
+    }
+
+    @Test
+    public void testGetBlackWatchMitigationsWithoutPageAppliesProjection() {
+        mitigationStateDynamoDBHelper.batchUpdateState(Arrays.asList(mitigationState1));
+
+        List<BlackWatchMitigationDefinition> mitigations = blackWatchMitigationInfoHandler.getBlackWatchMitigations(
+                testMitigation1, null, null, null, 5, MitigationProjection.IdsOnly, tsdMetrics);
+        assertEquals(1, mitigations.size());
+        assertEquals(testMitigation1, mitigations.get(0).getMitigationId());
+        assertNull(mitigations.get(0).getOwnerARN());
+        assertNull(mitigations.get(0).getMitigationSettingsJSON());
+        assertNull(mitigations.get(0).getLocationMitigationState());
+    }
+
+    @Test
+    public void testSummarizeLocationMitigationState() {
+        MitigationStateSetting deployed = new MitigationStateSetting();
+        deployed.setMitigationSettingsJSONChecksum("current");
+        deployed.setConfigDeploymentJobStatus("SUCCEEDED");
+        deployed.setPPS(10L);
+        deployed.setBPS(100L);
+        MitigationStateSetting deploying = new MitigationStateSetting();
+        deploying.setMitigationSettingsJSONChecksum("previous");
+        deploying.setConfigDeploymentJobStatus("IN_PROGRESS");
+        deploying.setPPS(5L);
+        MitigationStateSetting deployedToo = new MitigationStateSetting();
+        deployedToo.setMitigationSettingsJSONChecksum("current");
+        deployedToo.setConfigDeploymentJobStatus("SUCCEEDED");
+
+        Map<String, MitigationStateSetting> locationStates = new HashMap<>();
+        locationStates.put("loc1", deployed);
+        locationStates.put("loc2", deploying);
+        locationStates.put("loc3", deployedToo);
+        locationStates.put("loc4", null);
+
+        LocationDeploymentSummary summary = DDBBasedBlackWatchMitigationInfoHandler
+                .summarizeLocationMitigationState(locationStates, "current");
+        assertEquals(Integer.valueOf(4), summary.getNumLocations());
+        assertEquals(ImmutableMap.of("SUCCEEDED", 2, "IN_PROGRESS", 1,
+                DDBBasedBlackWatchMitigationInfoHandler.UNKNOWN_JOB_STATUS, 1),
+                summary.getLocationCountsByJobStatus());
+        assertEquals(Long.valueOf(15L), summary.getTotalPPS());
+        assertEquals(Long.valueOf(100L), summary.getTotalBPS());
+        assertEquals(Integer.valueOf(2), summary.getNumStaleChecksumLocations());
+    }
+
+    @Test
+    public void testBlackWatchMitigationChangesNotTrackedIsBadRequest() {
+        // the scan based snapshot provider has no change log
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("not supported");
+        blackWatchMitigationInfoHandler.getBlackWatchMitigationChanges(null, 0, tsdMetrics);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeMaxChangeWaitersRejected() {
+        blackWatchMitigationInfoHandler.setMaxChangeWaiters(-1);
+    }
+
+    @Test
+    public void testWaitForBlackWatchMitigationChanges() throws InterruptedException {
+        long watermark = 1_000_000;
+        MitigationChangeLog changeLog = MitigationChangeLog.startingAt(watermark - 60_000);
+        MitigationStateSnapshot before = new MitigationStateSnapshot(1, watermark, ImmutableMap.of(), changeLog);
+        MitigationStateSnapshot after = new MitigationStateSnapshot(2, watermark + 1000,
+                ImmutableMap.of(mitigationState1.getMitigationId(), mitigationState1),
+                changeLog.record(ImmutableMap.of(mitigationState1.getMitigationId(), false),
+                        watermark + MitigationChangeLog.CLOCK_SKEW_MILLIS + 1000, 3_600_000));
+        MitigationStateSnapshotProvider snapshotProvider = mock(MitigationStateSnapshotProvider.class);
+        Mockito.doReturn(before).when(snapshotProvider).getSnapshot();
+        Mockito.doReturn(after).when(snapshotProvider).awaitSnapshotAfter(eq(1L), anyLong());
+        DDBBasedBlackWatchMitigationInfoHandler handler = new DDBBasedBlackWatchMitigationInfoHandler(
+                mitigationStateDynamoDBHelper, resourceAllocationStateDDBHelper, resourceAllocationHelper,
+                dogfishValidator, resourceTypeValidatorMap, resourceTypeHelpers, 4, testBamAndEc2OwnerArnPrefix,
+                "us-east-1", mitigationLimitbyOwner, snapshotProvider, mitigationStateUpdater);
+        String token = DDBBasedBlackWatchMitigationInfoHandler.encodeChangesToken(watermark);
+
+        // nothing changed since the token, returns right away without waiting
+        BlackWatchMitigationChanges changes = handler.getBlackWatchMitigationChanges(token, 0, tsdMetrics);
+        assertFalse(changes.isResyncRequired());
+        assertTrue(changes.getMitigations().isEmpty());
+        verify(snapshotProvider, never()).awaitSnapshotAfter(anyLong(), anyLong());
+
+        // waits for the next snapshot
+        changes = handler.getBlackWatchMitigationChanges(token, 10_000, tsdMetrics);
+        assertEquals(1, changes.getMitigations().size());
+        assertEquals(mitigationState1.getMitigationId(), changes.getMitigations().get(0).getMitigationId());
+        verify(snapshotProvider).awaitSnapshotAfter(eq(1L), anyLong());
+
+        // no waiter allowed, returns right away
+        Mockito.reset(snapshotProvider);
+        Mockito.doReturn(before).when(snapshotProvider).getSnapshot();
+        handler.setMaxChangeWaiters(0);
+        changes = handler.getBlackWatchMitigationChanges(token, 10_000, tsdMetrics);
+        assertTrue(changes.getMitigations().isEmpty());
+        verify(snapshotProvider, never()).awaitSnapshotAfter(anyLong(), anyLong());
+    }
+
+    @Test
+    public void testGetMitigationsCoveringIP() {
+        MitigationState covering = MitigationState.builder()
+                .mitigationId("mit-covering")
+                .resourceId("10.0.0.0/24")
+                .resourceType(testIPAddressResourceType)
+                .ownerARN(testOwnerARN1)
+                .state(MitigationState.State.Active.name())
+                .recordedResources(ImmutableMap.of(BlackWatchMitigationResourceType.IPAddress.name(),
+                        ImmutableSet.of("10.0.0.0/24")))
+                .build();
+        MitigationStateSnapshotProvider snapshotProvider = mock(MitigationStateSnapshotProvider.class);
+        Mockito.doReturn(new MitigationStateSnapshot(1, 1000, ImmutableMap.of(
+                covering.getMitigationId(), covering, mitigationState1.getMitigationId(), mitigationState1)))
+                .when(snapshotProvider).getSnapshot();
+        DDBBasedBlackWatchMitigationInfoHandler handler = new DDBBasedBlackWatchMitigationInfoHandler(
+                mitigationStateDynamoDBHelper, resourceAllocationStateDDBHelper, resourceAllocationHelper,
+                dogfishValidator, resourceTypeValidatorMap, resourceTypeHelpers, 4, testBamAndEc2OwnerArnPrefix,
+                "us-east-1", mitigationLimitbyOwner, snapshotProvider, mitigationStateUpdater);
+
+        List<BlackWatchMitigationDefinition> mitigations = handler.getMitigationsCoveringIP("10.0.0.5", tsdMetrics);
+        assertEquals(1, mitigations.size());
+        assertEquals("mit-covering", mitigations.get(0).getMitigationId());
+        assertEquals(1, handler.getMitigationsCoveringIP("10.0.0.0/16", tsdMetrics).size());
+        assertTrue(handler.getMitigationsCoveringIP("10.0.1.0/24", tsdMetrics).isEmpty());
+    }
+
+    @Test
+    public void testChangesToken() {
+        assertEquals(1234567L, DDBBasedBlackWatchMitigationInfoHandler.decodeChangesToken(
+                DDBBasedBlackWatchMitigationInfoHandler.encodeChangesToken(1234567L)));
+        thrown.expect(IllegalArgumentException.class);
+        DDBBasedBlackWatchMitigationInfoHandler.decodeChangesToken("not-a-token");
+    }
+
     @Test
     public void testChecksumString() {
         assertEquals("674c1f08fac053e604366eb24f2123568e367479301d4dd14e6109ca85abda1b",
@@ -1041,14 +1245,26 @@ public class DDBBasedBlackWatchMitigationInfoHandlerTest {
         assertFalse(response2.isNewMitigationCreated());
         assertEquals(mitigationId, response2.getMitigationId());
         
+        // Re-applying the same config within the TTL doesn't write anything
         MitigationState mitState2 = mitigationStateDynamoDBHelper.getMitigationState(mitigationId);
-        assertNotEquals(mitState1.getChangeTime(), mitState2.getChangeTime());
-        assertNotEquals(mitState1.getVersionNumber(), mitState2.getVersionNumber());
-        //Reset the only fields we expect to change from a second Apply call.
-        mitState2.setChangeTime(mitState1.getChangeTime());
-        mitState2.setVersionNumber(mitState1.getVersionNumber());
         assertEquals(mitState1, mitState2);
-        
+
+        ApplyBlackWatchMitigationResponse response3 = blackWatchMitigationInfoHandler.applyBlackWatchMitigation(
+                testIPAddressResourceId, testIPAddressResourceType, 60, testMetadata, parseJSON(testValidJSON),
+                "ARN-1222", tsdMetrics, false, false);
+        assertFalse(response3.isNewMitigationCreated());
+        assertEquals(mitigationId, response3.getMitigationId());
+
+        // Extending the TTL only updates the expiry
+        MitigationState mitState3 = mitigationStateDynamoDBHelper.getMitigationState(mitigationId);
+        assertTrue(60 == mitState3.getMinutesToLive());
+        assertTrue(mitState3.getChangeTime() >= mitState1.getChangeTime());
+        assertNotEquals(mitState1.getVersionNumber(), mitState3.getVersionNumber());
+        //Reset the only fields we expect to change from a TTL extension.
+        mitState3.setChangeTime(mitState1.getChangeTime());
+        mitState3.setMinutesToLive(mitState1.getMinutesToLive());
+        mitState3.setVersionNumber(mitState1.getVersionNumber());
+        assertEquals(mitState1, mitState3);
     }
     
     @Test
@@ -1095,6 +1311,85 @@ public class DDBBasedBlackWatchMitigationInfoHandlerTest {
         assertTrue(ms.getMinutesToLive() > 0);
     }
 
+    private DDBBasedBlackWatchMitigationInfoHandler handlerWithUpdater(MitigationStateUpdater updater) {
+        return handlerWithUpdater(resourceTypeHelpers, updater);
+    }
+
+    private DDBBasedBlackWatchMitigationInfoHandler handlerWithUpdater(
+            Map<BlackWatchMitigationResourceType, BlackWatchResourceTypeHelper> typeHelpers,
+            MitigationStateUpdater updater) {
+        return new DDBBasedBlackWatchMitigationInfoHandler(mitigationStateDynamoDBHelper,
+                resourceAllocationStateDDBHelper, resourceAllocationHelper, dogfishValidator,
+                resourceTypeValidatorMap, typeHelpers, 4, testBamAndEc2OwnerArnPrefix, "us-east-1",
+                mitigationLimitbyOwner, new ScanBasedMitigationStateSnapshotProvider(mitigationStateDynamoDBHelper, 4,
+                        metricsFactory), updater);
+    }
+
+    @Test
+    public void testReapplyBlackWatchMitigationShorterExpiryKept() {
+        ApplyBlackWatchMitigationResponse response = blackWatchMitigationInfoHandler.applyBlackWatchMitigation(
+                testIPAddressResourceId, testIPAddressResourceType, 60, testMetadata, parseJSON(testValidJSON),
+                "ARN-1222", tsdMetrics, false, false);
+        MitigationState applied = mitigationStateDynamoDBHelper.getMitigationState(response.getMitigationId());
+
+        MitigationStateUpdater updater = mock(MitigationStateUpdater.class);
+        DDBBasedBlackWatchMitigationInfoHandler handler = handlerWithUpdater(updater);
+        MitigationActionMetadata reapplyMetadata = MitigationActionMetadata.builder()
+                .withUser("Reapplier")
+                .withToolName("JUnit")
+                .withDescription("Reapply")
+                .build();
+        response = handler.applyBlackWatchMitigation(
+                testIPAddressResourceId, testIPAddressResourceType, 30, reapplyMetadata, parseJSON(testValidJSON),
+                "ARN-1222", tsdMetrics, false, false);
+        assertFalse(response.isNewMitigationCreated());
+
+        ArgumentCaptor<MitigationState> updated = ArgumentCaptor.forClass(MitigationState.class);
+        verify(updater).update(any(), updated.capture(), any());
+        assertEquals(applied.getChangeTime(), updated.getValue().getChangeTime());
+        assertEquals(Integer.valueOf(60), updated.getValue().getMinutesToLive());
+        assertEquals("Reapplier", updated.getValue().getLatestMitigationActionMetadata().getUser());
+    }
+
+    @Test
+    public void testReapplyBlackWatchMitigationLongerExpiryWritten() {
+        ApplyBlackWatchMitigationResponse response = blackWatchMitigationInfoHandler.applyBlackWatchMitigation(
+                testIPAddressResourceId, testIPAddressResourceType, 60, testMetadata, parseJSON(testValidJSON),
+                "ARN-1222", tsdMetrics, false, false);
+        MitigationState applied = mitigationStateDynamoDBHelper.getMitigationState(response.getMitigationId());
+
+        MitigationStateUpdater updater = mock(MitigationStateUpdater.class);
+        handlerWithUpdater(updater).applyBlackWatchMitigation(
+                testIPAddressResourceId, testIPAddressResourceType, 120, testMetadata, parseJSON(testValidJSON),
+                "ARN-1222", tsdMetrics, false, false);
+
+        ArgumentCaptor<MitigationState> updated = ArgumentCaptor.forClass(MitigationState.class);
+        verify(updater).update(any(), updated.capture(), any());
+        assertTrue(updated.getValue().getChangeTime() >= applied.getChangeTime());
+        assertEquals(Integer.valueOf(120), updated.getValue().getMinutesToLive());
+        assertEquals(applied.getMitigationSettingsJSONChecksum(),
+                updated.getValue().getMitigationSettingsJSONChecksum());
+    }
+
+    @Test
+    public void testReapplyBlackWatchMitigationUpdatesResourceBriefInformation() {
+        blackWatchMitigationInfoHandler.applyBlackWatchMitigation(
+                testIPAddressResourceId, testIPAddressResourceType, 60, testMetadata, parseJSON(testValidJSON),
+                "ARN-1222", tsdMetrics, false, false);
+
+        MitigationStateUpdater updater = mock(MitigationStateUpdater.class);
+        BlackWatchResourceTypeHelper typeHelper = mock(BlackWatchResourceTypeHelper.class);
+        ApplyBlackWatchMitigationResponse response = handlerWithUpdater(
+                ImmutableMap.of(BlackWatchMitigationResourceType.IPAddress, typeHelper), updater)
+                .applyBlackWatchMitigation(testIPAddressResourceId, testIPAddressResourceType, 30, testMetadata,
+                        parseJSON(testValidJSON), "ARN-1222", tsdMetrics, false, false);
+        assertFalse(response.isNewMitigationCreated());
+
+        ArgumentCaptor<MitigationState> updated = ArgumentCaptor.forClass(MitigationState.class);
+        verify(updater).update(any(), updated.capture(), any());
+        verify(typeHelper).updateResourceBriefInformation(updated.getValue());
+    }
+
     @Test
     public void testApplyBlackWatchMitigationFailedState() {
         ApplyBlackWatchMitigationResponse applyResponse = blackWatchMitigationInfoHandler.applyBlackWatchMitigation(
@@ -1245,6 +1540,120 @@ public class DDBBasedBlackWatchMitigationInfoHandlerTest {
                 testOwnerARN1, tsdMetrics, false, false);
     }
 
+    @Test
+    public void testActiveMitigationCountsPublishedOncePerSnapshot() {
+        mitigationStateDynamoDBHelper.batchUpdateState(Arrays.asList(mitigationState1, mitigationState2));
+        TSDMetrics countMetrics = mock(TSDMetrics.class);
+
+        for (int i = 0; i < 2; ++i) {
+            try {
+                blackWatchMitigationInfoHandler.applyBlackWatchMitigation("2001:0db8:85a3:0000:0000:8a2e:0370:7334",
+                        testIPAddressResourceType, 10, testMetadata, parseJSON(testValidJSON),
+                        testOwnerARN1, countMetrics, false, false);
+                fail("Expected MitigationLimitByOwnerExceeded400");
+            } catch (MitigationLimitByOwnerExceeded400 ex) {
+                // expected
+            }
+        }
+
+        // published by the request which counted the snapshot, not by every limit check
+        verify(countMetrics, Mockito.times(1)).addCount("ActiveMitigationsByOwner:testOwnerARN", 2);
+        verify(countMetrics, Mockito.times(1)).addCount("ActiveMitigationsByOwner:MitigationUI", 0);
+    }
+
+    private ApplyBlackWatchMitigationEntry ipAddressEntry(String ipAddress) {
+        return ApplyBlackWatchMitigationEntry.builder()
+                .resourceId(ipAddress)
+                .resourceType(testIPAddressResourceType)
+                .minutesToLive(10)
+                .targetConfig(parseJSON(testValidJSON))
+                .build();
+    }
+
+    @Test
+    public void testApplyBlackWatchMitigationsReportsEachEntry() {
+        List<ApplyBlackWatchMitigationResult> results = blackWatchMitigationInfoHandler.applyBlackWatchMitigations(
+                Arrays.asList(
+                        ipAddressEntry("1.2.3.4"),
+                        ApplyBlackWatchMitigationEntry.builder()
+                                .resourceId("1.2.3.5")
+                                .resourceType("NotAResourceType")
+                                .targetConfig(parseJSON(testValidJSON))
+                                .build(),
+                        ipAddressEntry("1.2.3.6"),
+                        ipAddressEntry("1.2.3.4")),
+                testMetadata, "ARN-1222", tsdMetrics);
+
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isSucceeded());
+        assertTrue(results.get(0).getResponse().isNewMitigationCreated());
+        assertFalse(results.get(1).isSucceeded());
+        assertTrue(results.get(1).getError() instanceof IllegalArgumentException);
+        assertTrue(results.get(2).isSucceeded());
+        assertTrue(results.get(2).getResponse().isNewMitigationCreated());
+        // same resource as the first entry, updates the mitigation it created
+        assertTrue(results.get(3).isSucceeded());
+        assertFalse(results.get(3).getResponse().isNewMitigationCreated());
+        assertEquals(results.get(0).getResponse().getMitigationId(), results.get(3).getResponse().getMitigationId());
+
+        assertEquals(2, blackWatchMitigationInfoHandler.getBlackWatchMitigations(
+                null, null, null, null, 5, tsdMetrics).size());
+    }
+
+    @Test
+    public void testApplyBlackWatchMitigationsCountsBatchTowardsLimit() {
+        // testOwnerARN may own 2 active mitigations
+        List<ApplyBlackWatchMitigationResult> results = blackWatchMitigationInfoHandler.applyBlackWatchMitigations(
+                Arrays.asList(ipAddressEntry("1.2.3.4"), ipAddressEntry("1.2.3.5"), ipAddressEntry("1.2.3.6")),
+                testMetadata, testOwnerARN1, tsdMetrics);
+
+        assertTrue(results.get(0).isSucceeded());
+        assertTrue(results.get(1).isSucceeded());
+        assertFalse(results.get(2).isSucceeded());
+        assertTrue(results.get(2).getError() instanceof MitigationLimitByOwnerExceeded400);
+    }
+
+    @Test
+    public void testApplyBlackWatchMitigationsConcurrently() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        blackWatchMitigationInfoHandler.setBatchApplyExecutor(executor);
+        try {
+            List<ApplyBlackWatchMitigationResult> results = blackWatchMitigationInfoHandler.applyBlackWatchMitigations(
+                    Arrays.asList(ipAddressEntry("1.2.3.4"), ipAddressEntry("1.2.3.6"), ipAddressEntry("1.2.3.4")),
+                    testMetadata, "ARN-1222", tsdMetrics);
+
+            assertEquals(3, results.size());
+            results.forEach(result -> assertTrue(result.isSucceeded()));
+            // entries of the same resource are applied in order
+            assertTrue(results.get(0).getResponse().isNewMitigationCreated());
+            assertFalse(results.get(2).getResponse().isNewMitigationCreated());
+            assertEquals(results.get(0).getResponse().getMitigationId(),
+                    results.get(2).getResponse().getMitigationId());
+        } finally {
+            blackWatchMitigationInfoHandler.setBatchApplyExecutor(null);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testApplyBlackWatchMitigationsConcurrentlyReservesLimit() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        blackWatchMitigationInfoHandler.setBatchApplyExecutor(executor);
+        try {
+            // testOwnerARN may own 2 active mitigations
+            List<ApplyBlackWatchMitigationResult> results = blackWatchMitigationInfoHandler.applyBlackWatchMitigations(
+                    Arrays.asList(ipAddressEntry("1.2.3.4"), ipAddressEntry("1.2.3.5"), ipAddressEntry("1.2.3.6")),
+                    testMetadata, testOwnerARN1, tsdMetrics);
+
+            assertTrue(results.get(0).isSucceeded());
+            assertTrue(results.get(1).isSucceeded());
+            assertTrue(results.get(2).getError() instanceof MitigationLimitByOwnerExceeded400);
+        } finally {
+            blackWatchMitigationInfoHandler.setBatchApplyExecutor(null);
+            executor.shutdownNow();
+        }
+    }
+
     @Test
     public void testApplyBlackWatchMitigationInvalidIPAddressListMissing() {
         //Non existent json
@@ -1371,7 +1780,8 @@ public class DDBBasedBlackWatchMitigationInfoHandlerTest {
         blackWatchMitigationInfoHandler = new DDBBasedBlackWatchMitigationInfoHandler(mitigationStateDynamoDBHelper, 
                 resourceAllocationStateDDBHelper, resourceAllocationHelper, dogfishValidator, 
                 resourceTypeValidatorMap, resourceTypeHelpers, 4, testOwnerARN1, "us-east-1",
-                mitigationLimitbyOwner);
+                mitigationLimitbyOwner, new ScanBasedMitigationStateSnapshotProvider(mitigationStateDynamoDBHelper, 4, metricsFactory),
+                mitigationStateUpdater);
         DogfishIPPrefix prefix = new DogfishIPPrefix();
         prefix.setRegion("NotActive");
         thrown.expect(IllegalArgumentException.class);
@@ -1390,7 +1800,8 @@ public class DDBBasedBlackWatchMitigationInfoHandlerTest {
         blackWatchMitigationInfoHandler = new DDBBasedBlackWatchMitigationInfoHandler(mitigationStateDynamoDBHelper, 
                 resourceAllocationStateDDBHelper, resourceAllocationHelper, dogfishValidator, 
                 resourceTypeValidatorMap, resourceTypeHelpers, 4, testOwnerARN1, "us-east-1",
-                mitigationLimitbyOwner);
+                mitigationLimitbyOwner, new ScanBasedMitigationStateSnapshotProvider(mitigationStateDynamoDBHelper, 4, metricsFactory),
+                mitigationStateUpdater);
         DogfishIPPrefix prefix = new DogfishIPPrefix();
         prefix.setRegion(testMasterRegion);
         thrown.expect(IllegalArgumentException.class);
@@ -1658,7 +2069,8 @@ public class DDBBasedBlackWatchMitigationInfoHandlerTest {
                 .latestMitigationActionMetadata(testBWMetadata)
                 .build();
 
-        assertFalse(blackWatchMitigationInfoHandler.isRequestIpCoveredByExistingMitigation("1.2.3.4/30", mitigationState1));
+        assertNull(MitigationPrefixIndex.fromMitigationStates(ImmutableList.of(mitigationState1))
+                .findCoveringMitigationNotOwnedBy("1.2.3.4/30", testOwnerARN2));
     }
 }
 
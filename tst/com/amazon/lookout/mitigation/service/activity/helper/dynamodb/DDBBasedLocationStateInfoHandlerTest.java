@@ -7,6 +7,7 @@ import com.amazon.blackwatch.location.state.model.LocationState;
 import com.amazon.blackwatch.location.state.storage.LocationStateDynamoDBHelper;
 import com.amazon.lookout.mitigation.service.constants.DeviceName;
 import com.amazon.lookout.mitigation.ActiveMitigationsHelper;
+import com.amazon.lookout.mitigation.exception.ExternalDependencyException;
 import com.amazon.coral.metrics.Metrics;
 import com.amazon.coral.metrics.MetricsFactory;
 import com.amazon.lookout.mitigation.location.type.LocationType;
@@ -23,16 +24,27 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.isA;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 
 
 public class DDBBasedLocationStateInfoHandlerTest {
@@ -283,5 +295,187 @@ public class DDBBasedLocationStateInfoHandlerTest {
         ddbBasedLocationStateInfoHandler = new DDBBasedLocationStateInfoHandler(locationStateDynamoDBHelper, activeMitigationsHelper, mwsHelper);
         assertTrue(ddbBasedLocationStateInfoHandler.checkIfLocationIsOperational(location1, tsdMetrics));
     }
+
+    @Test
+    public void testLocationStateCache() {
+        assertEquals(locationState1, ddbBasedLocationStateInfoHandler.getLocationState(location1, tsdMetrics));
+        ddbBasedLocationStateInfoHandler.getOperationChanges(location1, tsdMetrics);
+        ddbBasedLocationStateInfoHandler.getPendingOperationLocks(location1, tsdMetrics);
+        verify(locationStateDynamoDBHelper, times(1)).getLocationState(location1);
+
+        // missing locations are cached as well
+        assertNull(ddbBasedLocationStateInfoHandler.getLocationState(location4, tsdMetrics));
+        assertNull(ddbBasedLocationStateInfoHandler.getLocationState(location4, tsdMetrics));
+        verify(locationStateDynamoDBHelper, times(1)).getLocationState(location4);
+
+        // reads can bypass the cache
+        ddbBasedLocationStateInfoHandler.getLocationState(location1, true, tsdMetrics);
+        verify(locationStateDynamoDBHelper, times(2)).getLocationState(location1);
+    }
+
+    @Test
+    public void testLocationStateCacheMetrics() {
+        TSDMetrics metrics = Mockito.mock(TSDMetrics.class);
+        TSDMetrics subMetrics = Mockito.mock(TSDMetrics.class);
+        Mockito.doReturn(subMetrics).when(metrics).newSubMetrics("DDBBasedLocationStateInfoHandler.getLocationState");
+
+        ddbBasedLocationStateInfoHandler.getLocationState(location1, metrics);
+        verify(subMetrics).addCount("LocationStateCacheMiss", 1);
+        ddbBasedLocationStateInfoHandler.getLocationState(location1, metrics);
+        verify(subMetrics).addCount("LocationStateCacheHit", 1);
+        ddbBasedLocationStateInfoHandler.getLocationState(location1, true, metrics);
+        verify(subMetrics).addCount("LocationStateCacheBypass", 1);
+    }
+
+    @Test
+    public void testCachedLocationStateCopiedForEachCaller() {
+        LocationState first = ddbBasedLocationStateInfoHandler.getLocationState(location1, tsdMetrics);
+        first.setAdminIn(false);
+        first.getOrCreateOperationLocksMap().clear();
+
+        LocationState second = ddbBasedLocationStateInfoHandler.getLocationState(location1, tsdMetrics);
+        verify(locationStateDynamoDBHelper, times(1)).getLocationState(location1);
+        assertNotSame(first, second);
+        assertTrue(second.getAdminIn());
+        assertEquals(2, second.getOrCreateOperationLocksMap().size());
+    }
+
+    @Test
+    public void testLocationStateCacheInvalidatedOnUpdate() {
+        ddbBasedLocationStateInfoHandler.getLocationState(location1, tsdMetrics);
+        ddbBasedLocationStateInfoHandler.updateBlackWatchLocationAdminIn(location1, false, "test", null,
+                "operation-id-3", "change-id-3", false, tsdMetrics);
+        verify(locationStateDynamoDBHelper).updateLocationState(locationState1);
+
+        ddbBasedLocationStateInfoHandler.getLocationState(location1, tsdMetrics);
+        verify(locationStateDynamoDBHelper, times(3)).getLocationState(location1);
+    }
+
+    @Test
+    public void testLocationStateCacheDisabled() {
+        ddbBasedLocationStateInfoHandler = new DDBBasedLocationStateInfoHandler(locationStateDynamoDBHelper,
+                Mockito.mock(ActiveMitigationsHelper.class), Mockito.mock(MWSHelper.class), 0);
+        ddbBasedLocationStateInfoHandler.getLocationState(location1, tsdMetrics);
+        ddbBasedLocationStateInfoHandler.getLocationState(location1, tsdMetrics);
+        verify(locationStateDynamoDBHelper, times(2)).getLocationState(location1);
+    }
+
+    private static List<Datapoint> announcedRoutes() {
+        Datapoint datapoint = new Datapoint();
+        datapoint.setValue(20.0);
+        return Arrays.asList(datapoint, datapoint);
+    }
+
+    @Test
+    public void testOperationalChecksRunConcurrently() throws Exception {
+        mwsHelper = Mockito.mock(MWSHelper.class);
+        activeMitigationsHelper = Mockito.mock(ActiveMitigationsHelper.class);
+        // each call waits for the other one, so they only complete if they run at the same time
+        CountDownLatch bothCalled = new CountDownLatch(2);
+        Mockito.doAnswer(invocation -> {
+            bothCalled.countDown();
+            assertTrue(bothCalled.await(5, TimeUnit.SECONDS));
+            return announcedRoutes();
+        }).when(mwsHelper).getBGPTotalAnnouncements(eq(location1), isA(TSDMetrics.class));
+        Mockito.doAnswer(invocation -> {
+            bothCalled.countDown();
+            assertTrue(bothCalled.await(5, TimeUnit.SECONDS));
+            return true;
+        }).when(activeMitigationsHelper)
+                .hasExpectedMitigations(eq(DeviceName.BLACKWATCH_BORDER), Mockito.anyListOf(BlackWatchLocation.class), eq(location1));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ddbBasedLocationStateInfoHandler = new DDBBasedLocationStateInfoHandler(locationStateDynamoDBHelper,
+                    activeMitigationsHelper, mwsHelper, 0, executor, TimeUnit.SECONDS.toMillis(10));
+            assertTrue(ddbBasedLocationStateInfoHandler.checkIfLocationIsOperational(location1, tsdMetrics));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testOperationalCheckDeadline() throws Exception {
+        mwsHelper = Mockito.mock(MWSHelper.class);
+        activeMitigationsHelper = Mockito.mock(ActiveMitigationsHelper.class);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException ex) {
+                cancelled.countDown();
+            }
+            return announcedRoutes();
+        }).when(mwsHelper).getBGPTotalAnnouncements(eq(location1), isA(TSDMetrics.class));
+        Mockito.doReturn(true).when(activeMitigationsHelper)
+                .hasExpectedMitigations(eq(DeviceName.BLACKWATCH_BORDER), Mockito.anyListOf(BlackWatchLocation.class), eq(location1));
+
+        TSDMetrics metrics = Mockito.mock(TSDMetrics.class);
+        TSDMetrics routesMetrics = Mockito.mock(TSDMetrics.class);
+        TSDMetrics mitigationsMetrics = Mockito.mock(TSDMetrics.class);
+        Mockito.doReturn(Mockito.mock(TSDMetrics.class)).when(metrics).newSubMetrics(anyString());
+        Mockito.doReturn(routesMetrics).when(metrics)
+                .newSubMetrics("DDBBasedLocationStateInfoHandler.hasAnnouncedRoutes");
+        Mockito.doReturn(mitigationsMetrics).when(metrics)
+                .newSubMetrics("DDBBasedLocationStateInfoHandler.hasExpectedMitigations");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ddbBasedLocationStateInfoHandler = new DDBBasedLocationStateInfoHandler(locationStateDynamoDBHelper,
+                    activeMitigationsHelper, mwsHelper, 0, executor, 100);
+            try {
+                ddbBasedLocationStateInfoHandler.checkIfLocationIsOperational(location1, metrics);
+                fail("Expected the check to time out");
+            } catch (ExternalDependencyException ex) {
+                assertTrue(ex.getCause() instanceof TimeoutException);
+                // the call still running is cancelled, and the metrics of both calls are ended
+                assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+                verify(routesMetrics, timeout(5000)).end();
+                verify(mitigationsMetrics, timeout(5000)).end();
+                verify(metrics).addCount("OperationalCheckTimeout", 1);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testValidateOtherStacksInServiceWithDefaultExecutor() throws Exception {
+        locationState2.setInService(false);
+        // the handler built without its dependencies still has an executor to start the checks on
+        assertFalse(ddbBasedLocationStateInfoHandler.validateOtherStacksInService(location1, tsdMetrics));
+    }
+
+    @Test
+    public void testOtherStackOutOfServiceCancelsChecks() throws Exception {
+        locationState2.setInService(false);
+        mwsHelper = Mockito.mock(MWSHelper.class);
+        activeMitigationsHelper = Mockito.mock(ActiveMitigationsHelper.class);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException ex) {
+                cancelled.countDown();
+            }
+            return announcedRoutes();
+        }).when(mwsHelper).getBGPTotalAnnouncements(eq(location2), isA(TSDMetrics.class));
+        Mockito.doReturn(true).when(activeMitigationsHelper)
+                .hasExpectedMitigations(eq(DeviceName.BLACKWATCH_BORDER), Mockito.anyListOf(BlackWatchLocation.class), eq(location2));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ddbBasedLocationStateInfoHandler = new DDBBasedLocationStateInfoHandler(locationStateDynamoDBHelper,
+                    activeMitigationsHelper, mwsHelper, 0, executor, TimeUnit.MINUTES.toMillis(5));
+            long startTime = System.currentTimeMillis();
+            assertFalse(ddbBasedLocationStateInfoHandler.validateOtherStacksInService(location1, tsdMetrics));
+            // decided by the location state, without waiting for MWS
+            assertTrue(System.currentTimeMillis() - startTime < TimeUnit.SECONDS.toMillis(30));
+            assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     //TODO: Add tests for other methods DDBBasedLocationStateInfoHandler
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+public class MitigationChangeLogTest {
+    private static final long START = 1_000_000;
+    private static final long RETENTION = 100_000;
+
+    @Test
+    public void testChangesSince() {
+        MitigationChangeLog log = MitigationChangeLog.startingAt(START)
+                .record(ImmutableMap.of("mit-1", false, "mit-2", false), START + 10_000, RETENTION)
+                .record(ImmutableMap.of("mit-2", true, "mit-3", false), START + 20_000, RETENTION);
+
+        assertEquals(START + 20_000, log.getWatermarkMillis());
+        assertEquals(ImmutableSet.of("mit-1", "mit-3"), log.getChangedSince(START + 10_000));
+        assertEquals(ImmutableSet.of("mit-2"), log.getDeletedSince(START + 10_000));
+        // overlap of CLOCK_SKEW_MILLIS, mit-1 changed 10s earlier is not returned again
+        assertEquals(ImmutableSet.of("mit-3"), log.getChangedSince(START + 20_000));
+        assertEquals(3, log.size());
+    }
+
+    @Test
+    public void testRecreatedMitigationIsNotDeleted() {
+        MitigationChangeLog log = MitigationChangeLog.startingAt(START)
+                .record(ImmutableMap.of("mit-1", true), START + 10_000, RETENTION)
+                .record(ImmutableMap.of("mit-1", false), START + 20_000, RETENTION);
+
+        assertEquals(ImmutableSet.of("mit-1"), log.getChangedSince(START + 10_000));
+        assertTrue(log.getDeletedSince(START + 10_000).isEmpty());
+    }
+
+    @Test
+    public void testCoverage() {
+        MitigationChangeLog log = MitigationChangeLog.startingAt(START);
+        assertFalse(log.covers(START - 1));
+        assertFalse(log.covers(START));
+        assertTrue(log.covers(START + MitigationChangeLog.CLOCK_SKEW_MILLIS));
+
+        // changes older than the retention are dropped, and the time before them is no longer covered
+        log = log.record(ImmutableMap.of("mit-1", false), START + 10_000, RETENTION)
+                .record(ImmutableMap.of("mit-2", false), START + 10_000 + RETENTION + 1, RETENTION);
+        assertEquals(START + 10_001, log.getTrackedSinceMillis());
+        assertFalse(log.covers(START + 10_000));
+        assertEquals(1, log.size());
+    }
+}
@@ -0,0 +1,93 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import com.amazon.blackwatch.mitigation.state.model.MitigationState;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+
+public class MitigationStateBatchReaderTest {
+    private static final String mitigationTable = "MitigationState";
+    private static final String allocationTable = "ResourceAllocationState";
+
+    private final AmazonDynamoDB dynamoDBClient = mock(AmazonDynamoDB.class);
+    private final List<BatchGetItemRequest> requests = new ArrayList<>();
+
+    private static Map<String, AttributeValue> item(String mitigationId) {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put(MitigationState.MITIGATION_ID_KEY, new AttributeValue(mitigationId));
+        item.put(MitigationStateCodec.MITIGATION_SETTINGS_JSON_KEY,
+                new AttributeValue("{\"mitigation_config\":\"" + Strings.repeat("x", 2000) + "\"}"));
+        return item;
+    }
+
+    @Test
+    public void testMitigationsDecodedAndUnprocessedKeysRead() {
+        // the first response leaves every other key unprocessed
+        when(dynamoDBClient.batchGetItem(any(BatchGetItemRequest.class))).thenAnswer(invocation -> {
+            BatchGetItemRequest request = (BatchGetItemRequest) invocation.getArguments()[0];
+            requests.add(request);
+            List<Map<String, AttributeValue>> keys = request.getRequestItems().get(mitigationTable).getKeys();
+            List<Map<String, AttributeValue>> items = new ArrayList<>();
+            List<Map<String, AttributeValue>> unprocessed = new ArrayList<>();
+            for (int i = 0; i < keys.size(); ++i) {
+                if (requests.size() == 1 && i % 2 == 1) {
+                    unprocessed.add(keys.get(i));
+                } else {
+                    items.add(MitigationStateCodecTestHelper.compress(item(keys.get(i).get(MitigationState.MITIGATION_ID_KEY).getS())));
+                }
+            }
+            return new BatchGetItemResult()
+                    .withResponses(ImmutableMap.of(mitigationTable, items))
+                    .withUnprocessedKeys(unprocessed.isEmpty() ? Collections.emptyMap()
+                            : ImmutableMap.of(mitigationTable, new KeysAndAttributes().withKeys(unprocessed)));
+        });
+
+        MitigationStateBatchReader reader =
+                new MitigationStateBatchReader(dynamoDBClient, mitigationTable, allocationTable);
+        Map<String, MitigationState> mitigations = reader.getMitigationStates(Arrays.asList("m-1", "m-2", "m-3"));
+
+        assertEquals(2, requests.size());
+        assertEquals(1, requests.get(1).getRequestItems().get(mitigationTable).getKeys().size());
+        assertEquals(3, mitigations.size());
+        mitigations.values().forEach(ms -> assertTrue(ms.getMitigationSettingsJSON().startsWith("{")));
+    }
+
+    @Test
+    public void testKeysSplitIntoRequestsOfAtMostOneHundred() {
+        when(dynamoDBClient.batchGetItem(any(BatchGetItemRequest.class))).thenAnswer(invocation -> {
+            BatchGetItemRequest request = (BatchGetItemRequest) invocation.getArguments()[0];
+            requests.add(request);
+            return new BatchGetItemResult().withResponses(Collections.emptyMap());
+        });
+
+        MitigationStateBatchReader reader =
+                new MitigationStateBatchReader(dynamoDBClient, mitigationTable, allocationTable);
+        List<String> resourceIds = IntStream.range(0, 250).mapToObj(i -> "10.0.0." + i).collect(Collectors.toList());
+        assertTrue(reader.getResourceAllocationStates(resourceIds).isEmpty());
+
+        assertEquals(Arrays.asList(100, 100, 50), requests.stream()
+                .map(request -> request.getRequestItems().get(allocationTable).getKeys().size())
+                .collect(Collectors.toList()));
+    }
+}
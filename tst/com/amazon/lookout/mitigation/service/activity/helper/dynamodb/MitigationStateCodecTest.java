@@ -0,0 +1,85 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.amazon.blackwatch.mitigation.state.model.MitigationState;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.google.common.collect.ImmutableMap;
+
+public class MitigationStateCodecTest {
+    private static String mitigationSettingsJSON() {
+        StringBuilder json = new StringBuilder("{\"mitigation_config\": {\"global_traffic_shaper\": {");
+        for (int i = 0; i < 20; ++i) {
+            json.append(String.format("\"shaper-%d\": {\"global_pps\": %d, \"global_bps\": %d, "
+                    + "\"filters\": [\"udp and src port 53\", \"tcp and dst port 443\"]},", i, 1000 * i, 8000 * i));
+        }
+        return json.append("\"default\": {\"global_pps\": 1000}}}}").toString();
+    }
+
+    private static AttributeValue locationMitigationState(int locations) {
+        Map<String, AttributeValue> states = new HashMap<>();
+        for (int i = 0; i < locations; ++i) {
+            states.put("location-" + i, new AttributeValue().withM(ImmutableMap.of(
+                    "mitigationSettingsJSONChecksum",
+                    new AttributeValue("257c1be96ae69f4b01c2c69bdb6d78605f59175819fb007d0bf245bf48444c4a"),
+                    "PPS", new AttributeValue().withN("151515"),
+                    "BPS", new AttributeValue().withN("121212"),
+                    "numFailures", new AttributeValue().withN("0"),
+                    "configDeploymentJobStatus", new AttributeValue("SUCCEEDED"))));
+        }
+        return new AttributeValue().withM(states);
+    }
+
+    private static Map<String, AttributeValue> item(String mitigationId, int locations) {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put(MitigationState.MITIGATION_ID_KEY, new AttributeValue(mitigationId));
+        item.put(MitigationState.RESOURCE_ID_KEY, new AttributeValue("1.2.3.4/32"));
+        item.put(MitigationState.STATE_KEY, new AttributeValue(MitigationState.State.Active.name()));
+        item.put(MitigationStateCodec.MITIGATION_SETTINGS_JSON_KEY, new AttributeValue(mitigationSettingsJSON()));
+        item.put(MitigationStateCodec.LOCATION_MITIGATION_STATE_KEY, locationMitigationState(locations));
+        return item;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        Map<String, AttributeValue> item = item("mit-1", 50);
+        Map<String, AttributeValue> encoded = MitigationStateCodecTestHelper.compress(item);
+
+        assertNotNull(encoded.get(MitigationStateCodec.MITIGATION_SETTINGS_JSON_KEY).getB());
+        assertNotNull(encoded.get(MitigationStateCodec.LOCATION_MITIGATION_STATE_KEY).getB());
+        assertEquals(item.get(MitigationState.RESOURCE_ID_KEY), encoded.get(MitigationState.RESOURCE_ID_KEY));
+        assertEquals(item, MitigationStateCodec.decode(encoded));
+    }
+
+    @Test
+    public void testAllValueTypesRoundTrip() {
+        AttributeValue value = new AttributeValue().withM(ImmutableMap.<String, AttributeValue>builder()
+                .put("s", new AttributeValue("text with unicode é中"))
+                .put("n", new AttributeValue().withN("-12.5"))
+                .put("bool", new AttributeValue().withBOOL(true))
+                .put("null", new AttributeValue().withNULL(true))
+                .put("l", new AttributeValue().withL(new AttributeValue("a"), new AttributeValue().withN("1")))
+                .put("ss", new AttributeValue().withSS("a", "b"))
+                .put("ns", new AttributeValue().withNS("1", "2"))
+                .put("padding", new AttributeValue(new String(new char[100]).replace('\0', 'x')))
+                .build());
+
+        AttributeValue encoded = MitigationStateCodecTestHelper.compress(value);
+        assertTrue(MitigationStateCodec.isCompressed(encoded));
+        assertEquals(value, MitigationStateCodec.decode(encoded));
+    }
+
+    @Test
+    public void testLegacyItemsReadUnchanged() {
+        Map<String, AttributeValue> item = item("mit-1", 5);
+        assertSame(item, MitigationStateCodec.decode(item));
+    }
+}
@@ -0,0 +1,123 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * Writes the compressed form read by MitigationStateCodec, to build compressed items in tests.
+ */
+public final class MitigationStateCodecTestHelper {
+    private MitigationStateCodecTestHelper() {
+    }
+
+    /**
+     * @return a copy of the item with its compressible attributes compressed.
+     */
+    public static Map<String, AttributeValue> compress(Map<String, AttributeValue> item) {
+        Map<String, AttributeValue> compressed = new HashMap<>(item);
+        MitigationStateCodec.COMPRESSIBLE_ATTRIBUTES.forEach(name -> {
+            AttributeValue value = item.get(name);
+            if (value != null) {
+                compressed.put(name, compress(value));
+            }
+        });
+        return compressed;
+    }
+
+    public static AttributeValue compress(AttributeValue value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            bytes.write(MitigationStateCodec.FORMAT_MARKER);
+            if (value.getS() != null) {
+                bytes.write(MitigationStateCodec.FORMAT_GZIP_STRING);
+                try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+                    gzip.write(value.getS().getBytes(StandardCharsets.UTF_8));
+                }
+            } else {
+                bytes.write(MitigationStateCodec.FORMAT_GZIP_ATTRIBUTE_VALUE);
+                try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+                    writeValue(out, value);
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return new AttributeValue().withB(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    private static void writeValue(DataOutputStream out, AttributeValue value) throws IOException {
+        if (value.getS() != null) {
+            out.writeByte(MitigationStateCodec.TYPE_S);
+            writeString(out, value.getS());
+        } else if (value.getN() != null) {
+            out.writeByte(MitigationStateCodec.TYPE_N);
+            writeString(out, value.getN());
+        } else if (value.getB() != null) {
+            out.writeByte(MitigationStateCodec.TYPE_B);
+            writeBytes(out, value.getB());
+        } else if (value.getBOOL() != null) {
+            out.writeByte(MitigationStateCodec.TYPE_BOOL);
+            out.writeBoolean(value.getBOOL());
+        } else if (value.getNULL() != null) {
+            out.writeByte(MitigationStateCodec.TYPE_NULL);
+        } else if (value.getM() != null) {
+            out.writeByte(MitigationStateCodec.TYPE_M);
+            out.writeInt(value.getM().size());
+            for (Map.Entry<String, AttributeValue> entry : value.getM().entrySet()) {
+                writeString(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        } else if (value.getL() != null) {
+            out.writeByte(MitigationStateCodec.TYPE_L);
+            out.writeInt(value.getL().size());
+            for (AttributeValue element : value.getL()) {
+                writeValue(out, element);
+            }
+        } else if (value.getSS() != null) {
+            out.writeByte(MitigationStateCodec.TYPE_SS);
+            writeStrings(out, value.getSS());
+        } else if (value.getNS() != null) {
+            out.writeByte(MitigationStateCodec.TYPE_NS);
+            writeStrings(out, value.getNS());
+        } else if (value.getBS() != null) {
+            out.writeByte(MitigationStateCodec.TYPE_BS);
+            out.writeInt(value.getBS().size());
+            for (ByteBuffer element : value.getBS()) {
+                writeBytes(out, element);
+            }
+        } else {
+            throw new IllegalArgumentException("Attribute value without a type: " + value);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            writeString(out, string);
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, ByteBuffer buffer) throws IOException {
+        ByteBuffer duplicate = buffer.duplicate();
+        byte[] bytes = new byte[duplicate.remaining()];
+        duplicate.get(bytes);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
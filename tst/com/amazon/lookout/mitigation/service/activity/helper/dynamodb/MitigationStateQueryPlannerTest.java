@@ -0,0 +1,301 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazon.aws158.commons.metric.TSDMetrics;
+import com.amazon.blackwatch.mitigation.state.model.MitigationState;
+import com.amazon.blackwatch.mitigation.state.model.ResourceAllocationState;
+import com.amazon.blackwatch.mitigation.state.storage.MitigationStateDynamoDBHelper;
+import com.amazon.blackwatch.mitigation.state.storage.ResourceAllocationStateDynamoDBHelper;
+import com.amazon.coral.metrics.Metrics;
+import com.amazon.coral.metrics.MetricsFactory;
+import com.amazon.lookout.mitigation.service.activity.helper.MitigationProjection;
+import com.amazon.lookout.mitigation.service.activity.helper.dynamodb.PaginatedMitigationStateScanner.MitigationStatePage;
+import com.amazon.lookout.mitigation.service.activity.helper.dynamodb.MitigationStateQueryPlanner.MitigationStateQuery;
+import com.amazon.lookout.mitigation.service.activity.helper.dynamodb.MitigationStateQueryPlanner.QueryPlan;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class MitigationStateQueryPlannerTest {
+    private final MitigationStateDynamoDBHelper mitigationStateDynamoDBHelper = mock(MitigationStateDynamoDBHelper.class);
+    private final ResourceAllocationStateDynamoDBHelper resourceAllocationStateDynamoDBHelper =
+            mock(ResourceAllocationStateDynamoDBHelper.class);
+    private final MitigationStateOwnerIndex ownerIndex = mock(MitigationStateOwnerIndex.class);
+    private final MitigationStateSnapshotProvider snapshotProvider = mock(MitigationStateSnapshotProvider.class);
+    private final MetricsFactory metricsFactory = mock(MetricsFactory.class);
+    private final Metrics metrics = mock(Metrics.class);
+    private TSDMetrics tsdMetrics;
+
+    private final MitigationState mitigation1 = MitigationState.builder()
+            .mitigationId("mit-1")
+            .resourceId("1.2.3.4/32")
+            .resourceType("IPAddress")
+            .ownerARN("owner1")
+            .build();
+    private final MitigationState mitigation2 = MitigationState.builder()
+            .mitigationId("mit-2")
+            .resourceId("1.2.3.5/32")
+            .resourceType("IPAddress")
+            .ownerARN("owner2")
+            .build();
+
+    private MitigationStateQueryPlanner planner;
+
+    @Before
+    public void setup() {
+        doReturn(metrics).when(metricsFactory).newMetrics();
+        doReturn(metrics).when(metrics).newMetrics();
+        tsdMetrics = new TSDMetrics(metricsFactory);
+
+        doReturn(mitigation1).when(mitigationStateDynamoDBHelper).getMitigationState("mit-1");
+        doReturn(mitigation2).when(mitigationStateDynamoDBHelper).getMitigationState("mit-2");
+        doReturn(Arrays.asList(mitigation1, mitigation2)).when(mitigationStateDynamoDBHelper)
+                .getMitigationState(any(DynamoDBScanExpression.class), anyInt());
+        doReturn(MitigationStateSnapshot.fromMitigationStates(1, Arrays.asList(mitigation1, mitigation2)))
+                .when(snapshotProvider).getSnapshot();
+
+        planner = new MitigationStateQueryPlanner(mitigationStateDynamoDBHelper,
+                resourceAllocationStateDynamoDBHelper, 4, ownerIndex, null, snapshotProvider);
+    }
+
+    @Test
+    public void testPlanSelection() {
+        assertEquals(QueryPlan.GetByMitigationId, planner.plan(MitigationStateQuery.builder()
+                .mitigationId("mit-1").ownerARN("owner1").canonicalResourceIds(ImmutableList.of("1.2.3.4/32")).build()));
+        assertEquals(QueryPlan.ResourceAllocationLookup, planner.plan(MitigationStateQuery.builder()
+                .ownerARN("owner1").canonicalResourceIds(ImmutableList.of("1.2.3.4/32")).build()));
+        assertEquals(QueryPlan.OwnerIndexQuery, planner.plan(MitigationStateQuery.builder()
+                .ownerARN("owner1").resourceType("IPAddress").build()));
+        assertEquals(QueryPlan.ParallelScan, planner.plan(MitigationStateQuery.builder()
+                .resourceType("IPAddress").build()));
+
+        MitigationStateQueryPlanner plannerWithoutOwnerIndex = new MitigationStateQueryPlanner(
+                mitigationStateDynamoDBHelper, resourceAllocationStateDynamoDBHelper, 4, null, null, snapshotProvider);
+        assertEquals(QueryPlan.ParallelScan, plannerWithoutOwnerIndex.plan(MitigationStateQuery.builder()
+                .ownerARN("owner1").build()));
+
+        // without a snapshot the mitigations of a resource can't all be found from its allocation
+        MitigationStateQueryPlanner plannerWithoutSnapshot = new MitigationStateQueryPlanner(
+                mitigationStateDynamoDBHelper, resourceAllocationStateDynamoDBHelper, 4, ownerIndex, null, null);
+        assertEquals(QueryPlan.OwnerIndexQuery, plannerWithoutSnapshot.plan(MitigationStateQuery.builder()
+                .ownerARN("owner1").canonicalResourceIds(ImmutableList.of("1.2.3.4/32")).build()));
+        assertEquals(QueryPlan.ParallelScan, plannerWithoutSnapshot.plan(MitigationStateQuery.builder()
+                .canonicalResourceIds(ImmutableList.of("1.2.3.4/32")).build()));
+    }
+
+    @Test
+    public void testGetByMitigationIdAppliesRemainingPredicates() {
+        List<MitigationState> result = planner.getMitigationStates(MitigationStateQuery.builder()
+                .mitigationId("mit-1").build(), tsdMetrics);
+        assertEquals(Collections.singletonList(mitigation1), result);
+
+        result = planner.getMitigationStates(MitigationStateQuery.builder()
+                .mitigationId("mit-1").ownerARN("owner2").build(), tsdMetrics);
+        assertTrue(result.isEmpty());
+
+        result = planner.getMitigationStates(MitigationStateQuery.builder()
+                .mitigationId("unknown").build(), tsdMetrics);
+        assertTrue(result.isEmpty());
+        verify(mitigationStateDynamoDBHelper, never()).getMitigationState(any(DynamoDBScanExpression.class), anyInt());
+    }
+
+    @Test
+    public void testResourceAllocationLookup() {
+        ResourceAllocationState resourceState = new ResourceAllocationState();
+        resourceState.setMitigationId("mit-1");
+        doReturn(resourceState).when(resourceAllocationStateDynamoDBHelper).getResourceAllocationState("1.2.3.4/32");
+
+        List<MitigationState> result = planner.getMitigationStates(MitigationStateQuery.builder()
+                .canonicalResourceIds(ImmutableList.of("1.2.3.4/32")).build(), tsdMetrics);
+
+        assertEquals(Collections.singletonList(mitigation1), result);
+        verify(mitigationStateDynamoDBHelper, never()).getMitigationState(any(DynamoDBScanExpression.class), anyInt());
+    }
+
+    @Test
+    public void testResourceWithoutAllocationReadFromSnapshot() {
+        List<MitigationState> result = planner.getMitigationStates(MitigationStateQuery.builder()
+                .canonicalResourceIds(ImmutableList.of("1.2.3.4/32", "1.2.3.5/32")).build(), tsdMetrics);
+
+        assertEquals(Arrays.asList(mitigation1, mitigation2), result);
+        verify(mitigationStateDynamoDBHelper, never()).getMitigationState(any(DynamoDBScanExpression.class), anyInt());
+    }
+
+    @Test
+    public void testMovedAllocationReturnsEveryMitigationOfTheResource() {
+        // the allocation moved from the deactivated mit-0 to mit-3, created after the snapshot was taken
+        MitigationState deactivated = MitigationState.builder()
+                .mitigationId("mit-0")
+                .resourceId("1.2.3.4/32")
+                .resourceType("IPAddress")
+                .ownerARN("owner1")
+                .state(MitigationState.State.To_Delete.name())
+                .build();
+        MitigationState current = MitigationState.builder()
+                .mitigationId("mit-3")
+                .resourceId("1.2.3.4/32")
+                .resourceType("IPAddress")
+                .ownerARN("owner1")
+                .state(MitigationState.State.Active.name())
+                .build();
+        doReturn(MitigationStateSnapshot.fromMitigationStates(1, Arrays.asList(deactivated, mitigation2)))
+                .when(snapshotProvider).getSnapshot();
+        doReturn(deactivated).when(mitigationStateDynamoDBHelper).getMitigationState("mit-0");
+        doReturn(current).when(mitigationStateDynamoDBHelper).getMitigationState("mit-3");
+        ResourceAllocationState resourceState = new ResourceAllocationState();
+        resourceState.setMitigationId("mit-3");
+        doReturn(resourceState).when(resourceAllocationStateDynamoDBHelper).getResourceAllocationState("1.2.3.4/32");
+
+        MitigationStatePage page = planner.getMitigationStatePage(MitigationStateQuery.builder()
+                .canonicalResourceIds(ImmutableList.of("1.2.3.4/32")).build(), 10, null, tsdMetrics);
+
+        // same as the scan would return
+        assertEquals(Arrays.asList("mit-0", "mit-3"), ids(page));
+        verify(mitigationStateDynamoDBHelper, never()).getMitigationState(any(DynamoDBScanExpression.class), anyInt());
+    }
+
+    @Test
+    public void testStaleSnapshotFallsBackToScan() {
+        doReturn(new MitigationStateSnapshot(1, System.currentTimeMillis()
+                - MitigationStateQueryPlanner.MAX_RESOURCE_LOOKUP_SNAPSHOT_AGE_MILLIS - 1000,
+                ImmutableMap.of("mit-1", mitigation1))).when(snapshotProvider).getSnapshot();
+
+        List<MitigationState> result = planner.getMitigationStates(MitigationStateQuery.builder()
+                .canonicalResourceIds(ImmutableList.of("1.2.3.5/32")).build(), tsdMetrics);
+
+        assertEquals(Collections.singletonList(mitigation2), result);
+        verify(mitigationStateDynamoDBHelper, never()).getMitigationState(anyString());
+        verify(mitigationStateDynamoDBHelper).getMitigationState(any(DynamoDBScanExpression.class), anyInt());
+    }
+
+    @Test
+    public void testNoCanonicalResourceIdReturnsNothing() {
+        List<MitigationState> result = planner.getMitigationStates(MitigationStateQuery.builder()
+                .canonicalResourceIds(Collections.emptyList()).build(), tsdMetrics);
+
+        assertTrue(result.isEmpty());
+        verify(mitigationStateDynamoDBHelper, never()).getMitigationState(any(DynamoDBScanExpression.class), anyInt());
+    }
+
+    @Test
+    public void testOwnerIndexQuery() {
+        doReturn(Collections.singletonList(mitigation2)).when(ownerIndex).getMitigationStatesByOwner("owner2", null);
+
+        List<MitigationState> result = planner.getMitigationStates(MitigationStateQuery.builder()
+                .ownerARN("owner2").build(), tsdMetrics);
+
+        assertEquals(Collections.singletonList(mitigation2), result);
+        verify(mitigationStateDynamoDBHelper, never()).getMitigationState(any(DynamoDBScanExpression.class), anyInt());
+    }
+
+    @Test
+    public void testProjectionReadsQueriedAttributes() {
+        doReturn(Collections.singletonList(mitigation2)).when(ownerIndex).getMitigationStatesByOwner(
+                "owner2", Arrays.asList(MitigationState.MITIGATION_ID_KEY, MitigationState.RESOURCE_ID_KEY,
+                        MitigationState.RESOURCE_TYPE_KEY, MitigationState.OWNER_ARN_KEY));
+
+        MitigationStatePage page = planner.getMitigationStatePage(MitigationStateQuery.builder()
+                .ownerARN("owner2").build(), 10, null, MitigationProjection.IdsOnly.getAttributeNames(), tsdMetrics);
+
+        // the owner is not part of the projection but is needed to match the query
+        assertEquals(Collections.singletonList(mitigation2), page.getMitigationStates());
+    }
+
+    private static List<String> ids(MitigationStatePage page) {
+        return page.getMitigationStates().stream().map(MitigationState::getMitigationId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testOwnerIndexQueryPages() {
+        // the owner has mitigations "m-00" .. "m-59" in index order, the odd ones are not IPAddress mitigations
+        int ownerMitigations = 60;
+        AmazonDynamoDB dynamoDBClient = mock(AmazonDynamoDB.class);
+        when(dynamoDBClient.query(any(QueryRequest.class))).thenAnswer(invocation -> {
+            QueryRequest request = (QueryRequest) invocation.getArguments()[0];
+            int start = request.getExclusiveStartKey() == null ? 0
+                    : Integer.parseInt(request.getExclusiveStartKey()
+                            .get(MitigationState.MITIGATION_ID_KEY).getS().split("-")[1]) + 1;
+            int end = Math.min(ownerMitigations, start + request.getLimit());
+            List<Map<String, AttributeValue>> items = IntStream.range(start, end)
+                    .mapToObj(i -> (Map<String, AttributeValue>) ImmutableMap.of(
+                            MitigationState.MITIGATION_ID_KEY, new AttributeValue(String.format("m-%02d", i)),
+                            MitigationState.OWNER_ARN_KEY, new AttributeValue("owner1"),
+                            MitigationState.RESOURCE_TYPE_KEY, new AttributeValue(i % 2 == 0 ? "IPAddress" : "ElasticIP")))
+                    .collect(Collectors.toList());
+            QueryResult result = new QueryResult().withItems(items);
+            if (end < ownerMitigations) {
+                result.setLastEvaluatedKey(ImmutableMap.of(
+                        MitigationState.MITIGATION_ID_KEY, new AttributeValue(String.format("m-%02d", end - 1)),
+                        MitigationState.OWNER_ARN_KEY, new AttributeValue("owner1")));
+            }
+            return result;
+        });
+        MitigationStateQueryPlanner indexPlanner = new MitigationStateQueryPlanner(mitigationStateDynamoDBHelper,
+                resourceAllocationStateDynamoDBHelper, 4,
+                new MitigationStateOwnerIndex(dynamoDBClient, "MitigationState", "OwnerIndex"), null, null);
+        MitigationStateQuery query = MitigationStateQuery.builder().ownerARN("owner1").resourceType("IPAddress").build();
+
+        List<String> all = new ArrayList<>();
+        String nextToken = null;
+        int pages = 0;
+        do {
+            MitigationStatePage page = indexPlanner.getMitigationStatePage(query, 7, nextToken, tsdMetrics);
+            assertTrue(page.getMitigationStates().size() <= 7);
+            all.addAll(ids(page));
+            nextToken = page.getNextToken();
+            ++pages;
+        } while (nextToken != null && pages < 100);
+
+        assertEquals(IntStream.range(0, ownerMitigations / 2).mapToObj(i -> String.format("m-%02d", 2 * i))
+                .collect(Collectors.toList()), all);
+        assertEquals(5, pages);
+    }
+
+    @Test
+    public void testUnpaginatedPlansReturnNextToken() {
+        MitigationStateQuery query = MitigationStateQuery.builder().resourceType("IPAddress").build();
+
+        MitigationStatePage page = planner.getMitigationStatePage(query, 1, null, tsdMetrics);
+        assertEquals(Collections.singletonList(mitigation1), page.getMitigationStates());
+        assertNotNull(page.getNextToken());
+
+        page = planner.getMitigationStatePage(query, 1, page.getNextToken(), tsdMetrics);
+        assertEquals(Collections.singletonList(mitigation2), page.getMitigationStates());
+        assertNull(page.getNextToken());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNextTokenOfAnotherQueryRejected() {
+        MitigationStatePage page = planner.getMitigationStatePage(MitigationStateQuery.builder()
+                .resourceType("IPAddress").build(), 1, null, tsdMetrics);
+        planner.getMitigationStatePage(MitigationStateQuery.builder().resourceType("ElasticIP").build(), 1,
+                page.getNextToken(), tsdMetrics);
+    }
+}
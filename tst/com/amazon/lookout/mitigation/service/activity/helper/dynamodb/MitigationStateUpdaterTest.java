@@ -0,0 +1,183 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.amazon.blackwatch.mitigation.state.model.MitigationState;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperFieldModel;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.google.common.collect.ImmutableMap;
+
+public class MitigationStateUpdaterTest {
+    private static final String mitigationStateTableName = "MitigationState";
+
+    private final AmazonDynamoDB dynamoDBClient = mock(AmazonDynamoDB.class);
+    private final MitigationStateUpdater updater = new MitigationStateUpdater(dynamoDBClient, mitigationStateTableName);
+    private final String versionName = new DynamoDBMapper(dynamoDBClient)
+            .getTableModel(MitigationState.class, DynamoDBMapperConfig.DEFAULT).fields().stream()
+            .filter(DynamoDBMapperFieldModel::versioned)
+            .map(DynamoDBMapperFieldModel::name)
+            .findFirst()
+            .get();
+
+    private MitigationState mitigationState() {
+        return MitigationState.builder()
+                .mitigationId("mit-1")
+                .resourceId("1.2.3.4/32")
+                .resourceType("IPAddress")
+                .state(MitigationState.State.Active.name())
+                .ownerARN("owner")
+                .build();
+    }
+
+    @Test
+    public void testOnlyChangedAttributesWritten() {
+        MitigationState mitigationState = mitigationState();
+        Map<String, AttributeValue> original = updater.toAttributes(mitigationState);
+        mitigationState.setOwnerARN("newOwner");
+
+        ExpectedAttributeValue expectedOwner = new ExpectedAttributeValue(new AttributeValue("owner"))
+                .withComparisonOperator(ComparisonOperator.EQ);
+        assertEquals(1, updater.update(original, mitigationState,
+                ImmutableMap.of(MitigationState.OWNER_ARN_KEY, expectedOwner)));
+
+        ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(dynamoDBClient).updateItem(captor.capture());
+        UpdateItemRequest request = captor.getValue();
+
+        assertEquals(mitigationStateTableName, request.getTableName());
+        assertEquals("mit-1", request.getKey().get(MitigationState.MITIGATION_ID_KEY).getS());
+        assertTrue(request.getExpressionAttributeNames().containsValue(MitigationState.OWNER_ARN_KEY));
+        assertFalse(request.getExpressionAttributeNames().containsValue(MitigationState.RESOURCE_ID_KEY));
+        assertTrue(request.getExpressionAttributeValues().containsValue(new AttributeValue("newOwner")));
+        assertTrue(request.getExpressionAttributeValues().containsValue(new AttributeValue("owner")));
+        assertTrue(request.getUpdateExpression().startsWith("SET "));
+        assertTrue(request.getConditionExpression().startsWith("attribute_exists("));
+    }
+
+    @Test
+    public void testNotEqualCondition() {
+        MitigationState mitigationState = mitigationState();
+        Map<String, AttributeValue> original = updater.toAttributes(mitigationState);
+        mitigationState.setState(MitigationState.State.Expired.name());
+
+        ExpectedAttributeValue notToDelete = new ExpectedAttributeValue(
+                new AttributeValue(MitigationState.State.To_Delete.name()))
+                .withComparisonOperator(ComparisonOperator.NE);
+        updater.update(original, mitigationState, ImmutableMap.of(MitigationState.STATE_KEY, notToDelete));
+
+        ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(dynamoDBClient).updateItem(captor.capture());
+        assertTrue(captor.getValue().getConditionExpression().contains(" <> "));
+    }
+
+    @Test
+    public void testUnchangedMitigationNotWritten() {
+        MitigationState mitigationState = mitigationState();
+        Map<String, AttributeValue> original = updater.toAttributes(mitigationState);
+
+        assertEquals(0, updater.update(original, mitigationState, Collections.emptyMap()));
+        verify(dynamoDBClient, never()).updateItem(any(UpdateItemRequest.class));
+    }
+
+    @Test
+    public void testUpdateConditionalOnVersionRead() {
+        MitigationState mitigationState = mitigationState();
+        Map<String, AttributeValue> original = updater.toAttributes(mitigationState);
+        original.put(versionName, new AttributeValue().withN("3"));
+        mitigationState.setOwnerARN("newOwner");
+
+        updater.update(original, mitigationState, Collections.emptyMap());
+
+        ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(dynamoDBClient).updateItem(captor.capture());
+        assertEquals(new AttributeValue().withN("3"), conditionValue(captor.getValue(), versionName));
+    }
+
+    @Test
+    public void testUpdateOfMitigationReadWithoutVersionExpectsNoVersion() {
+        MitigationState mitigationState = mitigationState();
+        Map<String, AttributeValue> original = updater.toAttributes(mitigationState);
+        original.remove(versionName);
+        mitigationState.setOwnerARN("newOwner");
+
+        updater.update(original, mitigationState, Collections.emptyMap());
+
+        ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(dynamoDBClient).updateItem(captor.capture());
+        UpdateItemRequest request = captor.getValue();
+        assertTrue(request.getConditionExpression().contains(
+                String.format("attribute_not_exists(%s)", placeholder(request, versionName))));
+    }
+
+    /**
+     * A worker changes the state of the mitigation between the read and the write, the write must fail
+     * instead of overwriting the mitigation as it was read.
+     */
+    @Test(expected = ConditionalCheckFailedException.class)
+    public void testConcurrentStateChangeFailsUpdate() {
+        MitigationState mitigationState = mitigationState();
+        Map<String, AttributeValue> original = updater.toAttributes(mitigationState);
+        original.put(versionName, new AttributeValue().withN("3"));
+
+        // the item in the table, as written by the worker after the read
+        Map<String, AttributeValue> current = updater.toAttributes(mitigationState);
+        current.put(MitigationState.STATE_KEY, new AttributeValue(MitigationState.State.Failed.name()));
+        current.put(versionName, new AttributeValue().withN("4"));
+        when(dynamoDBClient.updateItem(any(UpdateItemRequest.class))).thenAnswer(invocation -> {
+            UpdateItemRequest request = (UpdateItemRequest) invocation.getArguments()[0];
+            if (!current.get(versionName).equals(conditionValue(request, versionName))) {
+                throw new ConditionalCheckFailedException("The conditional request failed");
+            }
+            return new UpdateItemResult();
+        });
+
+        // the expected state is the one which was read, and is unchanged by the worker's write of another state
+        ExpectedAttributeValue notToDelete = new ExpectedAttributeValue(
+                new AttributeValue(MitigationState.State.To_Delete.name()))
+                .withComparisonOperator(ComparisonOperator.NE);
+        mitigationState.setOwnerARN("newOwner");
+        updater.update(original, mitigationState, ImmutableMap.of(MitigationState.STATE_KEY, notToDelete));
+    }
+
+    private static String placeholder(UpdateItemRequest request, String attributeName) {
+        return request.getExpressionAttributeNames().entrySet().stream()
+                .filter(entry -> entry.getValue().equals(attributeName))
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .get();
+    }
+
+    /**
+     * @return the value an equality condition of the request expects the attribute to have.
+     */
+    private static AttributeValue conditionValue(UpdateItemRequest request, String attributeName) {
+        String prefix = placeholder(request, attributeName) + " = ";
+        for (String condition : request.getConditionExpression().split(" AND ")) {
+            if (condition.startsWith(prefix)) {
+                return request.getExpressionAttributeValues().get(condition.substring(prefix.length()));
+            }
+        }
+        return null;
+    }
+}
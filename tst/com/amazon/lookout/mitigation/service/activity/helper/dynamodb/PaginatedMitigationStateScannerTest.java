@@ -0,0 +1,149 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazon.aws158.commons.metric.TSDMetrics;
+import com.amazon.blackwatch.mitigation.state.model.MitigationState;
+import com.amazon.coral.metrics.Metrics;
+import com.amazon.coral.metrics.MetricsFactory;
+import com.amazon.lookout.mitigation.service.activity.helper.MitigationProjection;
+import com.amazon.lookout.mitigation.service.activity.helper.dynamodb.PaginatedMitigationStateScanner.MitigationStatePage;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
+import com.amazonaws.services.dynamodbv2.model.Condition;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.google.common.collect.ImmutableMap;
+
+public class PaginatedMitigationStateScannerTest {
+    private static final String tableName = "MitigationState";
+    private static final int totalSegments = 2;
+    private static final int itemsPerSegment = 30;
+
+    private final AmazonDynamoDB dynamoDBClient = mock(AmazonDynamoDB.class);
+    private final MetricsFactory metricsFactory = mock(MetricsFactory.class);
+    private final Metrics metrics = mock(Metrics.class);
+    private TSDMetrics tsdMetrics;
+
+    private final List<ScanRequest> scanRequests = new ArrayList<>();
+    private PaginatedMitigationStateScanner scanner;
+
+    @Before
+    public void setup() {
+        when(metricsFactory.newMetrics()).thenReturn(metrics);
+        when(metrics.newMetrics()).thenReturn(metrics);
+        tsdMetrics = new TSDMetrics(metricsFactory);
+
+        // segment N holds mitigations "N-00" .. "N-29" in key order
+        when(dynamoDBClient.scan(any(ScanRequest.class))).thenAnswer(invocation -> {
+            ScanRequest request = (ScanRequest) invocation.getArguments()[0];
+            scanRequests.add(request);
+            int segment = request.getSegment();
+            int start = request.getExclusiveStartKey() == null ? 0
+                    : Integer.parseInt(request.getExclusiveStartKey()
+                            .get(MitigationState.MITIGATION_ID_KEY).getS().split("-")[1]) + 1;
+            int end = Math.min(itemsPerSegment, start + request.getLimit());
+            List<Map<String, AttributeValue>> items = IntStream.range(start, end)
+                    .mapToObj(i -> item(String.format("%d-%02d", segment, i)))
+                    .collect(Collectors.toList());
+            ScanResult result = new ScanResult().withItems(items).withScannedCount(items.size());
+            if (end < itemsPerSegment) {
+                result.setLastEvaluatedKey(item(String.format("%d-%02d", segment, end - 1)));
+            }
+            return result;
+        });
+
+        scanner = new PaginatedMitigationStateScanner(dynamoDBClient, tableName, totalSegments);
+    }
+
+    private static Map<String, AttributeValue> item(String mitigationId) {
+        return ImmutableMap.of(MitigationState.MITIGATION_ID_KEY, new AttributeValue(mitigationId));
+    }
+
+    private static List<String> ids(MitigationStatePage page) {
+        return page.getMitigationStates().stream().map(MitigationState::getMitigationId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testSmallPageStopsEarly() {
+        MitigationStatePage page = scanner.scanPage(Collections.emptyMap(), 10, null, tsdMetrics);
+
+        assertEquals(10, page.getMitigationStates().size());
+        assertEquals("0-00", ids(page).get(0));
+        assertEquals("0-09", ids(page).get(9));
+        assertNotNull(page.getNextToken());
+        // a single read, limited to the minimum read size
+        assertEquals(1, scanRequests.size());
+        assertEquals(Integer.valueOf(25), scanRequests.get(0).getLimit());
+    }
+
+    @Test
+    public void testPagesCoverEverySegmentOnce() {
+        List<String> all = new ArrayList<>();
+        String nextToken = null;
+        int pages = 0;
+        do {
+            MitigationStatePage page = scanner.scanPage(Collections.emptyMap(), 7, nextToken, tsdMetrics);
+            all.addAll(ids(page));
+            nextToken = page.getNextToken();
+            ++pages;
+        } while (nextToken != null && pages < 100);
+
+        assertEquals(totalSegments * itemsPerSegment, all.size());
+        assertEquals(all.size(), all.stream().distinct().count());
+        assertNull(nextToken);
+    }
+
+    @Test
+    public void testLastPageHasNoToken() {
+        MitigationStatePage page = scanner.scanPage(Collections.emptyMap(), 1000, null, tsdMetrics);
+
+        assertEquals(totalSegments * itemsPerSegment, page.getMitigationStates().size());
+        assertNull(page.getNextToken());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTokenForDifferentQueryRejected() {
+        MitigationStatePage page = scanner.scanPage(Collections.emptyMap(), 10, null, tsdMetrics);
+        Map<String, Condition> otherFilter = ImmutableMap.of(MitigationState.OWNER_ARN_KEY, new Condition()
+                .withComparisonOperator(ComparisonOperator.EQ)
+                .withAttributeValueList(new AttributeValue("owner")));
+        scanner.scanPage(otherFilter, 10, page.getNextToken(), tsdMetrics);
+    }
+
+    @Test
+    public void testProjectionReadsOnlyRequestedAttributes() {
+        List<String> attributeNames = MitigationProjection.IdsOnly.getAttributeNames();
+        scanner.scanPage(Collections.emptyMap(), 10, null, attributeNames, tsdMetrics);
+
+        assertEquals(attributeNames, scanRequests.get(0).getAttributesToGet());
+        assertNull(scanRequests.get(0).getProjectionExpression());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testProjectionWithoutMitigationIdRejected() {
+        scanner.scanPage(Collections.emptyMap(), 10, null, Collections.singletonList(MitigationState.STATE_KEY),
+                tsdMetrics);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedTokenRejected() {
+        scanner.scanPage(Collections.emptyMap(), 10, "not-a-token", tsdMetrics);
+    }
+}
@@ -0,0 +1,199 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazon.blackwatch.mitigation.state.model.MitigationState;
+import com.amazon.blackwatch.mitigation.state.storage.MitigationStateDynamoDBHelper;
+import com.amazon.coral.metrics.Metrics;
+import com.amazon.coral.metrics.MetricsFactory;
+import com.amazon.lookout.test.common.util.TestUtils;
+
+public class ScanBasedMitigationStateSnapshotProviderTest {
+    private static final long refreshPeriodMillis = 1;
+    private static final long failureBackoffMillis = 50;
+    private static final long maxStalenessMillis = 200;
+
+    private final MitigationStateDynamoDBHelper mitigationStateDynamoDBHelper = mock(MitigationStateDynamoDBHelper.class);
+    private final MetricsFactory metricsFactory = mock(MetricsFactory.class);
+    private final Metrics metrics = mock(Metrics.class);
+
+    // refreshes run inline unless deferred, deferred refreshes are run by runPendingRefreshes()
+    private final List<Runnable> pendingRefreshes = new ArrayList<>();
+    private boolean deferRefreshes = false;
+    private final Executor executor = r -> {
+        if (deferRefreshes) {
+            pendingRefreshes.add(r);
+        } else {
+            r.run();
+        }
+    };
+
+    private ScanBasedMitigationStateSnapshotProvider provider;
+
+    @Before
+    public void setup() {
+        TestUtils.configureLogging();
+        doReturn(metrics).when(metricsFactory).newMetrics();
+        doReturn(metrics).when(metrics).newMetrics();
+
+        doReturn(Arrays.asList(mitigationState("mit-1"), mitigationState("mit-2")))
+                .when(mitigationStateDynamoDBHelper).getAllMitigationStates(anyInt());
+
+        provider = new ScanBasedMitigationStateSnapshotProvider(mitigationStateDynamoDBHelper, 4,
+                refreshPeriodMillis, failureBackoffMillis, maxStalenessMillis, metricsFactory, executor);
+    }
+
+    @Test
+    public void testFirstCallLoadsSnapshot() {
+        MitigationStateSnapshot snapshot = provider.getSnapshot();
+
+        assertEquals(1, snapshot.getVersion());
+        assertEquals(2, snapshot.size());
+        verify(mitigationStateDynamoDBHelper, times(1)).getAllMitigationStates(4);
+    }
+
+    @Test
+    public void testStaleSnapshotServedWhileSingleRefreshInFlight() throws InterruptedException {
+        MitigationStateSnapshot first = provider.getSnapshot();
+        Thread.sleep(refreshPeriodMillis + 5);
+
+        deferRefreshes = true;
+        for (int i = 0; i < 5; ++i) {
+            assertSame(first, provider.getSnapshot());
+        }
+        assertEquals(1, pendingRefreshes.size());
+
+        runPendingRefreshes();
+        assertEquals(2, provider.getSnapshot().getVersion());
+        verify(mitigationStateDynamoDBHelper, times(2)).getAllMitigationStates(anyInt());
+    }
+
+    @Test
+    public void testFailedRefreshKeepsServingStaleSnapshot() throws InterruptedException {
+        MitigationStateSnapshot first = provider.getSnapshot();
+        Thread.sleep(refreshPeriodMillis + 5);
+
+        deferRefreshes = true;
+        doThrow(new RuntimeException("scan failed")).when(mitigationStateDynamoDBHelper).getAllMitigationStates(anyInt());
+        provider.getSnapshot();
+        runPendingRefreshes();
+
+        // no new scan is started until the backoff has passed
+        assertSame(first, provider.getSnapshot());
+        assertEquals(0, pendingRefreshes.size());
+
+        Thread.sleep(failureBackoffMillis + 5);
+        assertSame(first, provider.getSnapshot());
+        assertEquals(1, pendingRefreshes.size());
+    }
+
+    @Test
+    public void testFailedFirstScanBacksOff() {
+        doThrow(new IllegalStateException("scan failed")).when(mitigationStateDynamoDBHelper).getAllMitigationStates(anyInt());
+        for (int i = 0; i < 5; ++i) {
+            try {
+                provider.getSnapshot();
+                fail("Expected IllegalStateException");
+            } catch (IllegalStateException ex) {
+                // expected
+            }
+        }
+        verify(mitigationStateDynamoDBHelper, times(1)).getAllMitigationStates(anyInt());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSnapshotPastMaxStalenessFails() throws InterruptedException {
+        provider.getSnapshot();
+        deferRefreshes = true;
+        doThrow(new RuntimeException("scan failed")).when(mitigationStateDynamoDBHelper).getAllMitigationStates(anyInt());
+        Thread.sleep(maxStalenessMillis + 5);
+        provider.getSnapshot();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFirstCallPropagatesScanFailure() {
+        doThrow(new IllegalStateException("scan failed")).when(mitigationStateDynamoDBHelper).getAllMitigationStates(anyInt());
+        provider.getSnapshot();
+    }
+
+    @Test
+    public void testRefreshRecordsChangesSincePreviousScan() throws InterruptedException {
+        MitigationStateSnapshot first = provider.getSnapshot();
+        MitigationChangeLog firstLog = first.getChangeLog();
+        assertEquals(0, firstLog.size());
+        assertFalse(firstLog.covers(firstLog.getTrackedSinceMillis() - 1));
+
+        MitigationState modified = mitigationState("mit-2");
+        modified.setState(MitigationState.State.Expired.name());
+        doReturn(Arrays.asList(mitigationState("mit-1"), modified, mitigationState("mit-3")))
+                .when(mitigationStateDynamoDBHelper).getAllMitigationStates(anyInt());
+        Thread.sleep(refreshPeriodMillis + 5);
+        provider.getSnapshot();
+
+        MitigationChangeLog changeLog = provider.getSnapshot().getChangeLog();
+        long since = firstLog.getWatermarkMillis() + MitigationChangeLog.CLOCK_SKEW_MILLIS;
+        assertTrue(changeLog.covers(since));
+        assertEquals(new HashSet<>(Arrays.asList("mit-2", "mit-3")), changeLog.getChangedSince(since));
+        assertEquals(Collections.emptySet(), changeLog.getDeletedSince(since));
+
+        doReturn(Collections.singletonList(mitigationState("mit-1")))
+                .when(mitigationStateDynamoDBHelper).getAllMitigationStates(anyInt());
+        Thread.sleep(refreshPeriodMillis + 5);
+        provider.getSnapshot();
+
+        changeLog = provider.getSnapshot().getChangeLog();
+        assertEquals(Collections.emptySet(), changeLog.getChangedSince(since));
+        assertEquals(new HashSet<>(Arrays.asList("mit-2", "mit-3")), changeLog.getDeletedSince(since));
+    }
+
+    @Test
+    public void testAwaitSnapshotAfterStartsRefreshOnceStale() throws InterruptedException {
+        MitigationStateSnapshot first = provider.getSnapshot();
+
+        MitigationStateSnapshot next = provider.awaitSnapshotAfter(first.getVersion(), 60_000);
+        assertTrue(next.getVersion() > first.getVersion());
+    }
+
+    @Test
+    public void testAwaitSnapshotAfterTimesOutWithoutRefresh() throws InterruptedException {
+        MitigationStateSnapshot first = provider.getSnapshot();
+        deferRefreshes = true;
+
+        assertSame(first, provider.awaitSnapshotAfter(first.getVersion(), 20));
+        // single-flight, the waiter didn't start a scan per wake up
+        assertEquals(1, pendingRefreshes.size());
+    }
+
+    private void runPendingRefreshes() {
+        List<Runnable> refreshes = new ArrayList<>(pendingRefreshes);
+        pendingRefreshes.clear();
+        refreshes.forEach(Runnable::run);
+    }
+
+    private static MitigationState mitigationState(String mitigationId) {
+        return MitigationState.builder()
+                .mitigationId(mitigationId)
+                .state(MitigationState.State.Active.name())
+                .build();
+    }
+}
@@ -0,0 +1,225 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazon.blackwatch.mitigation.state.model.MitigationState;
+import com.amazon.blackwatch.mitigation.state.storage.MitigationStateDynamoDBHelper;
+import com.amazon.coral.metrics.Metrics;
+import com.amazon.coral.metrics.MetricsFactory;
+import com.amazon.lookout.test.common.util.TestUtils;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBStreams;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.DescribeStreamRequest;
+import com.amazonaws.services.dynamodbv2.model.DescribeStreamResult;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
+import com.amazonaws.services.dynamodbv2.model.ExpiredIteratorException;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsRequest;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorRequest;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorResult;
+import com.amazonaws.services.dynamodbv2.model.OperationType;
+import com.amazonaws.services.dynamodbv2.model.Record;
+import com.amazonaws.services.dynamodbv2.model.SequenceNumberRange;
+import com.amazonaws.services.dynamodbv2.model.Shard;
+import com.amazonaws.services.dynamodbv2.model.StreamDescription;
+import com.amazonaws.services.dynamodbv2.model.StreamRecord;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+public class StreamBasedMitigationStateReplicaTest {
+    private static final String tableName = "MitigationState";
+    private static final String streamArn = "arn:aws:dynamodb:us-east-1:123:table/MitigationState/stream/1";
+    private static final String shardId = "shardId-1";
+
+    private final AmazonDynamoDB dynamoDBClient = mock(AmazonDynamoDB.class);
+    private final AmazonDynamoDBStreams dynamoDBStreamsClient = mock(AmazonDynamoDBStreams.class);
+    private final MitigationStateDynamoDBHelper mitigationStateDynamoDBHelper = mock(MitigationStateDynamoDBHelper.class);
+    private final MetricsFactory metricsFactory = mock(MetricsFactory.class);
+    private final Metrics metrics = mock(Metrics.class);
+
+    private StreamBasedMitigationStateReplica replica;
+
+    @Before
+    public void setup() {
+        TestUtils.configureLogging();
+        doReturn(metrics).when(metricsFactory).newMetrics();
+        doReturn(metrics).when(metrics).newMetrics();
+
+        doReturn(new DescribeTableResult().withTable(new TableDescription().withLatestStreamArn(streamArn)))
+                .when(dynamoDBClient).describeTable(tableName);
+        doReturn(new DescribeStreamResult().withStreamDescription(new StreamDescription().withShards(
+                new Shard().withShardId(shardId).withSequenceNumberRange(new SequenceNumberRange()))))
+                .when(dynamoDBStreamsClient).describeStream(any(DescribeStreamRequest.class));
+        doReturn(new GetShardIteratorResult().withShardIterator("iterator-0"))
+                .when(dynamoDBStreamsClient).getShardIterator(any(GetShardIteratorRequest.class));
+        doReturn(Arrays.asList(mitigationState("mit-1", "Active"), mitigationState("mit-2", "Active")))
+                .when(mitigationStateDynamoDBHelper).getAllMitigationStates(anyInt());
+
+        replica = new StreamBasedMitigationStateReplica(dynamoDBClient, dynamoDBStreamsClient,
+                mitigationStateDynamoDBHelper, tableName, 4, metricsFactory);
+    }
+
+    @Test
+    public void testBootstrapFromScan() {
+        MitigationStateSnapshot snapshot = replica.getSnapshot();
+
+        assertEquals(1, snapshot.getVersion());
+        assertEquals(2, snapshot.size());
+        assertNotNull(snapshot.getMitigationState("mit-1"));
+        verify(mitigationStateDynamoDBHelper, times(1)).getAllMitigationStates(4);
+
+        // Served from memory afterwards
+        replica.getSnapshot();
+        verify(mitigationStateDynamoDBHelper, times(1)).getAllMitigationStates(anyInt());
+    }
+
+    @Test
+    public void testApplyStreamRecords() {
+        replica.getSnapshot();
+        doReturn(new GetRecordsResult()
+                .withRecords(
+                        record(OperationType.MODIFY, "mit-1", "Expired"),
+                        record(OperationType.INSERT, "mit-3", "Active"),
+                        record(OperationType.REMOVE, "mit-2", null))
+                .withNextShardIterator("iterator-1"))
+                .doReturn(new GetRecordsResult()
+                        .withRecords(Collections.emptyList())
+                        .withNextShardIterator("iterator-2"))
+                .when(dynamoDBStreamsClient).getRecords(any(GetRecordsRequest.class));
+
+        replica.run();
+
+        MitigationStateSnapshot snapshot = replica.getSnapshot();
+        assertEquals(2, snapshot.getVersion());
+        assertEquals(2, snapshot.size());
+        assertEquals("Expired", snapshot.getMitigationState("mit-1").getState());
+        assertEquals("Active", snapshot.getMitigationState("mit-3").getState());
+        assertNull(snapshot.getMitigationState("mit-2"));
+        assertEquals(1, snapshot.activeMitigationStates().count());
+        verify(mitigationStateDynamoDBHelper, times(1)).getAllMitigationStates(anyInt());
+    }
+
+    @Test
+    public void testChangeLog() {
+        MitigationChangeLog bootstrapLog = replica.getSnapshot().getChangeLog();
+        assertNotNull(bootstrapLog);
+        assertEquals(0, bootstrapLog.size());
+        doReturn(new GetRecordsResult()
+                .withRecords(
+                        record(OperationType.MODIFY, "mit-1", "Expired"),
+                        record(OperationType.REMOVE, "mit-2", null))
+                .withNextShardIterator("iterator-1"))
+                .doReturn(new GetRecordsResult()
+                        .withRecords(Collections.emptyList())
+                        .withNextShardIterator("iterator-2"))
+                .when(dynamoDBStreamsClient).getRecords(any(GetRecordsRequest.class));
+
+        replica.run();
+
+        MitigationChangeLog changeLog = replica.getSnapshot().getChangeLog();
+        long since = bootstrapLog.getTrackedSinceMillis() + MitigationChangeLog.CLOCK_SKEW_MILLIS;
+        assertTrue(changeLog.covers(since));
+        assertTrue(changeLog.getWatermarkMillis() >= bootstrapLog.getWatermarkMillis());
+        assertEquals(ImmutableSet.of("mit-1"), changeLog.getChangedSince(bootstrapLog.getWatermarkMillis()));
+        assertEquals(ImmutableSet.of("mit-2"), changeLog.getDeletedSince(bootstrapLog.getWatermarkMillis()));
+    }
+
+    @Test
+    public void testAwaitSnapshotAfter() throws Exception {
+        MitigationStateSnapshot before = replica.getSnapshot();
+        doReturn(new GetRecordsResult()
+                .withRecords(Collections.emptyList())
+                .withNextShardIterator("iterator-1"))
+                .when(dynamoDBStreamsClient).getRecords(any(GetRecordsRequest.class));
+
+        // times out on the current snapshot when nothing is published
+        assertEquals(before, replica.awaitSnapshotAfter(before.getVersion(), 10));
+        // a newer snapshot is returned right away
+        assertEquals(before, replica.awaitSnapshotAfter(before.getVersion() - 1, 60_000));
+
+        doReturn(new GetRecordsResult()
+                .withRecords(record(OperationType.INSERT, "mit-3", "Active"))
+                .withNextShardIterator("iterator-1"))
+                .doReturn(new GetRecordsResult()
+                        .withRecords(Collections.emptyList())
+                        .withNextShardIterator("iterator-2"))
+                .when(dynamoDBStreamsClient).getRecords(any(GetRecordsRequest.class));
+        CompletableFuture<MitigationStateSnapshot> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                return replica.awaitSnapshotAfter(before.getVersion(), 60_000);
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        replica.run();
+
+        MitigationStateSnapshot after = waiter.get(10, TimeUnit.SECONDS);
+        assertEquals(before.getVersion() + 1, after.getVersion());
+        assertNotNull(after.getMitigationState("mit-3"));
+    }
+
+    @Test
+    public void testNoChangesKeepsSnapshot() {
+        MitigationStateSnapshot before = replica.getSnapshot();
+        doReturn(new GetRecordsResult()
+                .withRecords(Collections.emptyList())
+                .withNextShardIterator("iterator-1"))
+                .when(dynamoDBStreamsClient).getRecords(any(GetRecordsRequest.class));
+
+        replica.run();
+
+        assertEquals(before, replica.getSnapshot());
+    }
+
+    @Test
+    public void testExpiredIteratorRebootstraps() {
+        replica.getSnapshot();
+        doThrow(new ExpiredIteratorException("expired"))
+                .when(dynamoDBStreamsClient).getRecords(any(GetRecordsRequest.class));
+
+        replica.run();
+
+        assertEquals(2, replica.getSnapshot().getVersion());
+        verify(mitigationStateDynamoDBHelper, times(2)).getAllMitigationStates(anyInt());
+    }
+
+    private static MitigationState mitigationState(String mitigationId, String state) {
+        return MitigationState.builder()
+                .mitigationId(mitigationId)
+                .state(state)
+                .build();
+    }
+
+    private static Record record(OperationType operationType, String mitigationId, String state) {
+        Map<String, AttributeValue> keys = ImmutableMap.of(
+                MitigationState.MITIGATION_ID_KEY, new AttributeValue(mitigationId));
+        StreamRecord streamRecord = new StreamRecord().withKeys(keys);
+        if (state != null) {
+            streamRecord.withNewImage(ImmutableMap.of(
+                    MitigationState.MITIGATION_ID_KEY, new AttributeValue(mitigationId),
+                    MitigationState.STATE_KEY, new AttributeValue(state)));
+        }
+        return new Record().withEventName(operationType).withDynamodb(streamRecord);
+    }
+}
@@ -0,0 +1,160 @@
+package com.amazon.lookout.mitigation.service.activity.helper.dynamodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import com.amazon.blackwatch.mitigation.state.model.MitigationState;
+import com.amazon.blackwatch.mitigation.state.model.ResourceAllocationState;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperFieldModel;
+import com.amazonaws.services.dynamodbv2.model.CancellationReason;
+import com.amazonaws.services.dynamodbv2.model.Put;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItem;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsRequest;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsResult;
+import com.amazonaws.services.dynamodbv2.model.TransactionCanceledException;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.google.common.collect.ImmutableMap;
+
+public class TransactionalMitigationCreatorTest {
+    private static final String mitigationStateTableName = "MitigationState";
+    private static final String resourceAllocationStateTableName = "ResourceAllocationState";
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private final AmazonDynamoDB dynamoDBClient = mock(AmazonDynamoDB.class);
+    private final TransactionalMitigationCreator creator = new TransactionalMitigationCreator(
+            dynamoDBClient, mitigationStateTableName, resourceAllocationStateTableName, millis -> { });
+
+    private final MitigationState mitigationState = MitigationState.builder()
+            .mitigationId("mit-1")
+            .resourceId("1.2.3.4/32")
+            .resourceType("IPAddress")
+            .ownerARN("owner")
+            .build();
+
+    @Test
+    public void testMitigationAndAllocationsWrittenInOneTransaction() {
+        creator.create(mitigationState, ImmutableMap.of("1.2.3.4/32", "IPAddress"));
+
+        ArgumentCaptor<TransactWriteItemsRequest> request = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(dynamoDBClient).transactWriteItems(request.capture());
+
+        List<Put> puts = request.getValue().getTransactItems().stream()
+                .map(TransactWriteItem::getPut)
+                .collect(Collectors.toList());
+        assertEquals(2, puts.size());
+        assertEquals(mitigationStateTableName, puts.get(0).getTableName());
+        assertEquals("mit-1", puts.get(0).getItem().get(MitigationState.MITIGATION_ID_KEY).getS());
+        assertEquals(resourceAllocationStateTableName, puts.get(1).getTableName());
+        puts.forEach(put -> assertEquals("attribute_not_exists(#key)", put.getConditionExpression()));
+        // same initial version as DynamoDBMapper.save
+        new DynamoDBMapper(dynamoDBClient).getTableModel(MitigationState.class).versions().forEach(version ->
+                assertEquals("1", puts.get(0).getItem().get(version.name()).getN()));
+        assertNotNull(mitigationState.getVersionNumber());
+        assertNotNull(request.getValue().getClientRequestToken());
+    }
+
+    @Test
+    public void testAllocationsProposedThenConfirmed() {
+        creator.create(mitigationState, ImmutableMap.of("1.2.3.4/32", "IPAddress"));
+
+        InOrder inOrder = inOrder(dynamoDBClient);
+        ArgumentCaptor<TransactWriteItemsRequest> request = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        inOrder.verify(dynamoDBClient).transactWriteItems(request.capture());
+        Put allocation = request.getValue().getTransactItems().get(1).getPut();
+        DynamoDBMapperFieldModel<ResourceAllocationState, Object> confirmed = new DynamoDBMapper(dynamoDBClient)
+                .getTableModel(ResourceAllocationState.class).field("confirmed");
+        assertEquals(confirmed.convert(Boolean.FALSE), allocation.getItem().get(confirmed.name()));
+
+        ArgumentCaptor<UpdateItemRequest> confirm = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        inOrder.verify(dynamoDBClient).updateItem(confirm.capture());
+        assertEquals(resourceAllocationStateTableName, confirm.getValue().getTableName());
+        assertEquals("1.2.3.4/32", confirm.getValue().getKey().values().iterator().next().getS());
+        assertEquals("mit-1", confirm.getValue().getExpressionAttributeValues().get(":mitigationId").getS());
+    }
+
+    @Test
+    public void testTransientCancellationRetriedWithSameToken() {
+        TransactionCanceledException canceled = new TransactionCanceledException("canceled");
+        canceled.setCancellationReasons(Arrays.asList(
+                new CancellationReason().withCode("TransactionConflict"),
+                new CancellationReason().withCode("None")));
+        when(dynamoDBClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+                .thenThrow(canceled)
+                .thenReturn(new TransactWriteItemsResult());
+
+        creator.create(mitigationState, ImmutableMap.of("1.2.3.4/32", "IPAddress"));
+
+        ArgumentCaptor<TransactWriteItemsRequest> request = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(dynamoDBClient, times(2)).transactWriteItems(request.capture());
+        assertEquals(request.getAllValues().get(0).getClientRequestToken(),
+                request.getAllValues().get(1).getClientRequestToken());
+        verify(dynamoDBClient).updateItem(any(UpdateItemRequest.class));
+    }
+
+    @Test
+    public void testTransientCancellationPropagatedAfterLastAttempt() {
+        TransactionCanceledException canceled = new TransactionCanceledException("canceled");
+        canceled.setCancellationReasons(Arrays.asList(
+                new CancellationReason().withCode("ThrottlingError"),
+                new CancellationReason().withCode("None")));
+        doThrow(canceled).when(dynamoDBClient).transactWriteItems(any(TransactWriteItemsRequest.class));
+
+        try {
+            creator.create(mitigationState, ImmutableMap.of("1.2.3.4/32", "IPAddress"));
+            fail("Expected TransactionCanceledException");
+        } catch (TransactionCanceledException ex) {
+            assertSame(canceled, ex);
+        }
+        verify(dynamoDBClient, times(TransactionalMitigationCreator.MAX_ATTEMPTS))
+                .transactWriteItems(any(TransactWriteItemsRequest.class));
+        verify(dynamoDBClient, never()).updateItem(any(UpdateItemRequest.class));
+    }
+
+    @Test
+    public void testAllocatedResourceReported() {
+        TransactionCanceledException canceled = new TransactionCanceledException("canceled");
+        canceled.setCancellationReasons(Arrays.asList(
+                new CancellationReason().withCode("None"),
+                new CancellationReason().withCode("ConditionalCheckFailed")));
+        doThrow(canceled).when(dynamoDBClient).transactWriteItems(any(TransactWriteItemsRequest.class));
+
+        thrown.expect(TransactionalMitigationCreator.ItemAlreadyExistsException.class);
+        thrown.expectMessage("resourceId 1.2.3.4/32");
+        creator.create(mitigationState, ImmutableMap.of("1.2.3.4/32", "IPAddress"));
+    }
+
+    @Test(expected = TransactionCanceledException.class)
+    public void testOtherCancellationPropagated() {
+        TransactionCanceledException canceled = new TransactionCanceledException("canceled");
+        canceled.setCancellationReasons(Arrays.asList(
+                new CancellationReason().withCode("ValidationError"),
+                new CancellationReason().withCode("None")));
+        doThrow(canceled).when(dynamoDBClient).transactWriteItems(any(TransactWriteItemsRequest.class));
+
+        creator.create(mitigationState, ImmutableMap.of("1.2.3.4/32", "IPAddress"));
+    }
+}
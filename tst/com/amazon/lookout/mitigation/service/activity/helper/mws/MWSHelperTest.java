@@ -3,6 +3,8 @@ package com.amazon.lookout.mitigation.service.activity.helper.mws;
 import amazon.mws.data.Datapoint;
 import amazon.mws.query.MonitoringQueryClient;
 import amazon.mws.query.MonitoringQueryClientProvider;
+import amazon.mws.request.GetMetricDataRequest;
+import amazon.mws.response.GetMetricDataResponse;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -11,7 +13,22 @@ import com.amazon.lookout.test.common.util.TestUtils;
 import com.amazon.coral.metrics.Metrics;
 import com.amazon.coral.metrics.MetricsFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class MWSHelperTest {
   private static MonitoringQueryClient mwsQueryClient = Mockito.mock(MonitoringQueryClient.class);
@@ -44,5 +61,184 @@ public class MWSHelperTest {
     //This location does not exist and thats why always return an empty list
     assertEquals(new ArrayList<Datapoint>(), mwsHelper.getBGPTotalAnnouncements(location, tsdMetrics));
   }
-}
 
+  private static List<Datapoint> datapoints() {
+    return Collections.singletonList(Mockito.mock(Datapoint.class));
+  }
+
+  private static GetMetricDataResponse response(List<Datapoint> datapoints) {
+    GetMetricDataResponse response = Mockito.mock(GetMetricDataResponse.class, Mockito.RETURNS_DEEP_STUBS);
+    Mockito.when(response.getStatisticSeries().get(0).getDatapoints()).thenReturn(datapoints);
+    return response;
+  }
+
+  /**
+   * Datapoints are fetched once per location and minute.
+   */
+  @Test
+  public void testDatapointsCachedUntilNextMinute() throws Exception {
+    MonitoringQueryClient client = Mockito.mock(MonitoringQueryClient.class);
+    List<Datapoint> first = datapoints();
+    List<Datapoint> second = datapoints();
+    Mockito.doReturn(response(first)).doReturn(response(second)).doReturn(response(datapoints()))
+        .when(client).requestResponse(Mockito.isA(GetMetricDataRequest.class));
+
+    AtomicLong now = new AtomicLong(TimeUnit.MINUTES.toMillis(1000) + TimeUnit.SECONDS.toMillis(30));
+    MWSHelper helper = new MWSHelper(client, new HashMap<>(), now::get);
+
+    assertEquals(first, helper.getBGPTotalAnnouncements(location, tsdMetrics));
+    now.addAndGet(TimeUnit.SECONDS.toMillis(29));
+    assertEquals(first, helper.getBGPTotalAnnouncements(location, tsdMetrics));
+    Mockito.verify(client, Mockito.times(1)).requestResponse(Mockito.isA(GetMetricDataRequest.class));
+
+    now.addAndGet(TimeUnit.SECONDS.toMillis(1));
+    assertEquals(second, helper.getBGPTotalAnnouncements(location, tsdMetrics));
+    Mockito.verify(client, Mockito.times(2)).requestResponse(Mockito.isA(GetMetricDataRequest.class));
+
+    helper.getBGPTotalAnnouncements("brg-test-2", tsdMetrics);
+    Mockito.verify(client, Mockito.times(3)).requestResponse(Mockito.isA(GetMetricDataRequest.class));
+  }
+
+  /**
+   * A failed request is not cached, the next caller retries.
+   */
+  @Test
+  public void testFailuresNotCached() throws Exception {
+    MonitoringQueryClient client = Mockito.mock(MonitoringQueryClient.class);
+    List<Datapoint> datapoints = datapoints();
+    Mockito.doThrow(new IllegalStateException()).doReturn(response(datapoints))
+        .when(client).requestResponse(Mockito.isA(GetMetricDataRequest.class));
+    MWSHelper helper = new MWSHelper(client, new HashMap<>(), () -> TimeUnit.MINUTES.toMillis(1000));
+
+    try {
+      helper.getBGPTotalAnnouncements(location, tsdMetrics);
+      fail("Expected MWSRequestException");
+    } catch (MWSRequestException ex) {
+      // expected
+    }
+    assertEquals(datapoints, helper.getBGPTotalAnnouncements(location, tsdMetrics));
+    Mockito.verify(client, Mockito.times(2)).requestResponse(Mockito.isA(GetMetricDataRequest.class));
+  }
+
+  /**
+   * Concurrent callers for the same location share one request.
+   */
+  @Test
+  public void testConcurrentRequestsCoalesced() throws Exception {
+    MonitoringQueryClient client = Mockito.mock(MonitoringQueryClient.class);
+    GetMetricDataResponse response = response(datapoints());
+    CountDownLatch requested = new CountDownLatch(1);
+    CountDownLatch respond = new CountDownLatch(1);
+    Mockito.doAnswer(invocation -> {
+      requested.countDown();
+      respond.await();
+      return response;
+    }).when(client).requestResponse(Mockito.isA(GetMetricDataRequest.class));
+    MWSHelper helper = new MWSHelper(client, new HashMap<>(), () -> TimeUnit.MINUTES.toMillis(1000));
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<List<Datapoint>>> results = new ArrayList<>();
+      results.add(executor.submit(() -> helper.getBGPTotalAnnouncements(location, tsdMetrics)));
+      requested.await();
+      for (int i = 0; i < 3; ++i) {
+        results.add(executor.submit(() -> helper.getBGPTotalAnnouncements(location, tsdMetrics)));
+      }
+      Thread.sleep(100);
+      respond.countDown();
+
+      List<Datapoint> fetched = results.get(0).get(10, TimeUnit.SECONDS);
+      for (Future<List<Datapoint>> result : results) {
+        assertSame(fetched, result.get(10, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    Mockito.verify(client, Mockito.times(1)).requestResponse(Mockito.isA(GetMetricDataRequest.class));
+  }
+
+  /**
+   * Locations are cached by their MWS dimension, which is upper case.
+   */
+  @Test
+  public void testLocationCaseSharesCache() throws Exception {
+    MonitoringQueryClient client = Mockito.mock(MonitoringQueryClient.class);
+    List<Datapoint> datapoints = datapoints();
+    Mockito.doReturn(response(datapoints)).when(client).requestResponse(Mockito.isA(GetMetricDataRequest.class));
+    MWSHelper helper = new MWSHelper(client, new HashMap<>(), () -> TimeUnit.MINUTES.toMillis(1000));
+
+    assertEquals(datapoints, helper.getBGPTotalAnnouncements("brg-test-1", tsdMetrics));
+    assertEquals(datapoints, helper.getBGPTotalAnnouncements("BRG-TEST-1", tsdMetrics));
+    Mockito.verify(client, Mockito.times(1)).requestResponse(Mockito.isA(GetMetricDataRequest.class));
+  }
+
+  /**
+   * Callers joining a fetch which does not complete give up after the wait timeout.
+   */
+  @Test
+  public void testJoinedFetchWaitBounded() throws Exception {
+    MonitoringQueryClient client = Mockito.mock(MonitoringQueryClient.class);
+    CountDownLatch requested = new CountDownLatch(1);
+    CountDownLatch respond = new CountDownLatch(1);
+    Mockito.doAnswer(invocation -> {
+      requested.countDown();
+      respond.await();
+      return response(datapoints());
+    }).when(client).requestResponse(Mockito.isA(GetMetricDataRequest.class));
+
+    MWSHelper helper = new MWSHelper(client, new HashMap<>(), () -> TimeUnit.MINUTES.toMillis(1000), 100);
+    ExecutorService executor = Executors.newFixedThreadPool(1);
+    try {
+      Future<List<Datapoint>> first = executor.submit(() -> helper.getBGPTotalAnnouncements(location, tsdMetrics));
+      requested.await();
+      try {
+        helper.getBGPTotalAnnouncements(location, tsdMetrics);
+        fail("Expected MWSRequestException");
+      } catch (MWSRequestException ex) {
+        assertTrue(ex.getCause() instanceof TimeoutException);
+      }
+      respond.countDown();
+      first.get(10, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * An Error thrown by the fetch fails the callers which joined it, and is not cached.
+   */
+  @Test
+  public void testErrorCompletesJoinedFetch() throws Exception {
+    MonitoringQueryClient client = Mockito.mock(MonitoringQueryClient.class);
+    List<Datapoint> datapoints = datapoints();
+    CountDownLatch requested = new CountDownLatch(1);
+    CountDownLatch respond = new CountDownLatch(1);
+    Mockito.doAnswer(invocation -> {
+      requested.countDown();
+      respond.await();
+      throw new AssertionError("fetch failed");
+    }).doReturn(response(datapoints)).when(client).requestResponse(Mockito.isA(GetMetricDataRequest.class));
+    MWSHelper helper = new MWSHelper(client, new HashMap<>(), () -> TimeUnit.MINUTES.toMillis(1000));
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<List<Datapoint>> first = executor.submit(() -> helper.getBGPTotalAnnouncements(location, tsdMetrics));
+      requested.await();
+      Future<List<Datapoint>> joined = executor.submit(() -> helper.getBGPTotalAnnouncements(location, tsdMetrics));
+      Thread.sleep(100);
+      respond.countDown();
+
+      for (Future<List<Datapoint>> result : Arrays.asList(first, joined)) {
+        try {
+          result.get(5, TimeUnit.SECONDS);
+          fail("Expected the fetch to fail");
+        } catch (ExecutionException ex) {
+          // expected
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(datapoints, helper.getBGPTotalAnnouncements(location, tsdMetrics));
+  }
+}
@@ -31,12 +31,15 @@ import com.amazon.lookout.mitigation.service.ChangeBlackWatchMitigationOwnerARNR
 import com.amazon.lookout.mitigation.service.CreateMitigationRequest;
 import com.amazon.lookout.mitigation.service.DeactivateBlackWatchMitigationRequest;
 import com.amazon.lookout.mitigation.service.DeleteMitigationFromAllLocationsRequest;
+import com.amazon.lookout.mitigation.service.GetMitigationsCoveringIPRequest;
 import com.amazon.lookout.mitigation.service.ListActiveMitigationsForServiceRequest;
 import com.amazon.lookout.mitigation.service.ListBlackWatchLocationsRequest;
+import com.amazon.lookout.mitigation.service.ListBlackWatchMitigationChangesRequest;
 import com.amazon.lookout.mitigation.service.ListBlackWatchMitigationsRequest;
 import com.amazon.lookout.mitigation.service.MitigationActionMetadata;
 import com.amazon.lookout.mitigation.service.MitigationDefinition;
 import com.amazon.lookout.mitigation.service.SimpleConstraint;
+import com.amazon.lookout.mitigation.service.activity.ListBlackWatchMitigationChangesActivity;
 import com.amazon.lookout.mitigation.service.activity.helper.RequestTestHelper;
 import com.amazon.lookout.mitigation.service.constants.DeviceName;
 import com.amazon.lookout.mitigation.service.mitigation.model.MitigationTemplate;
@@ -610,6 +613,53 @@ public class RequestValidatorTest {
         validator.validateListActiveMitigationsForServiceRequest(request);
     }
     
+    @Test
+    public void testValidateListBlackWatchMitigationChangesRequest() {
+        ListBlackWatchMitigationChangesRequest request = new ListBlackWatchMitigationChangesRequest();
+        request.setMitigationActionMetadata(MitigationActionMetadata.builder()
+                .withUser("Khaleesi").withToolName("JUnit")
+                .withDescription("Test Descr")
+                .withRelatedTickets(Arrays.asList("1234", "5655")).build());
+        validator.validateListBlackWatchMitigationChangesRequest(request);
+
+        request.setWaitTimeSeconds(ListBlackWatchMitigationChangesActivity.MAX_WAIT_TIME_SECONDS);
+        validator.validateListBlackWatchMitigationChangesRequest(request);
+
+        request.setWaitTimeSeconds(ListBlackWatchMitigationChangesActivity.MAX_WAIT_TIME_SECONDS + 1);
+        Throwable caughtException = null;
+        try {
+            validator.validateListBlackWatchMitigationChangesRequest(request);
+        } catch (IllegalArgumentException ex) {
+            caughtException = ex;
+        }
+        assertNotNull(caughtException);
+        assertTrue(caughtException.getMessage().startsWith("waitTimeSeconds must be between"));
+    }
+
+    @Test
+    public void testValidateGetMitigationsCoveringIPRequest() {
+        GetMitigationsCoveringIPRequest request = new GetMitigationsCoveringIPRequest();
+        request.setMitigationActionMetadata(MitigationActionMetadata.builder()
+                .withUser("Khaleesi").withToolName("JUnit")
+                .withDescription("Test Descr")
+                .withRelatedTickets(Arrays.asList("1234", "5655")).build());
+        request.setIpOrCidr("10.0.0.1");
+        validator.validateGetMitigationsCoveringIPRequest(request);
+
+        request.setIpOrCidr("10.0.0.0/8");
+        validator.validateGetMitigationsCoveringIPRequest(request);
+
+        request.setIpOrCidr("10.0.0.0/33");
+        Throwable caughtException = null;
+        try {
+            validator.validateGetMitigationsCoveringIPRequest(request);
+        } catch (IllegalArgumentException ex) {
+            caughtException = ex;
+        }
+        assertNotNull(caughtException);
+        assertTrue(caughtException.getMessage().startsWith("ipOrCidr must be a valid IP address or CIDR"));
+    }
+
     @Test
     public void testvalidateListBlackWatchMitigationsRequest() {
         ListBlackWatchMitigationsRequest request = new ListBlackWatchMitigationsRequest();
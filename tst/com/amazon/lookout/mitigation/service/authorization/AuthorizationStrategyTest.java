@@ -50,6 +50,7 @@ import com.amazon.coral.service.Context;
 import com.amazon.coral.service.Identity;
 import com.amazon.lookout.mitigation.service.AbortDeploymentRequest;
 import com.amazon.lookout.mitigation.service.ApplyBlackWatchMitigationRequest;
+import com.amazon.lookout.mitigation.service.ApplyBlackWatchMitigationsRequest;
 import com.amazon.lookout.mitigation.service.CreateMitigationRequest;
 import com.amazon.lookout.mitigation.service.DeleteMitigationFromAllLocationsRequest;
 import com.amazon.lookout.mitigation.service.EditMitigationRequest;
@@ -982,6 +983,31 @@ public class AuthorizationStrategyTest {
                 BlackWatchMitigationResourceType.IPAddress.name()), authInfo_2);
     }
 
+    /**
+     * Every entry of a batch apply is authorized as an ApplyBlackWatchMitigation of its destinations
+     */
+    @Test
+    public void testApplyBlackWatchMitigationsRequest() {
+        setOperationNameForContext("ApplyBlackWatchMitigations");
+        ApplyBlackWatchMitigationRequest first = new ApplyBlackWatchMitigationRequest();
+        first.setResourceType(BlackWatchMitigationResourceType.IPAddress.name());
+        first.setResourceId(CIDR_WITH_32);
+        ApplyBlackWatchMitigationRequest second = new ApplyBlackWatchMitigationRequest();
+        second.setResourceType(BlackWatchMitigationResourceType.IPAddress.name());
+        second.setResourceId(CIDR_WITH_128);
+        ApplyBlackWatchMitigationsRequest batchRequest = new ApplyBlackWatchMitigationsRequest();
+        batchRequest.setMitigations(Arrays.asList(first, second));
+
+        List<AuthorizationInfo> authInfoList = authStrategy.getAuthorizationInfoList(context, batchRequest);
+        assertEquals(2, authInfoList.size());
+        assertEqualAuthorizationInfos(getBasicAuthorizationInfo("lookout:write-" + "ApplyBlackWatchMitigation",
+                EXPECTED_ARN_PREFIX + "BLACKWATCH_API/BLACKWATCH_MITIGATION", IP_WITH_32,
+                BlackWatchMitigationResourceType.IPAddress.name()), (BasicAuthorizationInfo) authInfoList.get(0));
+        assertEqualAuthorizationInfos(getBasicAuthorizationInfo("lookout:write-" + "ApplyBlackWatchMitigation",
+                EXPECTED_ARN_PREFIX + "BLACKWATCH_API/BLACKWATCH_MITIGATION", IP_WITH_128,
+                BlackWatchMitigationResourceType.IPAddress.name()), (BasicAuthorizationInfo) authInfoList.get(1));
+    }
+
     /**
      * This function tests construction of Authorization Contexts
      * Resource Type IPAddress